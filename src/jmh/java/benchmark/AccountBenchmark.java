@@ -0,0 +1,114 @@
+package benchmark;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserNotFoundException;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the balance changing operations and of the balance reads of every engine and balance mode, with the
+ * accounts picked according to the configured contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountBenchmark {
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("100000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"UNIFORM", "ZIPFIAN", "HOT"})
+    private Contention contention;
+
+    @Param({"LOCKING", "PARTITIONED"})
+    private LedgerEngine engine;
+
+    @Param({"DECIMAL", "MINOR_UNITS"})
+    private BalanceMode balanceMode;
+
+    @Param("10000")
+    private int accounts;
+
+    private AccountService accountService;
+    private Contention.Picker picker;
+    private String[] ibans;
+    private AmountDto[] amounts;
+    private TransferAmountDto[][] transfers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UserNotFoundException, AccountNotFoundException, NotEnoughAmountException {
+        AccountStore accountStore = new InMemoryAccountStore();
+        UserStore userStore = new InMemoryUserStore();
+        DisabledJournal journal = new DisabledJournal();
+        if (engine == LedgerEngine.PARTITIONED) {
+            accountService = new PartitionedAccountService(accountStore, userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32),
+                    balanceMode, Runtime.getRuntime().availableProcessors(), 8192);
+        } else if (balanceMode == BalanceMode.MINOR_UNITS) {
+            accountService = new AtomicAccountService(accountStore, userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        } else {
+            accountService = new AccountService(accountStore, userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        }
+        long userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal)
+                .addUser(new UserDto("John", "Doe", "New York 101"));
+
+        // requests are prepared up front, so only the operation itself is measured
+        ibans = new String[accounts];
+        amounts = new AmountDto[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(ibans[i], INITIAL_AMOUNT));
+            amounts[i] = new AmountDto(ibans[i], AMOUNT);
+        }
+        int receivers = Math.min(accounts, 64);
+        transfers = new TransferAmountDto[accounts][receivers];
+        for (int i = 0; i < accounts; i++) {
+            for (int j = 0; j < receivers; j++) {
+                transfers[i][j] = new TransferAmountDto(ibans[i], ibans[(i + j + 1) % accounts], AMOUNT);
+            }
+        }
+        picker = contention.newPicker(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (accountService instanceof PartitionedAccountService) {
+            ((PartitionedAccountService) accountService).shutdown();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal balanceOf() throws AccountNotFoundException {
+        return accountService.balanceOf(ibans[picker.next()]);
+    }
+
+    @Benchmark
+    public void deposit() throws AccountNotFoundException, NotEnoughAmountException {
+        accountService.deposit(amounts[picker.next()]);
+    }
+
+    @Benchmark
+    public void withdraw() throws AccountNotFoundException, NotEnoughAmountException {
+        accountService.withdraw(amounts[picker.next()]);
+    }
+
+    /**
+     * Transfers from an account picked by the contention to one of its neighbours, so the receivers are spread
+     * around the sender the same way.
+     */
+    @Benchmark
+    public void transfer() throws AccountNotFoundException, NotEnoughAmountException {
+        TransferAmountDto[] candidates = transfers[picker.next()];
+        accountService.transfer(candidates[picker.next() % candidates.length]);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmark;
+
+import esz.dev.account.control.AccountStore;
+import esz.dev.account.control.InMemoryAccountStore;
+import esz.dev.account.control.OffHeapAccountStore;
+import esz.dev.account.entity.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of looking up accounts by IBANs issued by the bank, which are found by their numeric key, and by foreign
+ * IBANs, which are found by string hashing, in the heap and the off-heap stores. The IBANs are copied, as if they had
+ * just been read from a request. The off-heap store allocates a view per lookup, shown by the {@code gc} profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountStoreBenchmark {
+    public enum Ibans {
+        ISSUED, FOREIGN
+    }
+
+    public enum Store {
+        HEAP, OFF_HEAP
+    }
+
+    @Param({"ISSUED", "FOREIGN"})
+    private Ibans ibans;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    private Store store;
+
+    @Param("100000")
+    private int accounts;
+
+    private AccountStore accountStore;
+    private String[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountStore = store == Store.HEAP ? new InMemoryAccountStore() : new OffHeapAccountStore(accounts);
+        requests = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            String iban = ibans == Ibans.ISSUED
+                    ? String.format("RO%02dXXXX%016d", i % 100, i)
+                    : String.format("DE%02d370400440%010d", i % 100, i);
+            accountStore.addAccount(Account.builder().iban(iban).amount(BigDecimal.ZERO).build());
+            requests[i] = new String(iban.toCharArray());
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> getAccount() {
+        return accountStore.getAccount(new String(requests[ThreadLocalRandom.current().nextInt(accounts)]));
+    }
+}
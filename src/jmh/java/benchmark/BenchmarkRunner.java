@@ -0,0 +1,49 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the selected benchmarks once for every configured number of threads and writes the results of each run into
+ * its own JSON file, so runs can be compared between versions.
+ * <p>
+ * System properties: {@code jmh.include} (regular expression selecting the benchmarks), {@code jmh.threads} (comma
+ * separated thread counts), {@code jmh.profilers} (comma separated JMH profilers, such as {@code gc} for the allocation
+ * rates) and {@code jmh.resultDirectory}. Further JMH options can be given as arguments.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, IOException, CommandLineOptionException {
+        String include = System.getProperty("jmh.include", ".*");
+        String threads = System.getProperty("jmh.threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        String profilers = System.getProperty("jmh.profilers", "");
+        Path resultDirectory = Paths.get(System.getProperty("jmh.resultDirectory", "target/jmh"));
+        Files.createDirectories(resultDirectory);
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDirectory.resolve("result-" + threadCount + "-threads.json").toString());
+            for (String profiler : profilers.split(",")) {
+                if (!profiler.isBlank()) {
+                    options.addProfiler(profiler.trim());
+                }
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
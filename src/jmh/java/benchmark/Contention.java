@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of the accounts picked by the benchmarks, from no contention at all to every thread hitting the same
+ * account.
+ */
+public enum Contention {
+    /**
+     * Every account is equally likely to be picked.
+     */
+    UNIFORM,
+    /**
+     * A few accounts get most of the traffic, following a Zipfian distribution with an exponent of 0.99.
+     */
+    ZIPFIAN,
+    /**
+     * Every operation hits the same account.
+     */
+    HOT;
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * Creates a picker of account indexes in {@code [0, accounts)}.
+     */
+    public Picker newPicker(int accounts) {
+        switch (this) {
+            case UNIFORM:
+                return () -> ThreadLocalRandom.current().nextInt(accounts);
+            case ZIPFIAN:
+                double[] cumulative = zipfDistribution(accounts);
+                return () -> {
+                    int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+                    return Math.min(index < 0 ? -index - 1 : index, accounts - 1);
+                };
+            default:
+                return () -> 0;
+        }
+    }
+
+    private static double[] zipfDistribution(int accounts) {
+        double[] cumulative = new double[accounts];
+        double sum = 0;
+        for (int i = 0; i < accounts; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < accounts; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    @FunctionalInterface
+    public interface Picker {
+        int next();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import esz.dev.account.control.AccountLocks;
+import esz.dev.account.control.AccountMetrics;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.HistoryStore;
+import esz.dev.account.control.IbanIssuer;
+import esz.dev.account.control.InMemoryAccountStore;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserNotFoundException;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of opening new accounts. The stores are recreated for every iteration, so their growth does not distort
+ * later iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreateAccountBenchmark {
+    private AccountService accountService;
+    private long userId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        UserStore userStore = new InMemoryUserStore();
+        DisabledJournal journal = new DisabledJournal();
+        accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal)
+                .addUser(new UserDto("John", "Doe", "New York 101"));
+    }
+
+    @Benchmark
+    public String createAccount() throws UserNotFoundException {
+        return accountService.createAccount(userId);
+    }
+}
@@ -0,0 +1,122 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.App;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.user.control.UserDto;
+import io.jooby.ExecutionMode;
+import io.jooby.Jooby;
+import io.jooby.Server;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks of the REST API over HTTP for every execution model of the handlers, measuring both the
+ * throughput and the latency distribution. Run them with many threads, e.g. {@code -Djmh.threads=64,256}, as every
+ * benchmark thread is a client waiting for its response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HttpBenchmark {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final int PORT = 8899;
+    private static final String BASE_URL = "http://localhost:" + PORT + "/api";
+
+    @Param({"worker", "virtual-threads", "non-blocking"})
+    private String execution;
+
+    @Param({"locking", "partitioned"})
+    private String engine;
+
+    @Param("1000")
+    private int accounts;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Server server;
+    private OkHttpClient client;
+    private Contention.Picker picker;
+    private byte[][] deposits;
+    private byte[][] transfers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jooby app = Jooby.createApp(new String[]{"server.port=" + PORT, "server.execution=" + execution,
+                "account.engine.type=" + engine, "journal.enabled=false"}, ExecutionMode.DEFAULT, App::new);
+        server = app.start();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(1024);
+        dispatcher.setMaxRequestsPerHost(1024);
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(1024, 5, TimeUnit.MINUTES))
+                .build();
+
+        String user = call(post("/user", objectMapper.writeValueAsBytes(new UserDto("John", "Doe", "New York 101"))));
+        String userId = objectMapper.readValue(user, ResponseDto.class).getMessage().replaceAll("\\D+", "");
+        String[] ibans = new String[accounts];
+        deposits = new byte[accounts][];
+        transfers = new byte[accounts][];
+        for (int i = 0; i < accounts; i++) {
+            String message = objectMapper.readValue(call(post("/account/" + userId, new byte[0])), ResponseDto.class).getMessage();
+            ibans[i] = message.substring(message.lastIndexOf(' ') + 1);
+            call(patch("/account/deposit", objectMapper.writeValueAsBytes(new AmountDto(ibans[i], new BigDecimal("1000000000")))));
+            deposits[i] = objectMapper.writeValueAsBytes(new AmountDto(ibans[i], new BigDecimal("0.01")));
+        }
+        for (int i = 0; i < accounts; i++) {
+            transfers[i] = objectMapper.writeValueAsBytes(new TransferAmountDto(ibans[i], ibans[(i + 1) % accounts], new BigDecimal("0.01")));
+        }
+        picker = Contention.UNIFORM.newPicker(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop();
+    }
+
+    @Benchmark
+    public String deposit() throws IOException {
+        return call(patch("/account/deposit", deposits[picker.next()]));
+    }
+
+    @Benchmark
+    public String transfer() throws IOException {
+        return call(patch("/account/transfer", transfers[picker.next()]));
+    }
+
+    private String call(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Request failed with " + response.code() + ": " + request.url());
+            }
+            return Objects.requireNonNull(response.body()).string();
+        }
+    }
+
+    private static Request post(String path, byte[] body) {
+        return new Request.Builder().url(BASE_URL + path).post(RequestBody.create(body, JSON)).build();
+    }
+
+    private static Request patch(String path, byte[] body) {
+        return new Request.Builder().url(BASE_URL + path).patch(RequestBody.create(body, JSON)).build();
+    }
+}
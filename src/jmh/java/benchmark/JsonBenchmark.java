@@ -0,0 +1,51 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.user.control.UserDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of serializing the data transfer objects into JSON and reading them back, as done for every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AmountDto amountDto = new AmountDto("RO47XXXX5678901234567891", new BigDecimal("22.34"));
+    private final TransferAmountDto transferAmountDto = new TransferAmountDto("RO47XXXX5678901234567891",
+            "RO20XXXX5678901234567892", new BigDecimal("22.34"));
+    private final UserDto userDto = new UserDto("John", "Doe", "New York 101");
+    private final ResponseDto responseDto = ResponseDto.builder().status(ResponseDto.Status.SUCCESS)
+            .message("Successfully transferred amount!").build();
+
+    @Benchmark
+    public AmountDto amount() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(amountDto), AmountDto.class);
+    }
+
+    @Benchmark
+    public TransferAmountDto transferAmount() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(transferAmountDto), TransferAmountDto.class);
+    }
+
+    @Benchmark
+    public UserDto user() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(userDto), UserDto.class);
+    }
+
+    @Benchmark
+    public ResponseDto response() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(responseDto), ResponseDto.class);
+    }
+}
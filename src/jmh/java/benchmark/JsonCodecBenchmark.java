@@ -0,0 +1,76 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.json.boundary.CompiledJsonModule;
+import esz.dev.json.control.JsonCodecType;
+import esz.dev.user.control.UserDto;
+import io.jooby.json.JacksonModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON work of a request with each {@link JsonCodecType}: reading its body and writing its response,
+ * as the encoder and the decoder of the application do. Run with the {@code gc} profiler to compare the bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final String IBAN = "RO47XXXX5678901234567891";
+
+    @Param({"jackson", "compiled"})
+    public String codec;
+
+    private final ObjectMapper objectMapper = JacksonModule.create();
+    private final CompiledJsonModule compiled = new CompiledJsonModule();
+    private final byte[] transferBody = ("{\"senderIban\":\"" + IBAN + "\",\"receiverIban\":\"RO20XXXX5678901234567892\","
+            + "\"amount\":22.34}").getBytes();
+    private final byte[] userBody = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"address\":\"New York 101\"}".getBytes();
+    private final AmountDto balance = new AmountDto(IBAN, new BigDecimal("1022.34"));
+    private boolean jackson;
+
+    @Setup
+    public void setUp() {
+        jackson = JsonCodecType.valueOf(codec.toUpperCase()) == JsonCodecType.JACKSON;
+    }
+
+    @Benchmark
+    public TransferAmountDto transferRequest() throws IOException {
+        return jackson ? objectMapper.readValue(transferBody, TransferAmountDto.class)
+                : compiled.decode(transferBody, TransferAmountDto.class);
+    }
+
+    @Benchmark
+    public byte[] transferResponse() throws IOException {
+        return encode(ResponseDto.TRANSFERRED);
+    }
+
+    @Benchmark
+    public byte[] balanceResponse() throws IOException {
+        return encode(balance);
+    }
+
+    @Benchmark
+    public UserDto userRequest() throws IOException {
+        return jackson ? objectMapper.readValue(userBody, UserDto.class) : compiled.decode(userBody, UserDto.class);
+    }
+
+    @Benchmark
+    public byte[] failureResponse() throws IOException {
+        return encode(new ResponseDto(ResponseDto.Status.FAILURE, "Not enough amount on account with iban " + IBAN));
+    }
+
+    private byte[] encode(Object value) throws IOException {
+        return jackson ? objectMapper.writeValueAsBytes(value) : compiled.encode(value);
+    }
+}
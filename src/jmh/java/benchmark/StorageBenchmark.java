@@ -0,0 +1,120 @@
+package benchmark;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.storage.control.H2Database;
+import esz.dev.storage.control.MvStoreDatabase;
+import esz.dev.storage.control.StorageType;
+import esz.dev.user.control.H2UserStore;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.MvStoreUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserNotFoundException;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the operations of the locking engine with the accounts kept in memory only, with the accounts written
+ * through to an embedded H2 database and with the accounts kept in an embedded MVStore, both in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("100000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"MEMORY", "H2", "MVSTORE"})
+    private StorageType storage;
+
+    @Param("10000")
+    private int accounts;
+
+    private Path directory;
+    private H2Database database;
+    private MvStoreDatabase mvStoreDatabase;
+    private AccountService accountService;
+    private String[] ibans;
+    private AmountDto[] amounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, UserNotFoundException, AccountNotFoundException {
+        IbanIssuer ibanIssuer = new IbanIssuer();
+        AccountStore accountStore;
+        UserStore userStore;
+        if (storage == StorageType.H2) {
+            directory = Files.createTempDirectory("storage-benchmark");
+            database = new H2Database("jdbc:h2:" + directory.resolve("bank").toAbsolutePath(),
+                    Runtime.getRuntime().availableProcessors());
+            accountStore = new H2AccountStore(database, BalanceMode.DECIMAL, ibanIssuer);
+            userStore = new H2UserStore(database);
+        } else if (storage == StorageType.MVSTORE) {
+            directory = Files.createTempDirectory("storage-benchmark");
+            mvStoreDatabase = new MvStoreDatabase(directory.resolve("bank.mv").toString(), Duration.ofSeconds(1));
+            accountStore = new MvStoreAccountStore(mvStoreDatabase, BalanceMode.DECIMAL, ibanIssuer);
+            userStore = new MvStoreUserStore(mvStoreDatabase);
+        } else {
+            accountStore = new InMemoryAccountStore();
+            userStore = new InMemoryUserStore();
+        }
+        DisabledJournal journal = new DisabledJournal();
+        accountService = new AccountService(accountStore, userStore, new AccountLocks(), journal, ibanIssuer, new AccountMetrics(), new HistoryStore(32));
+        long userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal)
+                .addUser(new UserDto("John", "Doe", "New York 101"));
+
+        ibans = new String[accounts];
+        amounts = new AmountDto[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(ibans[i], INITIAL_AMOUNT));
+            amounts[i] = new AmountDto(ibans[i], AMOUNT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (database != null) {
+            database.close();
+        }
+        if (mvStoreDatabase != null) {
+            mvStoreDatabase.close();
+        }
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public AmountDto checkFunds() throws AccountNotFoundException {
+        return accountService.checkFunds(ibans[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public void deposit() throws AccountNotFoundException {
+        accountService.deposit(amounts[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public void transfer() throws AccountNotFoundException, NotEnoughAmountException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        accountService.transfer(new TransferAmountDto(ibans[random.nextInt(accounts)], ibans[random.nextInt(accounts)], AMOUNT));
+    }
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserNotFoundException;
+import esz.dev.user.control.UserService;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of looking up users, including mapping them to data transfer objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+    @Param("10000")
+    private int users;
+
+    private UserService userService;
+    private Long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userService = new UserService(Mappers.getMapper(UserMapper.class), new InMemoryUserStore(), new DisabledJournal());
+        ids = new Long[users];
+        for (int i = 0; i < users; i++) {
+            ids[i] = userService.addUser(new UserDto("John", "Doe", "New York " + i));
+        }
+    }
+
+    @Benchmark
+    public UserDto getUser() throws UserNotFoundException {
+        return userService.getUser(ids[ThreadLocalRandom.current().nextInt(users)]);
+    }
+}
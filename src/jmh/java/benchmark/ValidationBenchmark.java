@@ -0,0 +1,85 @@
+package benchmark;
+
+import esz.dev.account.boundary.IbanValidator;
+import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.account.boundary.ValidationService;
+import esz.dev.account.control.BalanceMode;
+import esz.dev.account.control.IbanCodec;
+import org.iban4j.Iban4jException;
+import org.iban4j.IbanUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the IBAN validation done for every request, for valid IBANs and for IBANs failing the check digits,
+ * compared with the validation of iban4j. Repeated IBANs are validated from the cache of the validator, so the
+ * {@code distinct} benchmarks cycle through more IBANs than the cache holds to measure the validation itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    private static final String VALID_IBAN = "RO47XXXX5678901234567891";
+    private static final String INVALID_IBAN = "RO48XXXX5678901234567891";
+    private static final int DISTINCT_IBANS = 1 << 16;
+
+    private final ValidationService validationService = new ValidationService(BalanceMode.DECIMAL);
+    private final IbanValidator ibanValidator = new IbanValidator();
+    private final String[] ibans = new String[DISTINCT_IBANS];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < DISTINCT_IBANS; i++) {
+            ibans[i] = IbanCodec.issue(i * 7919L);
+        }
+    }
+
+    @Benchmark
+    public void validIban() throws InvalidInputException {
+        validationService.validateIban(VALID_IBAN);
+    }
+
+    @Benchmark
+    public boolean distinctValidIbans(Cursor cursor) {
+        return ibanValidator.isValid(ibans[cursor.next++ & (DISTINCT_IBANS - 1)]);
+    }
+
+    @Benchmark
+    public Exception invalidIban() {
+        try {
+            validationService.validateIban(INVALID_IBAN);
+            return null;
+        } catch (InvalidInputException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public void iban4jValidIban() {
+        IbanUtil.validate(VALID_IBAN);
+    }
+
+    @Benchmark
+    public void iban4jDistinctValidIbans(Cursor cursor) {
+        IbanUtil.validate(ibans[cursor.next++ & (DISTINCT_IBANS - 1)]);
+    }
+
+    @Benchmark
+    public Exception iban4jInvalidIban() {
+        try {
+            IbanUtil.validate(INVALID_IBAN);
+            return null;
+        } catch (Iban4jException e) {
+            return e;
+        }
+    }
+}
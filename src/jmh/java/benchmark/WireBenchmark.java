@@ -0,0 +1,146 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.App;
+import esz.dev.account.control.AmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.user.control.UserDto;
+import io.jooby.ExecutionMode;
+import io.jooby.Jooby;
+import io.jooby.Server;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static esz.dev.wire.control.WireProtocol.*;
+
+/**
+ * End-to-end benchmarks of the binary protocol, to compare with the transfers of {@link HttpBenchmark}. Every benchmark
+ * thread holds its own connection and sends {@code pipeline} transfers before reading their responses, so the
+ * throughput counts batches of that many transfers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WireBenchmark {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final int PORT = 8899;
+    private static final int WIRE_PORT = 8900;
+    private static final String BASE_URL = "http://localhost:" + PORT + "/api";
+
+    @Param({"locking", "partitioned"})
+    private String engine;
+
+    @Param({"1", "32"})
+    private int pipeline;
+
+    @Param("1000")
+    private int accounts;
+
+    private Server server;
+    private Contention.Picker picker;
+    private byte[][] transfers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jooby app = Jooby.createApp(new String[]{"server.port=" + PORT, "wire.port=" + WIRE_PORT,
+                "account.engine.type=" + engine, "journal.enabled=false"}, ExecutionMode.DEFAULT, App::new);
+        server = app.start();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        OkHttpClient client = new OkHttpClient();
+        String user = call(client, "/user", "POST", objectMapper.writeValueAsBytes(new UserDto("John", "Doe", "New York 101")));
+        String userId = objectMapper.readValue(user, ResponseDto.class).getMessage().replaceAll("\\D+", "");
+        String[] ibans = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            String message = objectMapper.readValue(call(client, "/account/" + userId, "POST", new byte[0]), ResponseDto.class).getMessage();
+            ibans[i] = message.substring(message.lastIndexOf(' ') + 1);
+            call(client, "/account/deposit", "PATCH", objectMapper.writeValueAsBytes(new AmountDto(ibans[i], new BigDecimal("1000000000"))));
+        }
+        transfers = new byte[accounts][];
+        for (int i = 0; i < accounts; i++) {
+            transfers[i] = transfer(ibans[i], ibans[(i + 1) % accounts]);
+        }
+        picker = Contention.UNIFORM.newPicker(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        private Socket socket;
+        private DataOutputStream out;
+        private DataInputStream in;
+
+        @Setup(Level.Trial)
+        public void connect() throws IOException {
+            socket = new Socket("localhost", WIRE_PORT);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public int transfer(Connection connection) throws IOException {
+        for (int i = 0; i < pipeline; i++) {
+            connection.out.write(transfers[picker.next()]);
+        }
+        connection.out.flush();
+        int failed = 0;
+        for (int i = 0; i < pipeline; i++) {
+            connection.in.readInt();
+            failed += connection.in.readByte();
+            connection.in.readLong();
+        }
+        return failed;
+    }
+
+    private static byte[] transfer(String sender, String receiver) {
+        byte[] frame = new byte[LENGTH_SIZE + HEADER_SIZE + 2 * IBAN_SIZE + AMOUNT_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(frame)
+                .putInt(HEADER_SIZE + 2 * IBAN_SIZE + AMOUNT_SIZE)
+                .put(TRANSFER)
+                .putLong(0);
+        buffer.put(sender.getBytes(StandardCharsets.US_ASCII)).position(LENGTH_SIZE + HEADER_SIZE + IBAN_SIZE);
+        buffer.put(receiver.getBytes(StandardCharsets.US_ASCII)).position(LENGTH_SIZE + HEADER_SIZE + 2 * IBAN_SIZE);
+        buffer.putLong(1).put((byte) 2);
+        return frame;
+    }
+
+    private static String call(OkHttpClient client, String path, String method, byte[] body) throws IOException {
+        Request request = new Request.Builder().url(BASE_URL + path).method(method, RequestBody.create(body, JSON)).build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Request failed with " + response.code() + ": " + request.url());
+            }
+            return Objects.requireNonNull(response.body()).string();
+        }
+    }
+}
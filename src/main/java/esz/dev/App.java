@@ -1,29 +1,193 @@
 package esz.dev;
 
+import esz.dev.admin.boundary.AdminAuthentication;
+import esz.dev.admin.boundary.AdminAuthenticationException;
 import esz.dev.common.ResponseDto;
 import esz.dev.account.boundary.AccountResource;
+import esz.dev.account.boundary.AsyncAccountResource;
 import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.account.config.AccountConfig;
 import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.BalanceOverflowException;
+import esz.dev.account.control.ExportUnavailableException;
+import esz.dev.account.control.IbanIssuer;
 import esz.dev.account.control.NotEnoughAmountException;
+import esz.dev.account.control.PartitionedAccountService;
+import esz.dev.cluster.boundary.ClusterServer;
+import esz.dev.cluster.config.ClusterConfig;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.MisdirectedRequestException;
+import esz.dev.cluster.control.ShardUnavailableException;
+import esz.dev.idempotency.boundary.IdempotencyKeys;
+import esz.dev.idempotency.config.IdempotencyConfig;
+import esz.dev.idempotency.control.IdempotencyCache;
+import esz.dev.journal.config.JournalConfig;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.control.Checkpointer;
+import esz.dev.journal.control.RecoveryReport;
+import esz.dev.journal.control.RecoveryService;
+import esz.dev.json.boundary.CompiledJsonModule;
+import esz.dev.json.control.JsonCodecType;
+import esz.dev.metrics.boundary.HealthResource;
+import esz.dev.metrics.boundary.MetricsResource;
+import esz.dev.metrics.boundary.RouteMetrics;
+import esz.dev.metrics.config.MetricsConfig;
+import esz.dev.metrics.control.MetricsRegistry;
+import esz.dev.recording.boundary.RecordingResource;
+import esz.dev.recording.config.RecordingConfig;
+import esz.dev.recording.control.RecordingService;
+import esz.dev.recording.control.RecordingStateException;
+import esz.dev.replication.boundary.FollowerReads;
+import esz.dev.replication.boundary.ReadOnlyFollowerException;
+import esz.dev.replication.boundary.ReplicationResource;
+import esz.dev.replication.boundary.StaleFollowerException;
+import esz.dev.replication.config.ReplicationConfig;
+import esz.dev.replication.control.JournalFollower;
+import esz.dev.replication.control.JournalShipper;
+import esz.dev.server.RequestExecution;
+import esz.dev.server.VirtualThreads;
+import esz.dev.storage.config.StorageConfig;
 import esz.dev.user.boundary.UserResource;
 import esz.dev.user.config.UserMapperConfig;
 import esz.dev.user.control.UserNotFoundException;
+import esz.dev.wire.boundary.WireServer;
+import esz.dev.wire.config.WireConfig;
+import io.jooby.ExecutionMode;
 import io.jooby.Jooby;
 import io.jooby.StatusCode;
 import io.jooby.di.GuiceModule;
 import io.jooby.json.JacksonModule;
 
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
 /**
- * Main-entry point of the application. Handles global module instantiation and transforming general exceptions into
- * REST responses.
+ * Main-entry point of the application. Handles global module instantiation, request metrics and transforming general
+ * exceptions into REST responses.
  */
 public class App extends Jooby {
     {
-        install(new JacksonModule());
-        install(new GuiceModule(new UserMapperConfig()));
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        JsonCodecType jsonCodec = getConfig().hasPath("json.codec")
+                ? JsonCodecType.valueOf(getConfig().getString("json.codec").toUpperCase())
+                : JsonCodecType.JACKSON;
+        install(jsonCodec == JsonCodecType.COMPILED ? new CompiledJsonModule() : new JacksonModule());
+        RequestExecution execution = getConfig().hasPath("server.execution")
+                ? RequestExecution.valueOf(getConfig().getString("server.execution").toUpperCase().replace('-', '_'))
+                : RequestExecution.WORKER;
+        StorageConfig storageConfig = new StorageConfig(getConfig());
+        ClusterConfig clusterConfig = new ClusterConfig(getConfig(), execution);
+        ReplicationConfig replicationConfig = new ReplicationConfig(getConfig());
+        WireConfig wireConfig = new WireConfig(getConfig());
+        install(new GuiceModule(new UserMapperConfig(), new AccountConfig(getConfig(), execution), storageConfig,
+                new JournalConfig(getConfig()), new MetricsConfig(metricsRegistry), new RecordingConfig(getConfig()),
+                new IdempotencyConfig(getConfig()), clusterConfig, replicationConfig, wireConfig));
+
+        decorator(new RouteMetrics(metricsRegistry));
+        decorator(new AdminAuthentication(getConfig().hasPath("admin.token") ? getConfig().getString("admin.token") : null,
+                Set.of("/admin/recording", "/admin/replication")));
+        if (replicationConfig.isFollower()) {
+            decorator(new FollowerReads(() -> require(JournalFollower.class), Set.of("/api/account/{iban}",
+                    "/api/account/export", "/api/user/{id}", "/api/user/{id}/accounts"), replicationConfig.maxStaleness()));
+        }
+        decorator(new IdempotencyKeys(() -> require(IdempotencyCache.class), Set.of("/api/account/withdraw",
+                "/api/account/deposit", "/api/account/transfer", "/api/account/transfer/batch"),
+                Set.of(InvalidInputException.class, AccountNotFoundException.class, MisdirectedRequestException.class),
+                execution == RequestExecution.NON_BLOCKING));
+        if (execution == RequestExecution.NON_BLOCKING) {
+            setExecutionMode(ExecutionMode.EVENT_LOOP);
+            mvc(AsyncAccountResource.class);
+            dispatch(() -> {
+                mvc(UserResource.class);
+                mvc(MetricsResource.class);
+                mvc(HealthResource.class);
+                mvc(RecordingResource.class);
+                mvc(ReplicationResource.class);
+            });
+        } else {
+            if (execution == RequestExecution.VIRTUAL_THREADS) {
+                setExecutionMode(ExecutionMode.WORKER);
+                Optional<ExecutorService> virtualThreads = VirtualThreads.newThreadPerTaskExecutor();
+                if (virtualThreads.isPresent()) {
+                    setWorker(virtualThreads.get());
+                    onStop(virtualThreads.get()::shutdown);
+                } else {
+                    getLog().warn("Virtual threads are not available on Java {}, requests are served by the worker pool",
+                            System.getProperty("java.version"));
+                }
+            }
+            mvc(UserResource.class);
+            mvc(AccountResource.class);
+            mvc(MetricsResource.class);
+            mvc(HealthResource.class);
+            mvc(RecordingResource.class);
+            mvc(ReplicationResource.class);
+        }
+
+        onStarting(() -> {
+            RecoveryReport report = require(RecoveryService.class).recover();
+            getLog().info("Restored {} users and {} accounts from snapshot in {} ms, replayed {} journal records in {} ms",
+                    report.getUsers(), report.getAccounts(), report.getSnapshotMillis(),
+                    report.getReplayedRecords(), report.getReplayMillis());
+            metricsRegistry.gauge("startup_restore_seconds", "Time spent restoring the state at startup, by stage.",
+                    () -> report.getSnapshotMillis() / 1000.0, "stage", "snapshot");
+            metricsRegistry.gauge("startup_restore_seconds", "Time spent restoring the state at startup, by stage.",
+                    () -> report.getReplayMillis() / 1000.0, "stage", "journal");
+            Journal journal = require(Journal.class);
+            metricsRegistry.gauge("journal_healthy", "Whether the journal still makes changes durable, 0 once it failed.",
+                    () -> journal.isHealthy() ? 1 : 0);
+            require(CrossShardTransfers.class).resume(report.getTransfersInProgress());
+            if (journal.isEnabled()) {
+                require(Checkpointer.class).start(getConfig().getDuration("snapshot.interval"));
+            }
+            if (replicationConfig.isFollower()) {
+                require(JournalFollower.class).start(replicationConfig.primaryAddress(), report.getSnapshotSequence());
+            } else if (replicationConfig.shippingPort() > 0) {
+                require(JournalShipper.class).start(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), replicationConfig.shippingPort()));
+            }
+            if (wireConfig.port() > 0) {
+                require(WireServer.class).start(wireConfig.port(), wireConfig.threads(), wireConfig.handlerThreads());
+            }
+            if (clusterConfig.isClustered()) {
+                require(ClusterServer.class).start(clusterConfig.internalAddress(), clusterConfig.internalThreads());
+            }
+        });
+
+        onStarted(() -> {
+            long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            getLog().info("Ready to serve requests {} ms after JVM start", readyMillis);
+            metricsRegistry.gauge("startup_ready_seconds", "Time from the JVM start until requests were served.",
+                    () -> readyMillis / 1000.0);
+        });
 
-        mvc(UserResource.class);
-        mvc(AccountResource.class);
+        onStop(() -> {
+            RecordingService recordingService = require(RecordingService.class);
+            if (recordingService.isRunning()) {
+                getLog().info("Dumped flight recording to {}", recordingService.stop());
+            }
+            require(WireServer.class).stop();
+            if (clusterConfig.isClustered()) {
+                require(ClusterServer.class).stop();
+            }
+            require(Checkpointer.class).stop();
+            require(JournalFollower.class).stop();
+            require(JournalShipper.class).stop();
+            require(CrossShardTransfers.class).shutdown();
+            AccountService accountService = require(AccountService.class);
+            if (accountService instanceof PartitionedAccountService) {
+                ((PartitionedAccountService) accountService).shutdown();
+            }
+            require(IbanIssuer.class).shutdown();
+            require(Journal.class).close();
+            storageConfig.close();
+        });
 
         error(UserNotFoundException.class, ((context, cause, statusCode) -> {
             context.setResponseCode(StatusCode.NOT_FOUND);
@@ -35,11 +199,55 @@ public class App extends Jooby {
             context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
         }));
 
+        error(BalanceOverflowException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.CONFLICT);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
         error(AccountNotFoundException.class, ((context, cause, statusCode) -> {
             context.setResponseCode(StatusCode.NOT_FOUND);
             context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
         }));
 
+        error(ExportUnavailableException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.CONFLICT);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(RecordingStateException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.CONFLICT);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(MisdirectedRequestException.class, ((context, cause, statusCode) -> {
+            String query = context.queryString();
+            context.setResponseHeader("Location", require(ClusterTopology.class)
+                    .nodeUrl(((MisdirectedRequestException) cause).getOwner()) + context.pathString() + query);
+            context.setResponseCode(StatusCode.TEMPORARY_REDIRECT);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(ShardUnavailableException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.SERVICE_UNAVAILABLE);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(ReadOnlyFollowerException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.METHOD_NOT_ALLOWED);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(StaleFollowerException.class, ((context, cause, statusCode) -> {
+            context.setResponseCode(StatusCode.SERVICE_UNAVAILABLE);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
+        error(AdminAuthenticationException.class, ((context, cause, statusCode) -> {
+            context.setResponseHeader("WWW-Authenticate", "Bearer");
+            context.setResponseCode(StatusCode.UNAUTHORIZED);
+            context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
+        }));
+
         error(InvalidInputException.class, ((context, cause, statusCode) -> {
             context.setResponseCode(StatusCode.BAD_REQUEST);
             context.render(new ResponseDto(ResponseDto.Status.FAILURE, cause.getMessage()));
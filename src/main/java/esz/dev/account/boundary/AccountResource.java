@@ -1,67 +1,187 @@
 package esz.dev.account.boundary;
 
 import esz.dev.account.control.*;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.MisdirectedRequestException;
 import esz.dev.common.ResponseDto;
 import io.jooby.Context;
 import io.jooby.StatusCode;
 import io.jooby.annotations.*;
-import esz.dev.user.control.UserNotFoundException;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * REST end-point implementation for banking transactions.
+ * REST end-point implementation for banking transactions. On a node of a cluster, requests about the accounts of
+ * another node are redirected to that node, and transfers to the accounts of another node are coordinated with it,
+ * see {@link CrossShardTransfers}.
  */
 @Singleton
 @Path("/api/account")
 public class AccountResource {
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
     private final AccountService accountService;
     private final ValidationService validationService;
+    private final AccountMetrics accountMetrics;
+    private final ClusterTopology topology;
+    private final CrossShardTransfers crossShardTransfers;
 
     @Inject
-    public AccountResource(AccountService accountService, ValidationService validationService) {
+    public AccountResource(AccountService accountService, ValidationService validationService, AccountMetrics accountMetrics,
+                           ClusterTopology topology, CrossShardTransfers crossShardTransfers) {
         this.accountService = accountService;
         this.validationService = validationService;
+        this.accountMetrics = accountMetrics;
+        this.topology = topology;
+        this.crossShardTransfers = crossShardTransfers;
     }
 
+    /**
+     * Opens an account on the node of the user, which issues an IBAN it owns.
+     */
     @POST("/{userId}")
-    public ResponseDto createAccount(@PathParam Long userId, Context context) throws UserNotFoundException {
-        String iban = accountService.createAccount(userId);
+    public ResponseDto createAccount(@PathParam Long userId, Context context) throws Exception {
+        int owner = topology.ownerOfUser(userId);
+        if (owner != topology.self()) {
+            throw new MisdirectedRequestException("User with id " + userId + " is owned by node " + owner, owner);
+        }
+        String iban = accountMetrics.measure(AccountMetrics.Operation.CREATE_ACCOUNT,
+                () -> accountService.createAccount(userId));
         context.setResponseCode(StatusCode.CREATED);
-        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully created account with iban " + iban).build();
+        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS)
+                .message("Successfully created account with iban " + iban).build();
+    }
+
+    /**
+     * Streams the balances of all the accounts as newline-delimited JSON, see {@link BalanceExportStream}. With
+     * {@code consistent=true} the balances are those of the moment the export started. On a node of a cluster only the
+     * accounts of the node are exported.
+     */
+    @GET("/export")
+    public Context exportBalances(@QueryParam Boolean consistent, Context context) throws ExportUnavailableException {
+        return BalanceExportStream.send(context, accountService.exportBalances(Boolean.TRUE.equals(consistent)));
     }
 
     @GET("/{iban}")
-    public AmountDto checkFunds(@PathParam String iban) throws InvalidInputException, AccountNotFoundException {
+    public AmountDto checkFunds(@PathParam String iban) throws Exception {
         validationService.validateIban(iban);
-        return accountService.checkFunds(iban);
+        requireLocal(iban);
+        return accountMetrics.measure(AccountMetrics.Operation.CHECK_FUNDS, () -> accountService.checkFunds(iban));
+    }
+
+    /**
+     * Lists the recent transactions of an account page by page, newest first. If older entries are kept, the cursor
+     * to pass for the next page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
+    @GET("/{iban}/history")
+    public List<HistoryEntry> getHistory(@PathParam String iban, @QueryParam Long cursor, @QueryParam Integer limit,
+                                         Context context)
+            throws InvalidInputException, AccountNotFoundException, MisdirectedRequestException {
+        validationService.validateIban(iban);
+        requireLocal(iban);
+        HistoryPage page = accountService.getHistory(iban, HistoryQuery.cursor(cursor), HistoryQuery.limit(limit));
+        if (page.getNextCursor() != null) {
+            context.setResponseHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getEntries();
     }
 
     @PATCH("/withdraw")
-    public ResponseDto withdraw(AmountDto amountDto, Context context)
-            throws AccountNotFoundException, NotEnoughAmountException, InvalidInputException {
+    public ResponseDto withdraw(AmountDto amountDto, Context context) throws Exception {
         validationService.validate(amountDto);
-        accountService.withdraw(amountDto);
+        requireLocal(amountDto.getIban());
         context.setResponseCode(StatusCode.OK);
-        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully withdrawn amount!").build();
+        return accountMetrics.measure(AccountMetrics.Operation.WITHDRAW, () -> {
+            accountService.withdraw(amountDto);
+            return ResponseDto.WITHDRAWN;
+        });
     }
 
     @PATCH("/deposit")
-    public ResponseDto deposit(AmountDto amountDto, Context context)
-            throws AccountNotFoundException, NotEnoughAmountException, InvalidInputException {
+    public ResponseDto deposit(AmountDto amountDto, Context context) throws Exception {
         validationService.validate(amountDto);
-        accountService.deposit(amountDto);
+        requireLocal(amountDto.getIban());
         context.setResponseCode(StatusCode.ACCEPTED);
-        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully deposited amount!").build();
+        return accountMetrics.measure(AccountMetrics.Operation.DEPOSIT, () -> {
+            accountService.deposit(amountDto);
+            return ResponseDto.DEPOSITED;
+        });
     }
 
+    /**
+     * Moves funds between two accounts. The request is handled by the node of the sender.
+     */
     @PATCH("/transfer")
-    public ResponseDto transfer(TransferAmountDto transferAmountDto, Context context)
-            throws AccountNotFoundException, NotEnoughAmountException, InvalidInputException {
+    public ResponseDto transfer(TransferAmountDto transferAmountDto, Context context) throws Exception {
         validationService.validate(transferAmountDto);
-        accountService.transfer(transferAmountDto);
+        requireLocal(transferAmountDto.getSenderIban());
         context.setResponseCode(StatusCode.OK);
-        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully transferred amount!").build();
+        return accountMetrics.measure(AccountMetrics.Operation.TRANSFER, () -> {
+            if (topology.isLocal(transferAmountDto.getReceiverIban())) {
+                accountService.transfer(transferAmountDto);
+            } else {
+                crossShardTransfers.transfer(transferAmountDto);
+            }
+            return ResponseDto.TRANSFERRED;
+        });
+    }
+
+    /**
+     * Applies many transfers with a single request. Every transfer is validated and applied on its own, in the given
+     * order, and gets its own result at the same position of the response. On a node of a cluster, transfers from the
+     * accounts of other nodes fail.
+     */
+    @PATCH("/transfer/batch")
+    public ResponseDto[] transferBatch(TransferAmountDto[] transferAmountDtos, Context context) throws InvalidInputException {
+        TransferBatch batch = TransferBatch.validate(transferAmountDtos, validationService);
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> outcomes = topology.isClustered() ? transferEach(batch.valid())
+                : accountService.transferBatch(batch.valid());
+        for (int i = 0; i < outcomes.size(); i++) {
+            try {
+                outcomes.get(i).join();
+                batch.succeeded(i);
+            } catch (CompletionException e) {
+                accountMetrics.recordFailure(AccountMetrics.Operation.TRANSFER_BATCH, e.getCause());
+                batch.failed(i, e.getCause());
+            }
+        }
+        accountMetrics.recordServiceTime(AccountMetrics.Operation.TRANSFER_BATCH, System.nanoTime() - start);
+        context.setResponseCode(StatusCode.OK);
+        return batch.results();
+    }
+
+    /**
+     * Applies the transfers one by one, in the given order, coordinating those to the accounts of other nodes.
+     */
+    private List<CompletableFuture<Void>> transferEach(List<TransferAmountDto> transfers) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(transfers.size());
+        for (TransferAmountDto transfer : transfers) {
+            try {
+                requireLocal(transfer.getSenderIban());
+                if (topology.isLocal(transfer.getReceiverIban())) {
+                    results.add(accountService.transferAsync(transfer));
+                } else {
+                    crossShardTransfers.transfer(transfer);
+                    results.add(CompletableFuture.completedFuture(null));
+                }
+            } catch (AccountNotFoundException | NotEnoughAmountException | MisdirectedRequestException | RuntimeException e) {
+                results.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        return results;
+    }
+
+    private void requireLocal(String iban) throws MisdirectedRequestException {
+        int owner = topology.ownerOf(iban);
+        if (owner != topology.self()) {
+            throw new MisdirectedRequestException("Account with iban " + iban + " is owned by node " + owner, owner);
+        }
     }
 }
@@ -0,0 +1,130 @@
+package esz.dev.account.boundary;
+
+import esz.dev.account.control.*;
+import esz.dev.common.ResponseDto;
+import io.jooby.Context;
+import io.jooby.StatusCode;
+import io.jooby.annotations.*;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking REST end-point implementation for banking transactions, serving the same API as
+ * {@link AccountResource}. Handlers return as soon as the operation is handed over to the ledger engine, and the
+ * response is sent once the engine completes the returned future, so no server thread waits for the operation.
+ */
+@Singleton
+@Path("/api/account")
+public class AsyncAccountResource {
+    private final AccountService accountService;
+    private final ValidationService validationService;
+    private final AccountMetrics accountMetrics;
+
+    @Inject
+    public AsyncAccountResource(AccountService accountService, ValidationService validationService, AccountMetrics accountMetrics) {
+        this.accountService = accountService;
+        this.validationService = validationService;
+        this.accountMetrics = accountMetrics;
+    }
+
+    @POST("/{userId}")
+    public CompletableFuture<ResponseDto> createAccount(@PathParam Long userId, Context context) {
+        context.setResponseCode(StatusCode.CREATED);
+        return accountMetrics.measure(AccountMetrics.Operation.CREATE_ACCOUNT, () -> accountService.createAccountAsync(userId)
+                .thenApply(iban -> ResponseDto.builder().status(ResponseDto.Status.SUCCESS)
+                        .message("Successfully created account with iban " + iban).build()));
+    }
+
+    /**
+     * Streams the balances of all the accounts as newline-delimited JSON, see {@link BalanceExportStream}. With
+     * {@code consistent=true} the balances are those of the moment the export started.
+     */
+    @GET("/export")
+    public Context exportBalances(@QueryParam Boolean consistent, Context context) throws ExportUnavailableException {
+        return BalanceExportStream.send(context, accountService.exportBalances(Boolean.TRUE.equals(consistent)));
+    }
+
+    @GET("/{iban}")
+    public CompletableFuture<AmountDto> checkFunds(@PathParam String iban) throws InvalidInputException {
+        validationService.validateIban(iban);
+        return accountMetrics.measure(AccountMetrics.Operation.CHECK_FUNDS,
+                () -> CompletableFuture.completedFuture(accountService.checkFunds(iban)));
+    }
+
+    /**
+     * Lists the recent transactions of an account page by page, see {@link AccountResource#getHistory}. Reading the
+     * history never waits, so it is served on the calling thread.
+     */
+    @GET("/{iban}/history")
+    public List<HistoryEntry> getHistory(@PathParam String iban, @QueryParam Long cursor, @QueryParam Integer limit,
+                                         Context context) throws InvalidInputException, AccountNotFoundException {
+        validationService.validateIban(iban);
+        HistoryPage page = accountService.getHistory(iban, HistoryQuery.cursor(cursor), HistoryQuery.limit(limit));
+        if (page.getNextCursor() != null) {
+            context.setResponseHeader(AccountResource.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getEntries();
+    }
+
+    @PATCH("/withdraw")
+    public CompletableFuture<ResponseDto> withdraw(AmountDto amountDto, Context context) throws InvalidInputException {
+        validationService.validate(amountDto);
+        context.setResponseCode(StatusCode.OK);
+        return accountMetrics.measure(AccountMetrics.Operation.WITHDRAW,
+                () -> accountService.withdrawAsync(amountDto).thenApply(done -> ResponseDto.WITHDRAWN));
+    }
+
+    @PATCH("/deposit")
+    public CompletableFuture<ResponseDto> deposit(AmountDto amountDto, Context context) throws InvalidInputException {
+        validationService.validate(amountDto);
+        context.setResponseCode(StatusCode.ACCEPTED);
+        return accountMetrics.measure(AccountMetrics.Operation.DEPOSIT,
+                () -> accountService.depositAsync(amountDto).thenApply(done -> ResponseDto.DEPOSITED));
+    }
+
+    @PATCH("/transfer")
+    public CompletableFuture<ResponseDto> transfer(TransferAmountDto transferAmountDto, Context context) throws InvalidInputException {
+        validationService.validate(transferAmountDto);
+        context.setResponseCode(StatusCode.OK);
+        return accountMetrics.measure(AccountMetrics.Operation.TRANSFER,
+                () -> accountService.transferAsync(transferAmountDto).thenApply(done -> ResponseDto.TRANSFERRED));
+    }
+
+    /**
+     * Applies many transfers with a single request, see {@link AccountResource#transferBatch}.
+     */
+    @PATCH("/transfer/batch")
+    public CompletableFuture<ResponseDto[]> transferBatch(TransferAmountDto[] transferAmountDtos, Context context)
+            throws InvalidInputException {
+        TransferBatch batch = TransferBatch.validate(transferAmountDtos, validationService);
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> outcomes = accountService.transferBatch(batch.valid());
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[outcomes.size()];
+        for (int i = 0; i < outcomes.size(); i++) {
+            int index = i;
+            settled[i] = outcomes.get(i).handle((done, failure) -> {
+                if (failure == null) {
+                    batch.succeeded(index);
+                } else {
+                    Throwable cause = unwrap(failure);
+                    accountMetrics.recordFailure(AccountMetrics.Operation.TRANSFER_BATCH, cause);
+                    batch.failed(index, cause);
+                }
+                return null;
+            });
+        }
+        context.setResponseCode(StatusCode.OK);
+        return CompletableFuture.allOf(settled).thenApply(done -> {
+            accountMetrics.recordServiceTime(AccountMetrics.Operation.TRANSFER_BATCH, System.nanoTime() - start);
+            return batch.results();
+        });
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
@@ -0,0 +1,132 @@
+package esz.dev.account.boundary;
+
+import esz.dev.account.control.BalanceExport;
+import io.jooby.Context;
+import io.jooby.Sender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streams the balances of an export as newline-delimited JSON with chunked transfer encoding. Lines are encoded into
+ * a chunk which is handed to the server without copying, and the next chunk is only encoded once the previous one has
+ * been written to the connection, so a slow client slows down the export instead of filling up the memory.
+ */
+class BalanceExportStream implements Sender.Callback {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceExportStream.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] IBAN_FIELD = "{\"iban\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT_FIELD = "\",\"amount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_END = "}\n".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BalanceExport export;
+    private final Sender sender;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private byte[] line = new byte[128];
+    private int lineLength;
+    private int lineOffset;
+
+    private BalanceExportStream(BalanceExport export, Sender sender) {
+        this.export = export;
+        this.sender = sender;
+    }
+
+    static Context send(Context context, BalanceExport export) {
+        context.setResponseType("application/x-ndjson");
+        new BalanceExportStream(export, context.responseSender()).writeNext();
+        return context;
+    }
+
+    @Override
+    public void onComplete(Context context, Throwable failure) {
+        if (failure != null) {
+            LOGGER.warn("Export of the balances aborted: {}", failure.getMessage());
+            export.close();
+            return;
+        }
+        writeNext();
+    }
+
+    private void writeNext() {
+        int length;
+        try {
+            length = fill();
+        } catch (RuntimeException e) {
+            LOGGER.error("Export of the balances failed", e);
+            export.close();
+            sender.close();
+            return;
+        }
+        if (length == 0) {
+            export.close();
+            sender.close();
+            return;
+        }
+        // the chunk is written before the next one is encoded, so it can be reused, only the last one is partial
+        sender.write(length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length), this);
+    }
+
+    /**
+     * Fills the chunk with lines, splitting the last line if it does not fit.
+     *
+     * @return the number of bytes in the chunk
+     */
+    private int fill() {
+        int length = 0;
+        while (length < CHUNK_SIZE) {
+            if (lineOffset == lineLength) {
+                if (!export.next()) {
+                    break;
+                }
+                encodeLine();
+            }
+            int count = Math.min(lineLength - lineOffset, CHUNK_SIZE - length);
+            System.arraycopy(line, lineOffset, chunk, length, count);
+            lineOffset += count;
+            length += count;
+        }
+        return length;
+    }
+
+    private void encodeLine() {
+        lineLength = 0;
+        lineOffset = 0;
+        append(IBAN_FIELD);
+        String iban = export.getIban();
+        for (int i = 0; i < iban.length(); i++) {
+            char c = iban.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+                append('\\');
+                append('u');
+                append(HEX[c >>> 12]);
+                append(HEX[(c >>> 8) & 0xf]);
+                append(HEX[(c >>> 4) & 0xf]);
+                append(HEX[c & 0xf]);
+            } else {
+                append(c);
+            }
+        }
+        append(AMOUNT_FIELD);
+        String amount = export.getAmount().toPlainString();
+        for (int i = 0; i < amount.length(); i++) {
+            append(amount.charAt(i));
+        }
+        append(LINE_END);
+    }
+
+    private void append(byte[] bytes) {
+        for (byte b : bytes) {
+            append((char) b);
+        }
+    }
+
+    private void append(char c) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = (byte) c;
+    }
+}
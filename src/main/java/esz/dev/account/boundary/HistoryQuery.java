@@ -0,0 +1,38 @@
+package esz.dev.account.boundary;
+
+/**
+ * Checks the query parameters of a page of the history of an account, the same for every account end-point.
+ */
+final class HistoryQuery {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private HistoryQuery() {
+    }
+
+    /**
+     * @return the cursor of the page, {@link Long#MAX_VALUE} for the newest entries if none is given
+     */
+    static long cursor(Long cursor) throws InvalidInputException {
+        if (cursor == null) {
+            return Long.MAX_VALUE;
+        }
+        if (cursor < 0) {
+            throw new InvalidInputException("Cursor can not be a negative value!");
+        }
+        return cursor;
+    }
+
+    /**
+     * @return the number of entries of the page, {@value #DEFAULT_LIMIT} if none is given
+     */
+    static int limit(Integer limit) throws InvalidInputException {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_LIMIT + "!");
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,135 @@
+package esz.dev.account.boundary;
+
+import org.iban4j.CountryCode;
+import org.iban4j.IbanUtil;
+import org.iban4j.bban.BbanStructure;
+import org.iban4j.bban.BbanStructureEntry;
+
+/**
+ * Validates IBANs the same way as {@link IbanUtil#validate(String)}, without allocating and without exceptions: the
+ * length and the characters of the IBAN are checked against the structure of its country, and the check digits with
+ * the mod-97 checksum computed over the characters directly.
+ * <p>
+ * The structures of the countries are taken from iban4j once, when the class is loaded, and kept as the expected
+ * character class of every position of the IBANs of each country. Only ASCII characters are accepted.
+ * <p>
+ * The IBANs found valid most recently are remembered in a small direct-mapped cache, so the IBANs of busy accounts are
+ * validated with a single comparison. The cache is written without synchronization, which is safe since strings are
+ * immutable, and a lost update only costs a validation.
+ */
+public final class IbanValidator {
+    private static final byte DIGIT = 1;
+    private static final byte UPPER_CASE = 2;
+    private static final byte ALPHANUMERIC = 3;
+    private static final int BBAN_OFFSET = 4;
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Character classes of the positions of the IBANs by country, indexed by {@link #country(String)}.
+     */
+    private static final byte[][] STRUCTURES = new byte[26 * 26][];
+
+    static {
+        for (CountryCode countryCode : CountryCode.values()) {
+            BbanStructure structure = BbanStructure.forCountry(countryCode);
+            if (structure == null) {
+                continue;
+            }
+            byte[] classes = new byte[IbanUtil.getIbanLength(countryCode)];
+            classes[0] = UPPER_CASE;
+            classes[1] = UPPER_CASE;
+            classes[2] = DIGIT;
+            classes[3] = DIGIT;
+            int position = BBAN_OFFSET;
+            for (BbanStructureEntry entry : structure.getEntries()) {
+                for (int i = 0; i < entry.getLength(); i++) {
+                    classes[position++] = classOf(entry.getCharacterType());
+                }
+            }
+            STRUCTURES[country(countryCode.name())] = classes;
+        }
+    }
+
+    private final String[] cache = new String[CACHE_SIZE];
+
+    public boolean isValid(String iban) {
+        if (iban == null) {
+            return false;
+        }
+        int slot = iban.hashCode() & (CACHE_SIZE - 1);
+        String cached = cache[slot];
+        if (iban.equals(cached)) {
+            return true;
+        }
+        if (!check(iban)) {
+            return false;
+        }
+        cache[slot] = iban;
+        return true;
+    }
+
+    private static boolean check(String iban) {
+        int length = iban.length();
+        if (length < BBAN_OFFSET) {
+            return false;
+        }
+        int country = country(iban);
+        byte[] classes = country < 0 ? null : STRUCTURES[country];
+        if (classes == null || classes.length != length) {
+            return false;
+        }
+        // the BBAN comes first in the checksum, followed by the country code and the check digits
+        int remainder = 0;
+        for (int i = 0; i < length; i++) {
+            int position = i + BBAN_OFFSET < length ? i + BBAN_OFFSET : i + BBAN_OFFSET - length;
+            char c = iban.charAt(position);
+            int value;
+            if (c >= '0' && c <= '9') {
+                if (classes[position] == UPPER_CASE) {
+                    return false;
+                }
+                value = c - '0';
+                remainder = (remainder * 10 + value) % 97;
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                if (classes[position] == DIGIT) {
+                    return false;
+                }
+                value = c - 'A' + 10;
+            } else if (c >= 'a' && c <= 'z') {
+                if (classes[position] != ALPHANUMERIC) {
+                    return false;
+                }
+                value = c - 'a' + 10;
+            } else {
+                return false;
+            }
+            remainder = (remainder * 100 + value) % 97;
+        }
+        return remainder == 1;
+    }
+
+    /**
+     * @return the index of the country of an IBAN, or -1 if it does not start with two upper case letters
+     */
+    private static int country(String iban) {
+        char first = iban.charAt(0);
+        char second = iban.charAt(1);
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+            return -1;
+        }
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    private static byte classOf(BbanStructureEntry.EntryCharacterType type) {
+        switch (type) {
+            case n:
+                return DIGIT;
+            case a:
+                return UPPER_CASE;
+            default:
+                return ALPHANUMERIC;
+        }
+    }
+}
@@ -7,4 +7,16 @@ public class InvalidInputException extends Exception {
     public InvalidInputException(String what) {
         super(what);
     }
+
+    /**
+     * Creates an exception without a stack trace, which can be thrown many times, for the validation errors so common
+     * that they are created once up front.
+     */
+    static InvalidInputException preallocated(String what) {
+        return new InvalidInputException(what, false);
+    }
+
+    private InvalidInputException(String what, boolean writableStackTrace) {
+        super(what, null, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,71 @@
+package esz.dev.account.boundary;
+
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The transfers of a batch request split into those which are valid, and applied, and those which are not, whose
+ * failures are the results at their positions right away. The results of the valid transfers are set once they are
+ * applied, in the order of {@link #valid()}.
+ */
+final class TransferBatch {
+    private final ResponseDto[] results;
+    private final List<TransferAmountDto> valid;
+    private final int[] positions;
+
+    private TransferBatch(int size) {
+        this.results = new ResponseDto[size];
+        this.valid = new ArrayList<>(size);
+        this.positions = new int[size];
+    }
+
+    static TransferBatch validate(TransferAmountDto[] transfers, ValidationService validationService)
+            throws InvalidInputException {
+        if (transfers == null) {
+            throw new InvalidInputException("Missing transfers!");
+        }
+        TransferBatch batch = new TransferBatch(transfers.length);
+        for (int i = 0; i < transfers.length; i++) {
+            try {
+                if (transfers[i] == null) {
+                    throw new InvalidInputException("Missing transfer!");
+                }
+                validationService.validate(transfers[i]);
+                batch.positions[batch.valid.size()] = i;
+                batch.valid.add(transfers[i]);
+            } catch (InvalidInputException e) {
+                batch.results[i] = failure(e);
+            }
+        }
+        return batch;
+    }
+
+    List<TransferAmountDto> valid() {
+        return valid;
+    }
+
+    /**
+     * @param index the index of the transfer in {@link #valid()}
+     */
+    void succeeded(int index) {
+        results[positions[index]] = ResponseDto.TRANSFERRED;
+    }
+
+    /**
+     * @param index the index of the transfer in {@link #valid()}
+     */
+    void failed(int index, Throwable cause) {
+        results[positions[index]] = failure(cause);
+    }
+
+    ResponseDto[] results() {
+        return results;
+    }
+
+    private static ResponseDto failure(Throwable cause) {
+        return ResponseDto.builder().status(ResponseDto.Status.FAILURE).message(cause.getMessage()).build();
+    }
+}
@@ -1,18 +1,50 @@
 package esz.dev.account.boundary;
 
 import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.BalanceMode;
+import esz.dev.account.control.MinorUnits;
 import esz.dev.account.control.TransferAmountDto;
-import org.iban4j.IbanFormatException;
-import org.iban4j.IbanUtil;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.math.BigDecimal;
 
 /**
- * Handles basic validation in the input data.
+ * Handles basic validation in the input data. Validation runs for every request, so it does not allocate, and fails
+ * with preallocated exceptions.
+ * <p>
+ * Amounts are bounded in every balance mode, so the journal and the snapshots can always encode them and the balances
+ * they add up to: a change is applied before its journal record is written, and a record failing to encode would leave
+ * the change applied but lost on restart.
  */
 @Singleton
 public class ValidationService {
+    /**
+     * Digits an amount can have before and after the decimal point, far below the unscaled values the journal can hold.
+     */
+    static final int MAX_DIGITS = 32;
+
+    private static final InvalidInputException INVALID_IBAN = InvalidInputException.preallocated("Invalid IBAN value!");
+    private static final InvalidInputException INVALID_SENDER_IBAN =
+            InvalidInputException.preallocated("Invalid sender IBAN value!");
+    private static final InvalidInputException INVALID_RECEIVER_IBAN =
+            InvalidInputException.preallocated("Invalid receiver IBAN value!");
+    private static final InvalidInputException MISSING_AMOUNT = InvalidInputException.preallocated("Missing amount value!");
+    private static final InvalidInputException NEGATIVE_AMOUNT =
+            InvalidInputException.preallocated("Amount can not be a negative value!");
+    private static final InvalidInputException TOO_MANY_DECIMALS =
+            InvalidInputException.preallocated("Amount can have at most " + MinorUnits.SCALE + " decimal places!");
+    private static final InvalidInputException TOO_MANY_DIGITS = InvalidInputException.preallocated(
+            "Amount can have at most " + MAX_DIGITS + " digits before and " + MAX_DIGITS + " after the decimal point!");
+
+    private final BalanceMode balanceMode;
+    private final IbanValidator ibanValidator = new IbanValidator();
+
+    @Inject
+    public ValidationService(BalanceMode balanceMode) {
+        this.balanceMode = balanceMode;
+    }
+
     public void validate(AmountDto amountDto) throws InvalidInputException {
         validateAmount(amountDto.getAmount());
         validateIban(amountDto.getIban());
@@ -20,24 +52,32 @@ public class ValidationService {
 
     public void validate(TransferAmountDto amountDto) throws InvalidInputException {
         validateAmount(amountDto.getAmount());
-        validateIban(amountDto.getSenderIban());
-        validateIban(amountDto.getReceiverIban());
+        validateIban(amountDto.getSenderIban(), INVALID_SENDER_IBAN);
+        validateIban(amountDto.getReceiverIban(), INVALID_RECEIVER_IBAN);
     }
 
     public void validateIban(String iban) throws InvalidInputException {
-        try {
-            IbanUtil.validate(iban);
-        } catch (IbanFormatException ex) {
-            throw new InvalidInputException("Invalid IBAN value " + iban);
+        validateIban(iban, INVALID_IBAN);
+    }
+
+    private void validateIban(String iban, InvalidInputException invalid) throws InvalidInputException {
+        if (!ibanValidator.isValid(iban)) {
+            throw invalid;
         }
     }
 
     private void validateAmount(BigDecimal amount) throws InvalidInputException {
         if (amount == null) {
-            throw new InvalidInputException("Missing amount value!");
+            throw MISSING_AMOUNT;
         }
         if (amount.compareTo(BigDecimal.ZERO) < 0) {
-            throw new InvalidInputException("Amount can not be a negative value!");
+            throw NEGATIVE_AMOUNT;
+        }
+        if (amount.scale() > MAX_DIGITS || amount.precision() - amount.scale() > MAX_DIGITS) {
+            throw TOO_MANY_DIGITS;
+        }
+        if (balanceMode == BalanceMode.MINOR_UNITS && !MinorUnits.isRepresentable(amount)) {
+            throw TOO_MANY_DECIMALS;
         }
     }
 }
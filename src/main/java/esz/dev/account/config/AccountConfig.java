@@ -0,0 +1,62 @@
+package esz.dev.account.config;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import com.typesafe.config.Config;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.AtomicAccountService;
+import esz.dev.account.control.BalanceMode;
+import esz.dev.account.control.HistoryStore;
+import esz.dev.account.control.LedgerEngine;
+import esz.dev.account.control.PartitionedAccountService;
+import esz.dev.server.RequestExecution;
+
+/**
+ * Configuration for Guice to select the account implementations according to the application configuration.
+ */
+public class AccountConfig extends AbstractModule {
+    private final Config config;
+    private final RequestExecution execution;
+
+    public AccountConfig(Config config, RequestExecution execution) {
+        this.config = config;
+        this.execution = execution;
+    }
+
+    @Override
+    protected void configure() {
+        BalanceMode balanceMode = getEnum(BalanceMode.class, "account.balance.mode", BalanceMode.DECIMAL);
+        bind(BalanceMode.class).toInstance(balanceMode);
+        bindConstant().annotatedWith(Names.named(HistoryStore.CAPACITY)).to(getInt(HistoryStore.CAPACITY, 32));
+
+        LedgerEngine engine = getEnum(LedgerEngine.class, "account.engine.type", LedgerEngine.LOCKING);
+        if (engine == LedgerEngine.PARTITIONED) {
+            bindConstant().annotatedWith(Names.named(PartitionedAccountService.PARTITIONS))
+                    .to(getInt(PartitionedAccountService.PARTITIONS, Runtime.getRuntime().availableProcessors()));
+            bindConstant().annotatedWith(Names.named(PartitionedAccountService.RING_CAPACITY))
+                    .to(getInt(PartitionedAccountService.RING_CAPACITY, 8192));
+            bind(AccountService.class).to(PartitionedAccountService.class);
+        } else if (balanceMode == BalanceMode.MINOR_UNITS) {
+            bind(AccountService.class).to(AtomicAccountService.class);
+        }
+        if (execution == RequestExecution.NON_BLOCKING) {
+            // the account handlers run on the event loop, which must neither wait for a lock nor for the disk
+            if (engine != LedgerEngine.PARTITIONED) {
+                addError("Only the partitioned engine never blocks the event loop, account.engine.type must be "
+                        + "partitioned when server.execution is non-blocking");
+            }
+            if (config.hasPath("storage.type") && !config.getString("storage.type").equalsIgnoreCase("memory")) {
+                addError("The " + config.getString("storage.type").toLowerCase() + " storage reads and writes the "
+                        + "disk on the event loop, storage.type must be memory when server.execution is non-blocking");
+            }
+        }
+    }
+
+    private int getInt(String path, int defaultValue) {
+        return config.hasPath(path) ? config.getInt(path) : defaultValue;
+    }
+
+    private <T extends Enum<T>> T getEnum(Class<T> type, String path, T defaultValue) {
+        return config.hasPath(path) ? Enum.valueOf(type, config.getString(path).toUpperCase().replace('-', '_')) : defaultValue;
+    }
+}
@@ -0,0 +1,75 @@
+package esz.dev.account.control;
+
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer of the most recent entries of the history of an account. The fields of the entries are kept in
+ * parallel arrays allocated once, and recording an entry only stores references to the amount and the IBAN of the
+ * transaction, so it allocates nothing.
+ * <p>
+ * There is a single writer at a time, the one changing the balance of the account. Readers take no lock: they copy
+ * the entries and then drop those the writer may have overwritten meanwhile. The ring has a slot more than the
+ * entries it exposes, so the slot being written is never one a reader returns.
+ */
+class AccountHistory {
+    private final int capacity;
+    private final HistoryEntry.Type[] types;
+    private final BigDecimal[] amounts;
+    private final String[] counterparties;
+    private final long[] timestamps;
+    private volatile long count;
+
+    AccountHistory(int capacity) {
+        this.capacity = capacity;
+        this.types = new HistoryEntry.Type[capacity + 1];
+        this.amounts = new BigDecimal[capacity + 1];
+        this.counterparties = new String[capacity + 1];
+        this.timestamps = new long[capacity + 1];
+    }
+
+    /**
+     * Appends an entry, overwriting the oldest one if the history is full. Only called by the single writer.
+     */
+    void record(HistoryEntry.Type type, BigDecimal amount, String counterpartyIban, long timestamp) {
+        long sequence = count;
+        int slot = (int) (sequence % types.length);
+        types[slot] = type;
+        amounts[slot] = amount;
+        counterparties[slot] = counterpartyIban;
+        timestamps[slot] = timestamp;
+        count = sequence + 1;
+    }
+
+    /**
+     * Reads at most {@code limit} entries older than the cursor, newest first.
+     *
+     * @param cursor the sequence of the entry after the first one to return, the entries of the previous page are
+     *               followed by {@link HistoryPage#getNextCursor()}
+     */
+    HistoryPage read(long cursor, int limit) {
+        long written = count;
+        long from = Math.min(cursor, written);
+        long to = Math.max(Math.max(0, written - capacity), from - limit);
+        List<HistoryEntry> entries = new ArrayList<>((int) Math.max(0, from - to));
+        for (long sequence = from - 1; sequence >= to; sequence--) {
+            int slot = (int) (sequence % types.length);
+            entries.add(new HistoryEntry(sequence, types[slot], amounts[slot], counterparties[slot],
+                    Instant.ofEpochMilli(timestamps[slot]).toString()));
+        }
+        // the copies are checked against the entries recorded since, which may have overwritten the oldest ones
+        VarHandle.acquireFence();
+        long oldest = Math.max(0, count - capacity);
+        while (!entries.isEmpty() && entries.get(entries.size() - 1).getSequence() < oldest) {
+            entries.remove(entries.size() - 1);
+        }
+        Long nextCursor = null;
+        if (!entries.isEmpty() && entries.get(entries.size() - 1).getSequence() > oldest) {
+            nextCursor = entries.get(entries.size() - 1).getSequence();
+        }
+        return new HistoryPage(entries, nextCursor);
+    }
+}
@@ -0,0 +1,89 @@
+package esz.dev.account.control;
+
+import javax.inject.Singleton;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped lock manager for bank accounts. Every IBAN is mapped to one of a fixed number of locks, so transactions on
+ * different accounts can run in parallel, while transactions touching the same account are serialized.
+ */
+@Singleton
+public class AccountLocks {
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public AccountLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public void lock(String iban) {
+        locks[stripeOf(iban)].lock();
+    }
+
+    public void unlock(String iban) {
+        locks[stripeOf(iban)].unlock();
+    }
+
+    /**
+     * Acquires the locks of two accounts. The locks are always taken in ascending stripe order, so two transactions
+     * working on the same pair of accounts from opposite directions can not deadlock.
+     */
+    public void lock(String first, String second) {
+        int firstStripe = stripeOf(first);
+        int secondStripe = stripeOf(second);
+        if (firstStripe == secondStripe) {
+            locks[firstStripe].lock();
+        } else {
+            locks[Math.min(firstStripe, secondStripe)].lock();
+            locks[Math.max(firstStripe, secondStripe)].lock();
+        }
+    }
+
+    public void unlock(String first, String second) {
+        int firstStripe = stripeOf(first);
+        int secondStripe = stripeOf(second);
+        if (firstStripe == secondStripe) {
+            locks[firstStripe].unlock();
+        } else {
+            locks[Math.max(firstStripe, secondStripe)].unlock();
+            locks[Math.min(firstStripe, secondStripe)].unlock();
+        }
+    }
+
+    /**
+     * Acquires every lock, in ascending stripe order like {@link #lock(String, String)}, so it waits for the
+     * transactions holding any of them and no transaction starts until {@link #unlockAll()}.
+     */
+    public void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    public int countStripes() {
+        return locks.length;
+    }
+
+    int stripeOf(String iban) {
+        long key = IbanCodec.encode(iban);
+        int hash = key != IbanCodec.NO_KEY ? IbanCodec.hash(key) : iban.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
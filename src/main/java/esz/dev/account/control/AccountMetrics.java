@@ -0,0 +1,137 @@
+package esz.dev.account.control;
+
+import esz.dev.metrics.control.LatencyHistogram;
+import esz.dev.metrics.control.MetricsRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service time, lock wait time and failures of the banking operations.
+ */
+@Singleton
+public class AccountMetrics {
+    public enum Operation {
+        CREATE_ACCOUNT, CHECK_FUNDS, WITHDRAW, DEPOSIT, TRANSFER, TRANSFER_BATCH;
+
+        private final String label = name().toLowerCase();
+    }
+
+    /**
+     * A banking operation started by {@link #measure(Operation, Measured)}, returning a future completed once the
+     * operation is done.
+     */
+    @FunctionalInterface
+    public interface Measured<T> {
+        CompletableFuture<T> start() throws Exception;
+    }
+
+    /**
+     * A banking operation run by {@link #measure(Operation, MeasuredCall)}, returning once the operation is done. An
+     * operation returning a future is a {@link Measured} one, so a call has to return the result itself.
+     */
+    @FunctionalInterface
+    public interface MeasuredCall<T> {
+        T call() throws Exception;
+    }
+
+    private final MetricsRegistry metricsRegistry;
+    private final LatencyHistogram[] serviceTimes = new LatencyHistogram[Operation.values().length];
+    private final LatencyHistogram[] lockWaits = new LatencyHistogram[Operation.values().length];
+    private final ConcurrentMap<Class<?>, LongAdder>[] failures;
+
+    /**
+     * Creates metrics which are not exposed anywhere.
+     */
+    public AccountMetrics() {
+        this(new MetricsRegistry());
+    }
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public AccountMetrics(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        this.failures = new ConcurrentMap[Operation.values().length];
+        for (Operation operation : Operation.values()) {
+            serviceTimes[operation.ordinal()] = metricsRegistry.histogram("account_operation_seconds",
+                    "Service time of the banking operations.", "operation", operation.label);
+            lockWaits[operation.ordinal()] = metricsRegistry.histogram("account_lock_wait_seconds",
+                    "Time spent waiting for account locks.", "operation", operation.label);
+            failures[operation.ordinal()] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Starts an operation, and records its service time and the exception it failed with, if any, once it completes.
+     * An operation failing before it returns its future is recorded the same way.
+     *
+     * @return a future completed with the result of the operation, or failed with the exception the operation failed
+     * with rather than with a {@link CompletionException}, so the error handlers of the application can map it
+     */
+    public <T> CompletableFuture<T> measure(Operation operation, Measured<T> measured) {
+        long start = System.nanoTime();
+        CompletableFuture<T> outcome;
+        try {
+            outcome = measured.start();
+        } catch (Exception e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        outcome.whenComplete((value, failure) -> {
+            recordServiceTime(operation, System.nanoTime() - start);
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                recordFailure(operation, cause);
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs an operation on the calling thread, and records its service time and the exception it failed with, if any.
+     *
+     * @return the result of the operation
+     */
+    public <T> T measure(Operation operation, MeasuredCall<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } catch (Exception e) {
+            recordFailure(operation, e);
+            throw e;
+        } finally {
+            recordServiceTime(operation, System.nanoTime() - start);
+        }
+    }
+
+    public void recordServiceTime(Operation operation, long nanos) {
+        serviceTimes[operation.ordinal()].record(nanos);
+    }
+
+    public void recordLockWait(Operation operation, long nanos) {
+        lockWaits[operation.ordinal()].record(nanos);
+    }
+
+    public void recordFailure(Operation operation, Throwable cause) {
+        failures[operation.ordinal()].computeIfAbsent(cause.getClass(), type -> metricsRegistry.counter(
+                "account_operation_failures_total", "Banking operations failed, by exception type.",
+                "operation", operation.label, "exception", type.getSimpleName())).increment();
+    }
+
+    public LatencyHistogram serviceTimeOf(Operation operation) {
+        return serviceTimes[operation.ordinal()];
+    }
+
+    public LatencyHistogram lockWaitOf(Operation operation) {
+        return lockWaits[operation.ordinal()];
+    }
+}
@@ -1,8 +1,8 @@
 package esz.dev.account.control;
 
 import esz.dev.account.entity.Account;
-import org.iban4j.CountryCode;
-import org.iban4j.Iban;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
 import esz.dev.user.control.UserNotFoundException;
 import esz.dev.user.control.UserStore;
 import esz.dev.user.entity.User;
@@ -10,77 +10,455 @@ import esz.dev.user.entity.User;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.math.BigDecimal;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Core implementation for banking transactions.
  */
 @Singleton
 public class AccountService {
-    private final AccountStore accountStore;
+    protected final AccountStore accountStore;
     private final UserStore userStore;
-
-    private static final CountryCode COUNTRY_CODE = CountryCode.RO;
-    private static final String BANK_CODE_PREFIX = "XXXX";
-    private int accountCounter = 0;
+    private final AccountLocks accountLocks;
+    protected final Journal journal;
+    private final IbanIssuer ibanIssuer;
+    private final AccountMetrics accountMetrics;
+    protected final HistoryStore historyStore;
+    private final AtomicReference<BalanceExport> consistentExport = new AtomicReference<>();
 
     @Inject
-    public AccountService(AccountStore accountStore, UserStore userStore) {
+    public AccountService(AccountStore accountStore, UserStore userStore, AccountLocks accountLocks, Journal journal,
+                          IbanIssuer ibanIssuer, AccountMetrics accountMetrics, HistoryStore historyStore) {
         this.accountStore = accountStore;
         this.userStore = userStore;
+        this.accountLocks = accountLocks;
+        this.journal = journal;
+        this.ibanIssuer = ibanIssuer;
+        this.accountMetrics = accountMetrics;
+        this.historyStore = historyStore;
+    }
+
+    /**
+     * Opens a new account for a user. Accounts are opened without any lock, so they can be opened concurrently with
+     * each other and with the transactions on other accounts.
+     */
+    public String createAccount(long userId) throws UserNotFoundException {
+        return createAccountAsync(userId).join();
     }
 
-    public synchronized String createAccount(long userId) throws UserNotFoundException {
-        String accountNumber = String.valueOf(accountCounter++);
-        Iban iban = new Iban.Builder()
-                .countryCode(COUNTRY_CODE)
-                .bankCode(generateBankCode(accountNumber))
-                .accountNumber(accountNumber)
-                .build();
-        User user = userStore.getUser(userId).orElseThrow(() -> new UserNotFoundException("No user found with id of " + userId));
+    /**
+     * Opens a new account for a user without waiting for its creation to become durable.
+     *
+     * @return a future completed with the IBAN of the account once its creation is durable
+     */
+    public CompletableFuture<String> createAccountAsync(long userId) throws UserNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        User user = userStore.getUser(userId).orElse(null);
+        if (user == null) {
+            UserNotFoundException failure = new UserNotFoundException("No user found with id of " + userId);
+            event.finish(AccountMetrics.Operation.CREATE_ACCOUNT, null, null, null, 0, failure);
+            throw failure;
+        }
+        String iban = ibanIssuer.issue();
+        // the creation is journaled before the account becomes visible, so it always precedes its transactions
+        CompletableFuture<Void> durable = journal.append(JournalRecord.accountCreated(userId, iban));
         accountStore.addAccount(Account.builder()
-                .iban(iban.toString())
+                .iban(iban)
                 .amount(BigDecimal.ZERO).build());
-        user.getAccounts().add(iban.toString());
-        return iban.toString();
+        userStore.addAccount(userId, iban);
+        event.finish(AccountMetrics.Operation.CREATE_ACCOUNT, iban, null, null, 0, null);
+        return durable.thenApply(ignored -> iban);
+    }
+
+    /**
+     * Restores an account created before a restart, with the balance it had. Every restored account advances the
+     * numbering, so new accounts never reuse the number of a restored one. Safe to be called from many threads.
+     */
+    public void restoreAccount(long userId, String iban, BigDecimal balance) throws AccountNotFoundException {
+        ibanIssuer.reserve(iban);
+        accountStore.addAccount(Account.builder().iban(iban).amount(BigDecimal.ZERO).build());
+        restoreBalance(iban, balance);
+        userStore.addAccount(userId, iban);
+    }
+
+    /**
+     * Adds a journaled change to the balance of an account, without any check. Only used while restoring the state
+     * of the accounts, before requests are served, and by a follower applying the journal of its primary from a single
+     * thread, while only reads are served.
+     */
+    public void restoreBalance(String iban, BigDecimal delta) throws AccountNotFoundException {
+        Account account = getAccountOrElseThrow(iban);
+        account.beginWrite();
+        account.setAmount(account.getAmount().add(delta));
+        account.endWrite();
+    }
+
+    /**
+     * Applies a journaled transfer to the balances of both accounts, without any check, as a single change read either
+     * entirely or not at all. Used as {@link #restoreBalance(String, BigDecimal)} is.
+     */
+    public void restoreTransfer(String senderIban, String receiverIban, BigDecimal amount) throws AccountNotFoundException {
+        Account sender = getAccountOrElseThrow(senderIban);
+        Account receiver = getAccountOrElseThrow(receiverIban);
+        boolean distinct = !senderIban.equals(receiverIban);
+        sender.beginWrite();
+        if (distinct) {
+            receiver.beginWrite();
+        }
+        preserveForExport(sender, receiver);
+        sender.setAmount(sender.getAmount().subtract(amount));
+        receiver.setAmount(receiver.getAmount().add(amount));
+        if (distinct) {
+            receiver.endWrite();
+        }
+        sender.endWrite();
     }
 
     public AmountDto checkFunds(String iban) throws AccountNotFoundException {
-        return accountStore.getAccount(iban).map(account -> new AmountDto(iban, account.getAmount()))
-                .orElseThrow(() -> new AccountNotFoundException("No account found with iban " + iban));
+        return new AmountDto(iban, balanceOf(iban));
     }
 
-    public synchronized void withdraw(AmountDto amountDto) throws AccountNotFoundException, NotEnoughAmountException {
-        Account account = getAccountOrElseThrow(amountDto.getIban());
-        BigDecimal amount = account.getAmount().subtract(amountDto.getAmount());
-        if (amount.compareTo(BigDecimal.ZERO) < 0) {
-            throw new NotEnoughAmountException("Not enough amount on account with iban " + account.getIban());
-        } else {
+    /**
+     * Reads the balance of an account without taking its lock, see {@link Account#readAmount()}. The balance is never
+     * one of a transaction still in progress, and polling the balances does not slow down the transactions. Balances
+     * held as decimals are returned as they are stored, balances held in minor units are converted into a new decimal.
+     */
+    public BigDecimal balanceOf(String iban) throws AccountNotFoundException {
+        return balanceOf(findAccountOrElseThrow(iban));
+    }
+
+    protected BigDecimal balanceOf(Account account) {
+        return account.readAmount();
+    }
+
+    /**
+     * Reads a page of the recent transactions of an account, newest first, see {@link HistoryStore}.
+     *
+     * @param cursor the cursor of the page, {@link Long#MAX_VALUE} for the newest entries
+     */
+    public HistoryPage getHistory(String iban, long cursor, int limit) throws AccountNotFoundException {
+        return historyStore.getHistory(findAccountOrElseThrow(iban).getIban(), cursor, limit);
+    }
+
+    /**
+     * Opens a cursor over the balances of all the accounts, which has to be closed once done. The balances are read
+     * without blocking the transactions. A consistent export starts while holding every account lock, so its point in
+     * time is between transactions: every transaction in flight has finished, and every later one finds the export
+     * and preserves the balances it changes.
+     *
+     * @param consistent whether the balances have to be those of a single point in time, see {@link BalanceExport}.
+     *                   Only one consistent export can be open at a time.
+     */
+    public BalanceExport exportBalances(boolean consistent) throws ExportUnavailableException {
+        if (!consistent) {
+            return new BalanceExport(accountStore.accounts(), this::balanceOf, false, export -> {
+            });
+        }
+        BalanceExport started = new BalanceExport(accountStore.accounts(), this::balanceOf, true,
+                export -> consistentExport.compareAndSet(export, null));
+        boolean installed;
+        accountLocks.lockAll();
+        try {
+            installed = consistentExport.compareAndSet(null, started);
+        } finally {
+            accountLocks.unlockAll();
+        }
+        if (!installed) {
+            throw new ExportUnavailableException("Another consistent export is in progress!");
+        }
+        return started;
+    }
+
+    public void withdraw(AmountDto amountDto) throws AccountNotFoundException, NotEnoughAmountException {
+        withdrawAsync(amountDto).join();
+    }
+
+    /**
+     * Applies a withdrawal journaled as the given record rather than as a withdrawal, such as the debit of a transfer
+     * between shards, so the change of the balance and what it was made for become durable together. The record has to
+     * change the balance the same way when it is replayed.
+     */
+    public void withdraw(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException, NotEnoughAmountException {
+        await(withdrawAsync(amountDto, journaledAs));
+    }
+
+    /**
+     * Applies a withdrawal without waiting for its journal record to become durable.
+     *
+     * @return a future completed once the withdrawal is durable
+     */
+    public CompletableFuture<Void> withdrawAsync(AmountDto amountDto) throws AccountNotFoundException, NotEnoughAmountException {
+        return withdrawAsync(amountDto, null);
+    }
+
+    /**
+     * Applies a withdrawal journaled as the given record, or as a withdrawal if it is null, without waiting for the
+     * record to become durable, see {@link #withdraw(AmountDto, JournalRecord)}.
+     *
+     * @return a future completed once the withdrawal is durable
+     */
+    public CompletableFuture<Void> withdrawAsync(AmountDto amountDto, JournalRecord journaledAs)
+            throws AccountNotFoundException, NotEnoughAmountException {
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        long start = System.nanoTime();
+        accountLocks.lock(amountDto.getIban());
+        long lockWait = System.nanoTime() - start;
+        accountMetrics.recordLockWait(AccountMetrics.Operation.WITHDRAW, lockWait);
+        try {
+            Account account = getAccountOrElseThrow(amountDto.getIban());
+            BigDecimal amount = subtractOrElseThrow(account, amountDto.getAmount());
+            persistChange(JournalRecord.Type.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount());
+            account.beginWrite();
+            preserveForExport(account, account);
             account.setAmount(amount);
+            account.endWrite();
+            historyStore.record(account, HistoryEntry.Type.WITHDRAW, amountDto.getAmount(), null);
+            durable = appendToJournal(journaledAs, JournalRecord.Type.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount());
+        } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount(), lockWait, e);
+            throw e;
+        } finally {
+            accountLocks.unlock(amountDto.getIban());
         }
+        event.finish(AccountMetrics.Operation.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount(), lockWait, null);
+        return durable;
     }
 
-    public synchronized void deposit(AmountDto amountDto) throws AccountNotFoundException {
-        Account account = getAccountOrElseThrow(amountDto.getIban());
-        BigDecimal amount = account.getAmount().add(amountDto.getAmount());
-        account.setAmount(amount);
+    public void deposit(AmountDto amountDto) throws AccountNotFoundException {
+        depositAsync(amountDto).join();
     }
 
-    public synchronized void transfer(TransferAmountDto transferAmountDto) throws AccountNotFoundException, NotEnoughAmountException {
-        withdraw(new AmountDto(transferAmountDto.getSenderIban(), transferAmountDto.getAmount()));
-        deposit(new AmountDto(transferAmountDto.getReceiverIban(), transferAmountDto.getAmount()));
+    /**
+     * Applies a deposit journaled as the given record rather than as a deposit, such as the credit of a transfer
+     * between shards, see {@link #withdraw(AmountDto, JournalRecord)}.
+     */
+    public void deposit(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException {
+        awaitCredit(depositAsync(amountDto, journaledAs));
     }
 
-    private Account getAccountOrElseThrow(String iban) throws AccountNotFoundException {
-        return accountStore.getAccount(iban)
-                .orElseThrow(() -> new AccountNotFoundException("No account found with iban " + iban));
+    /**
+     * Applies a deposit without waiting for its journal record to become durable.
+     *
+     * @return a future completed once the deposit is durable
+     */
+    public CompletableFuture<Void> depositAsync(AmountDto amountDto) throws AccountNotFoundException {
+        return depositAsync(amountDto, null);
+    }
+
+    /**
+     * Applies a deposit journaled as the given record, or as a deposit if it is null, without waiting for the record to
+     * become durable.
+     *
+     * @return a future completed once the deposit is durable
+     */
+    public CompletableFuture<Void> depositAsync(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        long start = System.nanoTime();
+        accountLocks.lock(amountDto.getIban());
+        long lockWait = System.nanoTime() - start;
+        accountMetrics.recordLockWait(AccountMetrics.Operation.DEPOSIT, lockWait);
+        try {
+            Account account = getAccountOrElseThrow(amountDto.getIban());
+            BigDecimal amount = account.getAmount().add(amountDto.getAmount());
+            persistChange(JournalRecord.Type.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount());
+            account.beginWrite();
+            preserveForExport(account, account);
+            account.setAmount(amount);
+            account.endWrite();
+            historyStore.record(account, HistoryEntry.Type.DEPOSIT, amountDto.getAmount(), null);
+            durable = appendToJournal(journaledAs, JournalRecord.Type.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount());
+        } catch (AccountNotFoundException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount(), lockWait, e);
+            throw e;
+        } finally {
+            accountLocks.unlock(amountDto.getIban());
+        }
+        event.finish(AccountMetrics.Operation.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount(), lockWait, null);
+        return durable;
+    }
+
+    /**
+     * Moves funds between two accounts. Both accounts are locked for the whole transaction and both of them are
+     * resolved before any balance is changed, so a failing transfer leaves the accounts untouched. The transfer is
+     * acknowledged only once it is durable in the journal, after the locks are released.
+     */
+    public void transfer(TransferAmountDto transferAmountDto) throws AccountNotFoundException, NotEnoughAmountException {
+        transferAsync(transferAmountDto).join();
+    }
+
+    /**
+     * Applies a transfer without waiting for its journal record to become durable.
+     *
+     * @return a future completed once the transfer is durable
+     */
+    public CompletableFuture<Void> transferAsync(TransferAmountDto transferAmountDto)
+            throws AccountNotFoundException, NotEnoughAmountException {
+        String senderIban = transferAmountDto.getSenderIban();
+        String receiverIban = transferAmountDto.getReceiverIban();
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        long start = System.nanoTime();
+        accountLocks.lock(senderIban, receiverIban);
+        long lockWait = System.nanoTime() - start;
+        accountMetrics.recordLockWait(AccountMetrics.Operation.TRANSFER, lockWait);
+        try {
+            Account sender = getAccountOrElseThrow(senderIban);
+            BigDecimal senderAmount = subtractOrElseThrow(sender, transferAmountDto.getAmount());
+            Account receiver = getAccountOrElseThrow(receiverIban);
+            persistChange(JournalRecord.Type.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount());
+            // both balances are published together, a reader never sees the sender debited but the receiver not credited,
+            // and an account transferring to itself is opened for writing once, even through two views of it
+            boolean distinct = !senderIban.equals(receiverIban);
+            sender.beginWrite();
+            if (distinct) {
+                receiver.beginWrite();
+            }
+            preserveForExport(sender, receiver);
+            sender.setAmount(senderAmount);
+            receiver.setAmount(receiver.getAmount().add(transferAmountDto.getAmount()));
+            if (distinct) {
+                receiver.endWrite();
+            }
+            sender.endWrite();
+            historyStore.record(sender, HistoryEntry.Type.TRANSFER_OUT, transferAmountDto.getAmount(), receiver);
+            historyStore.record(receiver, HistoryEntry.Type.TRANSFER_IN, transferAmountDto.getAmount(), sender);
+            durable = appendToJournal(JournalRecord.Type.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount());
+        } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount(), lockWait, e);
+            throw e;
+        } finally {
+            accountLocks.unlock(senderIban, receiverIban);
+        }
+        event.finish(AccountMetrics.Operation.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount(), lockWait, null);
+        return durable;
     }
 
-    private String generateBankCode(String accountNumber) {
-        StringBuilder stringBuilder = new StringBuilder().append(BANK_CODE_PREFIX);
-        for (int i = 0; i < 16 - accountNumber.length(); i++) {
-            stringBuilder.append(0);
+    /**
+     * Applies a batch of transfers in the given order in a single pass, without waiting for the durability of each
+     * transfer before applying the next one. A failing transfer does not stop the rest of the batch, whatever it fails
+     * with.
+     *
+     * @return a future for each transfer, completed once it is durable or exceptionally with the reason of its failure
+     */
+    public List<CompletableFuture<Void>> transferBatch(List<TransferAmountDto> transfers) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(transfers.size());
+        for (TransferAmountDto transfer : transfers) {
+            try {
+                results.add(transferAsync(transfer));
+            } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+                results.add(CompletableFuture.failedFuture(e));
+            }
         }
-        return stringBuilder.toString();
+        return results;
+    }
+
+    /**
+     * Keeps the balances of the accounts changed by a transaction for the consistent export in progress, if any. Has to
+     * be called under the locks of the accounts, which the start of the export waits for, so a transaction either
+     * finished before the export started or preserves every balance it changes.
+     */
+    private void preserveForExport(Account account, Account counterparty) {
+        BalanceExport export = consistentExport.get();
+        if (export != null) {
+            export.preserve(account);
+            export.preserve(counterparty);
+        }
+    }
+
+    /**
+     * Persists a change of balances to the account store. Has to be called once the change is known to succeed but
+     * before it is applied to the balances in memory, so a change the store fails to persist is not applied at all.
+     */
+    protected void persistChange(JournalRecord.Type type, String iban, String counterpartyIban, BigDecimal amount) {
+        accountStore.persistChange(type, iban, counterpartyIban, amount);
+    }
+
+    /**
+     * Appends a change of balances to the journal once it has been applied. The record is only built when the journal
+     * is enabled, so transactions do not allocate for it otherwise.
+     */
+    protected CompletableFuture<Void> appendToJournal(JournalRecord.Type type, String iban, String counterpartyIban,
+                                                      BigDecimal amount) {
+        if (!journal.isEnabled()) {
+            return Journal.DURABLE;
+        }
+        return journal.append(JournalRecord.builder()
+                .type(type)
+                .iban(iban)
+                .counterpartyIban(counterpartyIban)
+                .amount(amount)
+                .build());
+    }
+
+    /**
+     * Appends the record a change is journaled as, if any, or else the record of the change itself, see
+     * {@link #appendToJournal(JournalRecord.Type, String, String, BigDecimal)}.
+     */
+    protected CompletableFuture<Void> appendToJournal(JournalRecord journaledAs, JournalRecord.Type type, String iban,
+                                                      String counterpartyIban, BigDecimal amount) {
+        if (journaledAs == null) {
+            return appendToJournal(type, iban, counterpartyIban, amount);
+        }
+        return journal.append(journaledAs);
+    }
+
+    /**
+     * Waits for a change, failing with the {@link NotEnoughAmountException} or the {@link BalanceOverflowException} it
+     * failed with, if any.
+     */
+    protected static void await(CompletableFuture<Void> result) throws NotEnoughAmountException {
+        try {
+            result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NotEnoughAmountException) {
+                throw (NotEnoughAmountException) e.getCause();
+            }
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Waits for a credit, failing with the {@link BalanceOverflowException} it failed with, if any.
+     */
+    protected static void awaitCredit(CompletableFuture<Void> result) {
+        try {
+            result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        return e.getCause() instanceof BalanceOverflowException ? (BalanceOverflowException) e.getCause() : e;
+    }
+
+    protected BigDecimal subtractOrElseThrow(Account account, BigDecimal value) throws NotEnoughAmountException {
+        BigDecimal amount = account.getAmount().subtract(value);
+        if (amount.compareTo(BigDecimal.ZERO) < 0) {
+            throw new NotEnoughAmountException("Not enough amount on account with iban " + account.getIban());
+        }
+        return amount;
+    }
+
+    /**
+     * Looks up an account like {@link #getAccountOrElseThrow(String)} without allocating unless it is not found.
+     */
+    protected Account findAccountOrElseThrow(String iban) throws AccountNotFoundException {
+        Account account = accountStore.findAccount(iban);
+        if (account == null) {
+            throw new AccountNotFoundException("No account found with iban " + iban);
+        }
+        return account;
+    }
+
+    protected Account getAccountOrElseThrow(String iban) throws AccountNotFoundException {
+        return accountStore.getAccount(iban)
+                .orElseThrow(() -> new AccountNotFoundException("No account found with iban " + iban));
     }
 }
@@ -1,29 +1,51 @@
 package esz.dev.account.control;
 
 import esz.dev.account.entity.Account;
+import esz.dev.journal.entity.JournalRecord;
 
-import javax.inject.Singleton;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.util.Iterator;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Data persistence for bank account objects. This implementation provides an in-memory solution for persistence, and
- * should not be used in real life scenarios.
+ * Storage of the bank accounts. Implementations hand out account objects sharing the balance of the account for as
+ * long as they are open: either the same object for an IBAN, or a view of where the store keeps the balance, so the
+ * ledger engines tell accounts apart by their IBANs, never by identity. The engines change the balances of those
+ * objects in place, under their own rules. Every change is passed to
+ * {@link #persistChange(JournalRecord.Type, String, String, BigDecimal)} before it is applied, or before it is
+ * completed by the engines which apply it without locks and undo it on failure, so stores keeping the balances
+ * elsewhere as well can follow them, and a change they fail to persist is not kept.
  */
-@Singleton
-public class AccountStore {
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+public interface AccountStore {
+    void addAccount(Account account);
 
-    public void addAccount(Account account) {
-        accounts.put(account.getIban(), account);
+    default Optional<Account> getAccount(String iban) {
+        return Optional.ofNullable(findAccount(iban));
     }
 
-    public Optional<Account> getAccount(String iban) {
-        return Optional.ofNullable(accounts.get(iban));
-    }
+    /**
+     * Looks up an account like {@link #getAccount(String)} without wrapping it, for the hot paths. Allocates nothing,
+     * except for the view handed out by the stores keeping the balances out of the account objects.
+     *
+     * @return the account or null if there is no account with the IBAN
+     */
+    Account findAccount(String iban);
+
+    /**
+     * Iterates over all the accounts without any lock. Every account added before the iteration started is returned
+     * exactly once, accounts added while iterating may or may not be.
+     */
+    Iterator<Account> accounts();
+
+    int countAccounts();
 
-    public int countAccounts() {
-        return accounts.size();
+    /**
+     * Persists a change which is about to be applied to the balances of the accounts, with the same meaning as the
+     * journal record of the change, and throws if it can not, in which case the change is not applied. Changes of
+     * different accounts may be passed in any order, and changes of the same account in a different order than they
+     * are applied by the engines which apply them without locks, so they are persisted as additions which give the
+     * same balances in any order. Stores which keep nothing but the account objects ignore them.
+     */
+    default void persistChange(JournalRecord.Type type, String iban, String counterpartyIban, BigDecimal amount) {
     }
 }
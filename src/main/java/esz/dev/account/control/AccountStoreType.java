@@ -0,0 +1,16 @@
+package esz.dev.account.control;
+
+/**
+ * Where the accounts are kept.
+ */
+public enum AccountStoreType {
+    /**
+     * Account objects on the heap, indexed by a concurrent hash map.
+     */
+    HEAP,
+    /**
+     * Fixed-size slots in direct memory, indexed by an off-heap open-addressing table. Requires balances held as
+     * minor units.
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,208 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.user.control.UserStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation for banking transactions over balances held as minor units. Deposits, withdrawals and transfers are
+ * compare-and-set loops on the account balances, so none of them takes a lock, and their ledger events report no lock
+ * wait.
+ */
+@Singleton
+public class AtomicAccountService extends AccountService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AtomicAccountService.class);
+
+    @Inject
+    public AtomicAccountService(AccountStore accountStore, UserStore userStore, AccountLocks accountLocks, Journal journal,
+                                IbanIssuer ibanIssuer, AccountMetrics accountMetrics, HistoryStore historyStore) {
+        super(accountStore, userStore, accountLocks, journal, ibanIssuer, accountMetrics, historyStore);
+    }
+
+    /**
+     * Reads the balance without any lock, every balance held in the minor units of an account is a committed one.
+     */
+    @Override
+    protected BigDecimal balanceOf(Account account) {
+        return MinorUnits.toDecimal(account.getMinorUnits());
+    }
+
+    /**
+     * Transfers debit and credit the accounts one after the other, so there is no point in time when no money is in
+     * flight, and only exports which are not consistent are supported.
+     */
+    @Override
+    public BalanceExport exportBalances(boolean consistent) throws ExportUnavailableException {
+        if (consistent) {
+            throw new ExportUnavailableException("Consistent exports are not supported with minor-units balances!");
+        }
+        return super.exportBalances(false);
+    }
+
+    @Override
+    public CompletableFuture<Void> withdrawAsync(AmountDto amountDto, JournalRecord journaledAs)
+            throws AccountNotFoundException, NotEnoughAmountException {
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        try {
+            Account account = getAccountOrElseThrow(amountDto.getIban());
+            long value = MinorUnits.fromDecimal(amountDto.getAmount());
+            debit(account, value);
+            persistOrElseUndo(account, -value, null, 0, JournalRecord.Type.WITHDRAW, amountDto.getIban(), null,
+                    amountDto.getAmount());
+            historyStore.recordConcurrently(account, HistoryEntry.Type.WITHDRAW, amountDto.getAmount(), null);
+            durable = appendToJournal(journaledAs, JournalRecord.Type.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount());
+        } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount(), 0, e);
+            throw e;
+        }
+        event.finish(AccountMetrics.Operation.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount(), 0, null);
+        return durable;
+    }
+
+    @Override
+    public CompletableFuture<Void> depositAsync(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        try {
+            Account account = getAccountOrElseThrow(amountDto.getIban());
+            long value = MinorUnits.fromDecimal(amountDto.getAmount());
+            credit(account, value);
+            persistOrElseUndo(account, value, null, 0, JournalRecord.Type.DEPOSIT, amountDto.getIban(), null,
+                    amountDto.getAmount());
+            historyStore.recordConcurrently(account, HistoryEntry.Type.DEPOSIT, amountDto.getAmount(), null);
+            durable = appendToJournal(journaledAs, JournalRecord.Type.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount());
+        } catch (AccountNotFoundException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount(), 0, e);
+            throw e;
+        }
+        event.finish(AccountMetrics.Operation.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount(), 0, null);
+        return durable;
+    }
+
+    @Override
+    public void restoreBalance(String iban, BigDecimal delta) throws AccountNotFoundException {
+        Account account = getAccountOrElseThrow(iban);
+        account.setMinorUnits(account.getMinorUnits() + MinorUnits.fromDecimal(delta));
+    }
+
+    /**
+     * Readers may observe the amount in flight between the two updates, as they may on the primary.
+     */
+    @Override
+    public void restoreTransfer(String senderIban, String receiverIban, BigDecimal amount) throws AccountNotFoundException {
+        restoreBalance(senderIban, amount.negate());
+        restoreBalance(receiverIban, amount);
+    }
+
+    /**
+     * Moves funds between two accounts. Both accounts are resolved before any balance is changed and the sender is
+     * debited first, so the money is never created out of thin air. The debit is refunded if the credit of the receiver
+     * would overflow its balance, and both are undone if the transfer can not be persisted afterwards. Readers may
+     * observe the amount in flight between the two updates.
+     * <p>
+     * The journal records of concurrent updates may be appended in a different order than the updates were applied,
+     * which is harmless since journal replay adds up the changes without checking the balances.
+     */
+    @Override
+    public CompletableFuture<Void> transferAsync(TransferAmountDto transferAmountDto)
+            throws AccountNotFoundException, NotEnoughAmountException {
+        String senderIban = transferAmountDto.getSenderIban();
+        String receiverIban = transferAmountDto.getReceiverIban();
+        LedgerEvent event = LedgerEvent.start();
+        CompletableFuture<Void> durable;
+        try {
+            Account sender = getAccountOrElseThrow(senderIban);
+            Account receiver = getAccountOrElseThrow(receiverIban);
+            long value = MinorUnits.fromDecimal(transferAmountDto.getAmount());
+            debit(sender, value);
+            try {
+                credit(receiver, value);
+            } catch (BalanceOverflowException e) {
+                credit(sender, value);
+                throw e;
+            }
+            persistOrElseUndo(sender, -value, receiver, value, JournalRecord.Type.TRANSFER, sender.getIban(),
+                    receiver.getIban(), transferAmountDto.getAmount());
+            historyStore.recordConcurrently(sender, HistoryEntry.Type.TRANSFER_OUT, transferAmountDto.getAmount(), receiver);
+            historyStore.recordConcurrently(receiver, HistoryEntry.Type.TRANSFER_IN, transferAmountDto.getAmount(), sender);
+            durable = appendToJournal(JournalRecord.Type.TRANSFER, sender.getIban(), receiver.getIban(),
+                    transferAmountDto.getAmount());
+        } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+            event.finish(AccountMetrics.Operation.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount(), 0, e);
+            throw e;
+        }
+        event.finish(AccountMetrics.Operation.TRANSFER, senderIban, receiverIban, transferAmountDto.getAmount(), 0, null);
+        return durable;
+    }
+
+    /**
+     * Persists a change once it has been applied to the balances, as applying it is the check of the change, and undoes
+     * it if the change can not be persisted.
+     *
+     * @param change        the minor units added to {@code account}, negative for a debit
+     * @param counterparty  the other account changed, or null
+     * @param counterChange the minor units added to {@code counterparty}
+     */
+    private void persistOrElseUndo(Account account, long change, Account counterparty, long counterChange,
+                                   JournalRecord.Type type, String iban, String counterpartyIban, BigDecimal amount) {
+        try {
+            persistChange(type, iban, counterpartyIban, amount);
+        } catch (RuntimeException e) {
+            if (counterparty != null) {
+                undo(counterparty, counterChange);
+            }
+            undo(account, change);
+            throw e;
+        }
+    }
+
+    private void debit(Account account, long value) throws NotEnoughAmountException {
+        long current;
+        do {
+            current = account.getMinorUnits();
+            if (current < value) {
+                throw new NotEnoughAmountException("Not enough amount on account with iban " + account.getIban());
+            }
+        } while (!account.compareAndSetMinorUnits(current, current - value));
+    }
+
+    /**
+     * @throws BalanceOverflowException if the balance would overflow, in which case it is left unchanged
+     */
+    private void credit(Account account, long value) {
+        long current;
+        do {
+            current = account.getMinorUnits();
+            if (current > Long.MAX_VALUE - value) {
+                throw new BalanceOverflowException("The balance of the account with iban " + account.getIban()
+                        + " can not hold the amount");
+            }
+        } while (!account.compareAndSetMinorUnits(current, current + value));
+    }
+
+    /**
+     * Takes back a change which could not be persisted. The balance never goes below zero: the part of an undone
+     * credit which has been spent in the meantime can not be taken back, and is reported.
+     */
+    private void undo(Account account, long change) {
+        long current;
+        long undone;
+        do {
+            current = account.getMinorUnits();
+            undone = Math.min(change, current);
+        } while (!account.compareAndSetMinorUnits(current, current - undone));
+        if (undone < change) {
+            LOGGER.error("Could not take back {} of a credit of the account with iban {} which was not persisted, as it "
+                    + "has been spent", MinorUnits.toDecimal(change - undone), account.getIban());
+        }
+    }
+}
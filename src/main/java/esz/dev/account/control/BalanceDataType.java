@@ -0,0 +1,90 @@
+package esz.dev.account.control;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of balances for the MVStore. A balance is written as a variable length header holding its
+ * scale and whether its unscaled value fits into a {@code long}, followed by that value as a variable length
+ * {@code long}, or by the bytes of the unscaled value when it does not fit. Signs are zigzag encoded, so a balance of
+ * a few thousands with two decimals takes 4 bytes.
+ */
+class BalanceDataType implements DataType {
+    static final BalanceDataType INSTANCE = new BalanceDataType();
+
+    private static final int BIG = 1;
+
+    private BalanceDataType() {
+    }
+
+    @Override
+    public int compare(Object a, Object b) {
+        return ((BigDecimal) a).compareTo((BigDecimal) b);
+    }
+
+    @Override
+    public int getMemory(Object obj) {
+        BigDecimal balance = (BigDecimal) obj;
+        return balance.unscaledValue().bitLength() < Long.SIZE ? 48 : 64 + balance.unscaledValue().bitLength() / 8;
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object obj) {
+        BigDecimal balance = (BigDecimal) obj;
+        BigInteger unscaled = balance.unscaledValue();
+        int scale = zigzag(balance.scale());
+        if (unscaled.bitLength() < Long.SIZE) {
+            buff.putVarInt(scale << 1).putVarLong(zigzag(unscaled.longValue()));
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            buff.putVarInt(scale << 1 | BIG).putVarInt(bytes.length).put(bytes);
+        }
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            write(buff, obj[i]);
+        }
+    }
+
+    @Override
+    public Object read(ByteBuffer buff) {
+        int header = DataUtils.readVarInt(buff);
+        int scale = unzigzag(header >>> 1);
+        if ((header & BIG) == 0) {
+            return BigDecimal.valueOf(unzigzag(DataUtils.readVarLong(buff)), scale);
+        }
+        byte[] bytes = new byte[DataUtils.readVarInt(buff)];
+        buff.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    @Override
+    public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            obj[i] = read(buff);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,80 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cursor over the balances of all the accounts, see {@link AccountService#exportBalances(boolean)}. It holds nothing
+ * but its position in the account store, so exporting any number of accounts takes constant memory.
+ * <p>
+ * A consistent export lists the balances of the moment it was started, between two transactions. While it is open,
+ * every transaction keeps the balances of the accounts it changes as they were before its first change since the
+ * start, and the export returns those instead of the current ones. It holds one balance for every account changed
+ * while it is open, so its memory grows with the accounts changed during the export, up to one balance per account.
+ * Accounts opened during the export may be listed with a zero balance.
+ */
+public class BalanceExport implements AutoCloseable {
+    private final Iterator<Account> accounts;
+    private final Function<Account, BigDecimal> balance;
+    private final Map<String, BigDecimal> preserved;
+    private final Consumer<BalanceExport> onClose;
+    private String iban;
+    private BigDecimal amount;
+
+    BalanceExport(Iterator<Account> accounts, Function<Account, BigDecimal> balance, boolean consistent,
+                  Consumer<BalanceExport> onClose) {
+        this.accounts = accounts;
+        this.balance = balance;
+        this.preserved = consistent ? new ConcurrentHashMap<>() : null;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Moves to the next account.
+     *
+     * @return false if there are no more accounts
+     */
+    public boolean next() {
+        if (!accounts.hasNext()) {
+            return false;
+        }
+        Account account = accounts.next();
+        iban = account.getIban();
+        amount = balance.apply(account);
+        if (preserved != null) {
+            // a balance changed after the start is preserved before the change, so it is found here if it was read
+            BigDecimal previous = preserved.get(iban);
+            if (previous != null) {
+                amount = previous;
+            }
+        }
+        return true;
+    }
+
+    public String getIban() {
+        return iban;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    @Override
+    public void close() {
+        onClose.accept(this);
+    }
+
+    /**
+     * Keeps the balance of an account before it is changed for the first time since the export started. Called by
+     * the writer holding the lock of the account.
+     */
+    void preserve(Account account) {
+        preserved.putIfAbsent(account.getIban(), account.getAmount());
+    }
+}
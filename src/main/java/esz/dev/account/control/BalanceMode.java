@@ -0,0 +1,16 @@
+package esz.dev.account.control;
+
+/**
+ * Internal representation used for account balances.
+ */
+public enum BalanceMode {
+    /**
+     * Balances are immutable {@link java.math.BigDecimal} values replaced under the account lock.
+     */
+    DECIMAL,
+
+    /**
+     * Balances are fixed-scale minor units held in a {@code long} and updated with compare-and-set.
+     */
+    MINOR_UNITS
+}
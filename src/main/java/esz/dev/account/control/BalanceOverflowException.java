@@ -0,0 +1,11 @@
+package esz.dev.account.control;
+
+/**
+ * Exception which should be thrown in case a given account can not hold the funds credited by a specific transaction,
+ * as its balance in minor units would overflow.
+ */
+public class BalanceOverflowException extends RuntimeException {
+    public BalanceOverflowException(String what) {
+        super(what);
+    }
+}
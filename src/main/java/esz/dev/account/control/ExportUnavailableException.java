@@ -0,0 +1,11 @@
+package esz.dev.account.control;
+
+/**
+ * Exception which should be thrown in case a consistent export of the balances is requested while another one is
+ * running, or from an engine which can not provide one.
+ */
+public class ExportUnavailableException extends Exception {
+    public ExportUnavailableException(String what) {
+        super(what);
+    }
+}
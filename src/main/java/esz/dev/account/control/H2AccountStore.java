@@ -0,0 +1,121 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.storage.control.H2Database;
+import esz.dev.storage.control.StorageException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Account store keeping a write-through copy of the accounts in an embedded H2 database. The balances in memory are
+ * the ones the ledger engines check and change, and the database only follows them so they survive a restart: all
+ * the accounts are loaded on startup, accounts are read from memory only, and every account and every change of
+ * balances is written to the database before it is applied in memory.
+ * <p>
+ * The write, including the commit of its transaction to disk, is part of the operation, so it runs wherever the engine
+ * applies the operation: under the account locks with the locking engine and on the partition thread with the
+ * partitioned engine. Operations are then bounded by the rate of the commits of the database, see
+ * {@code StorageBenchmark}, and this store trades throughput for a durable copy which can be queried with SQL.
+ * <p>
+ * Changes are written as additions to the stored balances, so they give the right balances in whatever order
+ * concurrent changes are written. The two balances of a transfer are written in a single transaction, as a batch of
+ * updates in the order of the IBANs: the engine of the minor-units balances, see {@link AtomicAccountService}, writes
+ * concurrent transfers of the same accounts without any lock of its own, so their rows are always locked in the same
+ * order and their transactions never wait for each other in a cycle.
+ */
+@Singleton
+public class H2AccountStore extends InMemoryAccountStore {
+    private static final String INSERT_ACCOUNT = "MERGE INTO account (iban, balance) KEY (iban) VALUES (?, ?)";
+    private static final String UPDATE_BALANCE = "UPDATE account SET balance = balance + ? WHERE iban = ?";
+
+    private final H2Database database;
+    private final BalanceMode balanceMode;
+
+    /**
+     * Loads the stored accounts, reserving their IBANs so they are never issued again.
+     */
+    @Inject
+    public H2AccountStore(H2Database database, BalanceMode balanceMode, IbanIssuer ibanIssuer) {
+        this.database = database;
+        this.balanceMode = balanceMode;
+        database.inTransaction(session -> {
+            session.prepare("CREATE TABLE IF NOT EXISTS account (iban VARCHAR(34) PRIMARY KEY, balance DECIMAL NOT NULL)")
+                    .execute();
+            try (ResultSet rows = session.prepare("SELECT iban, balance FROM account").executeQuery()) {
+                while (rows.next()) {
+                    String iban = rows.getString(1);
+                    BigDecimal balance = rows.getBigDecimal(2);
+                    Account account = Account.builder().iban(iban).amount(BigDecimal.ZERO).build();
+                    if (balanceMode == BalanceMode.MINOR_UNITS) {
+                        account.setMinorUnits(MinorUnits.fromDecimal(balance));
+                    } else {
+                        account.setAmount(balance);
+                    }
+                    super.addAccount(account);
+                    ibanIssuer.reserve(iban);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Stores the account before it becomes visible, so no change of its balance is written before the account.
+     */
+    @Override
+    public void addAccount(Account account) {
+        BigDecimal balance = balanceMode == BalanceMode.MINOR_UNITS
+                ? MinorUnits.toDecimal(account.getMinorUnits()) : account.getAmount();
+        database.inTransaction(session -> {
+            PreparedStatement insert = session.prepare(INSERT_ACCOUNT);
+            insert.setString(1, account.getIban());
+            insert.setBigDecimal(2, balance);
+            return insert.executeUpdate();
+        });
+        super.addAccount(account);
+    }
+
+    @Override
+    public void persistChange(JournalRecord.Type type, String iban, String counterpartyIban, BigDecimal amount) {
+        database.inTransaction(session -> {
+            PreparedStatement update = session.prepare(UPDATE_BALANCE);
+            switch (type) {
+                case DEPOSIT:
+                    addBatch(update, iban, amount);
+                    break;
+                case WITHDRAW:
+                    addBatch(update, iban, amount.negate());
+                    break;
+                case TRANSFER:
+                    if (iban.compareTo(counterpartyIban) <= 0) {
+                        addBatch(update, iban, amount.negate());
+                        addBatch(update, counterpartyIban, amount);
+                    } else {
+                        addBatch(update, counterpartyIban, amount);
+                        addBatch(update, iban, amount.negate());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a change of balances: " + type);
+            }
+            for (int updated : update.executeBatch()) {
+                if (updated != 1) {
+                    throw new StorageException("No stored account to change for " + type + " of " + iban, null);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void addBatch(PreparedStatement update, String iban, BigDecimal delta) throws SQLException {
+        update.setBigDecimal(1, delta);
+        update.setString(2, iban);
+        update.addBatch();
+    }
+}
@@ -0,0 +1,26 @@
+package esz.dev.account.control;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry of the transaction history of an account. Entries are numbered by their {@code sequence} in the order they
+ * were recorded, the counterparty is only set for transfers.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistoryEntry {
+    public enum Type {
+        WITHDRAW, DEPOSIT, TRANSFER_OUT, TRANSFER_IN
+    }
+
+    private long sequence;
+    private Type type;
+    private BigDecimal amount;
+    private String counterpartyIban;
+    private String timestamp;
+}
@@ -0,0 +1,17 @@
+package esz.dev.account.control;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Page of the history of an account, newest entry first, with the cursor the next page of older entries starts at,
+ * or null if no older entry is kept.
+ */
+@Data
+@AllArgsConstructor
+public class HistoryPage {
+    private final List<HistoryEntry> entries;
+    private final Long nextCursor;
+}
@@ -0,0 +1,80 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the most recent entries of the history of every account, at most as many per account as the
+ * {@code account.history.capacity} setting allows, 32 by default, see {@link AccountHistory}. The history of an
+ * account is allocated with its first entry, so accounts without any transaction take no memory for it, and nothing
+ * is kept if the capacity is zero.
+ * <p>
+ * The history is only kept in memory, it starts empty after a restart.
+ */
+@Singleton
+public class HistoryStore {
+    public static final String CAPACITY = "account.history.capacity";
+
+    private final int capacity;
+    private final Map<String, AccountHistory> histories = new ConcurrentHashMap<>();
+
+    @Inject
+    public HistoryStore(@Named(CAPACITY) int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity of the history can not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records an entry in the history of an account. Only called by the writer changing the balance of the account.
+     *
+     * @param counterparty the other account of a transfer, null otherwise
+     */
+    public void record(Account account, HistoryEntry.Type type, BigDecimal amount, Account counterparty) {
+        if (capacity == 0) {
+            return;
+        }
+        historyOf(account).record(type, amount, counterparty == null ? null : counterparty.getIban(),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Records an entry like {@link #record(Account, HistoryEntry.Type, BigDecimal, Account)} for balances changed
+     * without any lock. The writers of an account take turns on the monitor of its history, so the entries may be
+     * recorded in a slightly different order than the changes were applied.
+     */
+    public void recordConcurrently(Account account, HistoryEntry.Type type, BigDecimal amount, Account counterparty) {
+        if (capacity == 0) {
+            return;
+        }
+        AccountHistory history = historyOf(account);
+        synchronized (history) {
+            history.record(type, amount, counterparty == null ? null : counterparty.getIban(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Reads a page of the history of an account, see {@link AccountHistory#read(long, int)}.
+     */
+    public HistoryPage getHistory(String iban, long cursor, int limit) {
+        AccountHistory history = histories.get(iban);
+        return history == null ? new HistoryPage(Collections.emptyList(), null) : history.read(cursor, limit);
+    }
+
+    private AccountHistory historyOf(Account account) {
+        String iban = account.getIban();
+        AccountHistory history = histories.get(iban);
+        if (history == null) {
+            history = histories.computeIfAbsent(iban, ignored -> new AccountHistory(capacity));
+        }
+        return history;
+    }
+}
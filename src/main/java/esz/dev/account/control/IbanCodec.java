@@ -0,0 +1,138 @@
+package esz.dev.account.control;
+
+/**
+ * Packs the IBANs issued by this bank into a {@code long}. Issued IBANs always look like {@code RO}, two check digits,
+ * {@code XXXX} and a zero-padded 16 digit account number, so the check digits and the account number identify them
+ * completely: the key holds the check digits above the lowest 54 bits and the account number in them.
+ * <p>
+ * Any other IBAN, including those of other banks, has no key and has to be handled as a string.
+ */
+public final class IbanCodec {
+    /**
+     * Returned by {@link #encode(String)} for IBANs not issued by this bank.
+     */
+    public static final long NO_KEY = -1;
+
+    static final String COUNTRY_CODE = "RO";
+    static final String BANK_CODE = "XXXX";
+    static final int ACCOUNT_NUMBER_LENGTH = 16;
+
+    private static final int LENGTH = COUNTRY_CODE.length() + 2 + BANK_CODE.length() + ACCOUNT_NUMBER_LENGTH;
+    private static final int ACCOUNT_NUMBER_OFFSET = LENGTH - ACCOUNT_NUMBER_LENGTH;
+    private static final int CHECK_DIGITS_SHIFT = 54;
+    private static final long MAX_ACCOUNT_NUMBER = 9_999_999_999_999_999L;
+    private static final long HIGHEST_DIGIT = 1_000_000_000_000_000L;
+
+    private IbanCodec() {
+    }
+
+    /**
+     * Computes the key of an IBAN without allocating.
+     *
+     * @return the key, or {@link #NO_KEY} if the IBAN was not issued by this bank
+     */
+    public static long encode(String iban) {
+        if (iban == null || iban.length() != LENGTH || !iban.startsWith(COUNTRY_CODE)
+                || !iban.startsWith(BANK_CODE, COUNTRY_CODE.length() + 2)) {
+            return NO_KEY;
+        }
+        int first = digit(iban.charAt(2));
+        int second = digit(iban.charAt(3));
+        if (first < 0 || second < 0) {
+            return NO_KEY;
+        }
+        long accountNumber = 0;
+        for (int i = ACCOUNT_NUMBER_OFFSET; i < LENGTH; i++) {
+            int digit = digit(iban.charAt(i));
+            if (digit < 0) {
+                return NO_KEY;
+            }
+            accountNumber = accountNumber * 10 + digit;
+        }
+        return ((long) (first * 10 + second) << CHECK_DIGITS_SHIFT) | accountNumber;
+    }
+
+    /**
+     * Restores the IBAN a key was computed from.
+     */
+    public static String decode(long key) {
+        long checkDigits = key >>> CHECK_DIGITS_SHIFT;
+        String accountNumber = Long.toString(accountNumber(key));
+        StringBuilder iban = new StringBuilder(LENGTH).append(COUNTRY_CODE);
+        if (checkDigits < 10) {
+            iban.append('0');
+        }
+        iban.append(checkDigits).append(BANK_CODE);
+        for (int i = accountNumber.length(); i < ACCOUNT_NUMBER_LENGTH; i++) {
+            iban.append('0');
+        }
+        return iban.append(accountNumber).toString();
+    }
+
+    /**
+     * Builds the IBAN of an account number, computing its check digits without allocating.
+     *
+     * @throws IllegalArgumentException if the account number does not fit into 16 digits
+     */
+    public static String issue(long accountNumber) {
+        if (accountNumber < 0 || accountNumber > MAX_ACCOUNT_NUMBER) {
+            throw new IllegalArgumentException("Account number " + accountNumber + " is out of range");
+        }
+        int checkDigits = checkDigits(accountNumber);
+        char[] iban = new char[LENGTH];
+        COUNTRY_CODE.getChars(0, COUNTRY_CODE.length(), iban, 0);
+        iban[2] = (char) ('0' + checkDigits / 10);
+        iban[3] = (char) ('0' + checkDigits % 10);
+        BANK_CODE.getChars(0, BANK_CODE.length(), iban, 4);
+        long remaining = accountNumber;
+        for (int i = LENGTH - 1; i >= ACCOUNT_NUMBER_OFFSET; i--) {
+            iban[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return new String(iban);
+    }
+
+    public static long accountNumber(long key) {
+        return key & ((1L << CHECK_DIGITS_SHIFT) - 1);
+    }
+
+    /**
+     * Checks the check digits of a key, which {@link #encode(String)} takes as they are, against its account number.
+     */
+    static boolean hasValidCheckDigits(long key) {
+        return key >>> CHECK_DIGITS_SHIFT == checkDigits(accountNumber(key));
+    }
+
+    /**
+     * Computes the ISO 13616 check digits: the remainder modulo 97 of the bank code, the account number and the
+     * country code followed by {@code 00}, with letters counted as two digit numbers from {@code A = 10}, subtracted
+     * from 98.
+     */
+    static int checkDigits(long accountNumber) {
+        int remainder = 0;
+        for (int i = 0; i < BANK_CODE.length(); i++) {
+            remainder = (remainder * 100 + Character.getNumericValue(BANK_CODE.charAt(i))) % 97;
+        }
+        for (long divisor = HIGHEST_DIGIT; divisor > 0; divisor /= 10) {
+            remainder = (int) ((remainder * 10 + accountNumber / divisor % 10) % 97);
+        }
+        for (int i = 0; i < COUNTRY_CODE.length(); i++) {
+            remainder = (remainder * 100 + Character.getNumericValue(COUNTRY_CODE.charAt(i))) % 97;
+        }
+        remainder = remainder * 100 % 97;
+        return 98 - remainder;
+    }
+
+    /**
+     * Mixes the bits of a key into an {@code int} hash, spread well enough to pick a lock stripe or a hash table slot.
+     */
+    public static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+}
@@ -0,0 +1,115 @@
+package esz.dev.account.control;
+
+import javax.inject.Singleton;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Issues the IBANs of new accounts. Account numbers are taken from an atomic 64-bit sequence, and a pool of IBANs is
+ * generated ahead of time by a background thread, so opening an account neither takes a lock nor builds an IBAN on
+ * the request thread. When the pool runs dry, IBANs are generated on the calling thread instead.
+ * <p>
+ * A node of a cluster only issues the IBANs of the account numbers it owns, skipping the others, so IBANs issued by
+ * different nodes never collide.
+ */
+@Singleton
+public class IbanIssuer {
+    private static final int DEFAULT_POOL_SIZE = 4096;
+
+    private final int poolSize;
+    private final Predicate<String> owned;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+    private final Queue<String> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private volatile Thread refiller;
+    private volatile boolean running = true;
+
+    public IbanIssuer() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    public IbanIssuer(int poolSize) {
+        this(poolSize, iban -> true);
+    }
+
+    /**
+     * @param owned tells whether an IBAN may be issued by this node
+     */
+    public IbanIssuer(Predicate<String> owned) {
+        this(DEFAULT_POOL_SIZE, owned);
+    }
+
+    public IbanIssuer(int poolSize, Predicate<String> owned) {
+        this.poolSize = poolSize;
+        this.owned = owned;
+    }
+
+    public String issue() {
+        Thread current = refiller != null ? refiller : startRefiller();
+        String iban;
+        while ((iban = pool.poll()) != null) {
+            if (pooled.decrementAndGet() < poolSize / 2) {
+                LockSupport.unpark(current);
+            }
+            // skips IBANs generated before a restored account took their number
+            if (IbanCodec.accountNumber(IbanCodec.encode(iban)) >= floor.get()) {
+                return iban;
+            }
+        }
+        LockSupport.unpark(current);
+        return generate();
+    }
+
+    /**
+     * Marks the account number of an IBAN issued before a restart as taken, so it is never issued again.
+     */
+    public void reserve(String iban) {
+        long key = IbanCodec.encode(iban);
+        if (key != IbanCodec.NO_KEY) {
+            long next = IbanCodec.accountNumber(key) + 1;
+            sequence.accumulateAndGet(next, Math::max);
+            floor.accumulateAndGet(next, Math::max);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        Thread current = refiller;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private String generate() {
+        String iban;
+        do {
+            iban = IbanCodec.issue(sequence.getAndIncrement());
+        } while (!owned.test(iban));
+        return iban;
+    }
+
+    private synchronized Thread startRefiller() {
+        if (refiller == null) {
+            Thread thread = new Thread(this::refill, "iban-issuer");
+            thread.setDaemon(true);
+            thread.start();
+            refiller = thread;
+        }
+        return refiller;
+    }
+
+    private void refill() {
+        while (running) {
+            while (running && pooled.get() < poolSize) {
+                pool.add(generate());
+                pooled.incrementAndGet();
+            }
+            LockSupport.park(this);
+        }
+    }
+}
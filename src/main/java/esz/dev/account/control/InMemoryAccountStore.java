@@ -0,0 +1,60 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.common.ConcurrentLongMap;
+
+import javax.inject.Singleton;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data persistence for bank account objects. This implementation provides an in-memory solution for persistence, and
+ * should not be used in real life scenarios.
+ * <p>
+ * Accounts issued by this bank are keyed by the {@code long} packed from their IBAN by {@link IbanCodec}, so looking
+ * them up neither hashes nor compares strings. Any other IBAN is kept in a map keyed by the string.
+ */
+@Singleton
+public class InMemoryAccountStore implements AccountStore {
+    private final ConcurrentLongMap<Account> issuedAccounts = new ConcurrentLongMap<>();
+    private final Map<String, Account> foreignAccounts = new ConcurrentHashMap<>();
+
+    @Override
+    public void addAccount(Account account) {
+        long key = IbanCodec.encode(account.getIban());
+        if (key != IbanCodec.NO_KEY) {
+            issuedAccounts.put(key, account);
+        } else {
+            foreignAccounts.put(account.getIban(), account);
+        }
+    }
+
+    @Override
+    public Account findAccount(String iban) {
+        long key = IbanCodec.encode(iban);
+        return key != IbanCodec.NO_KEY ? issuedAccounts.get(key) : foreignAccounts.get(iban);
+    }
+
+    @Override
+    public Iterator<Account> accounts() {
+        Iterator<Account> issued = issuedAccounts.values();
+        Iterator<Account> foreign = foreignAccounts.values().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return issued.hasNext() || foreign.hasNext();
+            }
+
+            @Override
+            public Account next() {
+                return issued.hasNext() ? issued.next() : foreign.next();
+            }
+        };
+    }
+
+    @Override
+    public int countAccounts() {
+        return issuedAccounts.size() + foreignAccounts.size();
+    }
+}
@@ -0,0 +1,47 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.journal.entity.JournalRecord;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Balance mutation submitted to a ledger partition. The accounts are resolved by the submitting thread, so partitions
+ * only have to apply the arithmetic.
+ */
+class LedgerCommand {
+    enum Type {
+        WITHDRAW, DEPOSIT, TRANSFER, CREDIT, REFUND
+    }
+
+    final Type type;
+    final Account account;
+    final Account counterparty;
+    final BigDecimal amount;
+    /**
+     * Record the change is journaled as instead of its own, or null.
+     */
+    final JournalRecord journaledAs;
+    /**
+     * Ledger event of a command submitted by a request thread, null for the commands handed over by partitions.
+     */
+    final LedgerEvent event;
+    final long submittedAt = System.nanoTime();
+    final CompletableFuture<Void> result;
+
+    LedgerCommand(Type type, Account account, Account counterparty, BigDecimal amount, CompletableFuture<Void> result) {
+        this(type, account, counterparty, amount, null, null, result);
+    }
+
+    LedgerCommand(Type type, Account account, Account counterparty, BigDecimal amount, JournalRecord journaledAs,
+                  LedgerEvent event, CompletableFuture<Void> result) {
+        this.type = type;
+        this.account = account;
+        this.counterparty = counterparty;
+        this.amount = amount;
+        this.journaledAs = journaledAs;
+        this.event = event;
+        this.result = result;
+    }
+}
@@ -0,0 +1,16 @@
+package esz.dev.account.control;
+
+/**
+ * Execution engine used for applying balance mutations.
+ */
+public enum LedgerEngine {
+    /**
+     * Mutations are applied by the calling thread while holding the locks of the accounts involved.
+     */
+    LOCKING,
+
+    /**
+     * Mutations are routed to single-threaded partitions, each of them owning the accounts hashed to it.
+     */
+    PARTITIONED
+}
@@ -0,0 +1,104 @@
+package esz.dev.account.control;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Flight Recorder event of a banking operation. The duration of the event covers the lock wait and the execution of the
+ * operation up to the append of its journal record, but not the wait for the record to become durable.
+ * <p>
+ * IBANs are recorded as HMAC-SHA256 hashes keyed with a random secret of the process, so recordings can be shared
+ * without the account numbers: the hashes of an account match within the recordings of a process, but can not be
+ * reversed by hashing candidate account numbers. Stack traces are not recorded
+ * and the fields are only filled in when the event is going to be committed, so the event costs next to nothing while
+ * no recording is running.
+ */
+@Name(LedgerEvent.NAME)
+@Label("Ledger Operation")
+@Category({"Bank", "Ledger"})
+@StackTrace(false)
+class LedgerEvent extends Event {
+    static final String NAME = "esz.dev.LedgerOperation";
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec HASH_KEY = new SecretKeySpec(randomBytes(), HASH_ALGORITHM);
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(HASH_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to create the " + HASH_ALGORITHM + " of the ledger events", e);
+        }
+    });
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("IBAN Hash")
+    private int ibanHash;
+
+    @Label("Counterparty IBAN Hash")
+    private int counterpartyHash;
+
+    @Label("Amount Bucket")
+    @Description("Decimal order of magnitude of the amount, 2 for amounts from 100 to 999.99")
+    private int amountBucket;
+
+    @Label("Lock Wait")
+    @Description("Time waiting for the account locks, or queued for its ledger partition with the partitioned engine")
+    @Timespan(Timespan.NANOSECONDS)
+    private long lockWait;
+
+    @Label("Failure")
+    @Description("Simple name of the exception the operation failed with")
+    private String failure;
+
+    static LedgerEvent start() {
+        LedgerEvent event = new LedgerEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if a recording wants it.
+     */
+    void finish(AccountMetrics.Operation operation, String iban, String counterpartyIban, BigDecimal amount,
+                long lockWaitNanos, Throwable failure) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation.name();
+            this.ibanHash = hashOf(iban);
+            this.counterpartyHash = hashOf(counterpartyIban);
+            this.amountBucket = amount == null || amount.signum() == 0 ? 0 : amount.precision() - amount.scale() - 1;
+            this.lockWait = lockWaitNanos;
+            this.failure = failure == null ? null : failure.getClass().getSimpleName();
+            commit();
+        }
+    }
+
+    private static int hashOf(String iban) {
+        if (iban == null) {
+            return 0;
+        }
+        byte[] hash = MACS.get().doFinal(iban.getBytes(StandardCharsets.US_ASCII));
+        return (hash[0] & 0xFF) << 24 | (hash[1] & 0xFF) << 16 | (hash[2] & 0xFF) << 8 | (hash[3] & 0xFF);
+    }
+
+    private static byte[] randomBytes() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+package esz.dev.account.control;
+
+import esz.dev.common.RingBuffer;
+
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Single-threaded partition of the ledger. Commands submitted by request threads arrive through a bounded ring buffer,
+ * while credits handed over by other partitions arrive through an unbounded queue. The handover queue is drained
+ * first and never blocks the sending partition, so two partitions crediting each other can not deadlock.
+ * <p>
+ * Once stopped, the partition fails the submitted commands it has not applied yet and every command submitted
+ * afterwards. The credits and refunds handed over by other partitions are still applied, as their debits already are,
+ * by whichever thread finds them pending.
+ */
+class LedgerPartition implements Runnable {
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int YIELDS_BEFORE_PARK = 10;
+    private static final long PARK_NANOS = 50_000;
+
+    private final RingBuffer<LedgerCommand> commands;
+    private final Queue<LedgerCommand> handovers = new ConcurrentLinkedQueue<>();
+    private final Consumer<LedgerCommand> handler;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    /**
+     * Set by the thread of the partition once it has stopped applying commands.
+     */
+    private volatile boolean stopped;
+    /**
+     * Requests to drain the partition once stopped. The thread taking it from zero drains until no request is left, so
+     * the commands are still applied by one thread at a time, and a thread handing a command over never waits.
+     */
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    LedgerPartition(int index, int capacity, Consumer<LedgerCommand> handler) {
+        this.commands = new RingBuffer<>(capacity);
+        this.handler = handler;
+        this.thread = new Thread(this, "ledger-partition-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the partition and waits until its pending commands have been failed, or applied if they were handed over.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits a command from a request thread, waiting while the ring buffer is full.
+     */
+    void submit(LedgerCommand command) {
+        while (!commands.offer(command)) {
+            if (!running) {
+                reject(command);
+                return;
+            }
+            Thread.yield();
+        }
+        afterAdding();
+    }
+
+    /**
+     * Hands over a command from another partition.
+     */
+    void handover(LedgerCommand command) {
+        handovers.add(command);
+        afterAdding();
+    }
+
+    private void afterAdding() {
+        // orders adding the command before reading running, so either the thread of the partition or this one fails it
+        VarHandle.fullFence();
+        if (running) {
+            wakeUp();
+        } else {
+            drainPending();
+        }
+    }
+
+    private void wakeUp() {
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running) {
+            LedgerCommand command = handovers.poll();
+            if (command == null) {
+                command = commands.poll();
+            }
+            if (command != null) {
+                idle = 0;
+                handler.accept(command);
+            } else if (++idle < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else if (idle < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                parked = true;
+                LockSupport.parkNanos(this, PARK_NANOS);
+                parked = false;
+            }
+        }
+        stopped = true;
+        drainPending();
+    }
+
+    /**
+     * Applies the handed over commands and fails the submitted ones left once the thread of the partition has
+     * stopped. Applying a credit may hand a refund over to another stopped partition, which is then drained by this
+     * thread, unless another one already is.
+     */
+    private void drainPending() {
+        if (!stopped || drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int requests = 1;
+        do {
+            LedgerCommand command;
+            while ((command = handovers.poll()) != null) {
+                handler.accept(command);
+            }
+            while ((command = commands.poll()) != null) {
+                reject(command);
+            }
+            requests = drainRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private void reject(LedgerCommand command) {
+        command.result.completeExceptionally(new IllegalStateException(thread.getName() + " is stopped"));
+    }
+}
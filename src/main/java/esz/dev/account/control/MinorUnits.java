@@ -0,0 +1,46 @@
+package esz.dev.account.control;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversion between decimal amounts and fixed-scale minor units stored in a {@code long}.
+ */
+public final class MinorUnits {
+    /**
+     * Number of decimal places kept for an amount.
+     */
+    public static final int SCALE = 4;
+
+    private static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L};
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Converts an amount into minor units. Whole amounts, which is the common case, are converted without allocating.
+     *
+     * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places or does not fit a long
+     */
+    public static long fromDecimal(BigDecimal amount) {
+        int scale = amount.scale();
+        if (scale == 0) {
+            return Math.multiplyExact(amount.longValueExact(), POWERS_OF_TEN[SCALE]);
+        }
+        if (scale > 0 && scale <= SCALE) {
+            return Math.multiplyExact(amount.unscaledValue().longValueExact(), POWERS_OF_TEN[SCALE - scale]);
+        }
+        return amount.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Checks whether an amount can be converted into minor units without losing precision.
+     */
+    public static boolean isRepresentable(BigDecimal amount) {
+        return amount.stripTrailingZeros().scale() <= SCALE && amount.abs().compareTo(MAX_AMOUNT) <= 0;
+    }
+}
@@ -0,0 +1,211 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.common.ConcurrentLongMap;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.storage.control.MvStoreDatabase;
+import esz.dev.storage.control.StorageException;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.type.ObjectDataType;
+import org.h2.mvstore.type.StringDataType;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Account store keeping the balances in an embedded MVStore, see {@link MvStoreDatabase}. Balances of the IBANs issued
+ * by this bank are keyed by their account number, any other IBAN by the string, and stored with
+ * {@link BalanceDataType}. Account objects are kept in memory by the key {@link IbanCodec} packs from their IBAN, as
+ * with the in-memory store, so the check digits of an IBAN are only verified when its account is loaded.
+ * <p>
+ * Nothing is loaded on startup besides the highest account number, so the startup time does not depend on the number
+ * of accounts. An account object is created from its stored balance the first time it is looked up and kept in memory
+ * from then on, so later lookups are as fast as with the in-memory store and the ledger engines keep changing the same
+ * object. Changes are then added to the stored balances, so they give the right balances in whatever order concurrent
+ * changes are stored, and the two balances of a transfer are always committed together.
+ */
+@Singleton
+public class MvStoreAccountStore implements AccountStore {
+    private final MvStoreDatabase database;
+    private final BalanceMode balanceMode;
+    private final MVMap<Long, BigDecimal> issuedBalances;
+    private final MVMap<String, BigDecimal> foreignBalances;
+    private final ConcurrentLongMap<Account> issuedAccounts = new ConcurrentLongMap<>();
+    private final Map<String, Account> foreignAccounts = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the stored balances, reserving the highest stored account number so no stored IBAN is issued again.
+     */
+    @Inject
+    public MvStoreAccountStore(MvStoreDatabase database, BalanceMode balanceMode, IbanIssuer ibanIssuer) {
+        this.database = database;
+        this.balanceMode = balanceMode;
+        this.issuedBalances = database.openMap("account", new ObjectDataType(), BalanceDataType.INSTANCE);
+        this.foreignBalances = database.openMap("foreignAccount", StringDataType.INSTANCE, BalanceDataType.INSTANCE);
+        Long highestAccountNumber = issuedBalances.lastKey();
+        if (highestAccountNumber != null) {
+            ibanIssuer.reserve(IbanCodec.issue(highestAccountNumber));
+        }
+    }
+
+    /**
+     * Stores the account before it becomes visible, so no change of its balance is stored before the account.
+     */
+    @Override
+    public void addAccount(Account account) {
+        BigDecimal balance = balanceMode == BalanceMode.MINOR_UNITS
+                ? MinorUnits.toDecimal(account.getMinorUnits()) : account.getAmount();
+        long key = IbanCodec.encode(account.getIban());
+        if (isIssued(key)) {
+            database.update(() -> issuedBalances.put(IbanCodec.accountNumber(key), balance));
+            issuedAccounts.put(key, account);
+        } else {
+            database.update(() -> foreignBalances.put(account.getIban(), balance));
+            foreignAccounts.put(account.getIban(), account);
+        }
+    }
+
+    @Override
+    public Account findAccount(String iban) {
+        long key = IbanCodec.encode(iban);
+        if (key != IbanCodec.NO_KEY) {
+            Account account = issuedAccounts.get(key);
+            if (account != null) {
+                return account;
+            }
+            if (IbanCodec.hasValidCheckDigits(key)) {
+                return loadIssuedAccount(key, iban);
+            }
+        }
+        Account account = foreignAccounts.get(iban);
+        return account != null ? account : loadForeignAccount(iban);
+    }
+
+    /**
+     * Iterates over the stored accounts in the order of their keys, reading the balances from the stored version of
+     * the moment the iteration started. The accounts in memory are returned as they are, any other one as a copy made
+     * from its stored balance, which is not kept, so iterating does not load every account into memory.
+     */
+    @Override
+    public Iterator<Account> accounts() {
+        Cursor<Long, BigDecimal> issued = issuedBalances.cursor(null);
+        Cursor<String, BigDecimal> foreign = foreignBalances.cursor(null);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return issued.hasNext() || foreign.hasNext();
+            }
+
+            @Override
+            public Account next() {
+                if (issued.hasNext()) {
+                    String iban = IbanCodec.issue(issued.next());
+                    Account account = issuedAccounts.get(IbanCodec.encode(iban));
+                    return account != null ? account : toAccount(iban, issued.getValue());
+                }
+                String iban = foreign.next();
+                Account account = foreignAccounts.get(iban);
+                return account != null ? account : toAccount(iban, foreign.getValue());
+            }
+        };
+    }
+
+    @Override
+    public int countAccounts() {
+        return (int) (issuedBalances.sizeAsLong() + foreignBalances.sizeAsLong());
+    }
+
+    @Override
+    public void persistChange(JournalRecord.Type type, String iban, String counterpartyIban, BigDecimal amount) {
+        switch (type) {
+            case DEPOSIT:
+                database.update(() -> addToBalance(type, iban, amount));
+                break;
+            case WITHDRAW:
+                database.update(() -> addToBalance(type, iban, amount.negate()));
+                break;
+            case TRANSFER:
+                // both accounts are checked first, so a transfer is never stored half way
+                requireStored(type, iban);
+                requireStored(type, counterpartyIban);
+                database.update(() -> {
+                    addToBalance(type, iban, amount.negate());
+                    addToBalance(type, counterpartyIban, amount);
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Not a change of balances: " + type);
+        }
+    }
+
+    private void addToBalance(JournalRecord.Type type, String iban, BigDecimal delta) {
+        // a changed account has been looked up, so it is in memory under the key of an issued IBAN if it has one
+        long key = IbanCodec.encode(iban);
+        if (key != IbanCodec.NO_KEY && issuedAccounts.get(key) != null) {
+            addToBalance(issuedBalances, IbanCodec.accountNumber(key), delta, type, iban);
+        } else {
+            addToBalance(foreignBalances, iban, delta, type, iban);
+        }
+    }
+
+    private void requireStored(JournalRecord.Type type, String iban) {
+        long key = IbanCodec.encode(iban);
+        boolean stored = key != IbanCodec.NO_KEY && issuedAccounts.get(key) != null
+                ? issuedBalances.containsKey(IbanCodec.accountNumber(key)) : foreignBalances.containsKey(iban);
+        if (!stored) {
+            throw new StorageException("No stored account to change for " + type + " of " + iban, null);
+        }
+    }
+
+    private static <K> void addToBalance(MVMap<K, BigDecimal> balances, K key, BigDecimal delta,
+                                         JournalRecord.Type type, String iban) {
+        while (true) {
+            BigDecimal balance = balances.get(key);
+            if (balance == null) {
+                throw new StorageException("No stored account to change for " + type + " of " + iban, null);
+            }
+            if (balances.replace(key, balance, balance.add(delta))) {
+                return;
+            }
+        }
+    }
+
+    private Account loadIssuedAccount(long key, String iban) {
+        BigDecimal balance = issuedBalances.get(IbanCodec.accountNumber(key));
+        if (balance == null) {
+            return null;
+        }
+        Account account = toAccount(iban, balance);
+        Account existing = issuedAccounts.putIfAbsent(key, account);
+        return existing != null ? existing : account;
+    }
+
+    private Account loadForeignAccount(String iban) {
+        BigDecimal balance = foreignBalances.get(iban);
+        if (balance == null) {
+            return null;
+        }
+        Account account = toAccount(iban, balance);
+        Account existing = foreignAccounts.putIfAbsent(iban, account);
+        return existing != null ? existing : account;
+    }
+
+    private Account toAccount(String iban, BigDecimal balance) {
+        Account account = Account.builder().iban(iban).amount(BigDecimal.ZERO).build();
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            account.setMinorUnits(MinorUnits.fromDecimal(balance));
+        } else {
+            account.setAmount(balance);
+        }
+        return account;
+    }
+
+    private static boolean isIssued(long key) {
+        return key != IbanCodec.NO_KEY && IbanCodec.hasValidCheckDigits(key);
+    }
+}
@@ -0,0 +1,57 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * View of an account kept by {@link OffHeapAccountStore}. The balance is read from and written to the slot of the
+ * account directly, so changes made through the view are visible to every other view of the same account.
+ */
+class OffHeapAccount extends Account {
+    private final OffHeapAccountStore store;
+    private final int slot;
+
+    OffHeapAccount(OffHeapAccountStore store, int slot, String iban) {
+        this.store = store;
+        this.slot = slot;
+        setIban(iban);
+    }
+
+    @Override
+    public long getMinorUnits() {
+        return store.balance(slot);
+    }
+
+    @Override
+    public void setMinorUnits(long minorUnits) {
+        store.setBalance(slot, minorUnits);
+    }
+
+    @Override
+    public boolean compareAndSetMinorUnits(long expected, long value) {
+        return store.compareAndSetBalance(slot, expected, value);
+    }
+
+    @Override
+    public BigDecimal getAmount() {
+        return MinorUnits.toDecimal(getMinorUnits());
+    }
+
+    @Override
+    public void setAmount(BigDecimal amount) {
+        setMinorUnits(MinorUnits.fromDecimal(amount));
+    }
+
+    /**
+     * The balance is a single word of the slot, so it is read as is.
+     */
+    @Override
+    public BigDecimal readAmount() {
+        return getAmount();
+    }
+
+    long getVersion() {
+        return store.version(slot);
+    }
+}
@@ -0,0 +1,293 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Account store keeping the accounts in direct memory, so millions of accounts add next to nothing to the heap and to
+ * the work of the garbage collector.
+ * <p>
+ * Every account owns a fixed-size slot of {@code [long balance][long version][byte length][IBAN bytes]}, with the
+ * balance held in minor units and the version incremented on every change of the balance. Slots are found through an
+ * open-addressing index of {@code [int hash][int slot + 1]} entries with linear probing. Both are split into pages, so
+ * their size is not limited by the maximum size of a single buffer. Slots are allocated page by page as accounts are
+ * added, while the index is allocated up front for the configured capacity.
+ * <p>
+ * Accounts are never removed, so an index entry never changes once it has been published. Lookups take no lock and
+ * return a new view of the slot every time, see {@link OffHeapAccount}: keeping a view per account would put the
+ * accounts back on the heap.
+ */
+public class OffHeapAccountStore implements AccountStore {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    static final int SLOT_SIZE = 64;
+    static final int MAX_IBAN_LENGTH = 34;
+    private static final int BALANCE_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int IBAN_OFFSET = 17;
+    private static final int SLOT_PAGE_SHIFT = 20;
+    private static final int INDEX_PAGE_SHIFT = 24;
+
+    private final int capacity;
+    private final AtomicReferenceArray<ByteBuffer> slotPages;
+    private final ByteBuffer[] indexPages;
+    private final long indexMask;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param capacity maximum number of accounts, the index is sized to stay at most half full with this many
+     */
+    public OffHeapAccountStore(int capacity) {
+        if (capacity <= 0 || capacity >= Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid account store capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.slotPages = new AtomicReferenceArray<>((int) ((capacity + (1L << SLOT_PAGE_SHIFT) - 1) >> SLOT_PAGE_SHIFT));
+        long indexSize = Long.highestOneBit(capacity * 2L - 1) << 1;
+        this.indexMask = indexSize - 1;
+        int indexPageSize = (int) Math.min(indexSize, 1L << INDEX_PAGE_SHIFT);
+        this.indexPages = new ByteBuffer[(int) (indexSize / indexPageSize)];
+        for (int i = 0; i < indexPages.length; i++) {
+            indexPages[i] = ByteBuffer.allocateDirect(indexPageSize * Long.BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Adds an account with the balance held in its minor units.
+     *
+     * @throws IllegalStateException if the store is full
+     * @throws IllegalArgumentException if the IBAN is longer than an IBAN can be or is not ASCII, or if an account with
+     *                                  the same IBAN already exists
+     */
+    @Override
+    public void addAccount(Account account) {
+        String iban = account.getIban();
+        if (iban.length() > MAX_IBAN_LENGTH || !iban.chars().allMatch(c -> c < 128)) {
+            throw new IllegalArgumentException("Invalid IBAN " + iban);
+        }
+        if (findSlot(iban) >= 0) {
+            throw duplicate(iban);
+        }
+        int hash = hash(iban);
+        long position = hash & indexMask;
+        int slot = -1;
+        while (true) {
+            long entry = indexEntry(position);
+            if (entry == 0) {
+                if (slot < 0) {
+                    slot = allocateSlot(iban, account.getMinorUnits());
+                }
+                if (casIndexEntry(position, ((long) hash << 32) | (slot + 1L))) {
+                    count.incrementAndGet();
+                    return;
+                }
+                entry = indexEntry(position);
+            }
+            if ((int) (entry >>> 32) == hash && ibanEquals((int) entry - 1, iban)) {
+                // only happens when the same IBAN is added concurrently, a slot allocated in the meantime is left unused
+                throw duplicate(iban);
+            }
+            position = (position + 1) & indexMask;
+        }
+    }
+
+    @Override
+    public Account findAccount(String iban) {
+        int slot = findSlot(iban);
+        return slot < 0 ? null : new OffHeapAccount(this, slot, iban);
+    }
+
+    /**
+     * Walks the index rather than the slots, so a slot left unused by adding the same IBAN concurrently is never
+     * returned.
+     */
+    @Override
+    public Iterator<Account> accounts() {
+        return new Iterator<>() {
+            private long position;
+            private int slot = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (slot < 0 && position <= indexMask) {
+                    slot = (int) indexEntry(position++) - 1;
+                }
+                return slot >= 0;
+            }
+
+            @Override
+            public Account next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Account account = new OffHeapAccount(OffHeapAccountStore.this, slot, iban(slot));
+                slot = -1;
+                return account;
+            }
+        };
+    }
+
+    @Override
+    public int countAccounts() {
+        return count.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Bytes of direct memory reserved by the store.
+     */
+    public long countReservedBytes() {
+        long bytes = 0;
+        for (ByteBuffer page : indexPages) {
+            bytes += page.capacity();
+        }
+        for (int i = 0; i < slotPages.length(); i++) {
+            ByteBuffer page = slotPages.get(i);
+            if (page != null) {
+                bytes += page.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    long balance(int slot) {
+        return (long) LONGS.getVolatile(slotPage(slot), slotOffset(slot) + BALANCE_OFFSET);
+    }
+
+    void setBalance(int slot, long balance) {
+        ByteBuffer page = slotPage(slot);
+        int offset = slotOffset(slot);
+        LONGS.setVolatile(page, offset + BALANCE_OFFSET, balance);
+        LONGS.getAndAdd(page, offset + VERSION_OFFSET, 1L);
+    }
+
+    boolean compareAndSetBalance(int slot, long expected, long balance) {
+        ByteBuffer page = slotPage(slot);
+        int offset = slotOffset(slot);
+        if (LONGS.compareAndSet(page, offset + BALANCE_OFFSET, expected, balance)) {
+            LONGS.getAndAdd(page, offset + VERSION_OFFSET, 1L);
+            return true;
+        }
+        return false;
+    }
+
+    long version(int slot) {
+        return (long) LONGS.getVolatile(slotPage(slot), slotOffset(slot) + VERSION_OFFSET);
+    }
+
+    private int findSlot(String iban) {
+        int hash = hash(iban);
+        long position = hash & indexMask;
+        while (true) {
+            long entry = indexEntry(position);
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == hash && ibanEquals((int) entry - 1, iban)) {
+                return (int) entry - 1;
+            }
+            position = (position + 1) & indexMask;
+        }
+    }
+
+    /**
+     * Takes the next free slot and writes the account into it. The slot is published later by the index entry
+     * pointing to it.
+     */
+    private int allocateSlot(String iban, long balance) {
+        int slot = nextSlot.getAndIncrement();
+        if (slot >= capacity) {
+            nextSlot.decrementAndGet();
+            throw new IllegalStateException("Account store is full with " + capacity + " accounts");
+        }
+        ByteBuffer page = slotPage(slot);
+        int offset = slotOffset(slot);
+        page.putLong(offset + BALANCE_OFFSET, balance);
+        page.putLong(offset + VERSION_OFFSET, 0L);
+        page.put(offset + LENGTH_OFFSET, (byte) iban.length());
+        for (int i = 0; i < iban.length(); i++) {
+            page.put(offset + IBAN_OFFSET + i, (byte) iban.charAt(i));
+        }
+        return slot;
+    }
+
+    private String iban(int slot) {
+        ByteBuffer page = slotPage(slot);
+        int offset = slotOffset(slot);
+        byte[] iban = new byte[page.get(offset + LENGTH_OFFSET)];
+        for (int i = 0; i < iban.length; i++) {
+            iban[i] = page.get(offset + IBAN_OFFSET + i);
+        }
+        return new String(iban, StandardCharsets.US_ASCII);
+    }
+
+    private boolean ibanEquals(int slot, String iban) {
+        ByteBuffer page = slotPage(slot);
+        int offset = slotOffset(slot);
+        if (page.get(offset + LENGTH_OFFSET) != iban.length()) {
+            return false;
+        }
+        for (int i = 0; i < iban.length(); i++) {
+            if (page.get(offset + IBAN_OFFSET + i) != (byte) iban.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer slotPage(int slot) {
+        int index = slot >>> SLOT_PAGE_SHIFT;
+        ByteBuffer page = slotPages.get(index);
+        if (page == null) {
+            synchronized (slotPages) {
+                page = slotPages.get(index);
+                if (page == null) {
+                    int pageSlots = Math.min(1 << SLOT_PAGE_SHIFT, capacity - (index << SLOT_PAGE_SHIFT));
+                    page = ByteBuffer.allocateDirect(pageSlots * SLOT_SIZE).order(ByteOrder.nativeOrder());
+                    slotPages.set(index, page);
+                }
+            }
+        }
+        return page;
+    }
+
+    private static int slotOffset(int slot) {
+        return (slot & ((1 << SLOT_PAGE_SHIFT) - 1)) * SLOT_SIZE;
+    }
+
+    private long indexEntry(long position) {
+        return (long) LONGS.getVolatile(indexPages[(int) (position >>> INDEX_PAGE_SHIFT)], indexOffset(position));
+    }
+
+    private boolean casIndexEntry(long position, long entry) {
+        return LONGS.compareAndSet(indexPages[(int) (position >>> INDEX_PAGE_SHIFT)], indexOffset(position), 0L, entry);
+    }
+
+    private static int indexOffset(long position) {
+        return (int) (position & ((1 << INDEX_PAGE_SHIFT) - 1)) * Long.BYTES;
+    }
+
+    private static IllegalArgumentException duplicate(String iban) {
+        return new IllegalArgumentException("Account with IBAN " + iban + " already exists");
+    }
+
+    private static int hash(String iban) {
+        long key = IbanCodec.encode(iban);
+        int hash = key != IbanCodec.NO_KEY ? IbanCodec.hash(key) : iban.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
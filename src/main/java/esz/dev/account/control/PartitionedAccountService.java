@@ -0,0 +1,329 @@
+package esz.dev.account.control;
+
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.user.control.UserStore;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation for banking transactions on top of single-writer ledger partitions. Every account is owned by the
+ * partition its IBAN hashes to, and only the owning partition changes its balance, so no locks are taken.
+ * <p>
+ * A transfer is sent to the partition of the sender, which persists the transfer, debits the sender and, when the
+ * receiver is owned by another partition, hands the credit over to that partition. Both accounts are resolved before
+ * the transfer is submitted and accounts are never removed, so a credit only fails when it would overflow the
+ * minor-units balance of the receiver. The partition of the receiver then persists the reverse transfer and hands a
+ * refund back to the partition of the sender.
+ * <p>
+ * The ledger events of the commands report the time they spent queued for their partition as their lock wait. The
+ * event of a transfer to an account of another partition ends once the credit is handed over.
+ */
+@Singleton
+public class PartitionedAccountService extends AccountService {
+    public static final String PARTITIONS = "account.engine.partitions";
+    public static final String RING_CAPACITY = "account.engine.ringCapacity";
+
+    private final BalanceMode balanceMode;
+    private final LedgerPartition[] partitions;
+
+    @Inject
+    public PartitionedAccountService(AccountStore accountStore, UserStore userStore, AccountLocks accountLocks,
+                                     Journal journal, IbanIssuer ibanIssuer, AccountMetrics accountMetrics,
+                                     HistoryStore historyStore, BalanceMode balanceMode,
+                                     @Named(PARTITIONS) int partitions, @Named(RING_CAPACITY) int ringCapacity) {
+        super(accountStore, userStore, accountLocks, journal, ibanIssuer, accountMetrics, historyStore);
+        this.balanceMode = balanceMode;
+        this.partitions = new LedgerPartition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new LedgerPartition(i, ringCapacity, this::apply);
+            this.partitions[i].start();
+        }
+    }
+
+    /**
+     * Reads the balance without waiting for the partition owning the account, balances are only ever set to the
+     * outcome of a completed command.
+     */
+    @Override
+    protected BigDecimal balanceOf(Account account) {
+        return balanceMode == BalanceMode.MINOR_UNITS ? MinorUnits.toDecimal(account.getMinorUnits()) : account.readAmount();
+    }
+
+    /**
+     * Transfers are debited and credited by the partitions of the accounts independently, so there is no point in time
+     * when no money is in flight, and only exports which are not consistent are supported.
+     */
+    @Override
+    public BalanceExport exportBalances(boolean consistent) throws ExportUnavailableException {
+        if (consistent) {
+            throw new ExportUnavailableException("Consistent exports are not supported by the partitioned engine!");
+        }
+        return super.exportBalances(false);
+    }
+
+    @Override
+    public void withdraw(AmountDto amountDto) throws AccountNotFoundException, NotEnoughAmountException {
+        await(withdrawAsync(amountDto));
+    }
+
+    @Override
+    public void deposit(AmountDto amountDto) throws AccountNotFoundException {
+        awaitCredit(depositAsync(amountDto));
+    }
+
+    @Override
+    public void transfer(TransferAmountDto transferAmountDto) throws AccountNotFoundException, NotEnoughAmountException {
+        await(transferAsync(transferAmountDto));
+    }
+
+    @Override
+    public CompletableFuture<Void> withdrawAsync(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        Account account;
+        try {
+            account = getAccountOrElseThrow(amountDto.getIban());
+        } catch (AccountNotFoundException e) {
+            event.finish(AccountMetrics.Operation.WITHDRAW, amountDto.getIban(), null, amountDto.getAmount(), 0, e);
+            throw e;
+        }
+        return submit(new LedgerCommand(LedgerCommand.Type.WITHDRAW, account, null, amountDto.getAmount(), journaledAs,
+                event, new CompletableFuture<>()));
+    }
+
+    @Override
+    public CompletableFuture<Void> depositAsync(AmountDto amountDto, JournalRecord journaledAs) throws AccountNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        Account account;
+        try {
+            account = getAccountOrElseThrow(amountDto.getIban());
+        } catch (AccountNotFoundException e) {
+            event.finish(AccountMetrics.Operation.DEPOSIT, amountDto.getIban(), null, amountDto.getAmount(), 0, e);
+            throw e;
+        }
+        return submit(new LedgerCommand(LedgerCommand.Type.DEPOSIT, account, null, amountDto.getAmount(), journaledAs,
+                event, new CompletableFuture<>()));
+    }
+
+    @Override
+    public CompletableFuture<Void> transferAsync(TransferAmountDto transferAmountDto) throws AccountNotFoundException {
+        LedgerEvent event = LedgerEvent.start();
+        Account sender;
+        Account receiver;
+        try {
+            sender = getAccountOrElseThrow(transferAmountDto.getSenderIban());
+            receiver = getAccountOrElseThrow(transferAmountDto.getReceiverIban());
+        } catch (AccountNotFoundException e) {
+            event.finish(AccountMetrics.Operation.TRANSFER, transferAmountDto.getSenderIban(),
+                    transferAmountDto.getReceiverIban(), transferAmountDto.getAmount(), 0, e);
+            throw e;
+        }
+        return submit(new LedgerCommand(LedgerCommand.Type.TRANSFER, sender, receiver, transferAmountDto.getAmount(),
+                null, event, new CompletableFuture<>()));
+    }
+
+    @Override
+    public void restoreBalance(String iban, BigDecimal delta) throws AccountNotFoundException {
+        Account account = getAccountOrElseThrow(iban);
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            account.setMinorUnits(account.getMinorUnits() + MinorUnits.fromDecimal(delta));
+        } else {
+            account.setAmount(account.getAmount().add(delta));
+        }
+    }
+
+    /**
+     * Readers of minor-units balances may observe the amount in flight between the two updates, as they may on the
+     * primary.
+     */
+    @Override
+    public void restoreTransfer(String senderIban, String receiverIban, BigDecimal amount) throws AccountNotFoundException {
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            restoreBalance(senderIban, amount.negate());
+            restoreBalance(receiverIban, amount);
+        } else {
+            super.restoreTransfer(senderIban, receiverIban, amount);
+        }
+    }
+
+    /**
+     * Stops the partition threads. Commands not applied yet and commands submitted afterwards fail with an
+     * {@link IllegalStateException}, except the credits of transfers already debited, and their refunds, which are
+     * still applied.
+     */
+    public void shutdown() {
+        for (LedgerPartition partition : partitions) {
+            partition.stop();
+        }
+    }
+
+    private CompletableFuture<Void> submit(LedgerCommand command) {
+        partitionOf(command.account).submit(command);
+        return command.result;
+    }
+
+    private LedgerPartition partitionOf(Account account) {
+        int hash = account.getIban().hashCode();
+        return partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)];
+    }
+
+    /**
+     * Applies a command on the thread of the partition owning {@code command.account}.
+     */
+    private void apply(LedgerCommand command) {
+        long queueWait = System.nanoTime() - command.submittedAt;
+        try {
+            switch (command.type) {
+                case WITHDRAW:
+                    checkFunds(command.account, command.amount);
+                    persistChange(JournalRecord.Type.WITHDRAW, command.account.getIban(), null, command.amount);
+                    debit(command.account, command.amount);
+                    historyStore.record(command.account, HistoryEntry.Type.WITHDRAW, command.amount, null);
+                    commit(command, JournalRecord.Type.WITHDRAW, command.account, null);
+                    finishEvent(command, queueWait, null);
+                    break;
+                case DEPOSIT:
+                    checkCredit(command.account, command.amount);
+                    persistChange(JournalRecord.Type.DEPOSIT, command.account.getIban(), null, command.amount);
+                    credit(command.account, command.amount);
+                    historyStore.record(command.account, HistoryEntry.Type.DEPOSIT, command.amount, null);
+                    commit(command, JournalRecord.Type.DEPOSIT, command.account, null);
+                    finishEvent(command, queueWait, null);
+                    break;
+                case CREDIT:
+                    // persisted by the partition of the sender, along with the debit
+                    if (!fits(command.account, command.amount)) {
+                        // the store already holds the transfer, so the refund is persisted as the reverse transfer
+                        persistChange(JournalRecord.Type.TRANSFER, command.account.getIban(),
+                                command.counterparty.getIban(), command.amount);
+                        partitionOf(command.counterparty).handover(new LedgerCommand(LedgerCommand.Type.REFUND,
+                                command.counterparty, command.account, command.amount, command.result));
+                        break;
+                    }
+                    credit(command.account, command.amount);
+                    historyStore.record(command.account, HistoryEntry.Type.TRANSFER_IN, command.amount, command.counterparty);
+                    commit(command, JournalRecord.Type.TRANSFER, command.counterparty, command.account);
+                    break;
+                case REFUND:
+                    credit(command.account, command.amount);
+                    historyStore.record(command.account, HistoryEntry.Type.TRANSFER_IN, command.amount, command.counterparty);
+                    command.result.completeExceptionally(new BalanceOverflowException("The balance of the account with "
+                            + "iban " + command.counterparty.getIban() + " can not hold the transfer"));
+                    break;
+                case TRANSFER:
+                    checkFunds(command.account, command.amount);
+                    LedgerPartition receiverPartition = partitionOf(command.counterparty);
+                    boolean local = receiverPartition == partitionOf(command.account);
+                    if (local) {
+                        checkCredit(command.counterparty, command.amount);
+                    }
+                    persistChange(JournalRecord.Type.TRANSFER, command.account.getIban(), command.counterparty.getIban(),
+                            command.amount);
+                    debit(command.account, command.amount);
+                    historyStore.record(command.account, HistoryEntry.Type.TRANSFER_OUT, command.amount, command.counterparty);
+                    if (local) {
+                        credit(command.counterparty, command.amount);
+                        historyStore.record(command.counterparty, HistoryEntry.Type.TRANSFER_IN, command.amount, command.account);
+                        commit(command, JournalRecord.Type.TRANSFER, command.account, command.counterparty);
+                    } else {
+                        receiverPartition.handover(new LedgerCommand(LedgerCommand.Type.CREDIT, command.counterparty,
+                                command.account, command.amount, command.result));
+                    }
+                    finishEvent(command, queueWait, null);
+                    break;
+            }
+        } catch (NotEnoughAmountException | RuntimeException e) {
+            finishEvent(command, queueWait, e);
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Finishes the ledger event of a command submitted by a request thread, with the time it was queued for the
+     * partition as its lock wait.
+     */
+    private static void finishEvent(LedgerCommand command, long queueWait, Throwable failure) {
+        if (command.event == null) {
+            return;
+        }
+        AccountMetrics.Operation operation = command.type == LedgerCommand.Type.WITHDRAW ? AccountMetrics.Operation.WITHDRAW
+                : command.type == LedgerCommand.Type.DEPOSIT ? AccountMetrics.Operation.DEPOSIT
+                : AccountMetrics.Operation.TRANSFER;
+        command.event.finish(operation, command.account.getIban(),
+                command.counterparty == null ? null : command.counterparty.getIban(), command.amount, queueWait, failure);
+    }
+
+    /**
+     * Completes a command once its journal record is durable. A transfer is journaled by the partition applying its
+     * credit, so a crash in between the debit and the credit loses neither money nor an acknowledged transfer.
+     */
+    private void commit(LedgerCommand command, JournalRecord.Type type, Account account, Account counterparty) {
+        CompletableFuture<Void> durable = appendToJournal(command.journaledAs, type, account.getIban(),
+                counterparty == null ? null : counterparty.getIban(), command.amount);
+        if (durable == Journal.DURABLE) {
+            command.result.complete(null);
+            return;
+        }
+        durable.whenComplete((result, failure) -> {
+            if (failure != null) {
+                command.result.completeExceptionally(failure);
+            } else {
+                command.result.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Checks that a debit can be applied, before it is persisted. Only the partition of the account changes its
+     * balance, so the debit still can once persisted.
+     */
+    private void checkFunds(Account account, BigDecimal value) throws NotEnoughAmountException {
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            if (account.getMinorUnits() < MinorUnits.fromDecimal(value)) {
+                throw new NotEnoughAmountException("Not enough amount on account with iban " + account.getIban());
+            }
+        } else {
+            subtractOrElseThrow(account, value);
+        }
+    }
+
+    /**
+     * Checks that a credit can be applied, before it is persisted.
+     *
+     * @throws BalanceOverflowException if the credit would overflow the minor-units balance of the account
+     */
+    private void checkCredit(Account account, BigDecimal value) {
+        if (!fits(account, value)) {
+            throw new BalanceOverflowException("The balance of the account with iban " + account.getIban()
+                    + " can not hold the amount");
+        }
+    }
+
+    private boolean fits(Account account, BigDecimal value) {
+        if (balanceMode != BalanceMode.MINOR_UNITS) {
+            return true;
+        }
+        return MinorUnits.fromDecimal(value) <= Long.MAX_VALUE - account.getMinorUnits();
+    }
+
+    private void debit(Account account, BigDecimal value) {
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            account.setMinorUnits(account.getMinorUnits() - MinorUnits.fromDecimal(value));
+        } else {
+            account.setAmount(account.getAmount().subtract(value));
+        }
+    }
+
+    private void credit(Account account, BigDecimal value) {
+        if (balanceMode == BalanceMode.MINOR_UNITS) {
+            account.setMinorUnits(Math.addExact(account.getMinorUnits(), MinorUnits.fromDecimal(value)));
+        } else {
+            account.setAmount(account.getAmount().add(value));
+        }
+    }
+}
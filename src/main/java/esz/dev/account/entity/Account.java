@@ -1,15 +1,28 @@
 package esz.dev.account.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Wither;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
 
 /**
- * Entity class for bank accounts.
+ * Entity class for bank accounts. Depending on the configured balance mode, the balance of the account is held either
+ * in {@code amount} or in {@code minorUnits}.
+ * <p>
+ * Writers changing {@code amount} under the lock of the account bracket their changes with {@link #beginWrite()} and
+ * {@link #endWrite()}, which make the version of the account odd while the change is in progress. Readers never lock:
+ * {@link #readAmount()} retries until it reads the balance under the same even version, so it only ever returns
+ * balances of completed transactions.
  */
 @Data
 @AllArgsConstructor
@@ -17,6 +30,60 @@ import java.math.BigDecimal;
 @Builder
 @Wither
 public class Account {
+    private static final VarHandle MINOR_UNITS;
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            MINOR_UNITS = MethodHandles.lookup().findVarHandle(Account.class, "minorUnits", long.class);
+            VERSION = MethodHandles.lookup().findVarHandle(Account.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String iban;
-    private BigDecimal amount;
+    private volatile BigDecimal amount;
+    private volatile long minorUnits;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @Wither(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile long version;
+
+    public boolean compareAndSetMinorUnits(long expected, long value) {
+        return MINOR_UNITS.compareAndSet(this, expected, value);
+    }
+
+    /**
+     * Marks the start of a change of the balance. Only called by the writer holding the lock of the account.
+     */
+    public void beginWrite() {
+        VERSION.getAndAdd(this, 1L);
+    }
+
+    /**
+     * Marks the end of a change of the balance started by {@link #beginWrite()}.
+     */
+    public void endWrite() {
+        VERSION.getAndAdd(this, 1L);
+    }
+
+    /**
+     * Reads the balance held in {@code amount} without locking, spinning while a change of the balance is in
+     * progress. Neither allocates nor blocks the writers.
+     */
+    public BigDecimal readAmount() {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                BigDecimal current = amount;
+                if (version == before) {
+                    return current;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package esz.dev.admin.boundary;
+
+import io.jooby.Route;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+
+/**
+ * Route decorator guarding the admin end-points. A request to one of the given path prefixes is only served with the
+ * admin token in its {@code Authorization} header, as {@code Bearer <token>}. Without a configured token these
+ * end-points are not served at all.
+ */
+public class AdminAuthentication implements Route.Decorator {
+    public static final int MIN_TOKEN_LENGTH = 32;
+    private static final String SCHEME = "Bearer ";
+
+    private final byte[] token;
+    private final Set<String> prefixes;
+
+    /**
+     * @param token    the admin token, or null if the admin end-points are disabled
+     * @param prefixes path prefixes of the guarded end-points
+     */
+    public AdminAuthentication(String token, Set<String> prefixes) {
+        if (token != null && token.length() < MIN_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("The admin token must have at least " + MIN_TOKEN_LENGTH + " characters");
+        }
+        this.token = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+        this.prefixes = prefixes;
+    }
+
+    @Override
+    public Route.Handler apply(Route.Handler next) {
+        return context -> {
+            String path = context.getRoute().getPattern();
+            if (prefixes.stream().noneMatch(path::startsWith)) {
+                return next.apply(context);
+            }
+            if (token == null) {
+                throw new AdminAuthenticationException("The admin end-points are disabled, admin.token is not set!");
+            }
+            String authorization = context.header("Authorization").valueOrNull();
+            if (authorization == null || !authorization.startsWith(SCHEME) || !MessageDigest.isEqual(token,
+                    authorization.substring(SCHEME.length()).getBytes(StandardCharsets.UTF_8))) {
+                throw new AdminAuthenticationException("A valid admin token is required for " + context.pathString() + "!");
+            }
+            return next.apply(context);
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package esz.dev.admin.boundary;
+
+/**
+ * Exception which should be thrown in case an admin end-point is requested without the admin token.
+ */
+public class AdminAuthenticationException extends Exception {
+    public AdminAuthenticationException(String what) {
+        super(what);
+    }
+}
@@ -0,0 +1,154 @@
+package esz.dev.cluster.boundary;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.account.boundary.ValidationService;
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AmountDto;
+import esz.dev.cluster.control.ClusterAuthenticator;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.HttpShardClient;
+import esz.dev.cluster.control.UnknownTransferException;
+import esz.dev.common.ResponseDto;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Internal listener receiving the messages of the transfers between shards from the other nodes of the cluster, see
+ * {@link CrossShardTransfers}. It runs next to the REST server, on its own address, and only handles the messages
+ * signed with the secret of the cluster, see {@link ClusterAuthenticator}. The credits to prepare are validated as the
+ * REST end-points validate amounts.
+ */
+@Singleton
+public class ClusterServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterServer.class);
+    /**
+     * Size above which a body is rejected before it is authenticated, far above the size of a credit.
+     */
+    private static final int MAX_BODY_SIZE = 4096;
+
+    private final CrossShardTransfers crossShardTransfers;
+    private final ClusterAuthenticator authenticator;
+    private final ValidationService validationService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @Inject
+    public ClusterServer(CrossShardTransfers crossShardTransfers, ClusterAuthenticator authenticator,
+                         ValidationService validationService) {
+        this.crossShardTransfers = crossShardTransfers;
+        this.authenticator = authenticator;
+        this.validationService = validationService;
+    }
+
+    /**
+     * @param address the address to listen on, port 0 for any free port
+     * @param threads the number of threads handling the messages
+     */
+    public synchronized void start(InetSocketAddress address, int threads) throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("cluster-internal", true));
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(HttpShardClient.TRANSFER_PATH + "/", this::handle);
+        server.start();
+        LOGGER.info("Serving the messages of the cluster on {}", server.getAddress());
+    }
+
+    /**
+     * @return the port listened on, or -1 if the listener is not started
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is allowed");
+                return;
+            }
+            byte[] body;
+            try (InputStream stream = exchange.getRequestBody()) {
+                body = stream.readNBytes(MAX_BODY_SIZE + 1);
+            }
+            if (body.length > MAX_BODY_SIZE) {
+                respond(exchange, 413, "Message larger than " + MAX_BODY_SIZE + " bytes");
+                return;
+            }
+            if (!authenticator.verify(exchange.getRequestHeaders().getFirst(ClusterAuthenticator.HEADER), path, body)) {
+                LOGGER.warn("Rejected a message to {} from {} without a valid signature", path, exchange.getRemoteAddress());
+                respond(exchange, 401, "Invalid signature");
+                return;
+            }
+            String[] segments = path.substring(HttpShardClient.TRANSFER_PATH.length() + 1).split("/");
+            if (segments.length != 2 || segments[0].isEmpty()) {
+                respond(exchange, 404, "Unknown message " + path);
+                return;
+            }
+            String transferId = segments[0];
+            switch (segments[1]) {
+                case "prepare":
+                    AmountDto credit = objectMapper.readValue(body, AmountDto.class);
+                    validationService.validate(credit);
+                    crossShardTransfers.prepare(transferId, credit);
+                    respond(exchange, 200, "Prepared transfer " + transferId);
+                    break;
+                case "commit":
+                    crossShardTransfers.commit(transferId);
+                    respond(exchange, 200, "Committed transfer " + transferId);
+                    break;
+                case "abort":
+                    crossShardTransfers.abort(transferId);
+                    respond(exchange, 200, "Aborted transfer " + transferId);
+                    break;
+                default:
+                    respond(exchange, 404, "Unknown message " + path);
+            }
+        } catch (JsonProcessingException | InvalidInputException e) {
+            respond(exchange, 400, e.getMessage());
+        } catch (AccountNotFoundException e) {
+            respond(exchange, 404, e.getMessage());
+        } catch (UnknownTransferException e) {
+            respond(exchange, 410, e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to handle the message to {}", exchange.getRequestURI(), e);
+            respond(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(new ResponseDto(
+                status == 200 ? ResponseDto.Status.SUCCESS : ResponseDto.Status.FAILURE, message));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
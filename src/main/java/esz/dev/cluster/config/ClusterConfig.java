@@ -0,0 +1,96 @@
+package esz.dev.cluster.config;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import com.typesafe.config.Config;
+import esz.dev.account.control.IbanIssuer;
+import esz.dev.cluster.control.ClusterAuthenticator;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.HttpShardClient;
+import esz.dev.cluster.control.ShardClient;
+import esz.dev.server.RequestExecution;
+import esz.dev.user.control.UserIds;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration for Guice to run the application as a node of a cluster, or on its own, according to the application
+ * configuration.
+ */
+public class ClusterConfig extends AbstractModule {
+    private final Config config;
+    private final RequestExecution execution;
+    private final ClusterTopology topology;
+
+    public ClusterConfig(Config config, RequestExecution execution) {
+        this.config = config;
+        this.execution = execution;
+        List<String> nodes = config.hasPath("cluster.nodes") ? config.getStringList("cluster.nodes") : List.of();
+        this.topology = nodes.isEmpty() ? ClusterTopology.standalone()
+                : new ClusterTopology(nodes, config.getInt("cluster.self"));
+    }
+
+    public boolean isClustered() {
+        return topology.isClustered();
+    }
+
+    /**
+     * @return the address of the internal listener of this node, which receives the messages of the other nodes
+     */
+    public InetSocketAddress internalAddress() {
+        URI url = URI.create(internalUrls().get(topology.self()));
+        return new InetSocketAddress(url.getHost(), url.getPort());
+    }
+
+    public int internalThreads() {
+        return config.hasPath("cluster.internalThreads") ? config.getInt("cluster.internalThreads") : 4;
+    }
+
+    @Override
+    protected void configure() {
+        bind(ClusterTopology.class).toInstance(topology);
+        bind(UserIds.class).toInstance(new UserIds(topology.self(), topology.size()));
+        Duration requestTimeout = config.hasPath("cluster.requestTimeout") ? config.getDuration("cluster.requestTimeout")
+                : Duration.ofSeconds(5);
+        long prepareTtlMillis = (config.hasPath("cluster.prepareTtl") ? config.getDuration("cluster.prepareTtl")
+                : Duration.ofHours(1)).toMillis();
+        bindConstant().annotatedWith(Names.named(CrossShardTransfers.PREPARE_TTL_MILLIS)).to(prepareTtlMillis);
+        if (!topology.isClustered()) {
+            bind(ShardClient.class).toInstance(new HttpShardClient(List.of(), requestTimeout, null));
+            return;
+        }
+        if (execution == RequestExecution.NON_BLOCKING) {
+            addError("A node of a cluster waits for the other nodes, server.execution can not be non-blocking");
+        }
+        if (!config.hasPath("journal.enabled") || !config.getBoolean("journal.enabled")) {
+            // the steps of the transfers between shards are journaled to resume them after a restart
+            addError("A node of a cluster journals its transfers between shards, journal.enabled must be true");
+        }
+        if (prepareTtlMillis < 2 * ClusterAuthenticator.MAX_AGE_MILLIS) {
+            // the decided transfers are remembered at least as long as their messages can be delivered again
+            addError("cluster.prepareTtl must be at least " + 2 * ClusterAuthenticator.MAX_AGE_MILLIS / 1000 + "s");
+        }
+        if (internalUrls().size() != topology.size()) {
+            addError("cluster.internalNodes must list the internal URL of every node of cluster.nodes, in the same order");
+            return;
+        }
+        String secret = config.hasPath("cluster.secret") ? config.getString("cluster.secret") : "";
+        if (secret.length() < ClusterAuthenticator.MIN_SECRET_LENGTH) {
+            addError("The nodes of a cluster authenticate each other with cluster.secret, which must have at least "
+                    + ClusterAuthenticator.MIN_SECRET_LENGTH + " characters");
+            return;
+        }
+        ClusterAuthenticator authenticator = new ClusterAuthenticator(secret);
+        bind(ClusterAuthenticator.class).toInstance(authenticator);
+        bind(ShardClient.class).toInstance(new HttpShardClient(internalUrls(), requestTimeout, authenticator));
+        bind(IbanIssuer.class).toInstance(new IbanIssuer(topology::isLocal));
+    }
+
+    private List<String> internalUrls() {
+        return config.hasPath("cluster.internalNodes") ? config.getStringList("cluster.internalNodes") : List.of();
+    }
+}
@@ -0,0 +1,90 @@
+package esz.dev.cluster.control;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.function.LongSupplier;
+
+/**
+ * Signs the messages sent between the nodes of a cluster with the secret they share, and checks the signatures of the
+ * messages received. A signature is the time the message was sent and the HMAC-SHA256 of that time, the path and the
+ * body of the message, so the secret itself is never sent. A message is only accepted up to
+ * {@value #MAX_AGE_MILLIS} ms after it was signed; replaying it within that time has no effect, as every message
+ * of a transfer may be delivered more than once.
+ */
+public class ClusterAuthenticator {
+    public static final String HEADER = "Cluster-Signature";
+    public static final int MIN_SECRET_LENGTH = 32;
+    public static final long MAX_AGE_MILLIS = 60_000;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+    private final LongSupplier clock;
+
+    public ClusterAuthenticator(String secret) {
+        this(secret, System::currentTimeMillis);
+    }
+
+    public ClusterAuthenticator(String secret, LongSupplier clock) {
+        if (secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("The secret of the cluster must have at least " + MIN_SECRET_LENGTH
+                    + " characters");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.clock = clock;
+    }
+
+    /**
+     * @return the value of the {@link #HEADER} of a message
+     */
+    public String sign(String path, byte[] body) {
+        long time = clock.getAsLong();
+        return time + ":" + hex(mac(time, path, body));
+    }
+
+    /**
+     * @param signature the value of the {@link #HEADER} of a message received, may be null
+     * @return whether the message was signed with the secret of the cluster less than {@value #MAX_AGE_MILLIS} ms ago
+     */
+    public boolean verify(String signature, String path, byte[] body) {
+        if (signature == null) {
+            return false;
+        }
+        int separator = signature.indexOf(':');
+        long time;
+        try {
+            time = Long.parseLong(signature.substring(0, Math.max(separator, 0)));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(clock.getAsLong() - time) > MAX_AGE_MILLIS) {
+            return false;
+        }
+        byte[] expected = hex(mac(time, path, body)).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.substring(separator + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private byte[] mac(long time, String path, byte[] body) {
+        try {
+            // a Mac is not thread safe, and creating one is cheap next to the message it signs
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update((time + "\n" + path + "\n").getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign a message with " + ALGORITHM, e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,118 @@
+package esz.dev.cluster.control;
+
+import esz.dev.account.control.IbanCodec;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The nodes of the cluster and the node owning every account and every user. Every node is configured with the same
+ * list of nodes, so they all agree on the owners.
+ * <p>
+ * Accounts are placed by consistent hashing of their IBAN: every node takes {@value #VIRTUAL_NODES} points on a ring
+ * of 64-bit hashes, and an account belongs to the node of the first point at or after the hash of its IBAN. Adding a
+ * node therefore only moves the accounts falling just before its points, about {@code 1 / nodes} of them.
+ * <p>
+ * Users are placed by their id: every node generates the ids equal to its index plus one modulo the number of nodes,
+ * see {@link esz.dev.user.control.UserIds}, and accounts are always opened on the node of their user.
+ */
+public class ClusterTopology {
+    static final int VIRTUAL_NODES = 64;
+
+    private final List<String> nodes;
+    private final int self;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * @param nodes the base URLs of the nodes, empty for a single node which is not part of a cluster
+     * @param self  the index of this node in the list
+     */
+    public ClusterTopology(List<String> nodes, int self) {
+        if (nodes.isEmpty() ? self != 0 : self < 0 || self >= nodes.size()) {
+            throw new IllegalArgumentException("Node " + self + " is not one of the " + nodes.size() + " nodes");
+        }
+        this.nodes = List.copyOf(nodes);
+        this.self = self;
+        long[][] ring = new long[nodes.size() * VIRTUAL_NODES][];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring[node * VIRTUAL_NODES + i] = new long[]{hash(nodes.get(node) + "#" + i), node};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    /**
+     * @return the topology of a single node which is not part of a cluster, owning everything
+     */
+    public static ClusterTopology standalone() {
+        return new ClusterTopology(List.of(), 0);
+    }
+
+    public boolean isClustered() {
+        return !nodes.isEmpty();
+    }
+
+    public int size() {
+        return Math.max(nodes.size(), 1);
+    }
+
+    public int self() {
+        return self;
+    }
+
+    public String nodeUrl(int node) {
+        return nodes.get(node);
+    }
+
+    public int ownerOf(String iban) {
+        if (nodes.size() <= 1) {
+            return self;
+        }
+        long key = IbanCodec.encode(iban);
+        long hash = mix(key != IbanCodec.NO_KEY ? key : hash(iban));
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public boolean isLocal(String iban) {
+        return ownerOf(iban) == self;
+    }
+
+    public int ownerOfUser(long userId) {
+        return userId < 1 ? self : (int) ((userId - 1) % size());
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string, mixed so that strings differing in their last characters are spread over the
+     * whole ring.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of the 64-bit MurmurHash3.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
@@ -0,0 +1,388 @@
+package esz.dev.cluster.control;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.BalanceOverflowException;
+import esz.dev.account.control.NotEnoughAmountException;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers between accounts owned by different nodes, as a two-phase reserve and commit. The node of the sender
+ * coordinates the transfer:
+ * <ol>
+ * <li>it journals the start of the transfer,</li>
+ * <li>it asks the node of the receiver to prepare the credit, which checks the receiver, journals the credit and holds
+ * it,</li>
+ * <li>it reserves the funds by withdrawing them from the sender with the local engine, journaled as the debit of the
+ * transfer, which is the decision to commit it,</li>
+ * <li>it tells the node of the receiver to commit the credit, which deposits it journaled as the credit of the
+ * transfer, or to abort it if the funds could not be reserved, which journals the abort.</li>
+ * </ol>
+ * Once the funds are reserved the transfer is decided. A credit which would overflow the balance of the receiver is
+ * refused by its commit, which is final: the node of the receiver journals its abort, and the coordinator credits the
+ * sender back journaled as the refund of the transfer, and fails the transfer with a
+ * {@link BalanceOverflowException} if the commit was delivered right away. A decision which can not be delivered is
+ * retried in the background until the node of the receiver accepts it, and delivering a decision twice has no effect,
+ * so the credit is applied exactly once. Until then, the funds are neither on the sender nor on the receiver.
+ * <p>
+ * Every step is durable before the next one, so a node restarting resumes its transfers in progress from its journal,
+ * see {@link #resume(List)}: the coordinator delivers again the decisions it had not delivered, and aborts the transfers
+ * it started without debiting the sender, and the node of the receiver holds again the credits it had prepared. A node
+ * of the receiver never aborts a prepared credit on its own, as its coordinator may have debited the sender already,
+ * and only forgets a transfer once it is decided for the time to live, so a message delivered again within that time
+ * is ignored. A commit of a transfer the node does not hold any more was applied and forgotten.
+ */
+@Singleton
+public class CrossShardTransfers {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrossShardTransfers.class);
+    public static final String PREPARE_TTL_MILLIS = "cluster.prepareTtlMillis";
+    private static final long RETRY_INTERVAL_MILLIS = 1000;
+    private static final long MAX_EXPIRY_INTERVAL_MILLIS = 60_000;
+
+    private final AccountService accountService;
+    private final Journal journal;
+    private final ClusterTopology topology;
+    private final ShardClient shardClient;
+    private final long prepareTtlMillis;
+    private final Map<String, ReceivedTransfer> receivedTransfers = new ConcurrentHashMap<>();
+    private final Queue<Decision> pendingDecisions = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param prepareTtlMillis how long a decided transfer is remembered
+     */
+    @Inject
+    public CrossShardTransfers(AccountService accountService, Journal journal, ClusterTopology topology,
+                               ShardClient shardClient, @Named(PREPARE_TTL_MILLIS) long prepareTtlMillis) {
+        this.accountService = accountService;
+        this.journal = journal;
+        this.topology = topology;
+        this.shardClient = shardClient;
+        this.prepareTtlMillis = prepareTtlMillis;
+    }
+
+    /**
+     * Coordinates a transfer from an account of this node to an account of another node.
+     */
+    public void transfer(TransferAmountDto transfer) throws AccountNotFoundException, NotEnoughAmountException {
+        // the sender is checked before any message is sent, the funds are checked when they are reserved
+        accountService.balanceOf(transfer.getSenderIban());
+        int receiverNode = topology.ownerOf(transfer.getReceiverIban());
+        String transferId = UUID.randomUUID().toString();
+        // a transfer which is started but not debited is aborted when this node restarts
+        journal.append(record(JournalRecord.Type.TRANSFER_STARTED, transferId, transfer)).join();
+        try {
+            shardClient.prepare(receiverNode, transferId, new AmountDto(transfer.getReceiverIban(), transfer.getAmount()));
+        } catch (AccountNotFoundException | RuntimeException e) {
+            // the credit may have been prepared before the failure
+            decide(new Decision(receiverNode, transferId, false, transfer));
+            throw e;
+        }
+        try {
+            accountService.withdraw(new AmountDto(transfer.getSenderIban(), transfer.getAmount()),
+                    record(JournalRecord.Type.TRANSFER_DEBITED, transferId, transfer));
+        } catch (AccountNotFoundException | NotEnoughAmountException | RuntimeException e) {
+            decide(new Decision(receiverNode, transferId, false, transfer));
+            throw e;
+        }
+        if (decide(new Decision(receiverNode, transferId, true, transfer)) == Delivery.REFUNDED) {
+            throw new BalanceOverflowException("Transfer " + transferId + " was refused as it would overflow the "
+                    + "balance of the account with iban " + transfer.getReceiverIban() + ", the amount was credited back");
+        }
+    }
+
+    /**
+     * Resumes the transfers in progress when this node stopped, from the last journal record of each.
+     */
+    public void resume(List<JournalRecord> transfersInProgress) {
+        for (JournalRecord last : transfersInProgress) {
+            switch (last.getType()) {
+                case TRANSFER_STARTED:
+                    // the sender was not debited, so the transfer can only be aborted
+                    pendingDecisions.add(new Decision(topology.ownerOf(last.getCounterpartyIban()), last.getTransferId(),
+                            false, transferOf(last)));
+                    break;
+                case TRANSFER_DEBITED:
+                    pendingDecisions.add(new Decision(topology.ownerOf(last.getCounterpartyIban()), last.getTransferId(),
+                            true, transferOf(last)));
+                    break;
+                case CREDIT_PREPARED:
+                    receivedTransfers.put(last.getTransferId(), new ReceivedTransfer(
+                            new AmountDto(last.getIban(), last.getAmount()), System.currentTimeMillis()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a transfer in progress: " + last);
+            }
+        }
+        if (!transfersInProgress.isEmpty()) {
+            LOGGER.info("Resumed {} transfers between shards", transfersInProgress.size());
+            startScheduler();
+        }
+    }
+
+    /**
+     * Holds a credit of an account of this node until the coordinator of its transfer decides it. Does nothing if the
+     * transfer is already held or decided.
+     */
+    public void prepare(String transferId, AmountDto credit) throws AccountNotFoundException {
+        accountService.balanceOf(credit.getIban());
+        ReceivedTransfer transfer = new ReceivedTransfer(credit, System.currentTimeMillis());
+        if (receivedTransfers.putIfAbsent(transferId, transfer) != null) {
+            return;
+        }
+        try {
+            journal.append(JournalRecord.crossShard(JournalRecord.Type.CREDIT_PREPARED, transferId, credit.getIban(),
+                    null, credit.getAmount())).join();
+        } catch (RuntimeException e) {
+            receivedTransfers.remove(transferId, transfer);
+            throw e;
+        }
+        startScheduler();
+    }
+
+    /**
+     * Applies a prepared credit. Does nothing if the credit has already been applied, or was applied and forgotten. A
+     * credit which would overflow the balance of the receiver is aborted instead, for good.
+     *
+     * @throws UnknownTransferException if the credit was aborted, or is refused now, so it has not been applied
+     */
+    public void commit(String transferId) throws AccountNotFoundException {
+        ReceivedTransfer transfer = receivedTransfers.get(transferId);
+        if (transfer == null) {
+            // a credit is prepared durably before the sender is debited, and never aborted once the sender is
+            LOGGER.warn("Ignored the commit of transfer {}, which was decided and forgotten", transferId);
+            return;
+        }
+        synchronized (transfer) {
+            if (transfer.state == State.COMMITTED) {
+                return;
+            }
+            if (transfer.state == State.ABORTED) {
+                throw new UnknownTransferException("Transfer " + transferId + " was aborted");
+            }
+            try {
+                accountService.deposit(transfer.credit, JournalRecord.crossShard(JournalRecord.Type.CREDIT_COMMITTED,
+                        transferId, transfer.credit.getIban(), null, transfer.credit.getAmount()));
+            } catch (BalanceOverflowException e) {
+                // the balance is left unchanged, and the coordinator credits the sender back once it is refused
+                journal.append(JournalRecord.crossShard(JournalRecord.Type.CREDIT_ABORTED, transferId, null, null,
+                        null)).join();
+                transfer.decide(State.ABORTED);
+                throw new UnknownTransferException("Transfer " + transferId + " was refused: " + e.getMessage());
+            }
+            transfer.decide(State.COMMITTED);
+        }
+    }
+
+    public void abort(String transferId) {
+        ReceivedTransfer transfer = receivedTransfers.get(transferId);
+        if (transfer != null) {
+            synchronized (transfer) {
+                if (transfer.state == State.PREPARED) {
+                    journal.append(JournalRecord.crossShard(JournalRecord.Type.CREDIT_ABORTED, transferId, null, null,
+                            null)).join();
+                    transfer.decide(State.ABORTED);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of credits prepared by coordinators which have not decided them yet
+     */
+    public int preparedCredits() {
+        int prepared = 0;
+        for (ReceivedTransfer transfer : receivedTransfers.values()) {
+            synchronized (transfer) {
+                if (transfer.state == State.PREPARED) {
+                    prepared++;
+                }
+            }
+        }
+        return prepared;
+    }
+
+    /**
+     * @return the number of decisions waiting to be delivered again
+     */
+    public int pendingDecisions() {
+        return pendingDecisions.size();
+    }
+
+    /**
+     * Stops retrying the decisions which have not been delivered, which are delivered again once this node restarts.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (!pendingDecisions.isEmpty()) {
+            LOGGER.warn("Stopped with {} undelivered transfer decisions, resumed on restart", pendingDecisions.size());
+        }
+    }
+
+    private static JournalRecord record(JournalRecord.Type type, String transferId, TransferAmountDto transfer) {
+        return JournalRecord.crossShard(type, transferId, transfer.getSenderIban(), transfer.getReceiverIban(),
+                transfer.getAmount());
+    }
+
+    private static TransferAmountDto transferOf(JournalRecord record) {
+        return new TransferAmountDto(record.getIban(), record.getCounterpartyIban(), record.getAmount());
+    }
+
+    private Delivery decide(Decision decision) {
+        Delivery delivery = deliver(decision);
+        if (delivery == Delivery.PENDING) {
+            pendingDecisions.add(decision);
+            startScheduler();
+        }
+        return delivery;
+    }
+
+    private Delivery deliver(Decision decision) {
+        try {
+            if (decision.commit) {
+                shardClient.commit(decision.node, decision.transferId);
+            } else {
+                shardClient.abort(decision.node, decision.transferId);
+            }
+        } catch (UnknownTransferException e) {
+            // a commit is only refused when the credit would overflow the balance of the receiver
+            LOGGER.warn("Node {} refused the commit of transfer {}, crediting the sender back: {}", decision.node,
+                    decision.transferId, e.getMessage());
+            return refund(decision);
+        } catch (ShardUnavailableException e) {
+            LOGGER.warn("Failed to deliver the decision of transfer {} to node {}: {}", decision.transferId,
+                    decision.node, e.getMessage());
+            return Delivery.PENDING;
+        }
+        // the transfer is over on this node, no need to wait for the record to be durable
+        journal.append(JournalRecord.crossShard(JournalRecord.Type.TRANSFER_DELIVERED, decision.transferId, null, null,
+                null));
+        return Delivery.DELIVERED;
+    }
+
+    /**
+     * Credits the sender of a refused transfer back, which ends the transfer. A refund which fails is retried with the
+     * commit, which the node of the receiver refuses again.
+     */
+    private Delivery refund(Decision decision) {
+        TransferAmountDto transfer = decision.transfer;
+        try {
+            accountService.deposit(new AmountDto(transfer.getSenderIban(), transfer.getAmount()),
+                    record(JournalRecord.Type.TRANSFER_REFUNDED, decision.transferId, transfer));
+        } catch (AccountNotFoundException | RuntimeException e) {
+            LOGGER.error("Failed to credit back the sender of transfer {}", decision.transferId, e);
+            return Delivery.PENDING;
+        }
+        return Delivery.REFUNDED;
+    }
+
+    private void retryPendingDecisions() {
+        for (int i = pendingDecisions.size(); i > 0; i--) {
+            Decision decision = pendingDecisions.poll();
+            if (decision == null) {
+                return;
+            }
+            if (deliver(decision) == Delivery.PENDING) {
+                pendingDecisions.add(decision);
+            }
+        }
+    }
+
+    /**
+     * Forgets the transfers decided before their time to live. The prepared credits are held until their coordinator
+     * decides them, and reported once they are older than the time to live.
+     */
+    private void expireReceivedTransfers() {
+        long now = System.currentTimeMillis();
+        receivedTransfers.forEach((transferId, transfer) -> {
+            synchronized (transfer) {
+                if (now - transfer.since < prepareTtlMillis) {
+                    return;
+                }
+                if (transfer.state == State.PREPARED) {
+                    LOGGER.warn("Transfer {} has not been decided by its coordinator within {} ms", transferId,
+                            prepareTtlMillis);
+                } else {
+                    receivedTransfers.remove(transferId, transfer);
+                }
+            }
+        });
+    }
+
+    private synchronized void startScheduler() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-decisions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::retryPendingDecisions, RETRY_INTERVAL_MILLIS, RETRY_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        long expiryInterval = Math.max(RETRY_INTERVAL_MILLIS, Math.min(prepareTtlMillis / 4, MAX_EXPIRY_INTERVAL_MILLIS));
+        scheduler.scheduleWithFixedDelay(this::expireReceivedTransfers, expiryInterval, expiryInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private enum State {
+        PREPARED, COMMITTED, ABORTED
+    }
+
+    private enum Delivery {
+        DELIVERED, REFUNDED, PENDING
+    }
+
+    /**
+     * A credit prepared on this node, guarded by its own lock, and the time it was prepared or decided at.
+     */
+    private static final class ReceivedTransfer {
+        private final AmountDto credit;
+        private State state = State.PREPARED;
+        private long since;
+
+        private ReceivedTransfer(AmountDto credit, long since) {
+            this.credit = credit;
+            this.since = since;
+        }
+
+        private void decide(State decision) {
+            state = decision;
+            since = System.currentTimeMillis();
+        }
+    }
+
+    private static final class Decision {
+        private final int node;
+        private final String transferId;
+        private final boolean commit;
+        private final TransferAmountDto transfer;
+
+        private Decision(int node, String transferId, boolean commit, TransferAmountDto transfer) {
+            this.node = node;
+            this.transferId = transferId;
+            this.commit = commit;
+            this.transfer = transfer;
+        }
+    }
+}
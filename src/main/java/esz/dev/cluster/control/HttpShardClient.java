@@ -0,0 +1,121 @@
+package esz.dev.cluster.control;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AmountDto;
+import esz.dev.common.ResponseDto;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sends the messages of the transfers between shards over HTTP to the internal listeners of the other nodes, signed
+ * with the secret of the cluster, see {@link ClusterAuthenticator}. The connections to every node are kept open and
+ * reused by the client, which is only started by the first message, so a node which is not part of a cluster never
+ * starts it.
+ */
+public class HttpShardClient implements ShardClient {
+    public static final String TRANSFER_PATH = "/internal/cluster/transfer";
+
+    private final List<String> internalUrls;
+    private final Duration timeout;
+    private final ClusterAuthenticator authenticator;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile HttpClient client;
+
+    /**
+     * @param internalUrls  the base URLs of the internal listeners of the nodes, in the order of the nodes
+     * @param timeout       how long to wait for a node to connect and to answer a message
+     * @param authenticator signs the messages, null for a node which is not part of a cluster and sends none
+     */
+    public HttpShardClient(List<String> internalUrls, Duration timeout, ClusterAuthenticator authenticator) {
+        this.internalUrls = List.copyOf(internalUrls);
+        this.timeout = timeout;
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    public void prepare(int node, String transferId, AmountDto credit) throws AccountNotFoundException {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(credit);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to encode the credit " + credit, e);
+        }
+        HttpResponse<String> response = send(node, transferId, "prepare", body);
+        if (response.statusCode() == 404) {
+            throw new AccountNotFoundException(messageOf(response));
+        }
+    }
+
+    @Override
+    public void commit(int node, String transferId) {
+        HttpResponse<String> response = send(node, transferId, "commit", new byte[0]);
+        if (response.statusCode() == 410) {
+            throw new UnknownTransferException(messageOf(response));
+        }
+    }
+
+    @Override
+    public void abort(int node, String transferId) {
+        send(node, transferId, "abort", new byte[0]);
+    }
+
+    /**
+     * @return the response, which is either successful, a 404 Not Found or a 410 Gone
+     */
+    private HttpResponse<String> send(int node, String transferId, String phase, byte[] body) {
+        String path = TRANSFER_PATH + "/" + transferId + "/" + phase;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(internalUrls.get(node) + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header(ClusterAuthenticator.HEADER, authenticator.sign(path, body))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<String> response;
+        try {
+            response = client().send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new ShardUnavailableException("Node " + node + " is not reachable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShardUnavailableException("Interrupted while waiting for node " + node, e);
+        }
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404 && response.statusCode() != 410) {
+            throw new ShardUnavailableException("Node " + node + " failed to " + phase + " transfer " + transferId
+                    + " with status " + response.statusCode() + ": " + messageOf(response), null);
+        }
+        return response;
+    }
+
+    private HttpClient client() {
+        HttpClient current = client;
+        if (current == null) {
+            synchronized (this) {
+                current = client;
+                if (current == null) {
+                    current = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .connectTimeout(timeout)
+                            .build();
+                    client = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private String messageOf(HttpResponse<String> response) {
+        try {
+            return objectMapper.readValue(response.body(), ResponseDto.class).getMessage();
+        } catch (IOException e) {
+            return response.body();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package esz.dev.cluster.control;
+
+/**
+ * Exception which should be thrown in case a request is about an account or a user owned by another node of the
+ * cluster. The request is redirected to that node.
+ */
+public class MisdirectedRequestException extends Exception {
+    private final int owner;
+
+    public MisdirectedRequestException(String what, int owner) {
+        super(what);
+        this.owner = owner;
+    }
+
+    /**
+     * @return the index of the node owning the account or the user
+     */
+    public int getOwner() {
+        return owner;
+    }
+}
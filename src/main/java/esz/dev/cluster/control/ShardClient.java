@@ -0,0 +1,27 @@
+package esz.dev.cluster.control;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AmountDto;
+
+/**
+ * Sends the messages of the two-phase transfers between shards to the node receiving the funds, see
+ * {@link CrossShardTransfers}. Every message may be sent more than once, and every method throws a
+ * {@link ShardUnavailableException} if the node can not be reached or fails to handle the message.
+ */
+public interface ShardClient {
+    /**
+     * Asks the node to hold a credit until it is committed or aborted. The credit is durable once this returns.
+     *
+     * @throws AccountNotFoundException if the node has no account to credit
+     */
+    void prepare(int node, String transferId, AmountDto credit) throws AccountNotFoundException;
+
+    /**
+     * Tells the node to apply a prepared credit.
+     *
+     * @throws UnknownTransferException if the node aborted or refused the credit, so it has not been applied
+     */
+    void commit(int node, String transferId);
+
+    void abort(int node, String transferId);
+}
@@ -0,0 +1,10 @@
+package esz.dev.cluster.control;
+
+/**
+ * Thrown when another node of the cluster can not be reached or fails to handle a request.
+ */
+public class ShardUnavailableException extends RuntimeException {
+    public ShardUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
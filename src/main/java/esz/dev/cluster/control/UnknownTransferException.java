@@ -0,0 +1,11 @@
+package esz.dev.cluster.control;
+
+/**
+ * Thrown when a node is asked to commit a transfer whose credit it aborted, or refuses as it would overflow the balance
+ * of the receiver, so the commit has not been applied.
+ */
+public class UnknownTransferException extends ShardUnavailableException {
+    public UnknownTransferException(String message) {
+        super(message, null);
+    }
+}
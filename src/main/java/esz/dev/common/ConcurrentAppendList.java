@@ -0,0 +1,61 @@
+package esz.dev.common;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Concurrent list which elements can only be appended to. Appends are made under the lock of the list, while readers
+ * take no lock: an element is stored before the size covering it is published, so every element below the size a
+ * reader observed is visible to it.
+ * <p>
+ * Elements are kept in chunks doubling in size, so the list grows without ever copying its elements, and an element
+ * never moves once it has been appended. Positions are therefore stable, iterators never fail with a
+ * {@link java.util.ConcurrentModificationException} and a position can be used as a cursor to continue reading from.
+ */
+public class ConcurrentAppendList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - FIRST_CHUNK_SIZE;
+
+    private final Object[][] chunks = new Object[Integer.SIZE - 1 - FIRST_CHUNK_SHIFT][];
+    private volatile int size;
+
+    @Override
+    public synchronized boolean add(E element) {
+        int index = size;
+        if (index == MAX_SIZE) {
+            throw new IllegalStateException("List is full");
+        }
+        int chunk = chunkOf(index);
+        Object[] elements = chunks[chunk];
+        if (elements == null) {
+            elements = new Object[FIRST_CHUNK_SIZE << chunk];
+            chunks[chunk] = elements;
+        }
+        elements[offsetOf(index, chunk)] = element;
+        size = index + 1;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        int chunk = chunkOf(index);
+        return (E) chunks[chunk][offsetOf(index, chunk)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static int chunkOf(int index) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(index + FIRST_CHUNK_SIZE) - FIRST_CHUNK_SHIFT;
+    }
+
+    private static int offsetOf(int index, int chunk) {
+        return index + FIRST_CHUNK_SIZE - (FIRST_CHUNK_SIZE << chunk);
+    }
+}
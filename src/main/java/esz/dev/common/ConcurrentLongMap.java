@@ -0,0 +1,197 @@
+package esz.dev.common;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent hash map from primitive {@code long} keys to values, without boxing the keys or allocating a node per
+ * entry. The map is split into segments; each segment is an open-addressing table with linear probing, written under
+ * the lock of the segment and read without any lock.
+ * <p>
+ * A writer stores the key of a new entry before publishing its value, and readers take a slot with a value as
+ * occupied, so a reader never observes a value with a wrong key. Entries are never removed, and a full table is
+ * replaced by a larger copy, so readers working on the previous table still find every entry added before the copy.
+ */
+public class ConcurrentLongMap<V> {
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_SHIFT;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap() {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    public V get(long key) {
+        long hash = mix(key);
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_SHIFT))].get(key, hash);
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return the value previously associated with the key, or null if there was none
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        long hash = mix(key);
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_SHIFT))].put(key, hash, value, false);
+    }
+
+    /**
+     * Associates the value with the key unless the key already has a value.
+     *
+     * @return the value already associated with the key, or null if the value has been associated with it
+     */
+    public V putIfAbsent(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        long hash = mix(key);
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_SHIFT))].put(key, hash, value, true);
+    }
+
+    /**
+     * Iterates over the values without any lock. The iterator is weakly consistent: it returns every value put before
+     * it was created exactly once, and may or may not return the values put while iterating.
+     */
+    public Iterator<V> values() {
+        return new Iterator<>() {
+            private int segment = -1;
+            private Table<V> table;
+            private int index;
+            private V next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (table == null || index == table.keys.length) {
+                        if (segment == SEGMENTS - 1) {
+                            return false;
+                        }
+                        table = segments[++segment].table;
+                        index = 0;
+                    } else {
+                        next = table.values.get(index++);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V value = next;
+                next = null;
+                return value;
+            }
+        };
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Finalizer of the 64-bit MurmurHash3, spreading every bit of the key over the whole hash.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    private static final class Segment<V> {
+        private volatile Table<V> table = new Table<>(INITIAL_SEGMENT_CAPACITY);
+        private volatile int size;
+
+        V get(long key, long hash) {
+            Table<V> current = table;
+            int index = (int) hash & current.mask;
+            while (true) {
+                V value = current.values.get(index);
+                if (value == null) {
+                    return null;
+                }
+                if (current.keys[index] == key) {
+                    return value;
+                }
+                index = (index + 1) & current.mask;
+            }
+        }
+
+        synchronized V put(long key, long hash, V value, boolean onlyIfAbsent) {
+            Table<V> current = table;
+            int index = (int) hash & current.mask;
+            while (true) {
+                V previous = current.values.get(index);
+                if (previous == null) {
+                    break;
+                }
+                if (current.keys[index] == key) {
+                    if (!onlyIfAbsent) {
+                        current.values.set(index, value);
+                    }
+                    return previous;
+                }
+                index = (index + 1) & current.mask;
+            }
+            if ((size + 1) * 2 > current.keys.length) {
+                current = current.resize();
+                table = current;
+                index = (int) hash & current.mask;
+                while (current.values.get(index) != null) {
+                    index = (index + 1) & current.mask;
+                }
+            }
+            current.keys[index] = key;
+            current.values.set(index, value);
+            size = size + 1;
+            return null;
+        }
+    }
+
+    private static final class Table<V> {
+        private final long[] keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private Table<V> resize() {
+            Table<V> resized = new Table<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                V value = values.get(i);
+                if (value != null) {
+                    int index = (int) mix(keys[i]) & resized.mask;
+                    while (resized.values.get(index) != null) {
+                        index = (index + 1) & resized.mask;
+                    }
+                    resized.keys[index] = keys[i];
+                    resized.values.lazySet(index, value);
+                }
+            }
+            return resized;
+        }
+    }
+}
@@ -1,24 +1,37 @@
 package esz.dev.common;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 /**
- * Data transfer object which is used a response for generic REST calls.
+ * Data transfer object which is used a response for generic REST calls. It is immutable, so one response can be shared
+ * by concurrent requests.
  */
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-@Builder
+@Value
 @JsonAutoDetect
 public class ResponseDto {
     public static enum Status {
         SUCCESS, FAILURE
     }
 
-    private Status status;
-    private String message;
+    /**
+     * Responses of the successful account operations. They are shared by all the requests, and the compiled JSON codec
+     * recognises them by identity and sends them as bodies encoded once, see {@code CompiledJsonModule}.
+     */
+    public static final ResponseDto WITHDRAWN = new ResponseDto(Status.SUCCESS, "Successfully withdrawn amount!");
+    public static final ResponseDto DEPOSITED = new ResponseDto(Status.SUCCESS, "Successfully deposited amount!");
+    public static final ResponseDto TRANSFERRED = new ResponseDto(Status.SUCCESS, "Successfully transferred amount!");
+
+    private final Status status;
+    private final String message;
+
+    @Builder
+    @JsonCreator
+    public ResponseDto(@JsonProperty("status") Status status, @JsonProperty("message") String message) {
+        this.status = status;
+        this.message = message;
+    }
 }
@@ -0,0 +1,145 @@
+package esz.dev.idempotency.boundary;
+
+import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.idempotency.control.IdempotencyCache;
+import esz.dev.idempotency.control.StoredResponse;
+import io.jooby.Context;
+import io.jooby.Route;
+import io.jooby.StatusCode;
+
+import javax.inject.Provider;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Route decorator honoring the {@value #HEADER} header on the given routes. The first request with a key is executed
+ * and its outcome is replayed for every later request with the same key on the same route. Only a request failing with
+ * one of the given failures known to happen before any state changed, such as validation or the lookup of an account,
+ * forgets its key, so it can be retried. Every other outcome is replayed: the response with its status, or the failure,
+ * which the error handlers of the application render with the same status again. A failure after the request was
+ * applied, such as the journal failing to make it durable, must not let a retry apply it once more.
+ * <p>
+ * Keys are not tied to the request body: a retry is expected to send the same request again.
+ */
+public class IdempotencyKeys implements Route.Decorator {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final Provider<IdempotencyCache> cacheProvider;
+    private final Set<String> routes;
+    private final Set<Class<? extends Exception>> unchangedFailures;
+    private final boolean async;
+
+    /**
+     * @param cacheProvider     provides the cache once the application has started
+     * @param routes            patterns of the routes honoring the header
+     * @param unchangedFailures failures known to happen before the request changed any state, which forget the key
+     * @param async         whether the handlers of the routes return futures, so duplicates have to wait for the
+     *                          first request without blocking
+     */
+    public IdempotencyKeys(Provider<IdempotencyCache> cacheProvider, Set<String> routes,
+                           Set<Class<? extends Exception>> unchangedFailures, boolean async) {
+        this.cacheProvider = cacheProvider;
+        this.routes = routes;
+        this.unchangedFailures = unchangedFailures;
+        this.async = async;
+    }
+
+    @Override
+    public Route.Handler apply(Route.Handler next) {
+        return context -> {
+            String key = context.header(HEADER).valueOrNull();
+            String pattern = context.getRoute().getPattern();
+            if (key == null || !routes.contains(pattern)) {
+                return next.apply(context);
+            }
+            if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+                throw new InvalidInputException(HEADER + " must have from 1 to " + MAX_KEY_LENGTH + " characters!");
+            }
+            IdempotencyCache.Claim claim = cacheProvider.get().claim(pattern + ' ' + key);
+            if (!claim.isOwner()) {
+                context.setResponseHeader(REPLAYED_HEADER, "true");
+                return async ? replayAsync(context, claim) : replay(context, claim);
+            }
+            return execute(next, context, claim);
+        };
+    }
+
+    private Object execute(Route.Handler next, Context context, IdempotencyCache.Claim claim) throws Exception {
+        Object result;
+        try {
+            result = next.apply(context);
+        } catch (Exception | Error e) {
+            settle(claim, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, failure) -> {
+                if (failure == null) {
+                    claim.complete(StoredResponse.of(context.getResponseCode().value(), value));
+                } else {
+                    settle(claim, unwrap(failure));
+                }
+            });
+        } else {
+            claim.complete(StoredResponse.of(context.getResponseCode().value(), result));
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the key of a request which failed before changing any state, and keeps any other failure to be replayed.
+     */
+    private void settle(IdempotencyCache.Claim claim, Throwable failure) {
+        for (Class<? extends Exception> unchanged : unchangedFailures) {
+            if (unchanged.isInstance(failure)) {
+                claim.abandon(failure);
+                return;
+            }
+        }
+        claim.complete(StoredResponse.failed(failure));
+    }
+
+    private static Object replay(Context context, IdempotencyCache.Claim claim) throws Exception {
+        StoredResponse response;
+        try {
+            response = claim.response().join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+        if (response.getFailure() != null) {
+            throw rethrow(response.getFailure());
+        }
+        context.setResponseCode(StatusCode.valueOf(response.getStatusCode()));
+        return response.getBody();
+    }
+
+    private static CompletableFuture<Object> replayAsync(Context context, IdempotencyCache.Claim claim) {
+        CompletableFuture<Object> replayed = new CompletableFuture<>();
+        claim.response().whenComplete((response, failure) -> {
+            if (failure != null) {
+                replayed.completeExceptionally(unwrap(failure));
+            } else if (response.getFailure() != null) {
+                replayed.completeExceptionally(response.getFailure());
+            } else {
+                context.setResponseCode(StatusCode.valueOf(response.getStatusCode()));
+                replayed.complete(response.getBody());
+            }
+        });
+        return replayed;
+    }
+
+    private static Exception rethrow(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return (Exception) failure;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
@@ -0,0 +1,27 @@
+package esz.dev.idempotency.config;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import com.typesafe.config.Config;
+import esz.dev.idempotency.control.IdempotencyCache;
+
+import java.time.Duration;
+
+/**
+ * Configuration for Guice to size the idempotency key cache according to the application configuration.
+ */
+public class IdempotencyConfig extends AbstractModule {
+    private final Config config;
+
+    public IdempotencyConfig(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void configure() {
+        bindConstant().annotatedWith(Names.named(IdempotencyCache.MAX_ENTRIES))
+                .to(config.hasPath("idempotency.maxEntries") ? config.getInt("idempotency.maxEntries") : 200_000);
+        bindConstant().annotatedWith(Names.named(IdempotencyCache.TTL_MILLIS))
+                .to((config.hasPath("idempotency.ttl") ? config.getDuration("idempotency.ttl") : Duration.ofMinutes(10)).toMillis());
+    }
+}
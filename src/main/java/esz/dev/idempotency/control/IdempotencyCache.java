@@ -0,0 +1,188 @@
+package esz.dev.idempotency.control;
+
+import esz.dev.metrics.control.MetricsRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the outcomes of requests by idempotency key. The first request with a key executes and every
+ * request with the same key arriving later gets its outcome, waiting for it if the first one is still in flight.
+ * <p>
+ * The outcome of every request is kept for the same time from its completion, so the order of completion is also the
+ * order of expiry: completed entries are kept in a queue by completion, and whenever a key is claimed, the entries at
+ * the head of the queue which are expired or exceed the maximum number of entries are evicted. Entries still in flight
+ * are not in the queue and never evicted, as a retry arriving meanwhile must wait for them rather than execute again;
+ * they are counted apart and bounded by the number of requests served concurrently. The cache never holds much more than
+ * {@code maxEntries} completed entries, and neither claiming nor eviction takes a lock.
+ */
+@Singleton
+public class IdempotencyCache {
+    public static final String MAX_ENTRIES = "idempotency.maxEntries";
+    public static final String TTL_MILLIS = "idempotency.ttlMillis";
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> completionOrder = new ConcurrentLinkedQueue<>();
+    /**
+     * Completed entries in {@link #entries}.
+     */
+    private final AtomicInteger completed = new AtomicInteger();
+    /**
+     * Entries in {@link #entries} still in flight.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    @Inject
+    public IdempotencyCache(MetricsRegistry metricsRegistry, @Named(MAX_ENTRIES) int maxEntries,
+                            @Named(TTL_MILLIS) long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.hits = metricsRegistry.counter("idempotency_cache_requests_total",
+                "Requests with an idempotency key, by whether the key was known.", "result", "hit");
+        this.misses = metricsRegistry.counter("idempotency_cache_requests_total",
+                "Requests with an idempotency key, by whether the key was known.", "result", "miss");
+        this.evictions = metricsRegistry.counter("idempotency_cache_evictions_total",
+                "Idempotency keys evicted because they expired or the cache was full.");
+    }
+
+    /**
+     * Claims a key. The owner of the returned claim has to execute the request and complete the claim with its outcome,
+     * everybody else gets the outcome of the owner from the claim.
+     */
+    public Claim claim(String key) {
+        long now = System.nanoTime();
+        evict(now);
+        Entry created = new Entry(key);
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                break;
+            }
+            if (!existing.response.isDone() || existing.expiresAt - now > 0) {
+                hits.increment();
+                return new Claim(this, existing, false);
+            }
+            // an entry whose response is done and expired is a completed one
+            if (entries.replace(key, existing, created)) {
+                completed.decrementAndGet();
+                break;
+            }
+        }
+        inFlight.incrementAndGet();
+        misses.increment();
+        return new Claim(this, created, true);
+    }
+
+    /**
+     * @return the number of keys kept, completed or in flight
+     */
+    public int size() {
+        return completed.get() + inFlight.get();
+    }
+
+    /**
+     * @return the number of keys whose first request is still in flight
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void complete(Entry entry, StoredResponse response) {
+        // the expiry is set before the response, so an entry seen done is seen with its expiry
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        if (entry.response.complete(response)) {
+            inFlight.decrementAndGet();
+            completed.incrementAndGet();
+            completionOrder.add(entry);
+        }
+    }
+
+    private void abandon(Entry entry, Throwable cause) {
+        if (entries.remove(entry.key, entry)) {
+            inFlight.decrementAndGet();
+        }
+        entry.response.completeExceptionally(cause);
+    }
+
+    private void evict(long now) {
+        Entry head;
+        while ((head = completionOrder.peek()) != null && (head.expiresAt - now <= 0 || completed.get() > maxEntries)) {
+            Entry evicted = completionOrder.poll();
+            if (evicted == null) {
+                return;
+            }
+            if (entries.remove(evicted.key, evicted)) {
+                completed.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        /**
+         * Set once the response is completed, an entry in flight never expires.
+         */
+        private volatile long expiresAt;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Claim of an idempotency key by a request.
+     */
+    public static class Claim {
+        private final IdempotencyCache cache;
+        private final Entry entry;
+        private final boolean owner;
+
+        private Claim(IdempotencyCache cache, Entry entry, boolean owner) {
+            this.cache = cache;
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /**
+         * @return true if the request holding the claim is the first one with its key and has to execute
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * @return the outcome of the first request with the key, completed once the first request completes or fails
+         * with an error which must not be replayed
+         */
+        public CompletableFuture<StoredResponse> response() {
+            return entry.response;
+        }
+
+        public void complete(StoredResponse response) {
+            cache.complete(entry, response);
+        }
+
+        /**
+         * Forgets the key, so the next request with it executes again. Requests already waiting for the outcome fail
+         * with the given cause.
+         */
+        public void abandon(Throwable cause) {
+            cache.abandon(entry, cause);
+        }
+    }
+}
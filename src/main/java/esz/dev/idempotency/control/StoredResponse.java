@@ -0,0 +1,24 @@
+package esz.dev.idempotency.control;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a request kept to be replayed for its retries: either the status and body of the response, or the
+ * failure of the request, which is rendered by the error handlers of the application again.
+ */
+@Data
+@AllArgsConstructor
+public class StoredResponse {
+    private final int statusCode;
+    private final Object body;
+    private final Throwable failure;
+
+    public static StoredResponse of(int statusCode, Object body) {
+        return new StoredResponse(statusCode, body, null);
+    }
+
+    public static StoredResponse failed(Throwable failure) {
+        return new StoredResponse(0, null, failure);
+    }
+}
@@ -0,0 +1,41 @@
+package esz.dev.journal.config;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.control.SnapshotStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Configuration for Guice to enable or disable the durable journal and to locate its snapshots according to the application configuration.
+ */
+public class JournalConfig extends AbstractModule {
+    private final Config config;
+
+    public JournalConfig(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void configure() {
+        if (config.hasPath("journal.enabled") && config.getBoolean("journal.enabled")) {
+            try {
+                bind(Journal.class).toInstance(new FileJournal(
+                        Paths.get(config.getString("journal.directory")),
+                        config.getBytes("journal.segmentSize"),
+                        config.getInt("journal.maxBatch")));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the journal", e);
+            }
+        } else {
+            bind(Journal.class).to(DisabledJournal.class);
+        }
+        bind(SnapshotStore.class).toInstance(new SnapshotStore(Paths.get(config.hasPath("snapshot.directory")
+                ? config.getString("snapshot.directory") : "snapshots")));
+    }
+}
@@ -0,0 +1,89 @@
+package esz.dev.journal.control;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically folds the durable part of the journal into a new snapshot and deletes the journal segments covered by
+ * it. The snapshot is built from the previous snapshot and the journal rather than from the live accounts, so
+ * checkpointing never blocks transactions: the changes of the journal records are collected, and merged with the
+ * previous snapshot while it is streamed into the new one.
+ */
+@Singleton
+public class Checkpointer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Checkpointer.class);
+
+    private final Journal journal;
+    private final SnapshotStore snapshotStore;
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public Checkpointer(Journal journal, SnapshotStore snapshotStore) {
+        this.journal = journal;
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Writes a snapshot including every record made durable so far.
+     *
+     * @return the sequence number of the newest snapshot
+     */
+    public synchronized long checkpoint() throws IOException {
+        long from = snapshotStore.newestSequence();
+        long to = journal.durableSequence();
+        if (to <= from) {
+            return from;
+        }
+        SnapshotState changes = new SnapshotState();
+        journal.replay(from, record -> {
+            if (record.getSequence() < to) {
+                changes.apply(record);
+            }
+        });
+        snapshotStore.write(to, changes);
+        journal.truncateBefore(to);
+        return to;
+    }
+
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to write snapshot", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Journal implementation which does not record anything. Used when durability is turned off.
+ */
+@Singleton
+public class DisabledJournal implements Journal {
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Void> append(JournalRecord record) {
+        return DURABLE;
+    }
+
+    @Override
+    public void replay(long fromSequence, Consumer<JournalRecord> consumer) {
+    }
+
+    @Override
+    public long durableSequence() {
+        return 0;
+    }
+
+    @Override
+    public void truncateBefore(long sequence) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
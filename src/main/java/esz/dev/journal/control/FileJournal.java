@@ -0,0 +1,360 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Journal implementation writing records into segment files through a {@link FileChannel}. Records are written by a
+ * single writer thread with group commit: every record waiting when the writer becomes free goes into the same batch,
+ * and the whole batch is made durable with a single fsync before any of its records is acknowledged.
+ * <p>
+ * Segments are named after the sequence number of their first record. A record torn by a crash fails its checksum
+ * and the tail of the last segment starting with it is discarded on open. Only the last segment can have been torn,
+ * so a record failing its checksum in any other segment fails the replay rather than skip the rest of that segment.
+ * <p>
+ * A batch which fails to be written or synced stops the journal for good. The engines have already applied its
+ * records in memory, and the segment may end with part of the batch, so nothing is appended after it: every queued and
+ * later record is refused and the journal reports itself unhealthy until the node is restarted and recovers.
+ */
+public class FileJournal implements Journal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileJournal.class);
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final long POLL_MILLIS = 100;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxBatch;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Thread writer;
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final List<Consumer<JournalRecord>> listeners = new CopyOnWriteArrayList<>();
+    private final List<JournalRecord> written = new ArrayList<>();
+
+    private FileChannel segment;
+    private long nextSequence;
+    private volatile long durableSequence;
+    private volatile boolean running = true;
+    private volatile Exception failure;
+
+    public FileJournal(Path directory, long segmentSize, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBatch = maxBatch;
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::writeBatches, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a record for the writer. A record queued while the journal is being closed or is failing may miss both
+     * the writer and the drain of {@link #close()} or of the failure, so the queue is drained again once the record is
+     * queued and the journal is found stopped, which completes every record left behind.
+     */
+    @Override
+    public CompletableFuture<Void> append(JournalRecord record) {
+        PendingRecord pending = new PendingRecord(record);
+        if (!running) {
+            pending.durable.completeExceptionally(refusal());
+            return pending.durable;
+        }
+        queue.add(pending);
+        if (!running) {
+            failPending();
+        }
+        return pending.durable;
+    }
+
+    @Override
+    public void replay(long fromSequence, Consumer<JournalRecord> consumer) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            readSegment(segments.get(i), i + 1 == segments.size(), record -> {
+                if (record.getSequence() >= fromSequence) {
+                    consumer.accept(record);
+                }
+            });
+        }
+    }
+
+    @Override
+    public long durableSequence() {
+        return durableSequence;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return failure == null;
+    }
+
+    /**
+     * Deletes every segment holding only records with a sequence number lower than {@code sequence}.
+     */
+    @Override
+    public void truncateBefore(long sequence) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequenceOf(segments.get(i + 1)) <= sequence) {
+                Files.delete(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Sequence number which will be given to the next appended record.
+     */
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Listeners are called by the writer thread right after the fsync of every batch.
+     */
+    @Override
+    public void addListener(Consumer<JournalRecord> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<JournalRecord> listener) {
+        listeners.remove(listener);
+    }
+
+    public long countSyncs() {
+        return syncs.sum();
+    }
+
+    public long countRecords() {
+        return records.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+            segment.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close journal segment", e);
+        }
+        failPending();
+    }
+
+    private void failPending() {
+        PendingRecord pending;
+        while ((pending = queue.poll()) != null) {
+            pending.durable.completeExceptionally(refusal());
+        }
+    }
+
+    private IllegalStateException refusal() {
+        Exception cause = failure;
+        return cause == null ? new IllegalStateException("Journal is closed")
+                : new IllegalStateException("Journal has failed, the node has to be restarted to recover", cause);
+    }
+
+    private void writeBatches() {
+        List<PendingRecord> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            PendingRecord first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                if (running) {
+                    continue;
+                }
+                break;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            try {
+                writeBatch(batch);
+                syncs.increment();
+                records.add(batch.size());
+                for (PendingRecord pending : batch) {
+                    pending.durable.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to write journal batch, refusing every record until the node is restarted", e);
+                // the failure is published before the journal stops, so every refused record is refused with it
+                failure = e;
+                running = false;
+                for (PendingRecord pending : batch) {
+                    pending.durable.completeExceptionally(e);
+                }
+                failPending();
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private synchronized void writeBatch(List<PendingRecord> batch) throws IOException {
+        buffer.clear();
+        written.clear();
+        for (PendingRecord pending : batch) {
+            if (buffer.remaining() < JournalCodec.MAX_RECORD_SIZE) {
+                flush();
+            }
+            int start = buffer.position();
+            try {
+                JournalRecord record = pending.record.withSequence(nextSequence);
+                JournalCodec.encode(record, buffer);
+                nextSequence++;
+                // collected even without listeners, as one may be added before the batch is durable
+                written.add(record);
+            } catch (IllegalArgumentException e) {
+                buffer.position(start);
+                pending.durable.completeExceptionally(e);
+            }
+        }
+        flush();
+        force(segment);
+        durableSequence = nextSequence;
+        for (JournalRecord record : written) {
+            for (Consumer<JournalRecord> listener : listeners) {
+                listener.accept(record);
+            }
+        }
+        written.clear();
+        if (segment.size() >= segmentSize) {
+            segment.close();
+            segment = openSegment(nextSequence);
+        }
+    }
+
+    /**
+     * Makes the written bytes of the segment durable.
+     */
+    protected void force(FileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Finds the end of the last intact record, cuts off anything after it and continues appending from there.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            segment = openSegment(0);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long[] lastSequence = {firstSequenceOf(last) - 1};
+        long validEnd = readSegment(last, true, record -> lastSequence[0] = record.getSequence());
+        nextSequence = lastSequence[0] + 1;
+        durableSequence = nextSequence;
+        segment = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (segment.size() > validEnd) {
+            LOGGER.warn("Discarding {} bytes of torn journal tail in {}", segment.size() - validEnd, last);
+            segment.truncate(validEnd);
+            segment.force(true);
+        }
+        segment.position(validEnd);
+    }
+
+    /**
+     * Reads the intact records of a segment.
+     *
+     * @param last whether the segment is the last one, which may end with a torn record
+     * @return the position right after the last intact record
+     * @throws IOException if a segment which is not the last one has anything but intact records
+     */
+    private long readSegment(Path path, boolean last, Consumer<JournalRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = 0;
+            while (channel.read(readBuffer) > 0 || readBuffer.position() > 0) {
+                readBuffer.flip();
+                int consumed = 0;
+                JournalRecord record;
+                while ((record = JournalCodec.decode(readBuffer)) != null) {
+                    consumer.accept(record);
+                    consumed = readBuffer.position();
+                }
+                position += consumed;
+                // the buffer always has room for a whole record, so a record which is not intact stops the reading
+                // whether or not the end of the segment has been reached
+                if (consumed == 0 && (channel.position() >= channel.size()
+                        || readBuffer.remaining() >= JournalCodec.HEADER_SIZE + JournalCodec.MAX_RECORD_SIZE
+                        + JournalCodec.TRAILER_SIZE)) {
+                    break;
+                }
+                readBuffer.compact();
+            }
+            if (!last && position < channel.size()) {
+                throw new IOException("Journal segment " + path + " is corrupt after byte " + position + " of "
+                        + channel.size());
+            }
+            return position;
+        }
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static class PendingRecord {
+        private final JournalRecord record;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private PendingRecord(JournalRecord record) {
+            this.record = record;
+        }
+    }
+}
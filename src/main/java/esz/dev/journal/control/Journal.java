@@ -0,0 +1,69 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of the operations changing accounts and users.
+ */
+public interface Journal {
+    /**
+     * Already completed future returned for records which do not have to wait for durability.
+     */
+    CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    /**
+     * Tells whether records are actually kept. Callers may skip building records for a disabled journal.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Tells whether the journal still makes records durable. A journal which failed to write records refuses every
+     * record from then on, and the node has to be restarted to recover from what was made durable.
+     */
+    default boolean isHealthy() {
+        return true;
+    }
+
+    /**
+     * Appends an operation to the journal. Records appended by a single thread are kept in order.
+     *
+     * @return future completed once the record is durable
+     */
+    CompletableFuture<Void> append(JournalRecord record);
+
+    /**
+     * Reads back every durable record with a sequence number greater than or equal to {@code fromSequence}, in the
+     * order they were appended.
+     */
+    void replay(long fromSequence, Consumer<JournalRecord> consumer) throws IOException;
+
+    /**
+     * Sequence number up to which, exclusively, every record is durable.
+     */
+    long durableSequence();
+
+    /**
+     * Drops records which are no longer needed because they are covered by a snapshot. Records with a sequence number
+     * greater than or equal to {@code sequence} are always kept.
+     */
+    void truncateBefore(long sequence) throws IOException;
+
+    /**
+     * Calls the listener with every record made durable from now on, with its sequence number and in order. Listeners
+     * are called by the thread making the records durable, so they must never block. A journal which does not keep
+     * records never calls them.
+     */
+    default void addListener(Consumer<JournalRecord> listener) {
+    }
+
+    default void removeListener(Consumer<JournalRecord> listener) {
+    }
+
+    void close();
+}
@@ -0,0 +1,192 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of journal records: {@code [int length][byte type][long sequence][payload][int crc32]}, where the
+ * length covers the type, the sequence and the payload, and the checksum is computed over the same bytes. Records are
+ * shipped to followers in the same layout.
+ */
+public final class JournalCodec {
+    static final int HEADER_SIZE = Integer.BYTES;
+    static final int TRAILER_SIZE = Integer.BYTES;
+    public static final int MAX_RECORD_SIZE = 64 * 1024;
+    static final int MAX_STRING_SIZE = 16 * 1024;
+    /**
+     * The unscaled value of a decimal is written after its length in a single unsigned byte.
+     */
+    static final int MAX_DECIMAL_SIZE = 255;
+
+    private static final JournalRecord.Type[] TYPES = JournalRecord.Type.values();
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Writes a record into the buffer.
+     *
+     * @return false if the buffer does not have enough space left, in which case the buffer is left unchanged
+     * @throws IllegalArgumentException if a text field or the amount of the record is too long to be journaled
+     */
+    public static boolean encode(JournalRecord record, ByteBuffer buffer) {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            return false;
+        }
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.put((byte) record.getType().ordinal());
+        buffer.putLong(record.getSequence());
+        switch (record.getType()) {
+            case USER_CREATED:
+                buffer.putLong(record.getUserId());
+                putString(buffer, record.getFirstName());
+                putString(buffer, record.getLastName());
+                putString(buffer, record.getAddress());
+                break;
+            case ACCOUNT_CREATED:
+                buffer.putLong(record.getUserId());
+                putString(buffer, record.getIban());
+                break;
+            case DEPOSIT:
+            case WITHDRAW:
+                putString(buffer, record.getIban());
+                putDecimal(buffer, record.getAmount());
+                break;
+            case TRANSFER:
+                putString(buffer, record.getIban());
+                putString(buffer, record.getCounterpartyIban());
+                putDecimal(buffer, record.getAmount());
+                break;
+            case TRANSFER_STARTED:
+            case TRANSFER_DEBITED:
+            case TRANSFER_REFUNDED:
+                putString(buffer, record.getTransferId());
+                putString(buffer, record.getIban());
+                putString(buffer, record.getCounterpartyIban());
+                putDecimal(buffer, record.getAmount());
+                break;
+            case CREDIT_PREPARED:
+            case CREDIT_COMMITTED:
+                putString(buffer, record.getTransferId());
+                putString(buffer, record.getIban());
+                putDecimal(buffer, record.getAmount());
+                break;
+            case TRANSFER_DELIVERED:
+            case CREDIT_ABORTED:
+                putString(buffer, record.getTransferId());
+                break;
+        }
+        int length = buffer.position() - start - HEADER_SIZE;
+        buffer.putInt(start, length);
+        buffer.putInt(checksum(buffer, start + HEADER_SIZE, length));
+        return true;
+    }
+
+    /**
+     * Reads the next record from the buffer.
+     *
+     * @return null if the buffer does not hold a complete and intact record, in which case the buffer is left unchanged
+     */
+    public static JournalRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > MAX_RECORD_SIZE || buffer.remaining() < HEADER_SIZE + length + TRAILER_SIZE) {
+            return null;
+        }
+        if (buffer.getInt(start + HEADER_SIZE + length) != checksum(buffer, start + HEADER_SIZE, length)) {
+            return null;
+        }
+        buffer.position(start + HEADER_SIZE);
+        JournalRecord.JournalRecordBuilder record = JournalRecord.builder();
+        JournalRecord.Type type = TYPES[buffer.get()];
+        record.type(type).sequence(buffer.getLong());
+        switch (type) {
+            case USER_CREATED:
+                record.userId(buffer.getLong()).firstName(getString(buffer)).lastName(getString(buffer)).address(getString(buffer));
+                break;
+            case ACCOUNT_CREATED:
+                record.userId(buffer.getLong()).iban(getString(buffer));
+                break;
+            case DEPOSIT:
+            case WITHDRAW:
+                record.iban(getString(buffer)).amount(getDecimal(buffer));
+                break;
+            case TRANSFER:
+                record.iban(getString(buffer)).counterpartyIban(getString(buffer)).amount(getDecimal(buffer));
+                break;
+            case TRANSFER_STARTED:
+            case TRANSFER_DEBITED:
+            case TRANSFER_REFUNDED:
+                record.transferId(getString(buffer)).iban(getString(buffer)).counterpartyIban(getString(buffer))
+                        .amount(getDecimal(buffer));
+                break;
+            case CREDIT_PREPARED:
+            case CREDIT_COMMITTED:
+                record.transferId(getString(buffer)).iban(getString(buffer)).amount(getDecimal(buffer));
+                break;
+            case TRANSFER_DELIVERED:
+            case CREDIT_ABORTED:
+                record.transferId(getString(buffer));
+                break;
+        }
+        buffer.position(start + HEADER_SIZE + length + TRAILER_SIZE);
+        return record.build();
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_SIZE) {
+            throw new IllegalArgumentException("Value of " + bytes.length + " bytes is too long to be journaled");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void putDecimal(ByteBuffer buffer, BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > MAX_DECIMAL_SIZE) {
+            throw new IllegalArgumentException("Amount of " + unscaled.length + " bytes is too long to be journaled");
+        }
+        buffer.putInt(value.scale());
+        buffer.put((byte) unscaled.length);
+        buffer.put(unscaled);
+    }
+
+    static BigDecimal getDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.get() & 0xFF];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,96 @@
+package esz.dev.journal.control;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds the state of users and accounts from the journal. Changes of balances are added up without checking for
+ * sufficient funds, so the result does not depend on the order in which concurrent changes were journaled. Of the
+ * records of the transfers between shards only the debits and the credits change balances, the state of the transfers
+ * is rebuilt from all of them by the caller, see {@link #replay(long, Consumer)}.
+ */
+@Singleton
+public class JournalReplayer {
+    private final Journal journal;
+    private final AccountService accountService;
+    private final UserService userService;
+
+    @Inject
+    public JournalReplayer(Journal journal, AccountService accountService, UserService userService) {
+        this.journal = journal;
+        this.accountService = accountService;
+        this.userService = userService;
+    }
+
+    /**
+     * Applies every journal record starting with the given sequence number.
+     *
+     * @return the number of records applied
+     */
+    public long replay(long fromSequence) throws IOException {
+        return replay(fromSequence, record -> {
+        });
+    }
+
+    /**
+     * Applies every journal record starting with the given sequence number, and hands each of them to an observer once
+     * it is applied.
+     *
+     * @return the number of records applied
+     */
+    public long replay(long fromSequence, Consumer<JournalRecord> observer) throws IOException {
+        long[] count = {0};
+        journal.replay(fromSequence, record -> {
+            try {
+                apply(record);
+                observer.accept(record);
+            } catch (AccountNotFoundException e) {
+                throw new IllegalStateException("Journal record " + record.getSequence() + " refers to a missing account", e);
+            }
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Applies a single journal record, such as one shipped by the primary to a follower.
+     */
+    public void apply(JournalRecord record) throws AccountNotFoundException {
+        switch (record.getType()) {
+            case USER_CREATED:
+                userService.restoreUser(record.getUserId(),
+                        new UserDto(record.getFirstName(), record.getLastName(), record.getAddress()));
+                break;
+            case ACCOUNT_CREATED:
+                accountService.restoreAccount(record.getUserId(), record.getIban(), BigDecimal.ZERO);
+                break;
+            case DEPOSIT:
+                accountService.restoreBalance(record.getIban(), record.getAmount());
+                break;
+            case WITHDRAW:
+                accountService.restoreBalance(record.getIban(), record.getAmount().negate());
+                break;
+            case TRANSFER:
+                accountService.restoreTransfer(record.getIban(), record.getCounterpartyIban(), record.getAmount());
+                break;
+            case TRANSFER_DEBITED:
+                accountService.restoreBalance(record.getIban(), record.getAmount().negate());
+                break;
+            case CREDIT_COMMITTED:
+            case TRANSFER_REFUNDED:
+                accountService.restoreBalance(record.getIban(), record.getAmount());
+                break;
+            default:
+                // the other steps of the transfers between shards do not change balances
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Summary of restoring the state on startup.
+ */
+@Data
+@AllArgsConstructor
+public class RecoveryReport {
+    private long snapshotSequence;
+    private long users;
+    private long accounts;
+    private long snapshotMillis;
+    private long replayedRecords;
+    private long replayMillis;
+    /**
+     * Last journal record of every transfer between shards in progress, see {@code CrossShardTransfers#resume(List)}.
+     */
+    private List<JournalRecord> transfersInProgress;
+}
@@ -0,0 +1,67 @@
+package esz.dev.journal.control;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Restores users and accounts on startup from the newest snapshot, with the account chunks of the snapshot loaded in
+ * parallel, followed by the journal records written after it. The transfers between shards still in progress are
+ * collected along the way and reported, so they can be resumed.
+ */
+@Singleton
+public class RecoveryService {
+    private final SnapshotStore snapshotStore;
+    private final JournalReplayer journalReplayer;
+    private final AccountService accountService;
+    private final UserService userService;
+
+    @Inject
+    public RecoveryService(SnapshotStore snapshotStore, JournalReplayer journalReplayer,
+                           AccountService accountService, UserService userService) {
+        this.snapshotStore = snapshotStore;
+        this.journalReplayer = journalReplayer;
+        this.accountService = accountService;
+        this.userService = userService;
+    }
+
+    public RecoveryReport recover() throws IOException {
+        LongAdder users = new LongAdder();
+        LongAdder accounts = new LongAdder();
+        Map<String, JournalRecord> transfers = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        long sequence = snapshotStore.load(user -> {
+            userService.restoreUser(user.id, new UserDto(user.firstName, user.lastName, user.address));
+            users.increment();
+        }, account -> {
+            try {
+                accountService.restoreAccount(account.userId, account.iban, account.balance);
+            } catch (AccountNotFoundException e) {
+                throw new IllegalStateException("Snapshot refers to a missing account " + account.iban, e);
+            }
+            accounts.increment();
+        }, record -> transfers.put(record.getTransferId(), record), true);
+        long loaded = System.nanoTime();
+        long replayed = journalReplayer.replay(sequence, record -> {
+            if (record.getTransferId() != null) {
+                transfers.put(record.getTransferId(), record);
+            }
+        });
+        long finished = System.nanoTime();
+        transfers.values().removeIf(record -> !SnapshotState.inProgress(record));
+        return new RecoveryReport(sequence, users.sum(), accounts.sum(),
+                TimeUnit.NANOSECONDS.toMillis(loaded - start), replayed, TimeUnit.NANOSECONDS.toMillis(finished - loaded),
+                new ArrayList<>(transfers.values()));
+    }
+}
@@ -0,0 +1,104 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes of the users and accounts made by the journal records following a snapshot: the users and accounts created,
+ * the changes of the balances of the accounts already in the snapshot, and the last step of every transfer between
+ * shards journaled by them. It is kept apart from the live stores, so
+ * a snapshot can be taken without touching the accounts being transacted on, and it only grows with the journal
+ * records, so the previous snapshot can be merged with it while it is streamed into the next one.
+ */
+class SnapshotState {
+    static class UserEntry {
+        final long id;
+        final String firstName;
+        final String lastName;
+        final String address;
+
+        UserEntry(long id, String firstName, String lastName, String address) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.address = address;
+        }
+    }
+
+    static class AccountEntry {
+        final String iban;
+        final long userId;
+        BigDecimal balance;
+
+        AccountEntry(String iban, long userId, BigDecimal balance) {
+            this.iban = iban;
+            this.userId = userId;
+            this.balance = balance;
+        }
+    }
+
+    final Map<Long, UserEntry> users = new LinkedHashMap<>();
+    final Map<String, AccountEntry> accounts = new LinkedHashMap<>();
+    /**
+     * Changes of the balances of the accounts created before the records, by IBAN.
+     */
+    final Map<String, BigDecimal> changes = new HashMap<>();
+    /**
+     * Last record of every transfer between shards, by transfer id. A transfer whose last record ends it is no longer
+     * in progress, and is dropped along with its records in the snapshot, see {@link #inProgress(JournalRecord)}.
+     */
+    final Map<String, JournalRecord> transfers = new LinkedHashMap<>();
+
+    void apply(JournalRecord record) {
+        switch (record.getType()) {
+            case USER_CREATED:
+                users.put(record.getUserId(), new UserEntry(record.getUserId(), record.getFirstName(),
+                        record.getLastName(), record.getAddress()));
+                break;
+            case ACCOUNT_CREATED:
+                accounts.put(record.getIban(), new AccountEntry(record.getIban(), record.getUserId(), BigDecimal.ZERO));
+                break;
+            case DEPOSIT:
+                adjust(record.getIban(), record.getAmount());
+                break;
+            case WITHDRAW:
+                adjust(record.getIban(), record.getAmount().negate());
+                break;
+            case TRANSFER:
+                adjust(record.getIban(), record.getAmount().negate());
+                adjust(record.getCounterpartyIban(), record.getAmount());
+                break;
+            case TRANSFER_DEBITED:
+                adjust(record.getIban(), record.getAmount().negate());
+                transfers.put(record.getTransferId(), record);
+                break;
+            case CREDIT_COMMITTED:
+            case TRANSFER_REFUNDED:
+                adjust(record.getIban(), record.getAmount());
+                transfers.put(record.getTransferId(), record);
+                break;
+            default:
+                transfers.put(record.getTransferId(), record);
+        }
+    }
+
+    /**
+     * Tells whether the last record of a transfer between shards leaves it in progress, so it has to be kept.
+     */
+    static boolean inProgress(JournalRecord last) {
+        return !last.getType().endsTransfer();
+    }
+
+    private void adjust(String iban, BigDecimal delta) {
+        AccountEntry account = accounts.get(iban);
+        if (account != null) {
+            account.balance = account.balance.add(delta);
+        } else {
+            changes.merge(iban, delta, BigDecimal::add);
+        }
+    }
+}
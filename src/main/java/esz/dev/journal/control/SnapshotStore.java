@@ -0,0 +1,375 @@
+package esz.dev.journal.control;
+
+import esz.dev.journal.entity.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Stores snapshots of users and accounts in binary files named after the sequence number of the first journal record
+ * not included in them. The accounts of a snapshot are split into chunks of fixed size whose offsets are listed in the
+ * header, so the chunks can be decoded in parallel on startup.
+ * <p>
+ * Layout: {@code [int magic][int version][long sequence][int users][int chunks][long offset] * (chunks + 1)}, followed
+ * by the users and the account chunks, each chunk starting with the number of accounts in it, then by the number of
+ * transfers between shards in progress and the last journal record of each of them. Snapshots of the first version
+ * end with the account chunks.
+ */
+public class SnapshotStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_TRANSFERS = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Sequence number of the newest snapshot, or 0 if there is none.
+     */
+    public long newestSequence() throws IOException {
+        return newest().map(SnapshotStore::sequenceOf).orElse(0L);
+    }
+
+    /**
+     * Reads the newest snapshot. Account chunks are handed to {@code accounts} from several threads when
+     * {@code parallel} is set, so the consumer has to be thread-safe in that case.
+     *
+     * @param transfers receives the last journal record of every transfer between shards in progress
+     * @return the sequence number of the snapshot, or 0 if there is none
+     */
+    long load(Consumer<SnapshotState.UserEntry> users, Consumer<SnapshotState.AccountEntry> accounts,
+              Consumer<JournalRecord> transfers, boolean parallel) throws IOException {
+        Optional<Path> newest = newest();
+        if (!newest.isPresent()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(newest.get(), StandardOpenOption.READ)) {
+            Header header = Header.read(channel, newest.get());
+            ByteBuffer userBuffer = header.mapUsers(channel);
+            for (int i = 0; i < header.userCount; i++) {
+                users.accept(readUser(userBuffer));
+            }
+
+            IntStream chunks = IntStream.range(0, header.chunkCount());
+            try {
+                (parallel ? chunks.parallel() : chunks).forEach(chunk -> {
+                    try {
+                        ByteBuffer buffer = header.mapChunk(channel, chunk);
+                        int count = buffer.getInt();
+                        for (int i = 0; i < count; i++) {
+                            accounts.accept(readAccount(buffer));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            header.readTransfers(channel, newest.get(), transfers);
+            return header.sequence;
+        }
+    }
+
+    /**
+     * Writes the next snapshot: the newest snapshot merged with the changes made after it, which it is streamed with,
+     * so only the changes have to fit into memory. The snapshot is written into a temporary file and moved into place
+     * once it is durable, along with the move, then the snapshots preceding it are deleted.
+     *
+     * @throws IllegalStateException if the changes refer to an account which is neither in the newest snapshot nor
+     *                               created by them
+     */
+    void write(long sequence, SnapshotState changes) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        Optional<Path> previous = newest();
+        Map<String, BigDecimal> pending = new HashMap<>(changes.changes);
+        int userCount;
+        int accountCount;
+        try (FileChannel base = previous.isPresent() ? FileChannel.open(previous.get(), StandardOpenOption.READ) : null;
+             FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Header header = base != null ? Header.read(base, previous.get()) : null;
+            int baseUsers = header != null ? header.userCount : 0;
+            int baseAccounts = header != null ? header.countAccounts(base) : 0;
+            userCount = baseUsers + changes.users.size();
+            accountCount = baseAccounts + changes.accounts.size();
+            int chunkCount = (accountCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            long[] offsets = new long[chunkCount + 1];
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(userCount).putInt(chunkCount);
+            buffer.position(buffer.position() + offsets.length * Long.BYTES);
+            ByteBuffer baseUserBuffer = header != null ? header.mapUsers(base) : null;
+            for (int i = 0; i < baseUsers; i++) {
+                ensureCapacity(channel, buffer);
+                writeUser(buffer, readUser(baseUserBuffer));
+            }
+            for (SnapshotState.UserEntry user : changes.users.values()) {
+                ensureCapacity(channel, buffer);
+                writeUser(buffer, user);
+            }
+
+            Iterator<SnapshotState.AccountEntry> created = changes.accounts.values().iterator();
+            int baseChunk = 0;
+            ByteBuffer baseChunkBuffer = null;
+            int baseLeft = 0;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                ensureCapacity(channel, buffer);
+                offsets[chunk] = channel.position() + buffer.position();
+                int count = Math.min(CHUNK_SIZE, accountCount - chunk * CHUNK_SIZE);
+                buffer.putInt(count);
+                for (int i = 0; i < count; i++) {
+                    SnapshotState.AccountEntry account;
+                    while (baseLeft == 0 && baseChunk < (header != null ? header.chunkCount() : 0)) {
+                        baseChunkBuffer = header.mapChunk(base, baseChunk++);
+                        baseLeft = baseChunkBuffer.getInt();
+                    }
+                    if (baseLeft > 0) {
+                        account = readAccount(baseChunkBuffer);
+                        baseLeft--;
+                        BigDecimal change = pending.remove(account.iban);
+                        if (change != null) {
+                            account.balance = account.balance.add(change);
+                        }
+                    } else {
+                        account = created.next();
+                    }
+                    ensureCapacity(channel, buffer);
+                    writeAccount(buffer, account);
+                }
+            }
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("Journal refers to a missing account with iban "
+                        + pending.keySet().iterator().next());
+            }
+            flush(channel, buffer);
+            offsets[chunkCount] = channel.position();
+
+            List<JournalRecord> transfers = new ArrayList<>();
+            if (header != null) {
+                header.readTransfers(base, previous.get(), record -> {
+                    if (!changes.transfers.containsKey(record.getTransferId())) {
+                        transfers.add(record);
+                    }
+                });
+            }
+            for (JournalRecord record : changes.transfers.values()) {
+                if (SnapshotState.inProgress(record)) {
+                    transfers.add(record);
+                }
+            }
+            buffer.putInt(transfers.size());
+            for (JournalRecord record : transfers) {
+                ensureCapacity(channel, buffer);
+                JournalCodec.encode(record, buffer);
+            }
+            flush(channel, buffer);
+
+            ByteBuffer offsetBuffer = ByteBuffer.allocate(offsets.length * Long.BYTES);
+            for (long offset : offsets) {
+                offsetBuffer.putLong(offset);
+            }
+            offsetBuffer.flip();
+            channel.write(offsetBuffer, HEADER_SIZE);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        // the journal records covered by the snapshot are deleted next, so the move has to be durable first
+        forceDirectory();
+        for (Path snapshot : list()) {
+            if (sequenceOf(snapshot) < sequence) {
+                Files.delete(snapshot);
+            }
+        }
+        LOGGER.info("Written snapshot of {} users and {} accounts up to journal sequence {}",
+                userCount, accountCount, sequence);
+    }
+
+    private void forceDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // directories can not be opened on some platforms, which make the move durable by themselves
+        }
+    }
+
+    private static SnapshotState.UserEntry readUser(ByteBuffer buffer) throws IOException {
+        return new SnapshotState.UserEntry(buffer.getLong(), JournalCodec.getString(buffer),
+                JournalCodec.getString(buffer), JournalCodec.getString(buffer));
+    }
+
+    private static void writeUser(ByteBuffer buffer, SnapshotState.UserEntry user) {
+        buffer.putLong(user.id);
+        JournalCodec.putString(buffer, user.firstName);
+        JournalCodec.putString(buffer, user.lastName);
+        JournalCodec.putString(buffer, user.address);
+    }
+
+    private static SnapshotState.AccountEntry readAccount(ByteBuffer buffer) throws IOException {
+        return new SnapshotState.AccountEntry(JournalCodec.getString(buffer), buffer.getLong(),
+                JournalCodec.getDecimal(buffer));
+    }
+
+    private static void writeAccount(ByteBuffer buffer, SnapshotState.AccountEntry account) {
+        JournalCodec.putString(buffer, account.iban);
+        buffer.putLong(account.userId);
+        JournalCodec.putDecimal(buffer, account.balance);
+    }
+
+    private static void ensureCapacity(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < JournalCodec.MAX_RECORD_SIZE) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Header of a snapshot file, locating its users and its account chunks.
+     */
+    private static final class Header {
+        final int version;
+        final long sequence;
+        final int userCount;
+        final long usersStart;
+        final long[] offsets;
+
+        private Header(int version, long sequence, int userCount, long usersStart, long[] offsets) {
+            this.version = version;
+            this.sequence = sequence;
+            this.userCount = userCount;
+            this.usersStart = usersStart;
+            this.offsets = offsets;
+        }
+
+        static Header read(FileChannel channel, Path file) throws IOException {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION && version != VERSION_WITHOUT_TRANSFERS) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            long sequence = header.getLong();
+            int userCount = header.getInt();
+            int chunkCount = header.getInt();
+            ByteBuffer offsetBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                    (long) (chunkCount + 1) * Long.BYTES);
+            long[] offsets = new long[chunkCount + 1];
+            for (int i = 0; i <= chunkCount; i++) {
+                offsets[i] = offsetBuffer.getLong();
+            }
+            return new Header(version, sequence, userCount, HEADER_SIZE + offsetBuffer.capacity(), offsets);
+        }
+
+        int chunkCount() {
+            return offsets.length - 1;
+        }
+
+        MappedByteBuffer mapUsers(FileChannel channel) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, usersStart, offsets[0] - usersStart);
+        }
+
+        MappedByteBuffer mapChunk(FileChannel channel, int chunk) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offsets[chunk], offsets[chunk + 1] - offsets[chunk]);
+        }
+
+        /**
+         * Reads the last records of the transfers between shards in progress, which follow the account chunks.
+         */
+        void readTransfers(FileChannel channel, Path file, Consumer<JournalRecord> transfers) throws IOException {
+            if (version == VERSION_WITHOUT_TRANSFERS) {
+                return;
+            }
+            long start = offsets[offsets.length - 1];
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, channel.size() - start);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                JournalRecord record = JournalCodec.decode(buffer);
+                if (record == null) {
+                    throw new IOException("Damaged transfer record " + i + " in snapshot " + file);
+                }
+                transfers.accept(record);
+            }
+        }
+
+        /**
+         * Adds up the counts of accounts written at the start of every chunk.
+         */
+        int countAccounts(FileChannel channel) throws IOException {
+            ByteBuffer count = ByteBuffer.allocate(Integer.BYTES);
+            int total = 0;
+            for (int chunk = 0; chunk < chunkCount(); chunk++) {
+                count.clear();
+                while (count.hasRemaining()) {
+                    if (channel.read(count, offsets[chunk] + count.position()) < 0) {
+                        throw new IOException("Truncated snapshot chunk " + chunk);
+                    }
+                }
+                total += count.getInt(0);
+            }
+            return total;
+        }
+    }
+
+    private Optional<Path> newest() throws IOException {
+        List<Path> snapshots = list();
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    private List<Path> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,71 @@
+package esz.dev.journal.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Wither;
+
+import java.math.BigDecimal;
+
+/**
+ * Entity class for operations recorded in the journal. Only the fields relevant for the type of the operation are set.
+ * <p>
+ * The transfers between shards are journaled by both nodes, see {@code CrossShardTransfers}: the node of the sender
+ * journals the start of a transfer, the debit of the sender, which is its decision to commit, and either the delivery
+ * of the decision or the refund of the sender if the receiver refused the credit, and the node of the receiver journals
+ * the credit it holds, then either the credit applied or its abort. The debit, the credit and the refund change the
+ * balances, the other records only the state of the transfers in progress.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Wither
+public class JournalRecord {
+    public enum Type {
+        USER_CREATED, ACCOUNT_CREATED, DEPOSIT, WITHDRAW, TRANSFER,
+        TRANSFER_STARTED, TRANSFER_DEBITED, TRANSFER_DELIVERED, CREDIT_PREPARED, CREDIT_COMMITTED, CREDIT_ABORTED,
+        TRANSFER_REFUNDED;
+
+        /**
+         * Tells whether a record of this type ends a transfer between shards on the node journaling it.
+         */
+        public boolean endsTransfer() {
+            return this == TRANSFER_DELIVERED || this == CREDIT_COMMITTED || this == CREDIT_ABORTED
+                    || this == TRANSFER_REFUNDED;
+        }
+    }
+
+    private Type type;
+    private long sequence;
+    private long userId;
+    private String iban;
+    private String counterpartyIban;
+    private BigDecimal amount;
+    private String firstName;
+    private String lastName;
+    private String address;
+    private String transferId;
+
+    public static JournalRecord userCreated(long userId, String firstName, String lastName, String address) {
+        return JournalRecord.builder().type(Type.USER_CREATED).userId(userId)
+                .firstName(firstName).lastName(lastName).address(address).build();
+    }
+
+    public static JournalRecord accountCreated(long userId, String iban) {
+        return JournalRecord.builder().type(Type.ACCOUNT_CREATED).userId(userId).iban(iban).build();
+    }
+
+    /**
+     * Record of a step of a transfer between shards, see {@link Type}.
+     *
+     * @param iban             the account of this node changed by the transfer
+     * @param counterpartyIban the account of the other node, if known
+     */
+    public static JournalRecord crossShard(Type type, String transferId, String iban, String counterpartyIban,
+                                           BigDecimal amount) {
+        return JournalRecord.builder().type(type).transferId(transferId).iban(iban).counterpartyIban(counterpartyIban)
+                .amount(amount).build();
+    }
+}
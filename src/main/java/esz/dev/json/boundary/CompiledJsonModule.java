@@ -0,0 +1,120 @@
+package esz.dev.json.boundary;
+
+import esz.dev.common.ResponseDto;
+import esz.dev.json.control.DtoCodec;
+import esz.dev.json.control.DtoCodecs;
+import io.jooby.Body;
+import io.jooby.Context;
+import io.jooby.Extension;
+import io.jooby.Jooby;
+import io.jooby.MediaType;
+import io.jooby.MessageDecoder;
+import io.jooby.MessageEncoder;
+import io.jooby.json.JacksonModule;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * JSON bodies read and written with the compiled codecs of the data transfer objects, see {@link DtoCodecs}, in place
+ * of {@link JacksonModule}, which still handles every other type. The bodies are the same as those of Jackson.
+ * <p>
+ * The responses of the successful account operations, see {@link ResponseDto#TRANSFERRED}, are encoded once and their
+ * bodies are shared by all the requests, which the server sends without copying them. Other responses are written into
+ * a buffer kept by every thread and copied into an array of their exact size, as the server only sends arrays from an
+ * encoder. Request bodies are read from the array the server copies them into.
+ */
+public class CompiledJsonModule implements Extension, MessageEncoder, MessageDecoder {
+    private static final int BUFFER_SIZE = 512;
+    /**
+     * Size above which the buffer of a thread is dropped once a response has been written, so a single large
+     * response does not keep a large buffer for every thread.
+     */
+    private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+    private static final ResponseDto[] PREENCODED = {ResponseDto.WITHDRAWN, ResponseDto.DEPOSITED, ResponseDto.TRANSFERRED};
+
+    private final JacksonModule jackson;
+    private final byte[][] preencodedBodies = new byte[PREENCODED.length][];
+    private final ThreadLocal<ByteBuf> buffers = ThreadLocal.withInitial(() -> Unpooled.buffer(BUFFER_SIZE));
+
+    public CompiledJsonModule() {
+        this(new JacksonModule());
+    }
+
+    public CompiledJsonModule(JacksonModule jackson) {
+        this.jackson = jackson;
+        for (int i = 0; i < PREENCODED.length; i++) {
+            ByteBuf buffer = Unpooled.buffer(BUFFER_SIZE);
+            DtoCodecs.RESPONSE.write(PREENCODED[i], buffer);
+            preencodedBodies[i] = ByteBufUtil.getBytes(buffer);
+        }
+    }
+
+    @Override
+    public void install(Jooby application) {
+        application.decoder(MediaType.json, this);
+        application.encoder(MediaType.json, this);
+    }
+
+    @Override
+    public byte[] encode(Context context, Object value) throws Exception {
+        if (DtoCodecs.forType(value.getClass()) == null) {
+            return jackson.encode(context, value);
+        }
+        context.setDefaultResponseType(MediaType.json);
+        return encode(value);
+    }
+
+    @Override
+    public <T> T decode(Context context, Type type) throws Exception {
+        DtoCodec<T> codec = DtoCodecs.forType(type);
+        if (codec == null) {
+            return jackson.decode(context, type);
+        }
+        Body body = context.body();
+        if (body.isInMemory()) {
+            return decode(body.bytes(), codec);
+        }
+        try (InputStream stream = body.stream()) {
+            return decode(stream.readAllBytes(), codec);
+        }
+    }
+
+    /**
+     * @param value a value of a type which has a compiled codec
+     * @return the body of the value, which must not be modified as it may be shared
+     */
+    public byte[] encode(Object value) {
+        for (int i = 0; i < PREENCODED.length; i++) {
+            if (value == PREENCODED[i]) {
+                return preencodedBodies[i];
+            }
+        }
+        DtoCodec<Object> codec = DtoCodecs.forType(value.getClass());
+        ByteBuf buffer = buffers.get();
+        try {
+            codec.write(value, buffer);
+            return ByteBufUtil.getBytes(buffer);
+        } finally {
+            if (buffer.capacity() > MAX_KEPT_BUFFER_SIZE) {
+                buffers.remove();
+            } else {
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * @param type a type which has a compiled codec
+     */
+    public <T> T decode(byte[] body, Type type) {
+        return decode(body, DtoCodecs.forType(type));
+    }
+
+    private static <T> T decode(byte[] body, DtoCodec<T> codec) {
+        return codec.read(Unpooled.wrappedBuffer(body));
+    }
+}
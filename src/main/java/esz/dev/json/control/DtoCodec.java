@@ -0,0 +1,18 @@
+package esz.dev.json.control;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Serializer and deserializer of a data transfer object written for its fields, writing and reading JSON straight to
+ * and from a {@link ByteBuf} without reflection. The JSON written is the same as the one written by Jackson.
+ */
+public interface DtoCodec<T> {
+    void write(T value, ByteBuf out);
+
+    /**
+     * Reads a value, moving the reader index of the buffer past it.
+     *
+     * @throws MalformedJsonException if the next value of the buffer is not a valid JSON value of the type
+     */
+    T read(ByteBuf in);
+}
@@ -0,0 +1,264 @@
+package esz.dev.json.control;
+
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.user.control.UserDto;
+import io.netty.buffer.ByteBuf;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled codecs of the data transfer objects of the REST end-points, and of arrays of them. Fields are written
+ * in the order Jackson writes them, with their names and the punctuation around them encoded once, and read in any
+ * order. As with Jackson, unknown fields are rejected and missing fields are left null.
+ */
+public final class DtoCodecs {
+    public static final DtoCodec<AmountDto> AMOUNT = new AmountCodec();
+    public static final DtoCodec<TransferAmountDto> TRANSFER_AMOUNT = new TransferAmountCodec();
+    public static final DtoCodec<UserDto> USER = new UserCodec();
+    public static final DtoCodec<ResponseDto> RESPONSE = new ResponseCodec();
+
+    private static final Map<Type, DtoCodec<?>> CODECS = Map.of(
+            AmountDto.class, AMOUNT,
+            AmountDto[].class, new ArrayCodec<>(AmountDto.class, AMOUNT),
+            TransferAmountDto.class, TRANSFER_AMOUNT,
+            TransferAmountDto[].class, new ArrayCodec<>(TransferAmountDto.class, TRANSFER_AMOUNT),
+            UserDto.class, USER,
+            UserDto[].class, new ArrayCodec<>(UserDto.class, USER),
+            ResponseDto.class, RESPONSE,
+            ResponseDto[].class, new ArrayCodec<>(ResponseDto.class, RESPONSE));
+
+    private DtoCodecs() {
+    }
+
+    /**
+     * @return the codec of a type, null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DtoCodec<T> forType(Type type) {
+        return (DtoCodec<T>) CODECS.get(type);
+    }
+
+    private static byte[][] names(String... names) {
+        byte[][] encoded = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = JsonOutput.ascii(names[i]);
+        }
+        return encoded;
+    }
+
+    private static final class AmountCodec implements DtoCodec<AmountDto> {
+        private static final byte[][] FIELDS = names("iban", "amount");
+        private static final byte[] IBAN = JsonOutput.ascii("{\"iban\":");
+        private static final byte[] AMOUNT = JsonOutput.ascii(",\"amount\":");
+
+        @Override
+        public void write(AmountDto value, ByteBuf out) {
+            out.writeBytes(IBAN);
+            JsonOutput.writeString(out, value.getIban());
+            out.writeBytes(AMOUNT);
+            JsonOutput.writeDecimal(out, value.getAmount());
+            out.writeByte('}');
+        }
+
+        @Override
+        public AmountDto read(ByteBuf in) {
+            if (JsonInput.readNull(in)) {
+                return null;
+            }
+            AmountDto value = new AmountDto();
+            if (JsonInput.beginObject(in)) {
+                do {
+                    if (JsonInput.readField(in, FIELDS) == 0) {
+                        value.setIban(JsonInput.readString(in));
+                    } else {
+                        value.setAmount(JsonInput.readDecimal(in));
+                    }
+                } while (JsonInput.nextField(in));
+            }
+            return value;
+        }
+    }
+
+    private static final class TransferAmountCodec implements DtoCodec<TransferAmountDto> {
+        private static final byte[][] FIELDS = names("senderIban", "receiverIban", "amount");
+        private static final byte[] SENDER_IBAN = JsonOutput.ascii("{\"senderIban\":");
+        private static final byte[] RECEIVER_IBAN = JsonOutput.ascii(",\"receiverIban\":");
+        private static final byte[] AMOUNT = JsonOutput.ascii(",\"amount\":");
+
+        @Override
+        public void write(TransferAmountDto value, ByteBuf out) {
+            out.writeBytes(SENDER_IBAN);
+            JsonOutput.writeString(out, value.getSenderIban());
+            out.writeBytes(RECEIVER_IBAN);
+            JsonOutput.writeString(out, value.getReceiverIban());
+            out.writeBytes(AMOUNT);
+            JsonOutput.writeDecimal(out, value.getAmount());
+            out.writeByte('}');
+        }
+
+        @Override
+        public TransferAmountDto read(ByteBuf in) {
+            if (JsonInput.readNull(in)) {
+                return null;
+            }
+            TransferAmountDto value = new TransferAmountDto();
+            if (JsonInput.beginObject(in)) {
+                do {
+                    switch (JsonInput.readField(in, FIELDS)) {
+                        case 0:
+                            value.setSenderIban(JsonInput.readString(in));
+                            break;
+                        case 1:
+                            value.setReceiverIban(JsonInput.readString(in));
+                            break;
+                        default:
+                            value.setAmount(JsonInput.readDecimal(in));
+                    }
+                } while (JsonInput.nextField(in));
+            }
+            return value;
+        }
+    }
+
+    private static final class UserCodec implements DtoCodec<UserDto> {
+        private static final byte[][] FIELDS = names("firstName", "lastName", "address");
+        private static final byte[] FIRST_NAME = JsonOutput.ascii("{\"firstName\":");
+        private static final byte[] LAST_NAME = JsonOutput.ascii(",\"lastName\":");
+        private static final byte[] ADDRESS = JsonOutput.ascii(",\"address\":");
+
+        @Override
+        public void write(UserDto value, ByteBuf out) {
+            out.writeBytes(FIRST_NAME);
+            JsonOutput.writeString(out, value.getFirstName());
+            out.writeBytes(LAST_NAME);
+            JsonOutput.writeString(out, value.getLastName());
+            out.writeBytes(ADDRESS);
+            JsonOutput.writeString(out, value.getAddress());
+            out.writeByte('}');
+        }
+
+        @Override
+        public UserDto read(ByteBuf in) {
+            if (JsonInput.readNull(in)) {
+                return null;
+            }
+            UserDto value = new UserDto();
+            if (JsonInput.beginObject(in)) {
+                do {
+                    switch (JsonInput.readField(in, FIELDS)) {
+                        case 0:
+                            value.setFirstName(JsonInput.readString(in));
+                            break;
+                        case 1:
+                            value.setLastName(JsonInput.readString(in));
+                            break;
+                        default:
+                            value.setAddress(JsonInput.readString(in));
+                    }
+                } while (JsonInput.nextField(in));
+            }
+            return value;
+        }
+    }
+
+    private static final class ResponseCodec implements DtoCodec<ResponseDto> {
+        private static final byte[][] FIELDS = names("status", "message");
+        private static final ResponseDto.Status[] STATUSES = ResponseDto.Status.values();
+        private static final byte[][] STATUS = new byte[STATUSES.length][];
+        private static final byte[] NULL_STATUS = JsonOutput.ascii("{\"status\":null");
+        private static final byte[] MESSAGE = JsonOutput.ascii(",\"message\":");
+
+        static {
+            for (ResponseDto.Status status : STATUSES) {
+                STATUS[status.ordinal()] = JsonOutput.ascii("{\"status\":\"" + status.name() + "\"");
+            }
+        }
+
+        @Override
+        public void write(ResponseDto value, ByteBuf out) {
+            out.writeBytes(value.getStatus() == null ? NULL_STATUS : STATUS[value.getStatus().ordinal()]);
+            out.writeBytes(MESSAGE);
+            JsonOutput.writeString(out, value.getMessage());
+            out.writeByte('}');
+        }
+
+        @Override
+        public ResponseDto read(ByteBuf in) {
+            if (JsonInput.readNull(in)) {
+                return null;
+            }
+            ResponseDto.Status status = null;
+            String message = null;
+            if (JsonInput.beginObject(in)) {
+                do {
+                    if (JsonInput.readField(in, FIELDS) == 0) {
+                        status = readStatus(in);
+                    } else {
+                        message = JsonInput.readString(in);
+                    }
+                } while (JsonInput.nextField(in));
+            }
+            return new ResponseDto(status, message);
+        }
+
+        private static ResponseDto.Status readStatus(ByteBuf in) {
+            String name = JsonInput.readString(in);
+            if (name == null) {
+                return null;
+            }
+            for (ResponseDto.Status status : STATUSES) {
+                if (status.name().equals(name)) {
+                    return status;
+                }
+            }
+            throw new MalformedJsonException("Unknown status " + name);
+        }
+    }
+
+    private static final class ArrayCodec<T> implements DtoCodec<T[]> {
+        private final Class<T> elementType;
+        private final DtoCodec<T> elementCodec;
+
+        private ArrayCodec(Class<T> elementType, DtoCodec<T> elementCodec) {
+            this.elementType = elementType;
+            this.elementCodec = elementCodec;
+        }
+
+        @Override
+        public void write(T[] values, ByteBuf out) {
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                if (values[i] == null) {
+                    JsonOutput.writeNull(out);
+                } else {
+                    elementCodec.write(values[i], out);
+                }
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T[] read(ByteBuf in) {
+            if (JsonInput.readNull(in)) {
+                return null;
+            }
+            List<T> values = new ArrayList<>();
+            if (JsonInput.beginArray(in)) {
+                do {
+                    values.add(elementCodec.read(in));
+                } while (JsonInput.nextElement(in));
+            }
+            return values.toArray((T[]) Array.newInstance(elementType, values.size()));
+        }
+    }
+}
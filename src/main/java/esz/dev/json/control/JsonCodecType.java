@@ -0,0 +1,15 @@
+package esz.dev.json.control;
+
+/**
+ * How the JSON bodies of the REST end-points are read and written.
+ */
+public enum JsonCodecType {
+    /**
+     * Every body is read and written by Jackson.
+     */
+    JACKSON,
+    /**
+     * The bodies of the data transfer objects are read and written by their compiled codecs, see {@link DtoCodecs}.
+     */
+    COMPILED
+}
@@ -0,0 +1,337 @@
+package esz.dev.json.control;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ByteProcessor;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads JSON values straight from a {@link ByteBuf}, moving its reader index past every value read. Field names are
+ * matched against the encoded names of the fields of a data transfer object without being decoded, and strings
+ * without escapes are decoded in a single pass.
+ */
+final class JsonInput {
+    private static final ByteProcessor PLAIN_STRING = value -> value != '"' && value != '\\' && (value & 0xFF) >= 0x20;
+    private static final int MAX_EXPONENT_DIGITS = 9;
+
+    private JsonInput() {
+    }
+
+    /**
+     * @return whether the next value is {@code null}, which is then read
+     */
+    static boolean readNull(ByteBuf in) {
+        if (peek(in) != 'n') {
+            return false;
+        }
+        if (in.readableBytes() < 4 || in.readByte() != 'n' || in.readByte() != 'u' || in.readByte() != 'l'
+                || in.readByte() != 'l') {
+            throw new MalformedJsonException("Unexpected token instead of null");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the start of an object.
+     *
+     * @return whether the object has fields, if not the whole object is read
+     */
+    static boolean beginObject(ByteBuf in) {
+        expect(in, '{');
+        return !skipIf(in, '}');
+    }
+
+    /**
+     * Reads the name of the next field of an object and the colon following it.
+     *
+     * @param names the encoded names of the fields which may be found
+     * @return the index of the name of the field
+     */
+    static int readField(ByteBuf in, byte[][] names) {
+        expect(in, '"');
+        int start = in.readerIndex();
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (in.readableBytes() > name.length && in.getByte(start + name.length) == '"' && matches(in, start, name)) {
+                in.readerIndex(start + name.length + 1);
+                expect(in, ':');
+                return i;
+            }
+        }
+        in.readerIndex(start - 1);
+        throw new MalformedJsonException("Unrecognized field " + readString(in));
+    }
+
+    /**
+     * Reads what follows a field of an object.
+     *
+     * @return whether another field follows, if not the end of the object is read
+     */
+    static boolean nextField(ByteBuf in) {
+        return next(in, '}');
+    }
+
+    /**
+     * Reads the start of an array.
+     *
+     * @return whether the array has elements, if not the whole array is read
+     */
+    static boolean beginArray(ByteBuf in) {
+        expect(in, '[');
+        return !skipIf(in, ']');
+    }
+
+    /**
+     * Reads what follows an element of an array.
+     *
+     * @return whether another element follows, if not the end of the array is read
+     */
+    static boolean nextElement(ByteBuf in) {
+        return next(in, ']');
+    }
+
+    static String readString(ByteBuf in) {
+        if (readNull(in)) {
+            return null;
+        }
+        expect(in, '"');
+        int start = in.readerIndex();
+        int end = in.forEachByte(PLAIN_STRING);
+        if (end < 0) {
+            throw endOfBody();
+        }
+        if (in.getByte(end) == '"') {
+            in.readerIndex(end + 1);
+            return in.toString(start, end - start, StandardCharsets.UTF_8);
+        }
+        return readEscapedString(in, start, end);
+    }
+
+    /**
+     * Reads a number, or a string holding a number, as Jackson does for decimal fields. Numbers with up to 18 digits are
+     * read without being decoded into a string first.
+     */
+    static BigDecimal readDecimal(ByteBuf in) {
+        byte first = peek(in);
+        if (first == 'n') {
+            readNull(in);
+            return null;
+        }
+        if (first == '"') {
+            String value = readString(in);
+            try {
+                return new BigDecimal(value.trim());
+            } catch (NumberFormatException e) {
+                throw new MalformedJsonException("Invalid number " + value);
+            }
+        }
+        int start = in.readerIndex();
+        boolean negative = skipByte(in, '-');
+        long unscaled = 0;
+        boolean overflow = false;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        long exponent = 0;
+        int digit;
+        while ((digit = readDigit(in)) >= 0) {
+            if (integerDigits == 1 && unscaled == 0 && !overflow) {
+                throw new MalformedJsonException("Leading zeroes are not allowed");
+            }
+            integerDigits++;
+            if (unscaled > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                unscaled = unscaled * 10 + digit;
+            }
+        }
+        if (integerDigits == 0) {
+            throw new MalformedJsonException("Invalid number");
+        }
+        if (skipByte(in, '.')) {
+            while ((digit = readDigit(in)) >= 0) {
+                fractionDigits++;
+                if (unscaled > (Long.MAX_VALUE - digit) / 10) {
+                    overflow = true;
+                } else {
+                    unscaled = unscaled * 10 + digit;
+                }
+            }
+            if (fractionDigits == 0) {
+                throw new MalformedJsonException("Invalid number");
+            }
+        }
+        if (skipByte(in, 'e') || skipByte(in, 'E')) {
+            boolean negativeExponent = skipByte(in, '-');
+            if (!negativeExponent) {
+                skipByte(in, '+');
+            }
+            int exponentDigits = 0;
+            while ((digit = readDigit(in)) >= 0) {
+                exponentDigits++;
+                exponent = exponent * 10 + digit;
+            }
+            if (exponentDigits == 0) {
+                throw new MalformedJsonException("Invalid number");
+            }
+            overflow |= exponentDigits > MAX_EXPONENT_DIGITS;
+            exponent = negativeExponent ? -exponent : exponent;
+        }
+        long scale = fractionDigits - exponent;
+        if (overflow || scale != (int) scale) {
+            String value = in.toString(start, in.readerIndex() - start, StandardCharsets.US_ASCII);
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new MalformedJsonException("Invalid number " + value);
+            }
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, (int) scale);
+    }
+
+    private static String readEscapedString(ByteBuf in, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start + 16);
+        while (true) {
+            byte stop = in.getByte(end);
+            value.append(in.toString(start, end - start, StandardCharsets.UTF_8));
+            in.readerIndex(end + 1);
+            if (stop == '"') {
+                return value.toString();
+            }
+            if (stop != '\\') {
+                throw new MalformedJsonException("Unescaped control character in a string");
+            }
+            if (!in.isReadable()) {
+                throw endOfBody();
+            }
+            byte escaped = in.readByte();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append((char) escaped);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'u':
+                    value.append(readHexCharacter(in));
+                    break;
+                default:
+                    throw new MalformedJsonException("Invalid escape \\" + (char) escaped);
+            }
+            start = in.readerIndex();
+            end = in.forEachByte(PLAIN_STRING);
+            if (end < 0) {
+                throw endOfBody();
+            }
+        }
+    }
+
+    private static char readHexCharacter(ByteBuf in) {
+        if (in.readableBytes() < 4) {
+            throw endOfBody();
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(in.readByte(), 16);
+            if (digit < 0) {
+                throw new MalformedJsonException("Invalid unicode escape");
+            }
+            value = value << 4 | digit;
+        }
+        return (char) value;
+    }
+
+    private static int readDigit(ByteBuf in) {
+        if (!in.isReadable()) {
+            return -1;
+        }
+        int digit = in.getByte(in.readerIndex()) - '0';
+        if (digit < 0 || digit > 9) {
+            return -1;
+        }
+        in.skipBytes(1);
+        return digit;
+    }
+
+    /**
+     * Reads the next byte if it is the expected one, without skipping whitespace.
+     */
+    private static boolean skipByte(ByteBuf in, char expected) {
+        if (!in.isReadable() || in.getByte(in.readerIndex()) != expected) {
+            return false;
+        }
+        in.skipBytes(1);
+        return true;
+    }
+
+    private static boolean matches(ByteBuf in, int start, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (in.getByte(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean next(ByteBuf in, char end) {
+        byte separator = peek(in);
+        in.skipBytes(1);
+        if (separator == ',') {
+            return true;
+        }
+        if (separator == end) {
+            return false;
+        }
+        throw new MalformedJsonException("Unexpected character " + (char) separator + " instead of , or " + end);
+    }
+
+    private static void expect(ByteBuf in, char expected) {
+        byte actual = peek(in);
+        if (actual != expected) {
+            throw new MalformedJsonException("Unexpected character " + (char) actual + " instead of " + expected);
+        }
+        in.skipBytes(1);
+    }
+
+    private static boolean skipIf(ByteBuf in, char expected) {
+        if (peek(in) != expected) {
+            return false;
+        }
+        in.skipBytes(1);
+        return true;
+    }
+
+    /**
+     * Skips the whitespace before the next token.
+     *
+     * @return the first byte of the next token, which is not read
+     */
+    private static byte peek(ByteBuf in) {
+        while (in.isReadable()) {
+            byte value = in.getByte(in.readerIndex());
+            if (value != ' ' && value != '\n' && value != '\r' && value != '\t') {
+                return value;
+            }
+            in.skipBytes(1);
+        }
+        throw endOfBody();
+    }
+
+    private static MalformedJsonException endOfBody() {
+        return new MalformedJsonException("Unexpected end of the body");
+    }
+}
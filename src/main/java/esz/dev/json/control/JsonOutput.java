@@ -0,0 +1,98 @@
+package esz.dev.json.control;
+
+import io.netty.buffer.ByteBuf;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON values as UTF-8 straight into a {@link ByteBuf}, escaping strings the way Jackson does, so the bodies
+ * written by the compiled codecs are the same bytes as those Jackson writes.
+ */
+final class JsonOutput {
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+    /**
+     * The character following the backslash of the short escape of every ASCII character, 0 if it is written as it is
+     * and -1 if it is written as a unicode escape.
+     */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = -1;
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+    }
+
+    private JsonOutput() {
+    }
+
+    static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeBytes(NULL);
+            return;
+        }
+        out.writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    out.writeByte(c);
+                } else if (escape > 0) {
+                    out.writeByte('\\');
+                    out.writeByte(escape);
+                } else {
+                    writeUnicodeEscape(out, c);
+                }
+            } else if (c < 0x800) {
+                out.writeByte(0xC0 | (c >> 6));
+                out.writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // as Jackson does, characters outside of the basic plane are written as two escaped surrogates
+                writeUnicodeEscape(out, c);
+            } else {
+                out.writeByte(0xE0 | (c >> 12));
+                out.writeByte(0x80 | ((c >> 6) & 0x3F));
+                out.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        out.writeByte('"');
+    }
+
+    private static void writeUnicodeEscape(ByteBuf out, char c) {
+        out.writeByte('\\');
+        out.writeByte('u');
+        out.writeByte(HEX[c >> 12]);
+        out.writeByte(HEX[(c >> 8) & 0xF]);
+        out.writeByte(HEX[(c >> 4) & 0xF]);
+        out.writeByte(HEX[c & 0xF]);
+    }
+
+    /**
+     * Writes a number as {@link BigDecimal#toString()}, which the decimal caches, as Jackson does by default.
+     */
+    static void writeDecimal(ByteBuf out, BigDecimal value) {
+        if (value == null) {
+            out.writeBytes(NULL);
+        } else {
+            out.writeCharSequence(value.toString(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    static void writeNull(ByteBuf out) {
+        out.writeBytes(NULL);
+    }
+}
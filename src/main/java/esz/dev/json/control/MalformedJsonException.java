@@ -0,0 +1,12 @@
+package esz.dev.json.control;
+
+/**
+ * Thrown by the compiled codecs when a body is not valid JSON or does not match the data transfer object it is read
+ * into. It is an {@link IllegalArgumentException}, so the request is answered with a 400 Bad Request as when Jackson
+ * fails to read the body.
+ */
+public class MalformedJsonException extends IllegalArgumentException {
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package esz.dev.metrics.boundary;
+
+import esz.dev.common.ResponseDto;
+import esz.dev.journal.control.Journal;
+import io.jooby.Context;
+import io.jooby.StatusCode;
+import io.jooby.annotations.GET;
+import io.jooby.annotations.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Health end-point for the probes restarting the node. The node is unhealthy once its journal has failed, as it
+ * refuses every change until it is restarted and recovers, see {@link Journal#isHealthy()}.
+ */
+@Singleton
+@Path("/health")
+public class HealthResource {
+    private final Journal journal;
+
+    @Inject
+    public HealthResource(Journal journal) {
+        this.journal = journal;
+    }
+
+    @GET
+    public ResponseDto health(Context context) {
+        if (!journal.isHealthy()) {
+            context.setResponseCode(StatusCode.SERVICE_UNAVAILABLE);
+            return new ResponseDto(ResponseDto.Status.FAILURE, "Journal has failed, the node has to be restarted!");
+        }
+        return new ResponseDto(ResponseDto.Status.SUCCESS, "Healthy");
+    }
+}
@@ -0,0 +1,29 @@
+package esz.dev.metrics.boundary;
+
+import esz.dev.metrics.control.MetricsRegistry;
+import io.jooby.Context;
+import io.jooby.MediaType;
+import io.jooby.annotations.GET;
+import io.jooby.annotations.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Scrape end-point exposing the metrics of the application in the Prometheus text format.
+ */
+@Singleton
+@Path("/metrics")
+public class MetricsResource {
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    public MetricsResource(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @GET
+    public Context scrape(Context context) {
+        return context.setResponseType(MediaType.text).send(metricsRegistry.scrape());
+    }
+}
@@ -0,0 +1,72 @@
+package esz.dev.metrics.boundary;
+
+import esz.dev.metrics.control.LatencyHistogram;
+import esz.dev.metrics.control.MetricsRegistry;
+import io.jooby.Route;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route decorator recording the latency of every request and counting the requests failed with an exception, by
+ * route and by exception type. The metrics of a route are registered on its first request and cached afterwards, and
+ * so are its failure counters on the first failure of each type. A request whose handler returns a future is recorded
+ * once the future completes.
+ */
+public class RouteMetrics implements Route.Decorator {
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<Route, RouteMeters> meters = new ConcurrentHashMap<>();
+
+    public RouteMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Route.Handler apply(Route.Handler next) {
+        return context -> {
+            long start = System.nanoTime();
+            RouteMeters route = meters.computeIfAbsent(context.getRoute(), RouteMeters::new);
+            Object result;
+            try {
+                result = next.apply(context);
+            } catch (Exception e) {
+                route.failed(e);
+                route.latency.record(System.nanoTime() - start);
+                throw e;
+            }
+            if (result instanceof CompletionStage) {
+                ((CompletionStage<?>) result).whenComplete((value, failure) -> {
+                    if (failure != null) {
+                        route.failed(failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause() : failure);
+                    }
+                    route.latency.record(System.nanoTime() - start);
+                });
+            } else {
+                route.latency.record(System.nanoTime() - start);
+            }
+            return result;
+        };
+    }
+
+    private final class RouteMeters {
+        private final Route route;
+        private final LatencyHistogram latency;
+        private final ConcurrentMap<Class<?>, LongAdder> failures = new ConcurrentHashMap<>();
+
+        private RouteMeters(Route route) {
+            this.route = route;
+            this.latency = registry.histogram("http_server_requests_seconds", "Latency of the requests served.",
+                    "method", route.getMethod(), "route", route.getPattern());
+        }
+
+        private void failed(Throwable failure) {
+            failures.computeIfAbsent(failure.getClass(), type -> registry.counter("http_server_request_failures_total",
+                    "Requests failed with an exception.", "method", route.getMethod(), "route", route.getPattern(),
+                    "exception", type.getSimpleName())).increment();
+        }
+    }
+}
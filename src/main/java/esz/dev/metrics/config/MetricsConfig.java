@@ -0,0 +1,21 @@
+package esz.dev.metrics.config;
+
+import com.google.inject.AbstractModule;
+import esz.dev.metrics.control.MetricsRegistry;
+
+/**
+ * Configuration for Guice to share the metrics registry of the application, which is also used by the route decorator
+ * installed before the injector exists.
+ */
+public class MetricsConfig extends AbstractModule {
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsConfig(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    protected void configure() {
+        bind(MetricsRegistry.class).toInstance(metricsRegistry);
+    }
+}
@@ -0,0 +1,134 @@
+package esz.dev.metrics.control;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with log-linear buckets in the style of HdrHistogram: every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so a recorded value is known within 1/{@value #SUB_BUCKETS} of itself.
+ * Values are recorded without locks into one of several stripes of counters chosen by the recording thread, so threads
+ * recording into the same histogram rarely write the same cache line.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values above 2^40 nanoseconds, about 18 minutes, are recorded into the last bucket.
+     */
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int SUM = BUCKETS;
+    private static final int MAX_STRIPES = 16;
+
+    private final AtomicLongArray[] stripes;
+    private final int mask;
+
+    public LatencyHistogram() {
+        int size = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1));
+        this.stripes = new AtomicLongArray[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Records a latency. Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.getAndIncrement(indexOf(value));
+        stripe.getAndAdd(SUM, value);
+    }
+
+    /**
+     * Sums up the stripes. Values recorded concurrently may or may not be part of the snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long bucket = stripe.get(i);
+                counts[i] += bucket;
+                count += bucket;
+            }
+            sum += stripe.get(SUM);
+        }
+        return new Snapshot(counts, count, sum);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Highest value recorded into a bucket.
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of the counts of a histogram.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] counts, long count, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Sum of the recorded values in nanoseconds.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Number of recorded values whose bucket lies entirely at or below the given value.
+         */
+        public long countAtOrBelow(long nanos) {
+            long result = 0;
+            for (int i = 0; i < BUCKETS && highestValueOf(i) <= nanos; i++) {
+                result += counts[i];
+            }
+            return result;
+        }
+
+        /**
+         * Highest value of the bucket holding the given quantile, so the result never understates the latency.
+         */
+        public long valueAtQuantile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
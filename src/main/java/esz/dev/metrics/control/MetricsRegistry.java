@@ -0,0 +1,148 @@
+package esz.dev.metrics.control;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the counters, gauges and latency histograms of the application, rendered in the Prometheus text exposition
+ * format. Metrics are looked up by name and labels when they are registered, so the hot path only holds on to the
+ * returned metric and records into it without any lookup.
+ */
+public class MetricsRegistry {
+    /**
+     * Upper bounds, in nanoseconds, of the cumulative buckets exported for every histogram.
+     */
+    private static final long[] EXPORTED_BUCKETS = {
+            1_000L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L,
+            500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).metrics
+                .computeIfAbsent(formatLabels(labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).metrics
+                .computeIfAbsent(formatLabels(labels), key -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge whose value is read every time the metrics are rendered. A gauge already registered with the
+     * same name and labels is kept.
+     *
+     * @param labels alternating label names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.putIfAbsent(formatLabels(labels), value);
+    }
+
+    /**
+     * Renders every registered metric. Latencies are exported in seconds, as the exposition format expects.
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            builder.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                if (family.type == Type.COUNTER) {
+                    appendSample(builder, name, metric.getKey(), null, ((LongAdder) metric.getValue()).sum());
+                } else if (family.type == Type.GAUGE) {
+                    builder.append(name).append(metric.getKey()).append(' ')
+                            .append(((DoubleSupplier) metric.getValue()).getAsDouble()).append('\n');
+                } else {
+                    appendHistogram(builder, name, metric.getKey(), ((LatencyHistogram) metric.getValue()).snapshot());
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static void appendHistogram(StringBuilder builder, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        for (long bucket : EXPORTED_BUCKETS) {
+            appendSample(builder, name + "_bucket", labels, "le=\"" + bucket / NANOS_PER_SECOND + '"',
+                    snapshot.countAtOrBelow(bucket));
+        }
+        appendSample(builder, name + "_bucket", labels, "le=\"+Inf\"", snapshot.getCount());
+        builder.append(name).append("_sum").append(labels).append(' ').append(snapshot.getSum() / NANOS_PER_SECOND).append('\n');
+        appendSample(builder, name + "_count", labels, null, snapshot.getCount());
+    }
+
+    private static void appendSample(StringBuilder builder, String name, String labels, String extraLabel, long value) {
+        builder.append(name);
+        if (extraLabel == null) {
+            builder.append(labels);
+        } else if (labels.isEmpty()) {
+            builder.append('{').append(extraLabel).append('}');
+        } else {
+            builder.append(labels, 0, labels.length() - 1).append(',').append(extraLabel).append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                if (c == '\\' || c == '"') {
+                    builder.append('\\').append(c);
+                } else if (c == '\n') {
+                    builder.append("\\n");
+                } else {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static class Family {
+        private final String help;
+        private final Type type;
+        private final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
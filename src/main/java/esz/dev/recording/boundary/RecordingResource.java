@@ -0,0 +1,44 @@
+package esz.dev.recording.boundary;
+
+import esz.dev.common.ResponseDto;
+import esz.dev.recording.control.RecordingService;
+import esz.dev.recording.control.RecordingStateException;
+import io.jooby.annotations.POST;
+import io.jooby.annotations.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+
+/**
+ * Admin end-point to start and stop flight recordings and to dump them into local files. Only the names of the files
+ * are returned, not where the recording directory is.
+ */
+@Singleton
+@Path("/admin/recording")
+public class RecordingResource {
+    private final RecordingService recordingService;
+
+    @Inject
+    public RecordingResource(RecordingService recordingService) {
+        this.recordingService = recordingService;
+    }
+
+    @POST("/start")
+    public ResponseDto start() throws RecordingStateException {
+        recordingService.start();
+        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully started flight recording!").build();
+    }
+
+    @POST("/dump")
+    public ResponseDto dump() throws RecordingStateException, IOException {
+        java.nio.file.Path file = recordingService.dump();
+        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully dumped flight recording to " + file.getFileName()).build();
+    }
+
+    @POST("/stop")
+    public ResponseDto stop() throws RecordingStateException, IOException {
+        java.nio.file.Path file = recordingService.stop();
+        return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully stopped flight recording and dumped it to " + file.getFileName()).build();
+    }
+}
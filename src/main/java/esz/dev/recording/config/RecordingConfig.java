@@ -0,0 +1,24 @@
+package esz.dev.recording.config;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import esz.dev.recording.control.RecordingService;
+
+import java.nio.file.Paths;
+
+/**
+ * Configuration for Guice to locate the flight recording dumps according to the application configuration.
+ */
+public class RecordingConfig extends AbstractModule {
+    private final Config config;
+
+    public RecordingConfig(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void configure() {
+        bind(RecordingService.class).toInstance(new RecordingService(Paths.get(config.hasPath("recording.directory")
+                ? config.getString("recording.directory") : "recordings")));
+    }
+}
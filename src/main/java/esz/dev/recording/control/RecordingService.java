@@ -0,0 +1,76 @@
+package esz.dev.recording.control;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Controls a single Java Flight Recorder recording of the application. Recordings use the {@code default} settings
+ * shipped with the JDK, meant to be left running in production, which also enable the custom events of the
+ * application. Dumps are written into a local directory.
+ */
+public class RecordingService {
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("'recording-'yyyyMMdd-HHmmss-SSS'.jfr'");
+
+    private final Path directory;
+    private Recording recording;
+
+    public RecordingService(Path directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void start() throws RecordingStateException {
+        if (recording != null) {
+            throw new RecordingStateException("A flight recording is already running");
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration("default");
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Failed to load the default flight recorder settings", e);
+        }
+        Recording started = new Recording(configuration);
+        started.setName("revolut-backend-test");
+        started.setToDisk(true);
+        started.start();
+        recording = started;
+    }
+
+    /**
+     * Writes everything recorded so far into a new file, while the recording goes on.
+     *
+     * @return the file written
+     */
+    public synchronized Path dump() throws RecordingStateException, IOException {
+        if (recording == null) {
+            throw new RecordingStateException("No flight recording is running");
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(LocalDateTime.now().format(FILE_NAME));
+        recording.dump(file);
+        return file;
+    }
+
+    /**
+     * Stops the recording and writes it into a new file.
+     *
+     * @return the file written
+     */
+    public synchronized Path stop() throws RecordingStateException, IOException {
+        Path file = dump();
+        recording.stop();
+        recording.close();
+        recording = null;
+        return file;
+    }
+
+    public synchronized boolean isRunning() {
+        return recording != null;
+    }
+}
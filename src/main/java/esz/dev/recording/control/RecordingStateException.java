@@ -0,0 +1,11 @@
+package esz.dev.recording.control;
+
+/**
+ * Exception which should be thrown in case a recording is started while another one is running, or is stopped or
+ * dumped while none is running.
+ */
+public class RecordingStateException extends Exception {
+    public RecordingStateException(String what) {
+        super(what);
+    }
+}
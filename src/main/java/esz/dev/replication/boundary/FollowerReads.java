@@ -0,0 +1,59 @@
+package esz.dev.replication.boundary;
+
+import esz.dev.account.control.ExportUnavailableException;
+import esz.dev.replication.control.JournalFollower;
+import io.jooby.Route;
+
+import javax.inject.Provider;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Route decorator of a follower. Serves the reads of balances and users as long as the follower is at most
+ * {@code maxStaleness} behind its primary, with its staleness in milliseconds in the {@value #STALENESS_HEADER}
+ * header, and rejects every other request of the API, which only the primary serves. Consistent exports of the
+ * balances are rejected too: the follower applies the journal of its primary without keeping the balances an export
+ * in progress has not read yet.
+ */
+public class FollowerReads implements Route.Decorator {
+    public static final String STALENESS_HEADER = "Replica-Staleness";
+    private static final String EXPORT_PATTERN = "/api/account/export";
+
+    private final Provider<JournalFollower> followerProvider;
+    private final Set<String> reads;
+    private final long maxStalenessMillis;
+
+    /**
+     * @param followerProvider provides the follower once the application has started
+     * @param reads            patterns of the routes served by the follower
+     */
+    public FollowerReads(Provider<JournalFollower> followerProvider, Set<String> reads, Duration maxStaleness) {
+        this.followerProvider = followerProvider;
+        this.reads = reads;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+    }
+
+    @Override
+    public Route.Handler apply(Route.Handler next) {
+        return context -> {
+            String pattern = context.getRoute().getPattern();
+            if (!pattern.startsWith("/api/")) {
+                return next.apply(context);
+            }
+            if (!context.getMethod().equals("GET") || !reads.contains(pattern)) {
+                throw new ReadOnlyFollowerException("This node is a read-only follower, " + context.getMethod() + " "
+                        + context.pathString() + " is only served by the primary!");
+            }
+            if (pattern.equals(EXPORT_PATTERN) && context.query("consistent").booleanValue(false)) {
+                throw new ExportUnavailableException("Consistent exports are only served by the primary!");
+            }
+            long staleness = followerProvider.get().stalenessMillis();
+            if (staleness < 0 || staleness > maxStalenessMillis) {
+                throw new StaleFollowerException(staleness < 0 ? "This follower has not caught up with the primary yet!"
+                        : "This follower is " + staleness + " ms behind the primary!");
+            }
+            context.setResponseHeader(STALENESS_HEADER, Long.toString(staleness));
+            return next.apply(context);
+        };
+    }
+}
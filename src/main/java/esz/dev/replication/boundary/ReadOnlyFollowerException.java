@@ -0,0 +1,11 @@
+package esz.dev.replication.boundary;
+
+/**
+ * Exception which should be thrown in case a follower is asked for anything but a read, which only the primary
+ * serves.
+ */
+public class ReadOnlyFollowerException extends Exception {
+    public ReadOnlyFollowerException(String what) {
+        super(what);
+    }
+}
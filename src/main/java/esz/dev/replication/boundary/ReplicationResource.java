@@ -0,0 +1,42 @@
+package esz.dev.replication.boundary;
+
+import esz.dev.journal.control.Journal;
+import esz.dev.replication.control.JournalFollower;
+import esz.dev.replication.control.JournalShipper;
+import esz.dev.replication.control.ReplicationRole;
+import esz.dev.replication.control.ReplicationStatus;
+import io.jooby.annotations.GET;
+import io.jooby.annotations.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Admin end-point reporting the replication state of the primary or of a follower.
+ */
+@Singleton
+@Path("/admin/replication")
+public class ReplicationResource {
+    private final ReplicationRole role;
+    private final Journal journal;
+    private final JournalShipper journalShipper;
+    private final JournalFollower journalFollower;
+
+    @Inject
+    public ReplicationResource(ReplicationRole role, Journal journal, JournalShipper journalShipper,
+                               JournalFollower journalFollower) {
+        this.role = role;
+        this.journal = journal;
+        this.journalShipper = journalShipper;
+        this.journalFollower = journalFollower;
+    }
+
+    @GET
+    public ReplicationStatus status() {
+        if (role == ReplicationRole.FOLLOWER) {
+            return new ReplicationStatus(role, journalFollower.nextSequence(), null, journalFollower.isConnected(),
+                    journalFollower.stalenessMillis());
+        }
+        return new ReplicationStatus(role, journal.durableSequence(), journalShipper.countFollowers(), null, null);
+    }
+}
@@ -0,0 +1,10 @@
+package esz.dev.replication.boundary;
+
+/**
+ * Exception which should be thrown in case a follower is further behind its primary than reads may be.
+ */
+public class StaleFollowerException extends Exception {
+    public StaleFollowerException(String what) {
+        super(what);
+    }
+}
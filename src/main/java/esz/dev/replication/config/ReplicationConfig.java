@@ -0,0 +1,64 @@
+package esz.dev.replication.config;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import esz.dev.replication.control.ReplicationRole;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+/**
+ * Configuration for Guice to run the application as a primary, possibly shipping its journal to followers, or as a
+ * follower of a primary, according to the application configuration.
+ */
+public class ReplicationConfig extends AbstractModule {
+    private final Config config;
+    private final ReplicationRole role;
+
+    public ReplicationConfig(Config config) {
+        this.config = config;
+        this.role = config.hasPath("replication.role")
+                ? ReplicationRole.valueOf(config.getString("replication.role").toUpperCase()) : ReplicationRole.PRIMARY;
+    }
+
+    public boolean isFollower() {
+        return role == ReplicationRole.FOLLOWER;
+    }
+
+    /**
+     * @return the port the primary ships its journal on, 0 if it does not ship it
+     */
+    public int shippingPort() {
+        return config.hasPath("replication.port") ? config.getInt("replication.port") : 0;
+    }
+
+    public InetSocketAddress primaryAddress() {
+        String primary = config.getString("replication.primary");
+        int separator = primary.lastIndexOf(':');
+        return new InetSocketAddress(primary.substring(0, separator), Integer.parseInt(primary.substring(separator + 1)));
+    }
+
+    public Duration maxStaleness() {
+        return config.hasPath("replication.maxStaleness") ? config.getDuration("replication.maxStaleness")
+                : Duration.ofSeconds(5);
+    }
+
+    @Override
+    protected void configure() {
+        boolean journaled = config.hasPath("journal.enabled") && config.getBoolean("journal.enabled");
+        if (isFollower()) {
+            if (journaled) {
+                addError("A follower applies the journal of its primary, journal.enabled must be false");
+            }
+            if (config.hasPath("storage.type") && !config.getString("storage.type").equalsIgnoreCase("memory")) {
+                addError("A follower keeps the state of its primary in memory, storage.type must be memory");
+            }
+            if (config.hasPath("cluster.nodes") && !config.getStringList("cluster.nodes").isEmpty()) {
+                addError("A follower can not be a node of a cluster, cluster.nodes must be empty");
+            }
+        } else if (shippingPort() > 0 && !journaled) {
+            addError("Only a journal can be shipped to followers, journal.enabled must be true");
+        }
+        bind(ReplicationRole.class).toInstance(role);
+    }
+}
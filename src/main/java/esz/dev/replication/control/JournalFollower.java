@@ -0,0 +1,195 @@
+package esz.dev.replication.control;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.journal.control.JournalCodec;
+import esz.dev.journal.control.JournalReplayer;
+import esz.dev.journal.entity.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the users and the accounts of a follower up to date by applying the journal shipped by the
+ * {@link JournalShipper} of its primary, from a single thread. The connection is opened again whenever it is lost, and
+ * the shipping resumes from the first record not applied yet.
+ * <p>
+ * The staleness of the follower is the time since it last had applied every record the primary had made durable, as
+ * told by the heartbeats of the primary. The balances and users read from a follower are at most that old, besides
+ * the time it took the heartbeat to arrive.
+ */
+@Singleton
+public class JournalFollower {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalFollower.class);
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = (int) (10 * JournalShipper.HEARTBEAT_MILLIS);
+    private static final int MAX_PENDING_HEARTBEATS = 1024;
+
+    private final JournalReplayer journalReplayer;
+    private volatile long nextSequence;
+    private volatile long caughtUpNanos;
+    private volatile boolean caughtUp;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private Thread thread;
+
+    @Inject
+    public JournalFollower(JournalReplayer journalReplayer) {
+        this.journalReplayer = journalReplayer;
+    }
+
+    /**
+     * Starts following the primary.
+     *
+     * @param fromSequence the sequence number of the first record which has not been restored yet
+     */
+    public synchronized void start(InetSocketAddress primary, long fromSequence) {
+        if (thread != null) {
+            return;
+        }
+        nextSequence = fromSequence;
+        running = true;
+        thread = new Thread(() -> follow(primary), "journal-follower");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Following the primary at {} from record {}", primary, fromSequence);
+    }
+
+    /**
+     * @return the sequence number of the first record which has not been applied yet
+     */
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return how long ago, in milliseconds, the follower last had every record made durable by the primary, or -1 if
+     * it never had
+     */
+    public long stalenessMillis() {
+        return caughtUp ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - caughtUpNanos) : -1;
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+            thread = null;
+            running = false;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void follow(InetSocketAddress primary) {
+        while (running) {
+            try (Socket socket = new Socket()) {
+                socket.connect(primary, READ_TIMEOUT_MILLIS);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeLong(nextSequence);
+                out.flush();
+                connected = true;
+                receive(socket.getInputStream());
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warn("Lost the connection to the primary at {}: {}", primary, e.getMessage());
+                }
+            } catch (IllegalStateException e) {
+                LOGGER.error("Stopped following the primary at {}", primary, e);
+                return;
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void receive(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(JournalShipper.BUFFER_SIZE);
+        Deque<long[]> heartbeats = new ArrayDeque<>();
+        while (running) {
+            int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (read < 0) {
+                throw new EOFException("The primary closed the connection");
+            }
+            buffer.position(buffer.position() + read).flip();
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                byte frame = buffer.get();
+                if (frame == JournalShipper.HEARTBEAT) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        buffer.position(start);
+                        break;
+                    }
+                    long durable = buffer.getLong();
+                    if (durable <= nextSequence) {
+                        caughtUp(System.nanoTime());
+                    } else if (heartbeats.size() < MAX_PENDING_HEARTBEATS) {
+                        heartbeats.add(new long[]{durable, System.nanoTime()});
+                    }
+                } else if (frame == JournalShipper.RECORD) {
+                    JournalRecord record = JournalCodec.decode(buffer);
+                    if (record == null) {
+                        if (buffer.remaining() >= JournalCodec.MAX_RECORD_SIZE + 2 * Integer.BYTES) {
+                            throw new IOException("Received a corrupted record");
+                        }
+                        buffer.position(start);
+                        break;
+                    }
+                    apply(record);
+                    while (!heartbeats.isEmpty() && heartbeats.peek()[0] <= nextSequence) {
+                        caughtUp(heartbeats.poll()[1]);
+                    }
+                } else {
+                    throw new IOException("Received an unknown frame " + frame);
+                }
+            }
+            buffer.compact();
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        if (record.getSequence() != nextSequence) {
+            throw new IllegalStateException("The journal of the primary no longer holds record " + nextSequence
+                    + ", the follower has to be restarted to load a newer snapshot");
+        }
+        try {
+            journalReplayer.apply(record);
+        } catch (AccountNotFoundException e) {
+            throw new IllegalStateException("Journal record " + record.getSequence() + " refers to a missing account", e);
+        }
+        nextSequence = record.getSequence() + 1;
+    }
+
+    private void caughtUp(long nanos) {
+        caughtUpNanos = nanos;
+        caughtUp = true;
+    }
+}
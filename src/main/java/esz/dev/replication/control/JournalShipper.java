@@ -0,0 +1,211 @@
+package esz.dev.replication.control;
+
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.control.JournalCodec;
+import esz.dev.journal.entity.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Ships the journal of the primary to its followers. A follower connects, sends the sequence number of the first
+ * record it is missing, and receives every durable record from there on: first the records read back from the journal
+ * files, then the records as they are made durable. Frames are either a {@link #RECORD} in the layout of
+ * {@link JournalCodec}, or a {@link #HEARTBEAT} sent every {@value #HEARTBEAT_MILLIS} ms with the sequence number up
+ * to which the journal was durable, which the follower measures its staleness with.
+ * <p>
+ * Only durable records are shipped, so a follower is never ahead of what the primary recovers after a crash. Records
+ * are handed to every follower through a bounded backlog, so the journal writer never waits for a follower, and a
+ * follower falling more than {@value #MAX_BACKLOG} records behind is disconnected, to catch up from the journal files
+ * once it reconnects.
+ */
+@Singleton
+public class JournalShipper {
+    static final byte RECORD = 1;
+    static final byte HEARTBEAT = 2;
+    static final long HEARTBEAT_MILLIS = 100;
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalShipper.class);
+    private static final int MAX_BACKLOG = 65_536;
+
+    private final Journal journal;
+    private final Set<Socket> followers = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    @Inject
+    public JournalShipper(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Starts accepting followers on the given address.
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        if (!journal.isEnabled()) {
+            throw new IllegalStateException("The journal is disabled, there is nothing to ship");
+        }
+        ServerSocket server = new ServerSocket();
+        server.bind(address);
+        serverSocket = server;
+        startThread(() -> accept(server), "journal-shipper");
+        LOGGER.info("Shipping the journal to followers on {}", server.getLocalSocketAddress());
+    }
+
+    /**
+     * @return the port followers connect to, or -1 if the shipper is not started
+     */
+    public synchronized int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    /**
+     * @return the number of followers connected
+     */
+    public int countFollowers() {
+        return followers.size();
+    }
+
+    /**
+     * Stops accepting followers and disconnects every follower.
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        close(serverSocket);
+        serverSocket = null;
+        for (Socket follower : followers) {
+            close(follower);
+        }
+    }
+
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    LOGGER.warn("Failed to accept a follower", e);
+                }
+                continue;
+            }
+            followers.add(socket);
+            startThread(() -> ship(socket), "journal-shipper-" + socket.getPort());
+        }
+    }
+
+    private void ship(Socket socket) {
+        SocketAddress follower = socket.getRemoteSocketAddress();
+        BlockingQueue<JournalRecord> backlog = new ArrayBlockingQueue<>(MAX_BACKLOG);
+        AtomicBoolean overflowed = new AtomicBoolean();
+        Consumer<JournalRecord> listener = record -> {
+            if (!backlog.offer(record)) {
+                overflowed.set(true);
+            }
+        };
+        // the listener is added before the journal files are read, so no record falls between the two
+        journal.addListener(listener);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            long from = new DataInputStream(socket.getInputStream()).readLong();
+            LOGGER.info("Follower {} connected, shipping the journal from record {}", follower, from);
+            OutputStream out = socket.getOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long durable = journal.durableSequence();
+            if (from > durable) {
+                LOGGER.error("Follower {} asks for record {}, beyond the end of the journal at {}", follower, from, durable);
+                return;
+            }
+            journal.replay(from, record -> {
+                if (record.getSequence() < durable) {
+                    try {
+                        write(record, buffer, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            long lastHeartbeat = 0;
+            while (!overflowed.get()) {
+                JournalRecord record = backlog.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                while (record != null) {
+                    if (record.getSequence() >= durable) {
+                        write(record, buffer, out);
+                    }
+                    record = backlog.poll();
+                }
+                long now = System.nanoTime();
+                if (now - lastHeartbeat >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS)) {
+                    if (buffer.remaining() < 1 + Long.BYTES) {
+                        flush(buffer, out);
+                    }
+                    buffer.put(HEARTBEAT).putLong(journal.durableSequence());
+                    lastHeartbeat = now;
+                }
+                flush(buffer, out);
+            }
+            LOGGER.warn("Disconnecting follower {}, which fell more than {} records behind", follower, MAX_BACKLOG);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.info("Follower {} disconnected: {}", follower, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            journal.removeListener(listener);
+            followers.remove(socket);
+        }
+    }
+
+    private static void write(JournalRecord record, ByteBuffer buffer, OutputStream out) throws IOException {
+        if (buffer.remaining() < JournalCodec.MAX_RECORD_SIZE + 1) {
+            flush(buffer, out);
+        }
+        buffer.put(RECORD);
+        JournalCodec.encode(record, buffer);
+    }
+
+    private static void flush(ByteBuffer buffer, OutputStream out) throws IOException {
+        if (buffer.position() > 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            out.flush();
+            buffer.clear();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close {}", closeable, e);
+        }
+    }
+
+    private static void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
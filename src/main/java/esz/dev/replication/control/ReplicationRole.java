@@ -0,0 +1,9 @@
+package esz.dev.replication.control;
+
+/**
+ * Role of the application: the primary serves every request, a follower applies the journal of its primary and only
+ * serves reads.
+ */
+public enum ReplicationRole {
+    PRIMARY, FOLLOWER
+}
@@ -0,0 +1,18 @@
+package esz.dev.replication.control;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Replication state of the application. The primary reports the sequence number up to which its journal is durable
+ * and the number of its followers, a follower the first sequence number it has not applied yet and its staleness.
+ */
+@Data
+@AllArgsConstructor
+public class ReplicationStatus {
+    private ReplicationRole role;
+    private long sequence;
+    private Integer followers;
+    private Boolean connected;
+    private Long stalenessMillis;
+}
@@ -0,0 +1,20 @@
+package esz.dev.server;
+
+/**
+ * Execution model of the REST handlers.
+ */
+public enum RequestExecution {
+    /**
+     * Blocking handlers run on the worker pool of the server.
+     */
+    WORKER,
+    /**
+     * Blocking handlers run on a new virtual thread for every request, on a JDK which has them.
+     */
+    VIRTUAL_THREADS,
+    /**
+     * Account handlers run on the event loop and return futures completed by the ledger engine once the operation is
+     * durable. The other handlers are dispatched to the worker pool.
+     */
+    NON_BLOCKING
+}
@@ -0,0 +1,26 @@
+package esz.dev.server;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of newer JDKs while the application is compiled for Java 11. The executor is looked up
+ * reflectively, so the same build runs with virtual threads on a JDK providing them and without them otherwise.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return an executor starting a new virtual thread for every task, or nothing if the running JDK has no virtual
+     * threads
+     */
+    public static Optional<ExecutorService> newThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package esz.dev.storage.config;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import esz.dev.account.control.AccountStore;
+import esz.dev.account.control.AccountStoreType;
+import esz.dev.account.control.BalanceMode;
+import esz.dev.account.control.H2AccountStore;
+import esz.dev.account.control.InMemoryAccountStore;
+import esz.dev.account.control.MvStoreAccountStore;
+import esz.dev.account.control.OffHeapAccountStore;
+import esz.dev.storage.control.H2Database;
+import esz.dev.storage.control.MvStoreDatabase;
+import esz.dev.storage.control.StorageType;
+import esz.dev.user.control.H2UserStore;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.MvStoreUserStore;
+import esz.dev.user.control.UserStore;
+
+import java.time.Duration;
+
+/**
+ * Configuration for Guice to select the stores of the users and the accounts according to the application
+ * configuration. Holds the database of the stores, if any, so it can be closed when the application stops.
+ */
+public class StorageConfig extends AbstractModule {
+    private final Config config;
+    private H2Database database;
+    private MvStoreDatabase mvStoreDatabase;
+
+    public StorageConfig(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void configure() {
+        StorageType storageType = getEnum(StorageType.class, "storage.type", StorageType.MEMORY);
+        AccountStoreType storeType = getEnum(AccountStoreType.class, "account.store.type", AccountStoreType.HEAP);
+        if (storageType != StorageType.MEMORY) {
+            String name = storageType.name().toLowerCase();
+            if (storeType != AccountStoreType.HEAP) {
+                addError("The " + name + " storage keeps the accounts on the heap, account.store.type must be heap");
+            }
+            if (config.hasPath("journal.enabled") && config.getBoolean("journal.enabled")) {
+                // the journal would be replayed on top of the accounts the storage restores
+                addError("The " + name + " storage restores the accounts itself, journal.enabled must be false"
+                        + (storageType == StorageType.MVSTORE ? ", acknowledged changes made since its last commit, "
+                        + "up to storage.mvstore.commitInterval ago, are lost if the process dies" : ""));
+            }
+        }
+        if (storageType == StorageType.H2) {
+            database = new H2Database(config.getString("storage.h2.url"),
+                    getInt("storage.h2.poolSize", Runtime.getRuntime().availableProcessors()));
+            bind(H2Database.class).toInstance(database);
+            bind(AccountStore.class).to(H2AccountStore.class);
+            bind(UserStore.class).to(H2UserStore.class);
+            return;
+        }
+        if (storageType == StorageType.MVSTORE) {
+            mvStoreDatabase = new MvStoreDatabase(config.getString("storage.mvstore.file"),
+                    config.hasPath("storage.mvstore.commitInterval")
+                            ? config.getDuration("storage.mvstore.commitInterval") : Duration.ofSeconds(1));
+            bind(MvStoreDatabase.class).toInstance(mvStoreDatabase);
+            bind(AccountStore.class).to(MvStoreAccountStore.class);
+            bind(UserStore.class).to(MvStoreUserStore.class);
+            return;
+        }
+
+        if (storeType == AccountStoreType.OFF_HEAP) {
+            if (getEnum(BalanceMode.class, "account.balance.mode", BalanceMode.DECIMAL) != BalanceMode.MINOR_UNITS) {
+                addError("The off-heap account store requires account.balance.mode = minor-units");
+            }
+            bind(AccountStore.class).toInstance(new OffHeapAccountStore(getInt("account.store.capacity", 1_000_000)));
+        } else {
+            bind(AccountStore.class).to(InMemoryAccountStore.class);
+        }
+        bind(UserStore.class).to(InMemoryUserStore.class);
+    }
+
+    /**
+     * Closes the database of the stores, if any.
+     */
+    public void close() {
+        if (database != null) {
+            database.close();
+        }
+        if (mvStoreDatabase != null) {
+            mvStoreDatabase.close();
+        }
+    }
+
+    private int getInt(String path, int defaultValue) {
+        return config.hasPath(path) ? config.getInt(path) : defaultValue;
+    }
+
+    private <T extends Enum<T>> T getEnum(Class<T> type, String path, T defaultValue) {
+        return config.hasPath(path) ? Enum.valueOf(type, config.getString(path).toUpperCase().replace('-', '_')) : defaultValue;
+    }
+}
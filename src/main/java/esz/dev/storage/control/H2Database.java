@@ -0,0 +1,95 @@
+package esz.dev.storage.control;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Embedded H2 database with a fixed pool of connections, see {@link H2Session}. Every unit of work runs in its own
+ * transaction on a connection taken from the pool, waiting for one to be returned if all of them are in use.
+ */
+public class H2Database implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(H2Database.class);
+
+    private final BlockingQueue<H2Session> sessions;
+
+    /**
+     * Work done in a transaction of the database.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(H2Session session) throws SQLException;
+    }
+
+    /**
+     * Opens the database, creating it if it does not exist.
+     *
+     * @param url      the JDBC URL of the database
+     * @param poolSize the number of connections, so the number of transactions run concurrently
+     */
+    public H2Database(String url, int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid connection pool size " + poolSize);
+        }
+        this.sessions = new ArrayBlockingQueue<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                sessions.add(new H2Session(DriverManager.getConnection(url)));
+            }
+        } catch (SQLException e) {
+            close();
+            throw new StorageException("Failed to open the database " + url, e);
+        }
+    }
+
+    /**
+     * Runs the work in a transaction, which is committed if the work completes and rolled back otherwise.
+     *
+     * @throws StorageException if the work or the commit fails
+     */
+    public <T> T inTransaction(Work<T> work) {
+        H2Session session;
+        try {
+            session = sessions.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            T result = work.run(session);
+            session.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                session.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            if (e instanceof StorageException) {
+                throw (StorageException) e;
+            }
+            throw new StorageException("Transaction failed: " + e.getMessage(), e);
+        } finally {
+            sessions.add(session);
+        }
+    }
+
+    /**
+     * Closes the connections which are not in use. Only called once no more work is submitted.
+     */
+    @Override
+    public void close() {
+        H2Session session;
+        while ((session = sessions.poll()) != null) {
+            try {
+                session.close();
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to close a connection to the database", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package esz.dev.storage.control;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.type.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded MVStore key-value database. Maps are copy-on-write B-trees, so they are read without locks, and changes are
+ * kept in memory until the next commit writes them to the file as a new version. Commits are made in the background
+ * at a fixed interval, so the changes of the last interval are lost if the process dies.
+ * <p>
+ * Updates touching several entries are made under the shared side of a lock which a commit takes exclusively, so a
+ * commit never writes half of an update.
+ */
+public class MvStoreDatabase implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MvStoreDatabase.class);
+
+    private final MVStore store;
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Opens the database, creating the file and its directory if they do not exist.
+     *
+     * @param fileName       the file of the database
+     * @param commitInterval how often the changes are committed
+     */
+    public MvStoreDatabase(String fileName, Duration commitInterval) {
+        if (commitInterval.isNegative() || commitInterval.isZero()) {
+            throw new IllegalArgumentException("Invalid commit interval " + commitInterval);
+        }
+        try {
+            Path parent = Paths.get(fileName).toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.store = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open();
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            throw new StorageException("Failed to open the database " + fileName, e);
+        }
+        this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mvstore-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(() -> {
+            try {
+                commit();
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to commit the database", e);
+            }
+        }, commitInterval.toMillis(), commitInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public <K, V> MVMap<K, V> openMap(String name, DataType keyType, DataType valueType) {
+        return store.openMap(name, new MVMap.Builder<K, V>().keyType(keyType).valueType(valueType));
+    }
+
+    /**
+     * Makes an update which is written by a single commit.
+     */
+    public void update(Runnable update) {
+        Lock lock = commitLock.readLock();
+        lock.lock();
+        try {
+            update.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the changes made since the last commit to the file.
+     */
+    public void commit() {
+        Lock lock = commitLock.writeLock();
+        lock.lock();
+        try {
+            if (store.hasUnsavedChanges()) {
+                store.commit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background commits, commits the last changes and closes the file. Only called once no more updates
+     * are made.
+     */
+    @Override
+    public void close() {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+        store.close();
+    }
+}
@@ -0,0 +1,10 @@
+package esz.dev.storage.control;
+
+/**
+ * Thrown when the storage fails to read or write the users and the accounts.
+ */
+public class StorageException extends RuntimeException {
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,19 @@
+package esz.dev.storage.control;
+
+/**
+ * Where the users and the accounts are stored.
+ */
+public enum StorageType {
+    /**
+     * In memory only, restored from the journal after a restart if it is enabled.
+     */
+    MEMORY,
+    /**
+     * In an embedded H2 database, written through on every change and loaded on startup.
+     */
+    H2,
+    /**
+     * In an embedded MVStore key-value database, committed in the background and loaded lazily.
+     */
+    MVSTORE
+}
@@ -1,6 +1,10 @@
 package esz.dev.user.boundary;
 
+import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.MisdirectedRequestException;
 import esz.dev.common.ResponseDto;
+import esz.dev.user.control.AccountPage;
 import esz.dev.user.control.UserDto;
 import esz.dev.user.control.UserNotFoundException;
 import esz.dev.user.control.UserService;
@@ -10,32 +14,60 @@ import io.jooby.annotations.GET;
 import io.jooby.annotations.POST;
 import io.jooby.annotations.Path;
 import io.jooby.annotations.PathParam;
+import io.jooby.annotations.QueryParam;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Set;
+import java.util.List;
 
 /**
- * REST end-point implementation for user management.
+ * REST end-point implementation for user management. On a node of a cluster, users are created on the node receiving
+ * the request, and requests about the users of another node are redirected to that node.
  */
 @Singleton
 @Path("/api/user")
 public class UserResource {
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10_000;
+
     private final UserService userService;
+    private final ClusterTopology topology;
 
     @Inject
-    public UserResource(UserService userService) {
+    public UserResource(UserService userService, ClusterTopology topology) {
         this.userService = userService;
+        this.topology = topology;
     }
 
     @GET("/{id}")
-    public UserDto getUser(@PathParam Long id) throws UserNotFoundException {
+    public UserDto getUser(@PathParam Long id) throws UserNotFoundException, MisdirectedRequestException {
+        requireLocal(id);
         return userService.getUser(id);
     }
 
+    /**
+     * Lists the IBANs of the accounts of a user page by page. If there are more accounts, the cursor to pass for the
+     * next page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GET("/{id}/accounts")
-    public Set<String> getAccountsForUser(@PathParam Long id) throws UserNotFoundException {
-        return userService.getAccountsForUser(id);
+    public List<String> getAccountsForUser(@PathParam Long id, @QueryParam Integer cursor, @QueryParam Integer limit,
+                                           Context context)
+            throws UserNotFoundException, InvalidInputException, MisdirectedRequestException {
+        requireLocal(id);
+        int start = cursor == null ? 0 : cursor;
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (start < 0) {
+            throw new InvalidInputException("Cursor can not be a negative value!");
+        }
+        if (size < 1 || size > MAX_LIMIT) {
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_LIMIT + "!");
+        }
+        AccountPage page = userService.getAccountsForUser(id, start, size);
+        if (page.getNextCursor() != null) {
+            context.setResponseHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getIbans();
     }
 
     @POST
@@ -44,4 +76,11 @@ public class UserResource {
         context.setResponseCode(StatusCode.CREATED);
         return ResponseDto.builder().status(ResponseDto.Status.SUCCESS).message("Successfully created user with id " + id).build();
     }
+
+    private void requireLocal(long id) throws MisdirectedRequestException {
+        int owner = topology.ownerOfUser(id);
+        if (owner != topology.self()) {
+            throw new MisdirectedRequestException("User with id " + id + " is owned by node " + owner, owner);
+        }
+    }
 }
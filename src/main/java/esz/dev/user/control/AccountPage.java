@@ -0,0 +1,16 @@
+package esz.dev.user.control;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Page of the IBANs of the accounts of a user, with the cursor the next page starts at, or null if it is the last one.
+ */
+@Data
+@AllArgsConstructor
+public class AccountPage {
+    private final List<String> ibans;
+    private final Integer nextCursor;
+}
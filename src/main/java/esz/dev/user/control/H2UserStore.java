@@ -0,0 +1,85 @@
+package esz.dev.user.control;
+
+import esz.dev.storage.control.H2Database;
+import esz.dev.user.entity.User;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * User store keeping the users and the index of their accounts in an embedded H2 database as well as in memory. All
+ * of them are loaded on startup, so they are read from memory only, and every new user and account is written
+ * through to the database. The accounts of a user are loaded in the order they were written.
+ */
+@Singleton
+public class H2UserStore extends InMemoryUserStore {
+    private static final String INSERT_USER =
+            "MERGE INTO app_user (id, first_name, last_name, address) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_ACCOUNT = "INSERT INTO user_account (user_id, iban) VALUES (?, ?)";
+
+    private final H2Database database;
+
+    public H2UserStore(H2Database database) {
+        this(database, new UserIds());
+    }
+
+    @Inject
+    public H2UserStore(H2Database database, UserIds userIds) {
+        super(userIds);
+        this.database = database;
+        database.inTransaction(session -> {
+            session.prepare("CREATE TABLE IF NOT EXISTS app_user (id BIGINT PRIMARY KEY, first_name VARCHAR, "
+                    + "last_name VARCHAR, address VARCHAR)").execute();
+            session.prepare("CREATE TABLE IF NOT EXISTS user_account (position BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "user_id BIGINT NOT NULL, iban VARCHAR(34) NOT NULL)").execute();
+            try (ResultSet rows = session.prepare("SELECT id, first_name, last_name, address FROM app_user").executeQuery()) {
+                while (rows.next()) {
+                    super.restoreUser(new User(rows.getLong(1), rows.getString(2), rows.getString(3), rows.getString(4)));
+                }
+            }
+            try (ResultSet rows = session.prepare("SELECT user_id, iban FROM user_account ORDER BY position").executeQuery()) {
+                while (rows.next()) {
+                    super.addAccount(rows.getLong(1), rows.getString(2));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public long addUser(User user) {
+        long id = super.addUser(user);
+        insertUser(user.withId(id));
+        return id;
+    }
+
+    @Override
+    public void restoreUser(User user) {
+        insertUser(user);
+        super.restoreUser(user);
+    }
+
+    @Override
+    public void addAccount(long userId, String iban) {
+        database.inTransaction(session -> {
+            PreparedStatement insert = session.prepare(INSERT_ACCOUNT);
+            insert.setLong(1, userId);
+            insert.setString(2, iban);
+            return insert.executeUpdate();
+        });
+        super.addAccount(userId, iban);
+    }
+
+    private void insertUser(User user) {
+        database.inTransaction(session -> {
+            PreparedStatement insert = session.prepare(INSERT_USER);
+            insert.setLong(1, user.getId());
+            insert.setString(2, user.getFirstName());
+            insert.setString(3, user.getLastName());
+            insert.setString(4, user.getAddress());
+            return insert.executeUpdate();
+        });
+    }
+}
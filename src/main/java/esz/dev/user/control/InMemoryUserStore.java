@@ -0,0 +1,69 @@
+package esz.dev.user.control;
+
+import esz.dev.common.ConcurrentAppendList;
+import esz.dev.common.ConcurrentLongMap;
+import esz.dev.user.entity.User;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data persistence for bank user objects. This implementation provides an in-memory solution for persistence, and
+ * should not be used in real life scenarios.
+ * <p>
+ * The IBANs of the accounts of every user are kept in a secondary index, in the order the accounts were opened. The
+ * index is append-only, so the accounts of a user are read without copying or locking, and positions in it can be used
+ * as cursors for paging through the accounts.
+ */
+@Singleton
+public class InMemoryUserStore implements UserStore {
+    private final UserIds userIds;
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentLongMap<ConcurrentAppendList<String>> accountsByUser = new ConcurrentLongMap<>();
+
+    public InMemoryUserStore() {
+        this(new UserIds());
+    }
+
+    @Inject
+    public InMemoryUserStore(UserIds userIds) {
+        this.userIds = userIds;
+    }
+
+    @Override
+    public long addUser(User user) {
+        long id = userIds.next();
+        accountsByUser.put(id, new ConcurrentAppendList<>());
+        users.put(id, user.withId(id));
+        return id;
+    }
+
+    @Override
+    public void restoreUser(User user) {
+        userIds.restore(user.getId());
+        accountsByUser.put(user.getId(), new ConcurrentAppendList<>());
+        users.put(user.getId(), user);
+    }
+
+    @Override
+    public void addAccount(long userId, String iban) {
+        ConcurrentAppendList<String> accounts = accountsByUser.get(userId);
+        if (accounts != null) {
+            accounts.add(iban);
+        }
+    }
+
+    @Override
+    public Optional<List<String>> getAccounts(long userId) {
+        return Optional.ofNullable(accountsByUser.get(userId));
+    }
+
+    @Override
+    public Optional<User> getUser(Long id) {
+        return Optional.ofNullable(users.get(id));
+    }
+}
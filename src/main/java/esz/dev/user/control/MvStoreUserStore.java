@@ -0,0 +1,108 @@
+package esz.dev.user.control;
+
+import esz.dev.common.ConcurrentAppendList;
+import esz.dev.common.ConcurrentLongMap;
+import esz.dev.storage.control.MvStoreDatabase;
+import esz.dev.user.entity.User;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.type.ObjectDataType;
+import org.h2.mvstore.type.StringDataType;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * User store keeping the users and the index of their accounts in an embedded MVStore, see {@link MvStoreDatabase}.
+ * Users are read from the store on every lookup. The accounts of a user are loaded into an append-only list the first
+ * time they are asked for, and new accounts are appended both to the store and to the list, so the list is a live
+ * view of them as with the in-memory store.
+ * <p>
+ * Nothing is loaded on startup besides the highest user id, so the startup time does not depend on the number of
+ * users.
+ */
+@Singleton
+public class MvStoreUserStore implements UserStore {
+    private final MvStoreDatabase database;
+    private final MVMap<Long, User> users;
+    private final MVMap<long[], String> userAccounts;
+    private final UserIds userIds;
+    private final ConcurrentLongMap<ConcurrentAppendList<String>> accountsByUser = new ConcurrentLongMap<>();
+
+    public MvStoreUserStore(MvStoreDatabase database) {
+        this(database, new UserIds());
+    }
+
+    @Inject
+    public MvStoreUserStore(MvStoreDatabase database, UserIds userIds) {
+        this.database = database;
+        this.userIds = userIds;
+        this.users = database.openMap("user", new ObjectDataType(), UserDataType.INSTANCE);
+        this.userAccounts = database.openMap("userAccount", UserAccountKeyType.INSTANCE, StringDataType.INSTANCE);
+        Long highestId = users.lastKey();
+        if (highestId != null) {
+            userIds.restore(highestId);
+        }
+    }
+
+    @Override
+    public long addUser(User user) {
+        long id = userIds.next();
+        database.update(() -> users.put(id, user.withId(null)));
+        return id;
+    }
+
+    @Override
+    public void restoreUser(User user) {
+        userIds.restore(user.getId());
+        database.update(() -> users.put(user.getId(), user.withId(null)));
+    }
+
+    @Override
+    public void addAccount(long userId, String iban) {
+        ConcurrentAppendList<String> accounts = accountsOf(userId);
+        if (accounts == null) {
+            return;
+        }
+        synchronized (accounts) {
+            long[] key = UserAccountKeyType.key(userId, accounts.size());
+            database.update(() -> userAccounts.put(key, iban));
+            accounts.add(iban);
+        }
+    }
+
+    @Override
+    public Optional<List<String>> getAccounts(long userId) {
+        return Optional.ofNullable(accountsOf(userId));
+    }
+
+    @Override
+    public Optional<User> getUser(Long id) {
+        return Optional.ofNullable(users.get(id)).map(user -> user.withId(id));
+    }
+
+    private ConcurrentAppendList<String> accountsOf(long userId) {
+        ConcurrentAppendList<String> accounts = accountsByUser.get(userId);
+        return accounts != null ? accounts : loadAccounts(userId);
+    }
+
+    /**
+     * Loads the accounts of a user, under the lock of the store, so accounts are only added to the store once the list
+     * they are also added to has been published.
+     */
+    private synchronized ConcurrentAppendList<String> loadAccounts(long userId) {
+        ConcurrentAppendList<String> accounts = accountsByUser.get(userId);
+        if (accounts != null || !users.containsKey(userId)) {
+            return accounts;
+        }
+        accounts = new ConcurrentAppendList<>();
+        Cursor<long[], String> cursor = userAccounts.cursor(UserAccountKeyType.key(userId, 0));
+        while (cursor.hasNext() && cursor.next()[0] == userId) {
+            accounts.add(cursor.getValue());
+        }
+        accountsByUser.put(userId, accounts);
+        return accounts;
+    }
+}
@@ -0,0 +1,61 @@
+package esz.dev.user.control;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Keys of the index of the accounts of the users in the MVStore: a {@code long[]} holding the id of the user and the
+ * position of the account among the accounts of the user, ordered by both. The accounts of a user are therefore stored
+ * next to each other, in the order they were opened.
+ */
+class UserAccountKeyType implements DataType {
+    static final UserAccountKeyType INSTANCE = new UserAccountKeyType();
+
+    private UserAccountKeyType() {
+    }
+
+    static long[] key(long userId, long position) {
+        return new long[]{userId, position};
+    }
+
+    @Override
+    public int compare(Object a, Object b) {
+        long[] first = (long[]) a;
+        long[] second = (long[]) b;
+        int order = Long.compare(first[0], second[0]);
+        return order != 0 ? order : Long.compare(first[1], second[1]);
+    }
+
+    @Override
+    public int getMemory(Object obj) {
+        return 32;
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object obj) {
+        long[] key = (long[]) obj;
+        buff.putVarLong(key[0]).putVarLong(key[1]);
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            write(buff, obj[i]);
+        }
+    }
+
+    @Override
+    public Object read(ByteBuffer buff) {
+        return key(DataUtils.readVarLong(buff), DataUtils.readVarLong(buff));
+    }
+
+    @Override
+    public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            obj[i] = read(buff);
+        }
+    }
+}
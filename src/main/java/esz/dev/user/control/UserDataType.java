@@ -0,0 +1,78 @@
+package esz.dev.user.control;
+
+import esz.dev.user.entity.User;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Binary encoding of users for the MVStore. The id of a user is the key it is stored under, so only the names and the
+ * address are written, each as its length plus one, zero for null, followed by its characters.
+ */
+class UserDataType implements DataType {
+    static final UserDataType INSTANCE = new UserDataType();
+
+    private static final Comparator<User> ORDER = Comparator.comparing(User::getId, Comparator.nullsFirst(Long::compare));
+
+    private UserDataType() {
+    }
+
+    @Override
+    public int compare(Object a, Object b) {
+        return Objects.equals(a, b) ? 0 : ORDER.compare((User) a, (User) b);
+    }
+
+    @Override
+    public int getMemory(Object obj) {
+        User user = (User) obj;
+        return 64 + 2 * (length(user.getFirstName()) + length(user.getLastName()) + length(user.getAddress()));
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object obj) {
+        User user = (User) obj;
+        writeString(buff, user.getFirstName());
+        writeString(buff, user.getLastName());
+        writeString(buff, user.getAddress());
+    }
+
+    @Override
+    public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            write(buff, obj[i]);
+        }
+    }
+
+    @Override
+    public Object read(ByteBuffer buff) {
+        return new User(null, readString(buff), readString(buff), readString(buff));
+    }
+
+    @Override
+    public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+        for (int i = 0; i < len; i++) {
+            obj[i] = read(buff);
+        }
+    }
+
+    private static void writeString(WriteBuffer buff, String value) {
+        if (value == null) {
+            buff.putVarInt(0);
+        } else {
+            buff.putVarInt(value.length() + 1).putStringData(value, value.length());
+        }
+    }
+
+    private static String readString(ByteBuffer buff) {
+        int length = DataUtils.readVarInt(buff);
+        return length == 0 ? null : DataUtils.readString(buff, length - 1);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
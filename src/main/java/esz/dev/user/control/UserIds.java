@@ -0,0 +1,43 @@
+package esz.dev.user.control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the ids of new users. A node of a cluster generates only the ids equal to its index plus one modulo the
+ * number of nodes, so ids generated by different nodes never collide and the node of a user can be told from its id.
+ */
+public class UserIds {
+    private final long offset;
+    private final long stride;
+    private final AtomicLong generated = new AtomicLong();
+
+    /**
+     * Generates every id, for a single node.
+     */
+    public UserIds() {
+        this(0, 1);
+    }
+
+    /**
+     * @param offset the index of the node
+     * @param stride the number of nodes
+     */
+    public UserIds(long offset, long stride) {
+        if (stride < 1 || offset < 0 || offset >= stride) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " for " + stride + " nodes");
+        }
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    public long next() {
+        return generated.getAndIncrement() * stride + offset + 1;
+    }
+
+    /**
+     * Marks an id taken before a restart as used, so every id generated afterwards is greater.
+     */
+    public void restore(long id) {
+        generated.accumulateAndGet(Math.floorDiv(id - 1 - offset, stride) + 1, Math::max);
+    }
+}
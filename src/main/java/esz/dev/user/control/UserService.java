@@ -1,11 +1,12 @@
 package esz.dev.user.control;
 
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
 import esz.dev.user.entity.User;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Implementation of the business logic in order to handle user management.
@@ -14,16 +15,27 @@ import java.util.Set;
 public class UserService {
     private final UserMapper userMapper;
     private final UserStore userStore;
+    private final Journal journal;
 
     @Inject
-    public UserService(UserMapper userMapper, UserStore userStore) {
+    public UserService(UserMapper userMapper, UserStore userStore, Journal journal) {
         this.userMapper = userMapper;
         this.userStore = userStore;
+        this.journal = journal;
     }
 
     public long addUser(UserDto userDto) {
         User user = userMapper.userDtoToUser(userDto);
-        return userStore.addUser(user.withAccounts(new HashSet<>()));
+        long id = userStore.addUser(user);
+        journal.append(JournalRecord.userCreated(id, userDto.getFirstName(), userDto.getLastName(), userDto.getAddress())).join();
+        return id;
+    }
+
+    /**
+     * Restores a user created before a restart, keeping its original id.
+     */
+    public void restoreUser(long id, UserDto userDto) {
+        userStore.restoreUser(userMapper.userDtoToUser(userDto).withId(id));
     }
 
     public UserDto getUser(Long id) throws UserNotFoundException {
@@ -32,9 +44,24 @@ public class UserService {
                 .orElseThrow(() -> new UserNotFoundException("No user found with id of " + id));
     }
 
-    public Set<String> getAccountsForUser(Long id) throws UserNotFoundException {
-        return userStore.getUser(id)
-                .map(User::getAccounts)
+    /**
+     * @return the IBANs of all the accounts of a user, as a view which is not copied
+     */
+    public List<String> getAccountsForUser(Long id) throws UserNotFoundException {
+        return userStore.getAccounts(id)
                 .orElseThrow(() -> new UserNotFoundException("No user found with id of " + id));
     }
+
+    /**
+     * Returns at most {@code limit} IBANs of the accounts of a user, starting with the account at the position given
+     * by the cursor. Accounts are listed in the order they were opened, so paging through them never skips or repeats
+     * an account, even while accounts are being opened.
+     */
+    public AccountPage getAccountsForUser(Long id, int cursor, int limit) throws UserNotFoundException {
+        List<String> accounts = getAccountsForUser(id);
+        int size = accounts.size();
+        int from = Math.min(cursor, size);
+        int to = (int) Math.min((long) from + limit, size);
+        return new AccountPage(accounts.subList(from, to), to < size ? to : null);
+    }
 }
@@ -2,28 +2,36 @@ package esz.dev.user.control;
 
 import esz.dev.user.entity.User;
 
-import javax.inject.Singleton;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Data persistence for bank user objects. This implementation provides an in-memory solution for persistence, and
- * should not be used in real life scenarios.
+ * Storage of the bank users and of the index of their accounts.
  */
-@Singleton
-public class UserStore {
-    private final AtomicLong idGenerator = new AtomicLong(0);
-    private final Map<Long, User> users = new ConcurrentHashMap<>();
+public interface UserStore {
+    /**
+     * Stores a new user under a newly generated id.
+     *
+     * @return the id of the user
+     */
+    long addUser(User user);
 
-    public long addUser(User user) {
-        long id = idGenerator.incrementAndGet();
-        users.put(id, user.withId(id));
-        return id;
-    }
+    /**
+     * Stores a user which already has an id, for example one restored after a restart. Ids generated afterwards are
+     * always greater than the id of the restored user.
+     */
+    void restoreUser(User user);
 
-    public Optional<User> getUser(Long id) {
-        return Optional.ofNullable(users.get(id));
-    }
+    /**
+     * Adds an account to the index of the accounts of a user. Does nothing if there is no user with the id.
+     */
+    void addAccount(long userId, String iban);
+
+    /**
+     * @return the IBANs of the accounts of a user in the order they were opened, as a live view which grows as
+     * accounts are added
+     */
+    Optional<List<String>> getAccounts(long userId);
+
+    Optional<User> getUser(Long id);
 }
@@ -6,10 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.Wither;
 
-import java.util.Set;
-
 /**
- * Entity class for users.
+ * Entity class for users. The accounts of the users are indexed by {@link esz.dev.user.control.UserStore}.
  */
 @Data
 @AllArgsConstructor
@@ -21,5 +19,4 @@ public class User {
     private String firstName;
     private String lastName;
     private String address;
-    private Set<String> accounts;
 }
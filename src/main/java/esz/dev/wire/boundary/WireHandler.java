@@ -0,0 +1,206 @@
+package esz.dev.wire.boundary;
+
+import esz.dev.account.boundary.InvalidInputException;
+import esz.dev.account.boundary.ValidationService;
+import esz.dev.account.control.AccountMetrics;
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.NotEnoughAmountException;
+import esz.dev.account.control.TransferAmountDto;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static esz.dev.wire.control.WireProtocol.*;
+
+/**
+ * Handles the frames of the binary protocol, see {@link esz.dev.wire.control.WireProtocol}, on the event loop of their
+ * connection or on a handler thread, see {@link WireServer}. Requests are validated and applied with the same services as the REST end-points, without waiting for
+ * their durability: a request already durable is answered together with the other requests read at once, and any
+ * other once it becomes durable.
+ * <p>
+ * A connection whose client does not read its responses fast enough is not read from while its outbound buffer is
+ * above the high water mark, so the responses waiting for it can not pile up without bounds.
+ */
+@Singleton
+@ChannelHandler.Sharable
+public class WireHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WireHandler.class);
+
+    private final AccountService accountService;
+    private final ValidationService validationService;
+    private final AccountMetrics accountMetrics;
+
+    @Inject
+    public WireHandler(AccountService accountService, ValidationService validationService, AccountMetrics accountMetrics) {
+        this.accountService = accountService;
+        this.validationService = validationService;
+        this.accountMetrics = accountMetrics;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext context, Object message) {
+        ByteBuf frame = (ByteBuf) message;
+        try {
+            handle(context, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext context) {
+        context.flush();
+        if (!context.channel().isWritable()) {
+            context.channel().config().setAutoRead(false);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) {
+        if (context.channel().isWritable()) {
+            context.channel().config().setAutoRead(true);
+        }
+        context.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
+        LOGGER.warn("Closing connection {}: {}", context.channel().remoteAddress(), cause.getMessage());
+        context.close();
+    }
+
+    private void handle(ChannelHandlerContext context, ByteBuf frame) {
+        if (frame.readableBytes() < HEADER_SIZE) {
+            // a request without an id can not be answered
+            context.close();
+            return;
+        }
+        byte type = frame.readByte();
+        long id = frame.readLong();
+        if (frame.readableBytes() != bodySize(type)) {
+            context.write(response(context, MALFORMED, id));
+            return;
+        }
+        try {
+            switch (type) {
+                case BALANCE:
+                    balance(context, id, readIban(frame));
+                    break;
+                case DEPOSIT:
+                    deposit(context, id, new AmountDto(readIban(frame), readAmount(frame)));
+                    break;
+                case WITHDRAW:
+                    withdraw(context, id, new AmountDto(readIban(frame), readAmount(frame)));
+                    break;
+                default:
+                    transfer(context, id, new TransferAmountDto(readIban(frame), readIban(frame), readAmount(frame)));
+            }
+        } catch (InvalidInputException e) {
+            context.write(response(context, INVALID_INPUT, id));
+        }
+    }
+
+    private void balance(ChannelHandlerContext context, long id, String iban) throws InvalidInputException {
+        validationService.validateIban(iban);
+        accountMetrics.measure(AccountMetrics.Operation.CHECK_FUNDS,
+                () -> CompletableFuture.completedFuture(accountService.balanceOf(iban)))
+                .whenComplete((balance, failure) -> {
+                    if (failure != null) {
+                        context.write(response(context, statusOf(failure), id));
+                    } else {
+                        writeBalance(context, id, balance);
+                    }
+                });
+    }
+
+    private void writeBalance(ChannelHandlerContext context, long id, BigDecimal balance) {
+        if (balance.unscaledValue().bitLength() >= Long.SIZE || balance.scale() != (byte) balance.scale()) {
+            context.write(response(context, FAILED, id));
+            return;
+        }
+        ByteBuf response = context.alloc().buffer(LENGTH_SIZE + HEADER_SIZE + AMOUNT_SIZE)
+                .writeInt(HEADER_SIZE + AMOUNT_SIZE)
+                .writeByte(OK)
+                .writeLong(id)
+                .writeLong(balance.unscaledValue().longValue())
+                .writeByte(balance.scale());
+        context.write(response);
+    }
+
+    private void deposit(ChannelHandlerContext context, long id, AmountDto amountDto) throws InvalidInputException {
+        validationService.validate(amountDto);
+        respond(context, id, accountMetrics.measure(AccountMetrics.Operation.DEPOSIT,
+                () -> accountService.depositAsync(amountDto)));
+    }
+
+    private void withdraw(ChannelHandlerContext context, long id, AmountDto amountDto) throws InvalidInputException {
+        validationService.validate(amountDto);
+        respond(context, id, accountMetrics.measure(AccountMetrics.Operation.WITHDRAW,
+                () -> accountService.withdrawAsync(amountDto)));
+    }
+
+    private void transfer(ChannelHandlerContext context, long id, TransferAmountDto transferAmountDto)
+            throws InvalidInputException {
+        validationService.validate(transferAmountDto);
+        respond(context, id, accountMetrics.measure(AccountMetrics.Operation.TRANSFER,
+                () -> accountService.transferAsync(transferAmountDto)));
+    }
+
+    /**
+     * Answers a request once the operation completes. The response of an operation which has already completed is
+     * flushed with the responses of the other requests read at once, any other response is flushed on its own.
+     */
+    private void respond(ChannelHandlerContext context, long id, CompletableFuture<Void> durable) {
+        boolean done = durable.isDone();
+        durable.whenComplete((ignored, failure) -> {
+            byte status = failure == null ? OK : statusOf(failure);
+            if (done) {
+                context.write(response(context, status, id));
+            } else {
+                context.writeAndFlush(response(context, status, id));
+            }
+        });
+    }
+
+    private static byte statusOf(Throwable cause) {
+        if (cause instanceof AccountNotFoundException) {
+            return ACCOUNT_NOT_FOUND;
+        }
+        if (cause instanceof NotEnoughAmountException) {
+            return NOT_ENOUGH_AMOUNT;
+        }
+        LOGGER.error("Failed to serve a request of the binary protocol", cause);
+        return FAILED;
+    }
+
+    private static ByteBuf response(ChannelHandlerContext context, byte status, long id) {
+        return context.alloc().buffer(LENGTH_SIZE + HEADER_SIZE)
+                .writeInt(HEADER_SIZE)
+                .writeByte(status)
+                .writeLong(id);
+    }
+
+    private static String readIban(ByteBuf frame) {
+        int start = frame.readerIndex();
+        int end = frame.indexOf(start, start + IBAN_SIZE, (byte) 0);
+        String iban = frame.toString(start, (end < 0 ? start + IBAN_SIZE : end) - start, StandardCharsets.US_ASCII);
+        frame.skipBytes(IBAN_SIZE);
+        return iban;
+    }
+
+    private static BigDecimal readAmount(ByteBuf frame) {
+        long unscaled = frame.readLong();
+        return BigDecimal.valueOf(unscaled, frame.readByte());
+    }
+}
@@ -0,0 +1,97 @@
+package esz.dev.wire.boundary;
+
+import esz.dev.wire.control.WireProtocol;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.net.InetSocketAddress;
+
+/**
+ * Listener of the binary protocol, see {@link WireProtocol}, running on its own Netty event loops next to the REST
+ * server. Frames longer than any request close their connection.
+ * <p>
+ * The requests are handled on the event loops only with an account engine which never blocks. Otherwise they are
+ * handed off to a group of handler threads, which still handles the frames of a connection one after the other, so a
+ * request waiting for an account lock or for the disk never stalls the other connections of its event loop.
+ */
+@Singleton
+public class WireServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WireServer.class);
+
+    private final WireHandler handler;
+    private EventLoopGroup acceptor;
+    private EventLoopGroup workers;
+    private EventExecutorGroup handlers;
+    private Channel channel;
+
+    @Inject
+    public WireServer(WireHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @param port           the port to listen on, 0 for any free port
+     * @param threads        the number of event loops serving the connections
+     * @param handlerThreads the number of threads handling the requests, 0 to handle them on the event loops
+     */
+    public synchronized void start(int port, int threads, int handlerThreads) throws InterruptedException {
+        if (channel != null) {
+            return;
+        }
+        acceptor = new NioEventLoopGroup(1, new DefaultThreadFactory("wire-acceptor", true));
+        workers = new NioEventLoopGroup(threads, new DefaultThreadFactory("wire-worker", true));
+        handlers = handlerThreads > 0
+                ? new DefaultEventExecutorGroup(handlerThreads, new DefaultThreadFactory("wire-handler", true)) : null;
+        channel = new ServerBootstrap()
+                .group(acceptor, workers)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new LengthFieldBasedFrameDecoder(
+                                WireProtocol.LENGTH_SIZE + WireProtocol.MAX_FRAME_SIZE, 0, WireProtocol.LENGTH_SIZE,
+                                0, WireProtocol.LENGTH_SIZE));
+                        // a null group handles the requests on the event loop of the connection
+                        channel.pipeline().addLast(handlers, "handler", handler);
+                    }
+                })
+                .bind(port).sync().channel();
+        LOGGER.info("Serving the binary protocol on port {}", getPort());
+    }
+
+    /**
+     * @return the port listened on, or -1 if the listener is not started
+     */
+    public synchronized int getPort() {
+        return channel != null ? ((InetSocketAddress) channel.localAddress()).getPort() : -1;
+    }
+
+    public synchronized void stop() {
+        if (channel == null) {
+            return;
+        }
+        channel.close().syncUninterruptibly();
+        acceptor.shutdownGracefully().syncUninterruptibly();
+        workers.shutdownGracefully().syncUninterruptibly();
+        if (handlers != null) {
+            handlers.shutdownGracefully().syncUninterruptibly();
+            handlers = null;
+        }
+        channel = null;
+    }
+}
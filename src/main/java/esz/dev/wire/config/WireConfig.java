@@ -0,0 +1,55 @@
+package esz.dev.wire.config;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+
+/**
+ * Configuration for Guice to check that the listener of the binary protocol can be run along the rest of the
+ * application configuration.
+ */
+public class WireConfig extends AbstractModule {
+    private final Config config;
+
+    public WireConfig(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * @return the port of the binary protocol, 0 if it is not served
+     */
+    public int port() {
+        return config.hasPath("wire.port") ? config.getInt("wire.port") : 0;
+    }
+
+    public int threads() {
+        return config.hasPath("wire.threads") ? config.getInt("wire.threads") : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the number of threads handling the requests, 0 if they are handled on the event loops, which only the
+     * partitioned engine with the memory storage never blocks
+     */
+    public int handlerThreads() {
+        boolean partitioned = config.hasPath("account.engine.type")
+                && config.getString("account.engine.type").equalsIgnoreCase("partitioned");
+        boolean memory = !config.hasPath("storage.type") || config.getString("storage.type").equalsIgnoreCase("memory");
+        if (partitioned && memory) {
+            return 0;
+        }
+        return config.hasPath("wire.handlerThreads") ? config.getInt("wire.handlerThreads")
+                : Math.max(64, Runtime.getRuntime().availableProcessors() * 8);
+    }
+
+    @Override
+    protected void configure() {
+        if (port() == 0) {
+            return;
+        }
+        if (config.hasPath("cluster.nodes") && !config.getStringList("cluster.nodes").isEmpty()) {
+            addError("The binary protocol does not redirect requests between nodes, wire.port must be 0 in a cluster");
+        }
+        if (config.hasPath("replication.role") && config.getString("replication.role").equalsIgnoreCase("follower")) {
+            addError("A follower serves no writes, wire.port must be 0");
+        }
+    }
+}
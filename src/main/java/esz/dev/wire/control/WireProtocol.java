@@ -0,0 +1,65 @@
+package esz.dev.wire.control;
+
+/**
+ * Layout of the messages of the binary protocol served by {@link esz.dev.wire.boundary.WireServer}. Every message is
+ * a frame made of its length as a 4-byte integer followed by that many bytes, and all numbers are big-endian.
+ * <p>
+ * A request starts with its type and a request id chosen by the client, {@code [byte type][long id]}, followed by a
+ * body of a fixed size for every type:
+ * <ul>
+ * <li>{@link #BALANCE}: {@code [iban]}</li>
+ * <li>{@link #DEPOSIT} and {@link #WITHDRAW}: {@code [iban][amount]}</li>
+ * <li>{@link #TRANSFER}: {@code [sender iban][receiver iban][amount]}</li>
+ * </ul>
+ * where an IBAN takes {@value #IBAN_SIZE} ASCII bytes, padded with zero bytes, and an amount is
+ * {@code [long unscaled value][byte scale]}, the value being {@code unscaled * 10^-scale}.
+ * <p>
+ * A response is {@code [byte status][long id]} with the id of its request, followed by the balance as an amount for a
+ * successful {@link #BALANCE} request. Many requests may be sent without waiting for their responses, which can come
+ * back in a different order than the requests, since a request is answered only once it is durable.
+ */
+public final class WireProtocol {
+    public static final byte BALANCE = 1;
+    public static final byte DEPOSIT = 2;
+    public static final byte WITHDRAW = 3;
+    public static final byte TRANSFER = 4;
+
+    public static final byte OK = 0;
+    public static final byte INVALID_INPUT = 1;
+    public static final byte ACCOUNT_NOT_FOUND = 2;
+    public static final byte NOT_ENOUGH_AMOUNT = 3;
+    /**
+     * The request has an unknown type or a body of the wrong size.
+     */
+    public static final byte MALFORMED = 4;
+    /**
+     * The request failed unexpectedly, or the balance does not fit into an amount.
+     */
+    public static final byte FAILED = 5;
+
+    public static final int LENGTH_SIZE = Integer.BYTES;
+    public static final int HEADER_SIZE = 1 + Long.BYTES;
+    public static final int IBAN_SIZE = 34;
+    public static final int AMOUNT_SIZE = Long.BYTES + 1;
+    public static final int MAX_FRAME_SIZE = HEADER_SIZE + 2 * IBAN_SIZE + AMOUNT_SIZE;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * @return the size of the body of a request of the given type, -1 for an unknown type
+     */
+    public static int bodySize(byte type) {
+        switch (type) {
+            case BALANCE:
+                return IBAN_SIZE;
+            case DEPOSIT:
+            case WITHDRAW:
+                return IBAN_SIZE + AMOUNT_SIZE;
+            case TRANSFER:
+                return 2 * IBAN_SIZE + AMOUNT_SIZE;
+            default:
+                return -1;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import esz.dev.common.ResponseDto;
 import esz.dev.App;
 import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.HistoryEntry;
 import esz.dev.account.control.TransferAmountDto;
 import esz.dev.user.control.UserDto;
 import functional.common.Utils;
@@ -199,6 +200,44 @@ class AccountApiTest {
                 .getStatus()).isEqualByComparingTo(ResponseDto.Status.FAILURE);
     }
 
+    @JoobyTest(value = App.class, port = 8888)
+    @Test
+    @DisplayName("Should not be able to deposit an amount too large to be journaled.")
+    void depositOversizedAmount() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // create the account
+        RequestBody requestBody = RequestBody.create("{}", JSON);
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/1")
+                .post(requestBody)
+                .build()).execute();
+
+        // get the IBAN for the account
+        String[] accounts = getAccountsForUser(1, client, objectMapper);
+
+        // deposit an amount with an unscaled value of more than 255 bytes
+        AmountDto amountDto = new AmountDto(accounts[0], new BigDecimal("9".repeat(700)));
+        String json = objectMapper.writeValueAsString(amountDto);
+        Response depositResponse = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/deposit")
+                .patch(RequestBody.create(json, JSON))
+                .build()).execute();
+
+        assertThat(depositResponse.code()).isEqualTo(StatusCode.BAD_REQUEST_CODE);
+        assertThat(getResponseObject(depositResponse, objectMapper, ResponseDto.class)
+                .getStatus()).isEqualByComparingTo(ResponseDto.Status.FAILURE);
+
+        // check the existing amount
+        Response checkAmountResponse = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/" + accounts[0])
+                .get()
+                .build()).execute();
+        assertThat(checkAmountResponse.code()).isEqualTo(StatusCode.OK_CODE);
+        AmountDto actualAmountDto = Utils.getResponseObject(checkAmountResponse, objectMapper, AmountDto.class);
+        assertThat(actualAmountDto.getAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
     @JoobyTest(value = App.class, port = 8888)
     @Test
     @DisplayName("Should be able to transfer amount.")
@@ -260,4 +299,118 @@ class AccountApiTest {
         assertThat(actualAmountDto1.getAmount()).isEqualByComparingTo(new BigDecimal("77.66"));
         assertThat(actualAmountDto2.getAmount()).isEqualByComparingTo(new BigDecimal("122.34"));
     }
+
+    @JoobyTest(value = App.class, port = 8888)
+    @Test
+    @DisplayName("Should transfer a batch of amounts and report the result of each transfer.")
+    void transferBatch() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // create the accounts
+        RequestBody requestBody = RequestBody.create("{}", JSON);
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/1")
+                .post(requestBody)
+                .build()).execute();
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/1")
+                .post(requestBody)
+                .build()).execute();
+
+        // get the IBAN for the account
+        String[] accounts = getAccountsForUser(1, client, objectMapper);
+
+        // deposit a some amount
+        AmountDto depositAmount = new AmountDto(accounts[0], new BigDecimal("100"));
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/deposit")
+                .patch(RequestBody.create(objectMapper.writeValueAsString(depositAmount), JSON))
+                .build()).execute();
+
+        // transfer in a batch, with an invalid and an uncovered transfer in the middle
+        TransferAmountDto[] transfers = {
+                new TransferAmountDto(accounts[0], accounts[1], new BigDecimal("60")),
+                new TransferAmountDto(accounts[0], accounts[1], new BigDecimal("-1")),
+                new TransferAmountDto(accounts[0], accounts[1], new BigDecimal("60")),
+                new TransferAmountDto(accounts[1], accounts[0], new BigDecimal("10"))
+        };
+        Response batchResponse = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/transfer/batch")
+                .patch(RequestBody.create(objectMapper.writeValueAsString(transfers), JSON))
+                .build()).execute();
+
+        assertThat(batchResponse.code()).isEqualTo(StatusCode.OK_CODE);
+        ResponseDto[] results = getResponseObject(batchResponse, objectMapper, ResponseDto[].class);
+        assertThat(results).extracting(ResponseDto::getStatus).containsExactly(ResponseDto.Status.SUCCESS,
+                ResponseDto.Status.FAILURE, ResponseDto.Status.FAILURE, ResponseDto.Status.SUCCESS);
+
+        // check the existing amount
+        Response checkAmountResponse = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/" + accounts[0])
+                .get()
+                .build()).execute();
+        AmountDto actualAmountDto = Utils.getResponseObject(checkAmountResponse, objectMapper, AmountDto.class);
+        assertThat(actualAmountDto.getAmount()).isEqualByComparingTo(new BigDecimal("50"));
+    }
+
+    @JoobyTest(value = App.class, port = 8888)
+    @Test
+    @DisplayName("Should page through the history of an account, newest entry first.")
+    void pageThroughHistory() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // create the accounts
+        RequestBody requestBody = RequestBody.create("{}", JSON);
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/1")
+                .post(requestBody)
+                .build()).execute();
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/1")
+                .post(requestBody)
+                .build()).execute();
+        String[] accounts = getAccountsForUser(1, client, objectMapper);
+
+        // deposit, withdraw and transfer
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/deposit")
+                .patch(RequestBody.create(objectMapper.writeValueAsString(new AmountDto(accounts[0], new BigDecimal("100"))), JSON))
+                .build()).execute();
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/withdraw")
+                .patch(RequestBody.create(objectMapper.writeValueAsString(new AmountDto(accounts[0], new BigDecimal("10"))), JSON))
+                .build()).execute();
+        client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/transfer")
+                .patch(RequestBody.create(objectMapper.writeValueAsString(
+                        new TransferAmountDto(accounts[0], accounts[1], new BigDecimal("20"))), JSON))
+                .build()).execute();
+
+        Response firstPage = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/" + accounts[0] + "/history?limit=2")
+                .get()
+                .build()).execute();
+        assertThat(firstPage.code()).isEqualTo(StatusCode.OK_CODE);
+        assertThat(firstPage.header("Next-Cursor")).isEqualTo("1");
+        HistoryEntry[] newest = getResponseObject(firstPage, objectMapper, HistoryEntry[].class);
+        assertThat(newest).extracting(HistoryEntry::getType)
+                .containsExactly(HistoryEntry.Type.TRANSFER_OUT, HistoryEntry.Type.WITHDRAW);
+        assertThat(newest[0].getCounterpartyIban()).isEqualTo(accounts[1]);
+
+        Response lastPage = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/" + accounts[0] + "/history?cursor=1&limit=2")
+                .get()
+                .build()).execute();
+        assertThat(lastPage.code()).isEqualTo(StatusCode.OK_CODE);
+        assertThat(lastPage.header("Next-Cursor")).isNull();
+        HistoryEntry[] oldest = getResponseObject(lastPage, objectMapper, HistoryEntry[].class);
+        assertThat(oldest).extracting(HistoryEntry::getType).containsExactly(HistoryEntry.Type.DEPOSIT);
+        assertThat(oldest[0].getAmount()).isEqualByComparingTo(new BigDecimal("100"));
+
+        Response invalidLimit = client.newCall(new Request.Builder()
+                .url(BASE_URL_ACCOUNT + "/" + accounts[0] + "/history?limit=0")
+                .get()
+                .build()).execute();
+        assertThat(invalidLimit.code()).isEqualTo(StatusCode.BAD_REQUEST_CODE);
+    }
 }
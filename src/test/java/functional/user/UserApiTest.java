@@ -111,4 +111,46 @@ class UserApiTest {
         assertThat(accounts[0]).startsWith("RO");
         assertThat(accounts[0]).contains("XXXX");
     }
+
+    @Test
+    @DisplayName("Should page through the IBAN numbers of a user")
+    void pageThroughAccounts() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(new UserDto("John", "Doe", "New York 101"));
+        Request postRequest = new Request.Builder()
+                .url(BASE_URL_USER)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        String message = getResponseObject(client.newCall(postRequest).execute(), objectMapper, ResponseDto.class).getMessage();
+        String userId = message.substring(message.lastIndexOf(' ') + 1);
+        for (int i = 0; i < 3; i++) {
+            Request postRequestAccount = new Request.Builder()
+                    .url(BASE_URL_ACCOUNT + "/" + userId)
+                    .post(RequestBody.create(new byte[0], JSON))
+                    .build();
+            client.newCall(postRequestAccount).execute().close();
+        }
+
+        Response firstPage = client.newCall(new Request.Builder()
+                .url(BASE_URL_USER + "/" + userId + "/accounts?limit=2")
+                .get()
+                .build()).execute();
+        assertThat(firstPage.code()).isEqualTo(StatusCode.OK_CODE);
+        assertThat(firstPage.header("Next-Cursor")).isEqualTo("2");
+        assertThat(Utils.getResponseObject(firstPage, objectMapper, String[].class)).hasSize(2);
+
+        Response lastPage = client.newCall(new Request.Builder()
+                .url(BASE_URL_USER + "/" + userId + "/accounts?cursor=2&limit=2")
+                .get()
+                .build()).execute();
+        assertThat(lastPage.code()).isEqualTo(StatusCode.OK_CODE);
+        assertThat(lastPage.header("Next-Cursor")).isNull();
+        assertThat(Utils.getResponseObject(lastPage, objectMapper, String[].class)).hasSize(1);
+
+        Response invalidLimit = client.newCall(new Request.Builder()
+                .url(BASE_URL_USER + "/" + userId + "/accounts?limit=0")
+                .get()
+                .build()).execute();
+        assertThat(invalidLimit.code()).isEqualTo(StatusCode.BAD_REQUEST_CODE);
+    }
 }
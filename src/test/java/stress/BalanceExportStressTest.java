@@ -0,0 +1,115 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mapstruct.factory.Mappers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * This suite exports the balances of all the accounts while transfers are moving money between them.
+ */
+class BalanceExportStressTest {
+    private static final int NR_OF_ACCOUNTS = 10_000;
+    private static final int NR_OF_THREADS = 4;
+    private static final int NR_OF_EXPORTS = 20;
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal(100);
+
+    /**
+     * Transfers never change the sum of the balances, so a consistent export has to add up to the money deposited,
+     * while an export which is not consistent may catch transfers half way.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should export the balances of a single point in time while transfers are applied")
+    void consistentExportDuringTransfers() throws Exception {
+        UserStore userStore = new InMemoryUserStore();
+        AccountService accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        String[] ibans = createAccounts(accountService, userStore);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        List<Future<?>> transfers = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            transfers.add(executorService.submit(() -> {
+                Random random = new Random();
+                while (running.get()) {
+                    TransferAmountDto transfer = new TransferAmountDto(ibans[random.nextInt(NR_OF_ACCOUNTS)],
+                            ibans[random.nextInt(NR_OF_ACCOUNTS)], new BigDecimal(random.nextInt(10) + 1));
+                    try {
+                        accountService.transfer(transfer);
+                    } catch (NotEnoughAmountException e) {
+                        // the balances are random, a transfer may not be covered
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (int i = 0; i < NR_OF_EXPORTS; i++) {
+            try (BalanceExport export = accountService.exportBalances(true)) {
+                Set<String> exported = new HashSet<>();
+                BigDecimal total = BigDecimal.ZERO;
+                while (export.next()) {
+                    assertThat(exported.add(export.getIban())).isTrue();
+                    total = total.add(export.getAmount());
+                }
+                assertThat(exported).hasSize(NR_OF_ACCOUNTS);
+                assertThat(total).isEqualByComparingTo(INITIAL_AMOUNT.multiply(new BigDecimal(NR_OF_ACCOUNTS)));
+            }
+        }
+        running.set(false);
+        for (Future<?> transfer : transfers) {
+            transfer.get();
+        }
+        executorService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should allow a single consistent export at a time, and none from engines which can not provide it")
+    void consistentExportAvailability() throws Exception {
+        UserStore userStore = new InMemoryUserStore();
+        AccountService accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        createAccounts(accountService, userStore);
+
+        BalanceExport export = accountService.exportBalances(true);
+        assertThatThrownBy(() -> accountService.exportBalances(true)).isInstanceOf(ExportUnavailableException.class);
+        accountService.exportBalances(false).close();
+        export.close();
+        accountService.exportBalances(true).close();
+
+        AccountService atomicAccountService = new AtomicAccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        assertThatThrownBy(() -> atomicAccountService.exportBalances(true)).isInstanceOf(ExportUnavailableException.class);
+    }
+
+    private static String[] createAccounts(AccountService accountService, UserStore userStore) throws Exception {
+        long userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, new DisabledJournal())
+                .addUser(new UserDto("John", "Doe", "New York 101"));
+        String[] ibans = new String[NR_OF_ACCOUNTS];
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            ibans[i] = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(ibans[i], INITIAL_AMOUNT));
+        }
+        return ibans;
+    }
+}
@@ -0,0 +1,134 @@
+package stress;
+
+import com.sun.management.ThreadMXBean;
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite compares the {@link BalanceMode#DECIMAL} and {@link BalanceMode#MINOR_UNITS} balance representations under
+ * concurrent deposits and withdrawals, logging throughput and allocation rate for both of them.
+ */
+class BalanceModeStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceModeStressTest.class);
+    private static final int NR_OF_TRANSACTIONS = 2_000_000;
+    private static final int NR_OF_THREADS = 4;
+
+    /**
+     * Concurrently deposits and withdraws on a single account holding minor units. Withdrawals are larger than the
+     * deposits, so many of them are refused; the account must never go below zero and no money may be lost.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should never overdraw an account holding minor units")
+    void concurrentMinorUnitsDepositWithdrawTest() throws Exception {
+        AccountStore accountStore = new InMemoryAccountStore();
+        AccountService accountService = new AtomicAccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        Account account = Account.builder().iban("IBAN1").minorUnits(0).build();
+        accountStore.addAccount(account);
+
+        AmountDto deposit = new AmountDto("IBAN1", BigDecimal.ONE);
+        AmountDto withdrawal = new AmountDto("IBAN1", new BigDecimal(2));
+        LongAdder deposits = new LongAdder();
+        LongAdder withdrawals = new LongAdder();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    if (random.nextBoolean()) {
+                        accountService.deposit(deposit);
+                        deposits.increment();
+                    } else {
+                        try {
+                            accountService.withdraw(withdrawal);
+                            withdrawals.increment();
+                        } catch (NotEnoughAmountException e) {
+                            assertThat(account.getMinorUnits()).isGreaterThanOrEqualTo(0);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        assertThat(accountService.checkFunds("IBAN1").getAmount())
+                .isEqualByComparingTo(new BigDecimal(deposits.longValue() - 2 * withdrawals.longValue()));
+    }
+
+    /**
+     * Runs the same deposit/withdrawal mix over both balance representations and logs operations per second and
+     * allocated bytes per operation.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should report throughput and allocation rate for both balance modes")
+    void compareBalanceModesTest() throws Exception {
+        for (BalanceMode balanceMode : BalanceMode.values()) {
+            AccountStore accountStore = new InMemoryAccountStore();
+            AccountService accountService = balanceMode == BalanceMode.MINOR_UNITS
+                    ? new AtomicAccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32))
+                    : new AccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+            accountStore.addAccount(Account.builder()
+                    .iban("IBAN1")
+                    .amount(new BigDecimal(NR_OF_TRANSACTIONS))
+                    .minorUnits(MinorUnits.fromDecimal(new BigDecimal(NR_OF_TRANSACTIONS)))
+                    .build());
+
+            AmountDto amountDto = new AmountDto("IBAN1", BigDecimal.ONE);
+            ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            LongAdder allocatedBytes = new LongAdder();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < NR_OF_THREADS; t++) {
+                tasks.add(() -> {
+                    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                        if (i % 2 == 0) {
+                            accountService.deposit(amountDto);
+                        } else {
+                            accountService.withdraw(amountDto);
+                        }
+                    }
+                    allocatedBytes.add(threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore);
+                    return null;
+                });
+            }
+            long start = System.nanoTime();
+            runAll(tasks);
+            long elapsed = System.nanoTime() - start;
+
+            LOGGER.info("{} balances: {} ops/s, {} bytes/op", balanceMode, Math.round(NR_OF_TRANSACTIONS / (elapsed / 1e9)),
+                    String.format("%.1f", (double) allocatedBytes.longValue() / NR_OF_TRANSACTIONS));
+            assertThat(accountService.checkFunds("IBAN1").getAmount()).isEqualByComparingTo(new BigDecimal(NR_OF_TRANSACTIONS));
+        }
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        executorService.shutdown();
+    }
+}
@@ -0,0 +1,274 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.ShardClient;
+import esz.dev.cluster.control.ShardUnavailableException;
+import esz.dev.journal.control.Checkpointer;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.control.JournalReplayer;
+import esz.dev.journal.control.RecoveryReport;
+import esz.dev.journal.control.RecoveryService;
+import esz.dev.journal.control.SnapshotStore;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserIds;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite runs the nodes of a cluster in a single JVM and moves funds between their accounts concurrently, over a
+ * connection between the nodes which loses messages.
+ */
+class ClusterStressTest {
+    private static final List<String> NODES = List.of("http://node-0", "http://node-1", "http://node-2");
+    private static final int NR_OF_ACCOUNTS_PER_NODE = 30;
+    private static final int NR_OF_THREADS = 16;
+    private static final int NR_OF_TRANSFERS = 30_000;
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal(1000);
+
+    /**
+     * Lost prepare responses make the coordinator abort credits which have been prepared, and lost decisions are
+     * retried, so once every decision has been delivered no credit is left prepared and no money has been created or
+     * lost.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should keep the total of the balances across the nodes after concurrent transfers between shards")
+    void crossShardTransfers() throws Exception {
+        ClusterTopology[] topologies = new ClusterTopology[NODES.size()];
+        AccountService[] accountServices = new AccountService[NODES.size()];
+        CrossShardTransfers[] crossShardTransfers = new CrossShardTransfers[NODES.size()];
+        ShardClient lossyClient = new ShardClient() {
+            @Override
+            public void prepare(int node, String transferId, AmountDto credit) throws AccountNotFoundException {
+                crossShardTransfers[node].prepare(transferId, credit);
+                loseMessage(0.05);
+            }
+
+            @Override
+            public void commit(int node, String transferId) {
+                loseMessage(0.1);
+                try {
+                    crossShardTransfers[node].commit(transferId);
+                } catch (AccountNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void abort(int node, String transferId) {
+                loseMessage(0.1);
+                crossShardTransfers[node].abort(transferId);
+            }
+        };
+
+        List<String> ibans = new ArrayList<>();
+        for (int node = 0; node < NODES.size(); node++) {
+            topologies[node] = new ClusterTopology(NODES, node);
+            UserStore userStore = new InMemoryUserStore(new UserIds(node, NODES.size()));
+            accountServices[node] = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(),
+                    new DisabledJournal(), new IbanIssuer(topologies[node]::isLocal), new AccountMetrics(), new HistoryStore(32));
+            crossShardTransfers[node] = new CrossShardTransfers(accountServices[node], new DisabledJournal(),
+                    topologies[node], lossyClient, 60_000);
+            long userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, new DisabledJournal())
+                    .addUser(new UserDto("John", "Doe", "New York 101"));
+            for (int i = 0; i < NR_OF_ACCOUNTS_PER_NODE; i++) {
+                String iban = accountServices[node].createAccount(userId);
+                accountServices[node].deposit(new AmountDto(iban, INITIAL_AMOUNT));
+                ibans.add(iban);
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < NR_OF_TRANSFERS / NR_OF_THREADS; i++) {
+                    TransferAmountDto transfer = new TransferAmountDto(ibans.get(random.nextInt(ibans.size())),
+                            ibans.get(random.nextInt(ibans.size())), new BigDecimal(random.nextInt(100) + 1));
+                    int node = topologies[0].ownerOf(transfer.getSenderIban());
+                    try {
+                        if (topologies[node].isLocal(transfer.getReceiverIban())) {
+                            accountServices[node].transfer(transfer);
+                        } else {
+                            crossShardTransfers[node].transfer(transfer);
+                        }
+                    } catch (NotEnoughAmountException | ShardUnavailableException e) {
+                        // refused or lost transfers are not applied
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        for (CrossShardTransfers node : crossShardTransfers) {
+            while (node.pendingDecisions() > 0) {
+                Thread.sleep(100);
+            }
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (String iban : ibans) {
+            total = total.add(accountServices[topologies[0].ownerOf(iban)].checkFunds(iban).getAmount());
+        }
+        assertThat(total).isEqualByComparingTo(INITIAL_AMOUNT.multiply(new BigDecimal(ibans.size())));
+        for (CrossShardTransfers node : crossShardTransfers) {
+            assertThat(node.preparedCredits()).isZero();
+            node.shutdown();
+        }
+    }
+
+    /**
+     * The node of the receiver goes down right after preparing each of two credits, one of them covered by a snapshot,
+     * so the coordinator can not deliver its commits. Both nodes restart from their journals while the node of the
+     * receiver is down: the receiver holds the credits again and the coordinator delivers the commits again once it is
+     * back, so each credit is applied once and survives another restart.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should apply the credits prepared before the node of the receiver restarted once it is back")
+    void restartReceiverBetweenPrepareAndCommit(@TempDir Path directory) throws Exception {
+        Node[] nodes = new Node[2];
+        AtomicBoolean receiverDown = new AtomicBoolean(true);
+        ShardClient client = new ShardClient() {
+            @Override
+            public void prepare(int node, String transferId, AmountDto credit) throws AccountNotFoundException {
+                // the node of the receiver goes down once it has answered
+                nodes[node].crossShardTransfers.prepare(transferId, credit);
+            }
+
+            @Override
+            public void commit(int node, String transferId) {
+                checkUp(node);
+                try {
+                    nodes[node].crossShardTransfers.commit(transferId);
+                } catch (AccountNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void abort(int node, String transferId) {
+                checkUp(node);
+                nodes[node].crossShardTransfers.abort(transferId);
+            }
+
+            private void checkUp(int node) {
+                if (node == 1 && receiverDown.get()) {
+                    throw new ShardUnavailableException("Node " + node + " is down", null);
+                }
+            }
+        };
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = new Node(node, directory.resolve("node-" + node), client);
+        }
+        long sender = nodes[0].userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        String senderIban = nodes[0].accountService.createAccount(sender);
+        nodes[0].accountService.deposit(new AmountDto(senderIban, INITIAL_AMOUNT));
+        long receiver = nodes[1].userService.addUser(new UserDto("Jane", "Doe", "New York 102"));
+        String receiverIban = nodes[1].accountService.createAccount(receiver);
+
+        nodes[0].crossShardTransfers.transfer(new TransferAmountDto(senderIban, receiverIban, new BigDecimal(100)));
+        nodes[1].checkpointer.checkpoint();
+        nodes[0].crossShardTransfers.transfer(new TransferAmountDto(senderIban, receiverIban, new BigDecimal(50)));
+        assertThat(nodes[0].crossShardTransfers.pendingDecisions()).isEqualTo(2);
+
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node].stop();
+            nodes[node] = new Node(node, directory.resolve("node-" + node), client);
+        }
+        assertThat(nodes[0].crossShardTransfers.pendingDecisions()).isEqualTo(2);
+        assertThat(nodes[0].accountService.checkFunds(senderIban).getAmount()).isEqualByComparingTo("850");
+        assertThat(nodes[1].crossShardTransfers.preparedCredits()).isEqualTo(2);
+        assertThat(nodes[1].accountService.checkFunds(receiverIban).getAmount()).isZero();
+
+        receiverDown.set(false);
+        awaitDecisions(nodes);
+        assertThat(nodes[1].crossShardTransfers.preparedCredits()).isZero();
+        assertThat(nodes[1].accountService.checkFunds(receiverIban).getAmount()).isEqualByComparingTo("150");
+
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node].stop();
+            nodes[node] = new Node(node, directory.resolve("node-" + node), client);
+        }
+        // a commit delivered just before the restart may be delivered again, and is ignored
+        awaitDecisions(nodes);
+        assertThat(nodes[0].accountService.checkFunds(senderIban).getAmount()).isEqualByComparingTo("850");
+        assertThat(nodes[1].accountService.checkFunds(receiverIban).getAmount()).isEqualByComparingTo("150");
+        for (Node node : nodes) {
+            node.stop();
+        }
+    }
+
+    private static void awaitDecisions(Node[] nodes) throws InterruptedException {
+        for (Node node : nodes) {
+            while (node.crossShardTransfers.pendingDecisions() > 0 || node.crossShardTransfers.preparedCredits() > 0) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static void loseMessage(double probability) {
+        if (ThreadLocalRandom.current().nextDouble() < probability) {
+            throw new ShardUnavailableException("Lost message", null);
+        }
+    }
+
+    /**
+     * A node of the cluster restored from its journal and its snapshots, with its transfers between shards resumed.
+     */
+    private static final class Node {
+        private final FileJournal journal;
+        private final UserService userService;
+        private final AccountService accountService;
+        private final Checkpointer checkpointer;
+        private final CrossShardTransfers crossShardTransfers;
+
+        private Node(int node, Path directory, ShardClient client) throws IOException {
+            ClusterTopology topology = new ClusterTopology(NODES, node);
+            SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"));
+            journal = new FileJournal(directory.resolve("journal"), 1024 * 1024, 4096);
+            UserStore userStore = new InMemoryUserStore(new UserIds(node, NODES.size()));
+            userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal);
+            accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), journal,
+                    new IbanIssuer(topology::isLocal), new AccountMetrics(), new HistoryStore(32));
+            checkpointer = new Checkpointer(journal, snapshotStore);
+            RecoveryReport report = new RecoveryService(snapshotStore,
+                    new JournalReplayer(journal, accountService, userService), accountService, userService).recover();
+            crossShardTransfers = new CrossShardTransfers(accountService, journal, topology, client, 60_000);
+            crossShardTransfers.resume(report.getTransfersInProgress());
+        }
+
+        private void stop() {
+            crossShardTransfers.shutdown();
+            journal.close();
+        }
+    }
+}
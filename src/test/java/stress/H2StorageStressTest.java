@@ -0,0 +1,143 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.storage.control.H2Database;
+import esz.dev.user.control.H2UserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite tests the stores written through to an embedded H2 database under concurrent load.
+ */
+class H2StorageStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(H2StorageStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 100;
+    private static final int NR_OF_THREADS = 16;
+    private static final int NR_OF_TRANSACTIONS = 100_000;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Invokes random deposits, withdrawals and transfers from many threads with the locking engine, then reopens the
+     * database. The loaded balances must match the balances of the original run exactly.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should load every balance from the database after concurrent transactions of the locking engine")
+    void lockingEngineTest() throws Exception {
+        durableTransactions(BalanceMode.DECIMAL, (accountStore, userStore, ibanIssuer) -> new AccountService(accountStore,
+                userStore, new AccountLocks(), new DisabledJournal(), ibanIssuer, new AccountMetrics(), new HistoryStore(32)));
+    }
+
+    /**
+     * Same as {@link #lockingEngineTest()} with the engine taking no lock, which writes the changes of the same
+     * accounts concurrently, in any order.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should load every balance from the database after concurrent transactions of the lock-free engine")
+    void atomicEngineTest() throws Exception {
+        durableTransactions(BalanceMode.MINOR_UNITS, (accountStore, userStore, ibanIssuer) -> new AtomicAccountService(accountStore,
+                userStore, new AccountLocks(), new DisabledJournal(), ibanIssuer, new AccountMetrics(), new HistoryStore(32)));
+    }
+
+    private void durableTransactions(BalanceMode balanceMode, Engine engine) throws Exception {
+        String url = "jdbc:h2:" + directory.resolve("bank").toAbsolutePath();
+        H2Database database = new H2Database(url, 4);
+        IbanIssuer ibanIssuer = new IbanIssuer();
+        AccountStore accountStore = new H2AccountStore(database, balanceMode, ibanIssuer);
+        UserStore userStore = new H2UserStore(database);
+        UserService userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, new DisabledJournal());
+        AccountService accountService = engine.create(accountStore, userStore, ibanIssuer);
+
+        long userId = userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, new BigDecimal(1000)));
+            ibans.add(iban);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    String iban = ibans.get(random.nextInt(NR_OF_ACCOUNTS));
+                    BigDecimal amount = new BigDecimal(random.nextInt(100)).movePointLeft(2);
+                    try {
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                accountService.deposit(new AmountDto(iban, amount));
+                                break;
+                            case 1:
+                                accountService.withdraw(new AmountDto(iban, amount));
+                                break;
+                            default:
+                                accountService.transfer(new TransferAmountDto(iban, ibans.get(random.nextInt(NR_OF_ACCOUNTS)), amount));
+                        }
+                    } catch (NotEnoughAmountException e) {
+                        // refused transactions are not written
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        database.close();
+        LOGGER.info("H2 storage, {} balances: {} threads, {} transactions/s", balanceMode, NR_OF_THREADS,
+                Math.round(NR_OF_TRANSACTIONS / (elapsed / 1e9)));
+
+        H2Database reopened = new H2Database(url, 1);
+        IbanIssuer restoredIbanIssuer = new IbanIssuer();
+        AccountStore restoredAccountStore = new H2AccountStore(reopened, balanceMode, restoredIbanIssuer);
+        UserStore restoredUserStore = new H2UserStore(reopened);
+        AccountService restoredAccountService = engine.create(restoredAccountStore, restoredUserStore, restoredIbanIssuer);
+
+        assertThat(restoredAccountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(restoredUserStore.getUser(userId)).isPresent();
+        assertThat(restoredUserStore.getAccounts(userId).orElseThrow()).containsExactlyElementsOf(ibans);
+        for (String iban : ibans) {
+            assertThat(restoredAccountService.checkFunds(iban).getAmount())
+                    .isEqualByComparingTo(accountService.checkFunds(iban).getAmount());
+        }
+
+        // new accounts continue the numbering instead of reusing stored ibans
+        assertThat(ibans).doesNotContain(restoredAccountService.createAccount(userId));
+        reopened.close();
+    }
+
+    @FunctionalInterface
+    private interface Engine {
+        AccountService create(AccountStore accountStore, UserStore userStore, IbanIssuer ibanIssuer);
+    }
+}
@@ -0,0 +1,79 @@
+package stress;
+
+import esz.dev.account.control.HistoryEntry;
+import esz.dev.account.control.HistoryPage;
+import esz.dev.account.control.HistoryStore;
+import esz.dev.account.entity.Account;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite reads the history of an account while its entries are overwritten by the writer of the account.
+ */
+class HistoryStressTest {
+    private static final int CAPACITY = 16;
+    private static final int NR_OF_ENTRIES = 5_000_000;
+    private static final int NR_OF_READERS = 4;
+    private static final HistoryEntry.Type[] TYPES = HistoryEntry.Type.values();
+
+    /**
+     * Every entry is recorded with an amount and a type derived from its sequence, so an entry a reader copied while
+     * the writer was overwriting it is detected. Pages have to hold consecutive entries, newest first.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should never return entries overwritten while being read")
+    void readWhileOverwriting() throws Exception {
+        HistoryStore historyStore = new HistoryStore(CAPACITY);
+        Account account = Account.builder().iban("IBAN").amount(BigDecimal.ZERO).build();
+        BigDecimal[] amounts = new BigDecimal[NR_OF_ENTRIES];
+        for (int i = 0; i < NR_OF_ENTRIES; i++) {
+            amounts[i] = BigDecimal.valueOf(i);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_READERS);
+        List<Future<Long>> readers = new ArrayList<>();
+        for (int r = 0; r < NR_OF_READERS; r++) {
+            readers.add(executorService.submit(() -> {
+                long pages = 0;
+                while (writing.get()) {
+                    HistoryPage page = historyStore.getHistory(account.getIban(), Long.MAX_VALUE, CAPACITY);
+                    long expected = -1;
+                    for (HistoryEntry entry : page.getEntries()) {
+                        assertThat(entry.getSequence()).isEqualTo(expected < 0 ? entry.getSequence() : expected);
+                        assertThat(entry.getAmount().longValueExact()).isEqualTo(entry.getSequence());
+                        assertThat(entry.getType()).isEqualTo(TYPES[(int) (entry.getSequence() % TYPES.length)]);
+                        expected = entry.getSequence() - 1;
+                    }
+                    pages++;
+                }
+                return pages;
+            }));
+        }
+
+        for (int i = 0; i < NR_OF_ENTRIES; i++) {
+            historyStore.record(account, TYPES[i % TYPES.length], amounts[i], null);
+        }
+        writing.set(false);
+        for (Future<Long> reader : readers) {
+            assertThat(reader.get()).isPositive();
+        }
+        executorService.shutdown();
+
+        HistoryPage page = historyStore.getHistory(account.getIban(), Long.MAX_VALUE, CAPACITY);
+        assertThat(page.getEntries()).hasSize(CAPACITY);
+        assertThat(page.getEntries().get(0).getSequence()).isEqualTo(NR_OF_ENTRIES - 1);
+    }
+}
@@ -0,0 +1,328 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.Checkpointer;
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.control.JournalReplayer;
+import esz.dev.journal.control.RecoveryReport;
+import esz.dev.journal.control.RecoveryService;
+import esz.dev.journal.control.SnapshotStore;
+import esz.dev.journal.entity.JournalRecord;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * This suite tests the durable journal under concurrent load and reports the throughput reached with durability on.
+ * The JMH benchmarks run with the journal disabled, so this is the only measurement of the journal.
+ */
+class JournalStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 100;
+    private static final int NR_OF_THREADS = 64;
+    private static final int NR_OF_TRANSACTIONS = 200_000;
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Invokes random deposits, withdrawals and transfers from many threads with the journal enabled, then replays the
+     * journal into empty stores. The replayed balances must match the balances of the original run exactly.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should restore every balance from the journal after concurrent transactions")
+    void durableTransactionsTest() throws Exception {
+        FileJournal journal = new FileJournal(directory, SEGMENT_SIZE, 4096);
+        AccountStore accountStore = new InMemoryAccountStore();
+        UserStore userStore = new InMemoryUserStore();
+        UserService userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal);
+        AccountService accountService = new AccountService(accountStore, userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+
+        long userId = userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, new BigDecimal(1000)));
+            ibans.add(iban);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    String iban = ibans.get(random.nextInt(NR_OF_ACCOUNTS));
+                    BigDecimal amount = new BigDecimal(random.nextInt(100)).movePointLeft(2);
+                    try {
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                accountService.deposit(new AmountDto(iban, amount));
+                                break;
+                            case 1:
+                                accountService.withdraw(new AmountDto(iban, amount));
+                                break;
+                            default:
+                                accountService.transfer(new TransferAmountDto(iban, ibans.get(random.nextInt(NR_OF_ACCOUNTS)), amount));
+                        }
+                    } catch (NotEnoughAmountException e) {
+                        // refused transactions are not journaled
+                    }
+                }
+                return null;
+            });
+        }
+        long syncsBefore = journal.countSyncs();
+        long recordsBefore = journal.countRecords();
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        journal.close();
+
+        long syncs = journal.countSyncs() - syncsBefore;
+        long records = journal.countRecords() - recordsBefore;
+        // every fsync makes at least one record durable
+        assertThat(syncs).isPositive().isLessThanOrEqualTo(records);
+        LOGGER.info("Durable journal: {} threads, {} transactions/s, {} fsyncs, {} records/fsync", NR_OF_THREADS,
+                Math.round(NR_OF_TRANSACTIONS / (elapsed / 1e9)), syncs, String.format("%.1f", (double) records / syncs));
+
+        // replay the journal into empty stores
+        FileJournal reopened = new FileJournal(directory, SEGMENT_SIZE, 4096);
+        AccountStore restoredAccountStore = new InMemoryAccountStore();
+        UserStore restoredUserStore = new InMemoryUserStore();
+        AccountService restoredAccountService = new AccountService(restoredAccountStore, restoredUserStore, new AccountLocks(), reopened, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        UserService restoredUserService = new UserService(Mappers.getMapper(UserMapper.class), restoredUserStore, reopened);
+        new JournalReplayer(reopened, restoredAccountService, restoredUserService).replay(0);
+
+        assertThat(restoredAccountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(restoredUserService.getAccountsForUser(userId)).containsExactlyInAnyOrderElementsOf(ibans);
+        for (String iban : ibans) {
+            assertThat(restoredAccountService.checkFunds(iban).getAmount())
+                    .isEqualByComparingTo(accountService.checkFunds(iban).getAmount());
+        }
+
+        // new accounts continue the numbering instead of reusing restored ibans
+        assertThat(ibans).doesNotContain(restoredAccountService.createAccount(userId));
+        reopened.close();
+    }
+
+    /**
+     * Takes a snapshot, then another one merged with it while transactions are running, runs more transactions, then
+     * restores the state into empty stores from the snapshot and the journal tail. The restored balances must match
+     * the original ones exactly.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should restore every balance from a snapshot taken under load and the journal tail")
+    void snapshotRecoveryTest() throws Exception {
+        Path journalDirectory = directory.resolve("journal");
+        SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"));
+        FileJournal journal = new FileJournal(journalDirectory, SEGMENT_SIZE, 4096);
+        AccountStore accountStore = new InMemoryAccountStore();
+        UserStore userStore = new InMemoryUserStore();
+        UserService userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal);
+        AccountService accountService = new AccountService(accountStore, userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        Checkpointer checkpointer = new Checkpointer(journal, snapshotStore);
+
+        long userId = userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, new BigDecimal(1000)));
+            ibans.add(iban);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        runTransfers(executorService, accountService, ibans);
+        checkpointer.checkpoint();
+        runTransfers(executorService, accountService, ibans);
+        ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor();
+        Future<Long> snapshot = snapshotExecutor.submit(checkpointer::checkpoint);
+        runTransfers(executorService, accountService, ibans);
+        long snapshotSequence = snapshot.get();
+        snapshotExecutor.shutdown();
+        runTransfers(executorService, accountService, ibans);
+        executorService.shutdown();
+        journal.close();
+
+        FileJournal reopened = new FileJournal(journalDirectory, SEGMENT_SIZE, 4096);
+        AccountStore restoredAccountStore = new InMemoryAccountStore();
+        UserStore restoredUserStore = new InMemoryUserStore();
+        AccountService restoredAccountService = new AccountService(restoredAccountStore, restoredUserStore, new AccountLocks(), reopened, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        UserService restoredUserService = new UserService(Mappers.getMapper(UserMapper.class), restoredUserStore, reopened);
+        RecoveryReport report = new RecoveryService(snapshotStore,
+                new JournalReplayer(reopened, restoredAccountService, restoredUserService),
+                restoredAccountService, restoredUserService).recover();
+        LOGGER.info("Snapshot recovery: {} accounts in {} ms, {} journal records in {} ms", report.getAccounts(),
+                report.getSnapshotMillis(), report.getReplayedRecords(), report.getReplayMillis());
+
+        assertThat(report.getSnapshotSequence()).isEqualTo(snapshotSequence).isPositive();
+        assertThat(report.getAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(restoredAccountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(restoredUserService.getAccountsForUser(userId)).containsExactlyInAnyOrderElementsOf(ibans);
+        for (String iban : ibans) {
+            assertThat(restoredAccountService.checkFunds(iban).getAmount())
+                    .isEqualByComparingTo(accountService.checkFunds(iban).getAmount());
+        }
+        assertThat(restoredAccountService.createAccount(userId)).isNotIn(ibans);
+        reopened.close();
+    }
+
+    /**
+     * Simulates a crash in the middle of a write by appending garbage to the last segment. The journal must drop the
+     * torn tail on open and keep every intact record.
+     */
+    @Test
+    @Timeout(100)
+    @DisplayName("Should discard a torn journal tail on open")
+    void tornTailTest() throws Exception {
+        FileJournal journal = new FileJournal(directory, SEGMENT_SIZE, 16);
+        AccountStore accountStore = new InMemoryAccountStore();
+        accountStore.addAccount(Account.builder().iban("IBAN1").amount(BigDecimal.ZERO).build());
+        AccountService accountService = new AccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        for (int i = 0; i < 1000; i++) {
+            accountService.deposit(new AmountDto("IBAN1", BigDecimal.ONE));
+        }
+        journal.close();
+        Files.write(lastSegment(), new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        FileJournal reopened = new FileJournal(directory, SEGMENT_SIZE, 16);
+        assertThat(reopened.nextSequence()).isEqualTo(1000);
+        long[] replayed = {0};
+        reopened.replay(0, record -> replayed[0]++);
+        assertThat(replayed[0]).isEqualTo(1000);
+        reopened.close();
+    }
+
+    /**
+     * Damages a record at the start of a full segment which is followed by another segment. The replay must fail
+     * rather than skip the rest of the segment, and rather than wait forever for the damaged record to complete.
+     */
+    @Test
+    @Timeout(100)
+    @DisplayName("Should fail the replay of a damaged segment which is not the last one")
+    void corruptSegmentTest() throws Exception {
+        FileJournal journal = new FileJournal(directory, 8 * SEGMENT_SIZE, 4096);
+        List<CompletableFuture<Void>> appended = new ArrayList<>();
+        while (listSegments().size() < 2) {
+            for (int i = 0; i < 10_000; i++) {
+                appended.add(journal.append(JournalRecord.builder().type(JournalRecord.Type.DEPOSIT).iban("IBAN1")
+                        .amount(BigDecimal.ONE).build()));
+            }
+            CompletableFuture.allOf(appended.toArray(new CompletableFuture[0])).join();
+        }
+        journal.close();
+        Path first = listSegments().get(0);
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 100);
+        }
+
+        FileJournal reopened = new FileJournal(directory, 8 * SEGMENT_SIZE, 4096);
+        assertThatThrownBy(() -> reopened.replay(0, record -> {
+        })).isInstanceOf(IOException.class).hasMessageContaining(first.getFileName().toString());
+        reopened.close();
+    }
+
+    /**
+     * Closes the journal while many threads keep appending to it. Every append must complete, either durably or with
+     * the journal closed, instead of being left in the queue after the writer and the close have drained it.
+     */
+    @Test
+    @Timeout(100)
+    @DisplayName("Should complete every record appended while the journal is closed")
+    void closeWhileAppendingTest() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            FileJournal journal = new FileJournal(directory.resolve("round-" + round), SEGMENT_SIZE, 16);
+            ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+            List<Future<List<CompletableFuture<Void>>>> appenders = new ArrayList<>();
+            for (int t = 0; t < NR_OF_THREADS; t++) {
+                appenders.add(executorService.submit(() -> {
+                    List<CompletableFuture<Void>> appended = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        appended.add(journal.append(JournalRecord.builder().type(JournalRecord.Type.DEPOSIT)
+                                .iban("IBAN1").amount(BigDecimal.ONE).build()));
+                    }
+                    return appended;
+                }));
+            }
+            journal.close();
+            for (Future<List<CompletableFuture<Void>>> appender : appenders) {
+                for (CompletableFuture<Void> durable : appender.get()) {
+                    assertThat(durable.handle((ignored, e) -> e == null
+                            || e instanceof IllegalStateException).get(10, TimeUnit.SECONDS)).isTrue();
+                }
+            }
+            executorService.shutdown();
+        }
+    }
+
+    private static void runTransfers(ExecutorService executorService, AccountService accountService,
+                                     List<String> ibans) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < NR_OF_THREADS; i++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int j = 0; j < NR_OF_TRANSACTIONS / NR_OF_THREADS / 4; j++) {
+                    BigDecimal amount = new BigDecimal(random.nextInt(100)).movePointLeft(2);
+                    try {
+                        accountService.transfer(new TransferAmountDto(ibans.get(random.nextInt(NR_OF_ACCOUNTS)),
+                                ibans.get(random.nextInt(NR_OF_ACCOUNTS)), amount));
+                    } catch (NotEnoughAmountException e) {
+                        // refused transactions are not journaled
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = listSegments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.storage.control.MvStoreDatabase;
+import esz.dev.user.control.MvStoreUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite tests the stores kept in an embedded MVStore under concurrent load, committed in the background
+ * while the transactions are applied.
+ */
+class MvStoreStorageStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MvStoreStorageStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 100;
+    private static final int NR_OF_THREADS = 16;
+    private static final int NR_OF_TRANSACTIONS = 100_000;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Invokes random deposits, withdrawals and transfers from many threads with the locking engine, then closes and
+     * reopens the database. The loaded balances must match the balances of the original run exactly.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should load every balance from the MVStore after concurrent transactions of the locking engine")
+    void lockingEngineTest() throws Exception {
+        durableTransactions(BalanceMode.DECIMAL, (accountStore, userStore, ibanIssuer) -> new AccountService(accountStore,
+                userStore, new AccountLocks(), new DisabledJournal(), ibanIssuer, new AccountMetrics(), new HistoryStore(32)));
+    }
+
+    /**
+     * Same as {@link #lockingEngineTest()} with the engine taking no lock, which writes the changes of the same
+     * accounts concurrently, in any order.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should load every balance from the MVStore after concurrent transactions of the lock-free engine")
+    void atomicEngineTest() throws Exception {
+        durableTransactions(BalanceMode.MINOR_UNITS, (accountStore, userStore, ibanIssuer) -> new AtomicAccountService(accountStore,
+                userStore, new AccountLocks(), new DisabledJournal(), ibanIssuer, new AccountMetrics(), new HistoryStore(32)));
+    }
+
+    private void durableTransactions(BalanceMode balanceMode, Engine engine) throws Exception {
+        String file = directory.resolve("bank.mv").toString();
+        MvStoreDatabase database = new MvStoreDatabase(file, Duration.ofMillis(10));
+        IbanIssuer ibanIssuer = new IbanIssuer();
+        AccountStore accountStore = new MvStoreAccountStore(database, balanceMode, ibanIssuer);
+        UserStore userStore = new MvStoreUserStore(database);
+        UserService userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, new DisabledJournal());
+        AccountService accountService = engine.create(accountStore, userStore, ibanIssuer);
+
+        long userId = userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, new BigDecimal(1000)));
+            ibans.add(iban);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    String iban = ibans.get(random.nextInt(NR_OF_ACCOUNTS));
+                    BigDecimal amount = new BigDecimal(random.nextInt(100)).movePointLeft(2);
+                    try {
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                accountService.deposit(new AmountDto(iban, amount));
+                                break;
+                            case 1:
+                                accountService.withdraw(new AmountDto(iban, amount));
+                                break;
+                            default:
+                                accountService.transfer(new TransferAmountDto(iban, ibans.get(random.nextInt(NR_OF_ACCOUNTS)), amount));
+                        }
+                    } catch (NotEnoughAmountException e) {
+                        // refused transactions are not written
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        database.close();
+        LOGGER.info("MVStore storage, {} balances: {} threads, {} transactions/s", balanceMode, NR_OF_THREADS,
+                Math.round(NR_OF_TRANSACTIONS / (elapsed / 1e9)));
+
+        MvStoreDatabase reopened = new MvStoreDatabase(file, Duration.ofSeconds(1));
+        IbanIssuer restoredIbanIssuer = new IbanIssuer();
+        AccountStore restoredAccountStore = new MvStoreAccountStore(reopened, balanceMode, restoredIbanIssuer);
+        UserStore restoredUserStore = new MvStoreUserStore(reopened);
+        AccountService restoredAccountService = engine.create(restoredAccountStore, restoredUserStore, restoredIbanIssuer);
+
+        assertThat(restoredAccountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(restoredUserStore.getUser(userId)).isPresent();
+        assertThat(restoredUserStore.getAccounts(userId).orElseThrow()).containsExactlyElementsOf(ibans);
+        // iterating reads the stored balances without loading the accounts
+        List<Account> iterated = new ArrayList<>();
+        restoredAccountStore.accounts().forEachRemaining(iterated::add);
+        assertThat(iterated).extracting(Account::getIban).containsExactlyInAnyOrderElementsOf(ibans);
+        for (Account account : iterated) {
+            assertThat(balanceMode == BalanceMode.MINOR_UNITS ? MinorUnits.toDecimal(account.getMinorUnits())
+                    : account.getAmount()).isEqualByComparingTo(accountService.checkFunds(account.getIban()).getAmount());
+            assertThat(restoredAccountStore.findAccount(account.getIban())).isNotSameAs(account);
+        }
+        for (String iban : ibans) {
+            assertThat(restoredAccountService.checkFunds(iban).getAmount())
+                    .isEqualByComparingTo(accountService.checkFunds(iban).getAmount());
+        }
+
+        // new accounts continue the numbering instead of reusing stored ibans
+        assertThat(ibans).doesNotContain(restoredAccountService.createAccount(userId));
+        reopened.close();
+    }
+
+    @FunctionalInterface
+    private interface Engine {
+        AccountService create(AccountStore accountStore, UserStore userStore, IbanIssuer ibanIssuer);
+    }
+}
@@ -0,0 +1,152 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite tests the off-heap account store under concurrent transfers, and compares the memory taken per account
+ * by the heap and the off-heap stores.
+ */
+class OffHeapAccountStoreStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapAccountStoreStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 1_000_000;
+    private static final int NR_OF_THREADS = 16;
+    private static final int NR_OF_TRANSACTIONS = 1_000_000;
+
+    /**
+     * Fills both stores with the same accounts, and reports and compares the heap and direct memory taken per account.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should keep accounts off the heap")
+    void footprintTest() {
+        Footprint heap = measure(InMemoryAccountStore::new);
+        Footprint offHeap = measure(() -> new OffHeapAccountStore(NR_OF_ACCOUNTS));
+        LOGGER.info("Heap store: {} heap bytes/account, {} direct bytes/account", Math.round(heap.heapBytes),
+                Math.round(heap.directBytes));
+        LOGGER.info("Off-heap store: {} heap bytes/account, {} direct bytes/account", Math.round(offHeap.heapBytes),
+                Math.round(offHeap.directBytes));
+
+        assertThat(offHeap.heapBytes).isLessThan(heap.heapBytes / 10);
+        assertThat(offHeap.heapBytes + offHeap.directBytes).isLessThan(heap.heapBytes + heap.directBytes);
+    }
+
+    /**
+     * Invokes random transfers between accounts of the off-heap store from many threads. No money may be created or
+     * lost, and no account may be overdrawn.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should keep the total balance of off-heap accounts under concurrent transfers")
+    void concurrentTransferTest() throws Exception {
+        int accounts = 1000;
+        OffHeapAccountStore accountStore = new OffHeapAccountStore(accounts);
+        AccountService accountService = new AtomicAccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        for (int i = 0; i < accounts; i++) {
+            accountStore.addAccount(Account.builder().iban("IBAN" + i).minorUnits(MinorUnits.fromDecimal(BigDecimal.TEN)).build());
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    try {
+                        accountService.transfer(new TransferAmountDto("IBAN" + random.nextInt(accounts),
+                                "IBAN" + random.nextInt(accounts), new BigDecimal(random.nextInt(300)).movePointLeft(2)));
+                    } catch (NotEnoughAmountException e) {
+                        // refused transfers leave the balances unchanged
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal amount = accountService.checkFunds("IBAN" + i).getAmount();
+            assertThat(amount).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+            total = total.add(amount);
+        }
+        assertThat(accountStore.countAccounts()).isEqualTo(accounts);
+        assertThat(total).isEqualByComparingTo(BigDecimal.TEN.multiply(new BigDecimal(accounts)));
+
+        Set<String> exported = new HashSet<>();
+        BigDecimal exportedTotal = BigDecimal.ZERO;
+        try (BalanceExport export = accountService.exportBalances(false)) {
+            while (export.next()) {
+                assertThat(exported.add(export.getIban())).isTrue();
+                exportedTotal = exportedTotal.add(export.getAmount());
+            }
+        }
+        assertThat(exported).hasSize(accounts);
+        assertThat(exportedTotal).isEqualByComparingTo(total);
+    }
+
+    private static Footprint measure(Supplier<AccountStore> storeFactory) {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        AccountStore accountStore = storeFactory.get();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            accountStore.addAccount(Account.builder()
+                    .iban(String.format("RO%02dXXXX%016d", i % 100, i))
+                    .amount(BigDecimal.ZERO).build());
+        }
+        Footprint footprint = new Footprint((double) (usedHeap() - heapBefore) / NR_OF_ACCOUNTS,
+                (double) (usedDirect() - directBefore) / NR_OF_ACCOUNTS);
+        assertThat(accountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
+        return footprint;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static class Footprint {
+        private final double heapBytes;
+        private final double directBytes;
+
+        private Footprint(double heapBytes, double directBytes) {
+            this.heapBytes = heapBytes;
+            this.directBytes = directBytes;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * This suite tests the concurrent behaviour of the partitioned ledger engine.
+ */
+class PartitionedEngineStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedEngineStressTest.class);
+    private static final int NR_OF_PARTITIONS = 4;
+    private static final int NR_OF_ACCOUNTS = 1_000;
+    private static final int NR_OF_THREADS = 8;
+
+    private AccountStore accountStore;
+    private PartitionedAccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        accountStore = new InMemoryAccountStore();
+        accountService = new PartitionedAccountService(accountStore, new InMemoryUserStore(), new AccountLocks(), new DisabledJournal(),
+                new IbanIssuer(), new AccountMetrics(), new HistoryStore(32), BalanceMode.DECIMAL, NR_OF_PARTITIONS, 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.shutdown();
+    }
+
+    /**
+     * Invokes 10 million random transfers between accounts owned by different partitions, both from blocking callers
+     * and through the asynchronous interface. No money may be lost and every transfer has to complete.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should not lose money on cross-partition transfers")
+    void crossPartitionTransferTest() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            Account account = Account.builder().iban("IBAN" + i).amount(new BigDecimal(100)).build();
+            accountStore.addAccount(account);
+            accounts.add(account);
+        }
+
+        final int NR_OF_TRANSACTIONS = 10_000_000;
+        LongAdder refused = new LongAdder();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            boolean async = t % 2 == 0;
+            tasks.add(() -> {
+                Random random = new Random();
+                List<CompletableFuture<Void>> pending = new ArrayList<>();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    TransferAmountDto transferAmountDto = new TransferAmountDto(
+                            accounts.get(random.nextInt(NR_OF_ACCOUNTS)).getIban(),
+                            accounts.get(random.nextInt(NR_OF_ACCOUNTS)).getIban(),
+                            new BigDecimal(random.nextInt(20)));
+                    if (async) {
+                        pending.add(accountService.transferAsync(transferAmountDto).exceptionally(e -> {
+                            refused.increment();
+                            return null;
+                        }));
+                        if (pending.size() == 1024) {
+                            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+                            pending.clear();
+                        }
+                    } else {
+                        try {
+                            accountService.transfer(transferAmountDto);
+                        } catch (NotEnoughAmountException e) {
+                            refused.increment();
+                        }
+                    }
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+                return null;
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+
+        LOGGER.info("Partitioned engine: {} partition(s), {} transfers/s, {} refused", NR_OF_PARTITIONS,
+                Math.round(NR_OF_TRANSACTIONS / (elapsed / 1e9)), refused.longValue());
+
+        // check that we have all the money and no account went below zero
+        BigDecimal sum = accounts.stream().map(Account::getAmount).reduce(BigDecimal::add).orElse(BigDecimal.ZERO);
+        assertThat(sum).isEqualByComparingTo(new BigDecimal(100 * NR_OF_ACCOUNTS));
+        assertThat(accounts).allSatisfy(account -> assertThat(account.getAmount()).isNotNegative());
+    }
+
+    /**
+     * Deposits and withdraws concurrently on a single account. The final amount has to match the successful
+     * transactions exactly.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should attempt to deposit/withdraw 1 million times through the partitions")
+    void concurrentDepositWithdrawTest() throws Exception {
+        Account account = Account.builder().iban("IBAN1").amount(BigDecimal.ZERO).build();
+        accountStore.addAccount(account);
+
+        final int NR_OF_TRANSACTIONS = 1_000_000;
+        AmountDto amountDto = new AmountDto("IBAN1", BigDecimal.ONE);
+        LongAdder balance = new LongAdder();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    if (random.nextBoolean()) {
+                        accountService.deposit(amountDto);
+                        balance.increment();
+                    } else {
+                        try {
+                            accountService.withdraw(amountDto);
+                            balance.decrement();
+                        } catch (NotEnoughAmountException e) {
+                            // refused withdrawals do not change the balance
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        assertThat(accountService.checkFunds("IBAN1").getAmount()).isEqualByComparingTo(new BigDecimal(balance.longValue()));
+    }
+
+    /**
+     * Transfers to accounts whose minor-units balances can not hold them, owned by the partition of the sender or by
+     * another one. Every transfer has to fail and leave both balances as they were.
+     */
+    @Test
+    @Timeout(60)
+    @DisplayName("Should refund the sender of a transfer the receiver can not hold")
+    void overflowingCreditTest() throws Exception {
+        PartitionedAccountService minorUnitsService = new PartitionedAccountService(accountStore, new InMemoryUserStore(),
+                new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32),
+                BalanceMode.MINOR_UNITS, NR_OF_PARTITIONS, 1024);
+        try {
+            accountStore.addAccount(Account.builder().iban("SENDER").minorUnits(MinorUnits.fromDecimal(BigDecimal.TEN)).build());
+            for (int i = 0; i < 16; i++) {
+                accountStore.addAccount(Account.builder().iban("RECEIVER" + i).minorUnits(Long.MAX_VALUE - 1).build());
+                CompletableFuture<Void> transfer = minorUnitsService.transferAsync(
+                        new TransferAmountDto("SENDER", "RECEIVER" + i, BigDecimal.ONE));
+                assertThatThrownBy(transfer::join).hasCauseInstanceOf(BalanceOverflowException.class);
+                assertThat(accountStore.findAccount("RECEIVER" + i).getMinorUnits()).isEqualTo(Long.MAX_VALUE - 1);
+            }
+            assertThat(minorUnitsService.checkFunds("SENDER").getAmount()).isEqualByComparingTo(BigDecimal.TEN);
+            assertThatThrownBy(() -> minorUnitsService.transfer(new TransferAmountDto("SENDER", "RECEIVER0", BigDecimal.ONE)))
+                    .isInstanceOf(BalanceOverflowException.class);
+            assertThatThrownBy(() -> minorUnitsService.deposit(new AmountDto("RECEIVER0", BigDecimal.ONE)))
+                    .isInstanceOf(BalanceOverflowException.class);
+        } finally {
+            minorUnitsService.shutdown();
+        }
+    }
+
+    /**
+     * Submits deposits from many threads while the partitions are stopped. Every deposit has to complete, either
+     * applied or failed, and so do the deposits submitted afterwards.
+     */
+    @Test
+    @Timeout(60)
+    @DisplayName("Should complete every command when the partitions are stopped")
+    void shutdownTest() throws Exception {
+        accountStore.addAccount(Account.builder().iban("IBAN1").amount(BigDecimal.ZERO).build());
+        AmountDto amountDto = new AmountDto("IBAN1", BigDecimal.ONE);
+        List<Callable<List<CompletableFuture<Void>>>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                List<CompletableFuture<Void>> deposits = new ArrayList<>();
+                for (int i = 0; i < 10_000; i++) {
+                    deposits.add(accountService.depositAsync(amountDto));
+                }
+                return deposits;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        List<Future<List<CompletableFuture<Void>>>> submitted = new ArrayList<>();
+        for (Callable<List<CompletableFuture<Void>>> task : tasks) {
+            submitted.add(executorService.submit(task));
+        }
+        accountService.shutdown();
+        long applied = 0;
+        for (Future<List<CompletableFuture<Void>>> future : submitted) {
+            for (CompletableFuture<Void> deposit : future.get()) {
+                try {
+                    deposit.join();
+                    applied++;
+                } catch (CompletionException e) {
+                    assertThat(e).hasCauseInstanceOf(IllegalStateException.class);
+                }
+            }
+        }
+        executorService.shutdown();
+
+        assertThat(accountService.checkFunds("IBAN1").getAmount()).isEqualByComparingTo(new BigDecimal(applied));
+        assertThatThrownBy(() -> accountService.deposit(amountDto)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Submits transfers between accounts owned by different partitions from many threads while the partitions are
+     * stopped. The credits of the transfers already debited are still applied, so no money is lost.
+     */
+    @Test
+    @Timeout(60)
+    @DisplayName("Should apply the credits of debited transfers when the partitions are stopped")
+    void shutdownTransferTest() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Account account = Account.builder().iban("IBAN" + i).amount(new BigDecimal(1_000_000)).build();
+            accountStore.addAccount(account);
+            accounts.add(account);
+        }
+        List<Callable<List<CompletableFuture<Void>>>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                List<CompletableFuture<Void>> transfers = new ArrayList<>();
+                for (int i = 0; i < 10_000; i++) {
+                    transfers.add(accountService.transferAsync(new TransferAmountDto(
+                            accounts.get(random.nextInt(accounts.size())).getIban(),
+                            accounts.get(random.nextInt(accounts.size())).getIban(), BigDecimal.ONE)));
+                }
+                return transfers;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS);
+        List<Future<List<CompletableFuture<Void>>>> submitted = new ArrayList<>();
+        for (Callable<List<CompletableFuture<Void>>> task : tasks) {
+            submitted.add(executorService.submit(task));
+        }
+        accountService.shutdown();
+        for (Future<List<CompletableFuture<Void>>> future : submitted) {
+            for (CompletableFuture<Void> transfer : future.get()) {
+                try {
+                    transfer.join();
+                } catch (CompletionException e) {
+                    assertThat(e).hasCauseInstanceOf(IllegalStateException.class);
+                }
+            }
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            total = total.add(accountService.checkFunds(account.getIban()).getAmount());
+        }
+        assertThat(total).isEqualByComparingTo(new BigDecimal(100_000_000));
+    }
+}
@@ -0,0 +1,158 @@
+package stress;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.control.JournalReplayer;
+import esz.dev.replication.control.JournalFollower;
+import esz.dev.replication.control.JournalShipper;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This suite ships the journal of a primary under concurrent load to followers, and reports how far behind they
+ * were.
+ */
+class ReplicationStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 100;
+    private static final int NR_OF_THREADS = 32;
+    private static final int NR_OF_TRANSACTIONS = 100_000;
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Runs random deposits, withdrawals and transfers on the primary with a follower tailing the journal all along,
+     * then starts a second follower, which catches up from the journal files. Both must end up with the balances of
+     * the primary.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should apply every durable record of the primary on its followers")
+    void followersTest() throws Exception {
+        FileJournal journal = new FileJournal(directory, SEGMENT_SIZE, 4096);
+        UserStore userStore = new InMemoryUserStore();
+        UserService userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal);
+        AccountService accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), journal, new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        JournalShipper shipper = new JournalShipper(journal);
+        shipper.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        InetSocketAddress primary = new InetSocketAddress(InetAddress.getLoopbackAddress(), shipper.getPort());
+
+        Follower tailing = new Follower(primary);
+        long userId = userService.addUser(new UserDto("John", "Doe", "New York 101"));
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, new BigDecimal(1000)));
+            ibans.add(iban);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < NR_OF_THREADS; t++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                for (int i = 0; i < NR_OF_TRANSACTIONS / NR_OF_THREADS; i++) {
+                    String iban = ibans.get(random.nextInt(NR_OF_ACCOUNTS));
+                    BigDecimal amount = new BigDecimal(random.nextInt(100)).movePointLeft(2);
+                    try {
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                accountService.deposit(new AmountDto(iban, amount));
+                                break;
+                            case 1:
+                                accountService.withdraw(new AmountDto(iban, amount));
+                                break;
+                            default:
+                                accountService.transfer(new TransferAmountDto(iban, ibans.get(random.nextInt(NR_OF_ACCOUNTS)), amount));
+                        }
+                    } catch (NotEnoughAmountException e) {
+                        // refused transactions are not journaled
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_THREADS + 1);
+        AtomicLong maxStaleness = new AtomicLong();
+        Future<?> monitor = executorService.submit(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                maxStaleness.accumulateAndGet(tailing.follower.stalenessMillis(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        monitor.cancel(true);
+        executorService.shutdown();
+
+        Follower catchingUp = new Follower(primary);
+        long end = journal.durableSequence();
+        tailing.awaitSequence(end);
+        catchingUp.awaitSequence(end);
+        LOGGER.info("Replication: {} records shipped, tailing follower at most {} ms stale", end, maxStaleness.get());
+
+        for (Follower follower : List.of(tailing, catchingUp)) {
+            assertThat(follower.userService.getAccountsForUser(userId)).containsExactlyElementsOf(ibans);
+            for (String iban : ibans) {
+                assertThat(follower.accountService.checkFunds(iban).getAmount())
+                        .isEqualByComparingTo(accountService.checkFunds(iban).getAmount());
+            }
+            assertThat(follower.follower.stalenessMillis()).isBetween(0L, 1000L);
+            follower.follower.stop();
+        }
+        shipper.stop();
+        journal.close();
+    }
+
+    private static class Follower {
+        private final UserService userService;
+        private final AccountService accountService;
+        private final JournalFollower follower;
+
+        private Follower(InetSocketAddress primary) {
+            UserStore userStore = new InMemoryUserStore();
+            userService = new UserService(Mappers.getMapper(UserMapper.class), userStore, new DisabledJournal());
+            accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+            follower = new JournalFollower(new JournalReplayer(new DisabledJournal(), accountService, userService));
+            follower.start(primary, 0);
+        }
+
+        private void awaitSequence(long sequence) throws InterruptedException {
+            while (follower.nextSequence() < sequence || follower.stalenessMillis() < 0) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
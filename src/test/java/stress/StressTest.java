@@ -2,6 +2,8 @@ package stress;
 
 import esz.dev.account.control.*;
 import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.user.control.InMemoryUserStore;
 import esz.dev.user.control.UserNotFoundException;
 import esz.dev.user.control.UserStore;
 import esz.dev.user.entity.User;
@@ -11,6 +13,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -24,15 +28,17 @@ import static org.assertj.core.api.Assertions.assertThat;
  */
 @ExtendWith(MockitoExtension.class)
 class StressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StressTest.class);
+
     private AccountStore accountStore;
     private UserStore userStore;
     private AccountService accountService;
 
     @BeforeEach
     void setUp() {
-        accountStore = new AccountStore();
-        userStore = new UserStore();
-        accountService = new AccountService(accountStore, userStore);
+        accountStore = new InMemoryAccountStore();
+        userStore = new InMemoryUserStore();
+        accountService = new AccountService(accountStore, userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
     }
 
     /**
@@ -44,8 +50,7 @@ class StressTest {
     @DisplayName("Should create one million accounts concurrently for the same user")
     void concurrentAccountCreationTest() throws InterruptedException {
         long userId = 1L;
-        User user = User.builder().id(userId).accounts(new HashSet<>()).build();
-        userStore.addUser(user);
+        userStore.addUser(User.builder().build());
 
         final int NR_OF_ACCOUNTS = 1_000_000;
 
@@ -63,7 +68,10 @@ class StressTest {
         assertThat(accountStore.countAccounts()).isEqualTo(NR_OF_ACCOUNTS);
 
         // check that the user has all the accounts
-        assertThat(user.getAccounts().size()).isEqualTo(NR_OF_ACCOUNTS);
+        assertThat(userStore.getAccounts(userId)).hasValueSatisfying(accounts -> {
+            assertThat(accounts).hasSize(NR_OF_ACCOUNTS);
+            assertThat(new HashSet<>(accounts)).hasSize(NR_OF_ACCOUNTS);
+        });
     }
 
     /**
@@ -159,6 +167,56 @@ class StressTest {
         assertThat(counter.longValue()).isEqualTo(NR_OF_TRANSACTIONS);
     }
 
+    /**
+     * Runs the same amount of transfers with an increasing number of threads, every thread moving money back and forth
+     * between its own pair of accounts. Since the transfers touch disjoint accounts, the threads never wait for each
+     * other's locks, and every pair must still hold its money after each run. The throughput of every run is logged.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should scale transfers on disjoint accounts with the number of threads")
+    void disjointTransferScalingTest() throws InterruptedException {
+        final int NR_OF_TRANSACTIONS = 2_000_000;
+        int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            List<Account> accounts = new ArrayList<>();
+            for (int i = 0; i < 2 * threads; i++) {
+                Account account = Account.builder().iban("SCALE" + threads + "-" + i).amount(new BigDecimal("1000")).build();
+                accountStore.addAccount(account);
+                accounts.add(account);
+            }
+
+            int transactionsPerThread = NR_OF_TRANSACTIONS / threads;
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String first = accounts.get(2 * t).getIban();
+                String second = accounts.get(2 * t + 1).getIban();
+                tasks.add(() -> {
+                    TransferAmountDto there = new TransferAmountDto(first, second, BigDecimal.ONE);
+                    TransferAmountDto back = new TransferAmountDto(second, first, BigDecimal.ONE);
+                    for (int i = 0; i < transactionsPerThread; i++) {
+                        accountService.transfer(i % 2 == 0 ? there : back);
+                    }
+                    return null;
+                });
+            }
+
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            executorService.invokeAll(tasks);
+            long elapsed = System.nanoTime() - start;
+            executorService.shutdown();
+
+            LOGGER.info("Disjoint transfers: {} thread(s), {} transfers/s", threads,
+                    Math.round(transactionsPerThread * threads / (elapsed / 1e9)));
+
+            // check that every pair still holds its money
+            BigDecimal sum = accounts.stream().map(Account::getAmount).reduce(BigDecimal::add).orElse(BigDecimal.ZERO);
+            assertThat(sum).isEqualByComparingTo(new BigDecimal(1000 * 2 * threads));
+        }
+    }
+
     /**
      * Generate 2 random numbers between 0 and bound.
      */
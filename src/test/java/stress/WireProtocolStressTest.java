@@ -0,0 +1,273 @@
+package stress;
+
+import esz.dev.account.boundary.ValidationService;
+import esz.dev.account.control.*;
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.control.Journal;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserDto;
+import esz.dev.user.control.UserMapper;
+import esz.dev.user.control.UserService;
+import esz.dev.user.control.UserStore;
+import esz.dev.wire.boundary.WireHandler;
+import esz.dev.wire.boundary.WireServer;
+import org.iban4j.CountryCode;
+import org.iban4j.Iban;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static esz.dev.wire.control.WireProtocol.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * This suite sends requests of the binary protocol over many connections, pipelining them, and reports the throughput
+ * reached.
+ */
+class WireProtocolStressTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WireProtocolStressTest.class);
+    private static final int NR_OF_ACCOUNTS = 100;
+    private static final int NR_OF_CONNECTIONS = 8;
+    private static final int NR_OF_TRANSFERS = 200_000;
+    private static final int PIPELINE_DEPTH = 64;
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal(1000);
+
+    @TempDir
+    java.nio.file.Path directory;
+
+    private Journal journal;
+    private AccountService accountService;
+    private WireServer wireServer;
+    private final List<String> ibans = new ArrayList<>();
+
+    private void start() throws Exception {
+        journal = new FileJournal(directory, 64 * 1024 * 1024, 4096);
+        UserStore userStore = new InMemoryUserStore();
+        accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(), journal,
+                new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        long userId = new UserService(Mappers.getMapper(UserMapper.class), userStore, journal)
+                .addUser(new UserDto("John", "Doe", "New York 101"));
+        for (int i = 0; i < NR_OF_ACCOUNTS; i++) {
+            String iban = accountService.createAccount(userId);
+            accountService.deposit(new AmountDto(iban, INITIAL_AMOUNT));
+            ibans.add(iban);
+        }
+        wireServer = new WireServer(new WireHandler(accountService, new ValidationService(BalanceMode.DECIMAL), new AccountMetrics()));
+        wireServer.start(0, 2, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (wireServer != null) {
+            wireServer.stop();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    @Timeout(100)
+    @DisplayName("Should answer every request of the binary protocol with its status")
+    void statusesTest() throws Exception {
+        start();
+        try (Connection connection = new Connection(wireServer.getPort())) {
+            connection.amount(DEPOSIT, 1, ibans.get(0), new BigDecimal("10.25"));
+            connection.amount(WITHDRAW, 2, ibans.get(0), new BigDecimal("5000"));
+            String unknownIban = new Iban.Builder().countryCode(CountryCode.RO).bankCode("XXXX")
+                    .accountNumber("0000000000009999").build().toString();
+            connection.amount(DEPOSIT, 3, unknownIban, BigDecimal.ONE);
+            connection.amount(DEPOSIT, 4, ibans.get(0), new BigDecimal("-1"));
+            connection.transfer(5, ibans.get(0), ibans.get(1), new BigDecimal("0.25"));
+            connection.out.writeInt(HEADER_SIZE + 1);
+            connection.out.writeByte(BALANCE);
+            connection.out.writeLong(6);
+            connection.out.writeByte(0);
+            connection.balance(7, ibans.get(0));
+            connection.out.flush();
+
+            // responses come back once their requests are durable, not in the order of the requests
+            Map<Long, Long> statuses = new HashMap<>();
+            BigDecimal balance = null;
+            for (int i = 0; i < 7; i++) {
+                long[] response = connection.read();
+                statuses.put(response[1], response[0]);
+                if (response[1] == 7) {
+                    balance = BigDecimal.valueOf(connection.in.readLong(), connection.in.readByte());
+                }
+            }
+            assertThat(statuses).containsOnly(entry(1L, (long) OK), entry(2L, (long) NOT_ENOUGH_AMOUNT),
+                    entry(3L, (long) ACCOUNT_NOT_FOUND), entry(4L, (long) INVALID_INPUT), entry(5L, (long) OK),
+                    entry(6L, (long) MALFORMED), entry(7L, (long) OK));
+            assertThat(balance).isEqualByComparingTo(new BigDecimal("1010.00"));
+        }
+        assertThat(accountService.balanceOf(ibans.get(1))).isEqualByComparingTo(new BigDecimal("1000.25"));
+    }
+
+    /**
+     * Keeps up to {@value #PIPELINE_DEPTH} transfers in flight on every connection. Every transfer must be answered
+     * once, and the transfers must neither create nor lose money.
+     */
+    @Test
+    @Timeout(1000)
+    @DisplayName("Should apply pipelined transfers from many connections")
+    void pipelinedTransfersTest() throws Exception {
+        start();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int c = 0; c < NR_OF_CONNECTIONS; c++) {
+            tasks.add(() -> {
+                Random random = new Random();
+                int transfers = NR_OF_TRANSFERS / NR_OF_CONNECTIONS;
+                Set<Long> answered = new HashSet<>();
+                try (Connection connection = new Connection(wireServer.getPort())) {
+                    int sent = 0;
+                    while (answered.size() < transfers) {
+                        while (sent < transfers && sent - answered.size() < PIPELINE_DEPTH) {
+                            connection.transfer(sent++, ibans.get(random.nextInt(NR_OF_ACCOUNTS)),
+                                    ibans.get(random.nextInt(NR_OF_ACCOUNTS)), new BigDecimal(random.nextInt(100) + 1));
+                        }
+                        connection.out.flush();
+                        long[] response = connection.read();
+                        assertThat(response[0]).isIn((long) OK, (long) NOT_ENOUGH_AMOUNT);
+                        assertThat(answered.add(response[1])).isTrue();
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(NR_OF_CONNECTIONS);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        LOGGER.info("Binary protocol: {} connections, pipeline of {}, {} transfers/s", NR_OF_CONNECTIONS, PIPELINE_DEPTH,
+                Math.round(NR_OF_TRANSFERS / (elapsed / 1e9)));
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (String iban : ibans) {
+            total = total.add(accountService.balanceOf(iban));
+        }
+        assertThat(total).isEqualByComparingTo(INITIAL_AMOUNT.multiply(new BigDecimal(NR_OF_ACCOUNTS)));
+    }
+
+    /**
+     * Sends many balance queries without reading any response for a while, so the server has to stop reading the
+     * connection until the client catches up. Every query must still be answered once.
+     */
+    @Test
+    @Timeout(100)
+    @DisplayName("Should answer every request of a client which reads its responses late")
+    void slowReaderTest() throws Exception {
+        start();
+        int queries = 500_000;
+        try (Connection connection = new Connection(wireServer.getPort())) {
+            ExecutorService writer = Executors.newSingleThreadExecutor();
+            Future<Void> sent = writer.submit(() -> {
+                for (int i = 0; i < queries; i++) {
+                    connection.balance(i, ibans.get(i % NR_OF_ACCOUNTS));
+                }
+                connection.out.flush();
+                return null;
+            });
+            Thread.sleep(1000);
+            Set<Long> answered = new HashSet<>();
+            for (int i = 0; i < queries; i++) {
+                long[] response = connection.read();
+                assertThat(response[0]).isEqualTo(OK);
+                connection.in.skipBytes(AMOUNT_SIZE);
+                assertThat(answered.add(response[1])).isTrue();
+            }
+            sent.get();
+            writer.shutdown();
+        }
+    }
+
+    private static class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+
+        private Connection(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        private void balance(long id, String iban) throws IOException {
+            out.writeInt(HEADER_SIZE + IBAN_SIZE);
+            out.writeByte(BALANCE);
+            out.writeLong(id);
+            writeIban(iban);
+        }
+
+        private void amount(byte type, long id, String iban, BigDecimal amount) throws IOException {
+            out.writeInt(HEADER_SIZE + IBAN_SIZE + AMOUNT_SIZE);
+            out.writeByte(type);
+            out.writeLong(id);
+            writeIban(iban);
+            writeAmount(amount);
+        }
+
+        private void transfer(long id, String sender, String receiver, BigDecimal amount) throws IOException {
+            out.writeInt(HEADER_SIZE + 2 * IBAN_SIZE + AMOUNT_SIZE);
+            out.writeByte(TRANSFER);
+            out.writeLong(id);
+            writeIban(sender);
+            writeIban(receiver);
+            writeAmount(amount);
+        }
+
+        /**
+         * Reads the status and the id of the next response, leaving the balance of a balance response unread.
+         */
+        private long[] read() throws IOException {
+            in.readInt();
+            return new long[]{in.readByte(), in.readLong()};
+        }
+
+        private void writeIban(String iban) throws IOException {
+            byte[] bytes = iban.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes);
+            out.write(new byte[IBAN_SIZE - bytes.length]);
+        }
+
+        private void writeAmount(BigDecimal amount) throws IOException {
+            out.writeLong(amount.unscaledValue().longValueExact());
+            out.writeByte(amount.scale());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
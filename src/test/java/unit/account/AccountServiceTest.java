@@ -2,19 +2,27 @@ package unit.account;
 
 import esz.dev.account.control.*;
 import esz.dev.account.entity.Account;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.Journal;
+import esz.dev.journal.entity.JournalRecord;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import esz.dev.user.control.UserNotFoundException;
 import esz.dev.user.control.UserStore;
 import esz.dev.user.entity.User;
 
 import java.math.BigDecimal;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -31,6 +39,21 @@ class AccountServiceTest {
     @Mock
     private UserStore userStore;
 
+    @Spy
+    private AccountLocks accountLocks = new AccountLocks();
+
+    @Spy
+    private Journal journal = new DisabledJournal();
+
+    @Spy
+    private IbanIssuer ibanIssuer = new IbanIssuer();
+
+    @Spy
+    private AccountMetrics accountMetrics = new AccountMetrics();
+
+    @Spy
+    private HistoryStore historyStore = new HistoryStore(32);
+
     @InjectMocks
     private AccountService accountService;
 
@@ -44,13 +67,13 @@ class AccountServiceTest {
                                 .firstName("fname")
                                 .lastName("lname")
                                 .address("addr")
-                                .accounts(new HashSet<>())
                                 .build()));
         String iban = accountService.createAccount(userId);
         assertThat(iban).startsWith("RO");
         assertThat(iban).contains("XXX");
         verify(accountStore, times(1)).addAccount(any(Account.class));
         verify(userStore, times(1)).getUser(userId);
+        verify(userStore, times(1)).addAccount(userId, iban);
     }
 
     @Test
@@ -76,6 +99,7 @@ class AccountServiceTest {
 
         assertThat(account.getAmount()).isEqualByComparingTo("90.55");
         verify(accountStore, times(1)).getAccount(iban);
+        verify(accountStore, times(1)).persistChange(JournalRecord.Type.WITHDRAW, iban, null, BigDecimal.TEN);
         verifyNoMoreInteractions(accountStore);
     }
 
@@ -95,6 +119,26 @@ class AccountServiceTest {
         verifyNoMoreInteractions(accountStore);
     }
 
+    @Test
+    @DisplayName("Should record the withdrawals applied in the history of the account, and only those")
+    void recordWithdrawalInHistory() throws AccountNotFoundException, NotEnoughAmountException {
+        String iban = "IBAN";
+        Account account = Account
+                .builder().iban(iban)
+                .amount(BigDecimal.TEN)
+                .build();
+        when(accountStore.getAccount(iban)).thenReturn(Optional.of(account));
+        when(accountStore.findAccount(iban)).thenReturn(account);
+        accountService.withdraw(new AmountDto(iban, new BigDecimal("4")));
+        assertThatThrownBy(() -> accountService.withdraw(new AmountDto(iban, BigDecimal.TEN)))
+                .isInstanceOf(NotEnoughAmountException.class);
+
+        HistoryPage history = accountService.getHistory(iban, Long.MAX_VALUE, 10);
+        assertThat(history.getEntries()).hasSize(1);
+        assertThat(history.getEntries().get(0).getType()).isEqualTo(HistoryEntry.Type.WITHDRAW);
+        assertThat(history.getEntries().get(0).getAmount()).isEqualByComparingTo("4");
+    }
+
     @Test
     @DisplayName("Should throw an exception in case of nonexistent account used for withdrawal")
     void throwExceptionWhenAccountDoesNotExistWithdrawal() {
@@ -121,6 +165,7 @@ class AccountServiceTest {
 
         assertThat(account.getAmount()).isEqualByComparingTo("304.549");
         verify(accountStore, times(1)).getAccount(iban);
+        verify(accountStore, times(1)).persistChange(JournalRecord.Type.DEPOSIT, iban, null, new BigDecimal("203.999"));
         verifyNoMoreInteractions(accountStore);
     }
 
@@ -212,4 +257,115 @@ class AccountServiceTest {
         verify(accountStore, times(1)).getAccount(senderIban);
         verifyNoMoreInteractions(accountStore);
     }
+
+    @Test
+    @DisplayName("Should apply every transfer of a batch and report the failing ones separately")
+    void transferBatch() {
+        Account sender = Account.builder().iban("IBAN1").amount(new BigDecimal("15")).build();
+        Account receiver = Account.builder().iban("IBAN2").amount(BigDecimal.ZERO).build();
+        doReturn(Optional.of(sender)).when(accountStore).getAccount("IBAN1");
+        doReturn(Optional.of(receiver)).when(accountStore).getAccount("IBAN2");
+        doReturn(Optional.empty()).when(accountStore).getAccount("IBAN3");
+
+        List<CompletableFuture<Void>> results = accountService.transferBatch(Arrays.asList(
+                new TransferAmountDto("IBAN1", "IBAN2", BigDecimal.TEN),
+                new TransferAmountDto("IBAN1", "IBAN2", BigDecimal.TEN),
+                new TransferAmountDto("IBAN3", "IBAN2", BigDecimal.ONE),
+                new TransferAmountDto("IBAN1", "IBAN2", new BigDecimal("5"))));
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0)).isCompleted().isNotCompletedExceptionally();
+        assertThat(results.get(1)).hasFailedWithThrowableThat().isInstanceOf(NotEnoughAmountException.class);
+        assertThat(results.get(2)).hasFailedWithThrowableThat().isInstanceOf(AccountNotFoundException.class);
+        assertThat(results.get(3)).isCompleted().isNotCompletedExceptionally();
+        assertThat(sender.getAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(receiver.getAmount()).isEqualByComparingTo(new BigDecimal("15"));
+    }
+
+    @Test
+    @DisplayName("Should report a transfer of a batch failing unexpectedly and apply the rest of the batch")
+    void transferBatchWithUnexpectedFailure() {
+        Account sender = Account.builder().iban("IBAN1").amount(new BigDecimal("15")).build();
+        Account receiver = Account.builder().iban("IBAN2").amount(BigDecimal.ZERO).build();
+        doReturn(Optional.of(sender)).when(accountStore).getAccount("IBAN1");
+        doReturn(Optional.of(receiver)).when(accountStore).getAccount("IBAN2");
+        doThrow(new IllegalStateException("Disk full")).doNothing().when(accountStore)
+                .persistChange(any(), any(), any(), any());
+
+        List<CompletableFuture<Void>> results = accountService.transferBatch(Arrays.asList(
+                new TransferAmountDto("IBAN1", "IBAN2", BigDecimal.TEN),
+                new TransferAmountDto("IBAN1", "IBAN2", BigDecimal.TEN)));
+
+        assertThat(results.get(0)).hasFailedWithThrowableThat().isInstanceOf(IllegalStateException.class);
+        assertThat(results.get(1)).isCompleted().isNotCompletedExceptionally();
+        assertThat(sender.getAmount()).isEqualByComparingTo("5");
+        assertThat(receiver.getAmount()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    @DisplayName("Should read the balance without a lock, but never the balance of a transaction in progress")
+    void checkFundsReadsCommittedBalance() throws Exception {
+        String iban = "IBAN";
+        Account account = Account.builder().iban(iban).amount(new BigDecimal("100.55")).build();
+        when(accountStore.findAccount(iban)).thenReturn(account);
+        assertThat(accountService.checkFunds(iban).getAmount()).isEqualByComparingTo("100.55");
+
+        account.beginWrite();
+        account.setAmount(new BigDecimal("90.55"));
+        CompletableFuture<AmountDto> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return accountService.checkFunds(iban);
+            } catch (AccountNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertThat(read).isNotDone();
+        account.endWrite();
+
+        assertThat(read.get(5, TimeUnit.SECONDS).getAmount()).isEqualByComparingTo("90.55");
+        verify(accountStore, never()).getAccount(iban);
+    }
+
+    @Test
+    @DisplayName("Should throw an exception in case of nonexistent account used for checking the funds")
+    void throwExceptionWhenAccountDoesNotExistCheckFunds() {
+        String iban = "IBAN";
+        when(accountStore.findAccount(iban)).thenReturn(null);
+        assertThatThrownBy(() -> accountService.checkFunds(iban)).isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should restore both legs of a journaled transfer as a single change")
+    void restoreTransferAtomically() throws Exception {
+        Account sender = spy(Account.builder().iban("SENDER").amount(new BigDecimal("100")).build());
+        Account receiver = spy(Account.builder().iban("RECEIVER").amount(BigDecimal.ZERO).build());
+        doReturn(Optional.of(sender)).when(accountStore).getAccount("SENDER");
+        doReturn(Optional.of(receiver)).when(accountStore).getAccount("RECEIVER");
+
+        accountService.restoreTransfer("SENDER", "RECEIVER", new BigDecimal("40"));
+
+        InOrder inOrder = inOrder(sender, receiver);
+        inOrder.verify(sender).beginWrite();
+        inOrder.verify(receiver).beginWrite();
+        inOrder.verify(sender).setAmount(new BigDecimal("60"));
+        inOrder.verify(receiver).setAmount(new BigDecimal("40"));
+        inOrder.verify(receiver).endWrite();
+        inOrder.verify(sender).endWrite();
+    }
+
+    @Test
+    @DisplayName("Should open an account transferring to itself for writing once, even through two views of it")
+    void restoreTransferToItselfThroughViews() throws Exception {
+        Account sender = spy(Account.builder().iban("IBAN").amount(new BigDecimal("100")).build());
+        Account receiver = spy(Account.builder().iban("IBAN").amount(new BigDecimal("100")).build());
+        doReturn(Optional.of(sender), Optional.of(receiver)).when(accountStore).getAccount("IBAN");
+
+        accountService.restoreTransfer("IBAN", "IBAN", new BigDecimal("40"));
+
+        verify(sender).beginWrite();
+        verify(sender).endWrite();
+        verify(receiver, never()).beginWrite();
+        verify(receiver, never()).endWrite();
+    }
 }
@@ -0,0 +1,168 @@
+package unit.account;
+
+import esz.dev.account.control.*;
+import esz.dev.account.entity.Account;
+import esz.dev.user.control.UserStore;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.Journal;
+import esz.dev.storage.control.StorageException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for business logic which handles bank account transactions over minor unit balances.
+ */
+@ExtendWith(MockitoExtension.class)
+class AtomicAccountServiceTest {
+    @Mock
+    private AccountStore accountStore;
+
+    @Mock
+    private UserStore userStore;
+
+    @Spy
+    private AccountLocks accountLocks = new AccountLocks();
+
+    @Spy
+    private Journal journal = new DisabledJournal();
+
+    @Spy
+    private IbanIssuer ibanIssuer = new IbanIssuer();
+
+    @Spy
+    private AccountMetrics accountMetrics = new AccountMetrics();
+
+    @Spy
+    private HistoryStore historyStore = new HistoryStore(32);
+
+    @InjectMocks
+    private AtomicAccountService accountService;
+
+    @Test
+    @DisplayName("Should successfully withdraw a given amount")
+    void successfullyWithdrawAmount() throws AccountNotFoundException, NotEnoughAmountException {
+        String iban = "IBAN";
+        Account account = Account.builder().iban(iban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("100.55"))).build();
+        when(accountStore.getAccount(iban)).thenReturn(Optional.of(account));
+        when(accountStore.findAccount(iban)).thenReturn(account);
+        accountService.withdraw(new AmountDto(iban, BigDecimal.TEN));
+
+        assertThat(accountService.checkFunds(iban).getAmount()).isEqualByComparingTo("90.55");
+    }
+
+    @Test
+    @DisplayName("Should throw an exception in case of insufficient funds for withdrawal")
+    void throwExceptionWhenNotEnoughAmount() {
+        String iban = "IBAN";
+        Account account = Account.builder().iban(iban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("9.99"))).build();
+        when(accountStore.getAccount(iban)).thenReturn(Optional.of(account));
+        assertThatThrownBy(() -> accountService.withdraw(new AmountDto(iban, BigDecimal.TEN)))
+                .isInstanceOf(NotEnoughAmountException.class);
+
+        assertThat(account.getMinorUnits()).isEqualTo(99_900L);
+    }
+
+    @Test
+    @DisplayName("Should successfully deposit a given amount")
+    void successfullyDepositAmount() throws AccountNotFoundException {
+        String iban = "IBAN";
+        Account account = Account.builder().iban(iban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("100.55"))).build();
+        when(accountStore.getAccount(iban)).thenReturn(Optional.of(account));
+        when(accountStore.findAccount(iban)).thenReturn(account);
+        accountService.deposit(new AmountDto(iban, new BigDecimal("203.999")));
+
+        assertThat(accountService.checkFunds(iban).getAmount()).isEqualByComparingTo("304.549");
+    }
+
+    @Test
+    @DisplayName("Should leave the sender untouched when the receiver of a transfer does not exist")
+    void throwExceptionWhenReceiverNotExist() {
+        String senderIban = "IBAN1";
+        String receiverIban = "IBAN2";
+        Account sender = Account.builder().iban(senderIban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("19.99"))).build();
+        doReturn(Optional.of(sender)).when(accountStore).getAccount(senderIban);
+        doReturn(Optional.empty()).when(accountStore).getAccount(receiverIban);
+        TransferAmountDto transferAmountDto = new TransferAmountDto(senderIban, receiverIban, BigDecimal.TEN);
+        assertThatThrownBy(() -> accountService.transfer(transferAmountDto)).isInstanceOf(AccountNotFoundException.class);
+
+        assertThat(sender.getMinorUnits()).isEqualTo(199_900L);
+    }
+
+    @Test
+    @DisplayName("Should leave the balances untouched when the account store fails to persist a change")
+    void keepBalancesWhenNotPersisted() {
+        String senderIban = "IBAN1";
+        String receiverIban = "IBAN2";
+        Account sender = Account.builder().iban(senderIban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("19.99"))).build();
+        Account receiver = Account.builder().iban(receiverIban).minorUnits(0L).build();
+        doReturn(Optional.of(sender)).when(accountStore).getAccount(senderIban);
+        doReturn(Optional.of(receiver)).when(accountStore).getAccount(receiverIban);
+        doThrow(new StorageException("Disk full", null)).when(accountStore).persistChange(any(), any(), any(), any());
+
+        assertThatThrownBy(() -> accountService.transfer(new TransferAmountDto(senderIban, receiverIban, BigDecimal.TEN)))
+                .isInstanceOf(StorageException.class);
+        assertThatThrownBy(() -> accountService.withdraw(new AmountDto(senderIban, BigDecimal.TEN)))
+                .isInstanceOf(StorageException.class);
+        assertThatThrownBy(() -> accountService.deposit(new AmountDto(receiverIban, BigDecimal.TEN)))
+                .isInstanceOf(StorageException.class);
+
+        assertThat(sender.getMinorUnits()).isEqualTo(199_900L);
+        assertThat(receiver.getMinorUnits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep the balances and persist nothing when the credit of a transfer would overflow")
+    void keepBalancesWhenCreditOverflows() {
+        String senderIban = "IBAN1";
+        String receiverIban = "IBAN2";
+        Account sender = Account.builder().iban(senderIban).minorUnits(MinorUnits.fromDecimal(new BigDecimal("19.99"))).build();
+        Account receiver = Account.builder().iban(receiverIban).minorUnits(Long.MAX_VALUE - 1).build();
+        doReturn(Optional.of(sender)).when(accountStore).getAccount(senderIban);
+        doReturn(Optional.of(receiver)).when(accountStore).getAccount(receiverIban);
+
+        assertThatThrownBy(() -> accountService.transfer(new TransferAmountDto(senderIban, receiverIban, BigDecimal.TEN)))
+                .isInstanceOf(BalanceOverflowException.class);
+        assertThatThrownBy(() -> accountService.deposit(new AmountDto(receiverIban, BigDecimal.TEN)))
+                .isInstanceOf(BalanceOverflowException.class);
+
+        assertThat(sender.getMinorUnits()).isEqualTo(199_900L);
+        assertThat(receiver.getMinorUnits()).isEqualTo(Long.MAX_VALUE - 1);
+        verify(accountStore, never()).persistChange(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should not take a balance below zero when undoing a credit which has been spent")
+    void keepBalancePositiveWhenUndoingSpentCredit() {
+        String iban = "IBAN1";
+        Account account = Account.builder().iban(iban).minorUnits(MinorUnits.fromDecimal(BigDecimal.ONE)).build();
+        doReturn(Optional.of(account)).when(accountStore).getAccount(iban);
+        doAnswer(invocation -> {
+            // a concurrent withdrawal spends the credit before it fails to be persisted
+            account.setMinorUnits(MinorUnits.fromDecimal(new BigDecimal("2")));
+            throw new StorageException("Disk full", null);
+        }).when(accountStore).persistChange(any(), any(), any(), any());
+
+        assertThatThrownBy(() -> accountService.deposit(new AmountDto(iban, BigDecimal.TEN)))
+                .isInstanceOf(StorageException.class);
+
+        assertThat(account.getMinorUnits()).isZero();
+    }
+}
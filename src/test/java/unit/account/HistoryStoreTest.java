@@ -0,0 +1,71 @@
+package unit.account;
+
+import esz.dev.account.control.HistoryEntry;
+import esz.dev.account.control.HistoryPage;
+import esz.dev.account.control.HistoryStore;
+import esz.dev.account.entity.Account;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the bounded history of the accounts.
+ */
+class HistoryStoreTest {
+    private static final Account ACCOUNT = Account.builder().iban("RO47XXXX5678901234567891").amount(BigDecimal.ZERO).build();
+    private static final Account COUNTERPARTY = Account.builder().iban("RO20XXXX5678901234567892").amount(BigDecimal.ZERO).build();
+
+    @Test
+    @DisplayName("Should list the entries newest first, page by page")
+    void pageThroughHistory() {
+        HistoryStore historyStore = new HistoryStore(8);
+        historyStore.record(ACCOUNT, HistoryEntry.Type.DEPOSIT, new BigDecimal(100), null);
+        historyStore.record(ACCOUNT, HistoryEntry.Type.WITHDRAW, new BigDecimal(10), null);
+        historyStore.record(ACCOUNT, HistoryEntry.Type.TRANSFER_OUT, new BigDecimal(20), COUNTERPARTY);
+
+        HistoryPage first = historyStore.getHistory(ACCOUNT.getIban(), Long.MAX_VALUE, 2);
+        assertThat(first.getEntries()).extracting(HistoryEntry::getSequence).containsExactly(2L, 1L);
+        assertThat(first.getEntries().get(0).getType()).isEqualTo(HistoryEntry.Type.TRANSFER_OUT);
+        assertThat(first.getEntries().get(0).getCounterpartyIban()).isEqualTo(COUNTERPARTY.getIban());
+        assertThat(first.getEntries().get(0).getTimestamp()).isNotNull();
+        assertThat(first.getNextCursor()).isEqualTo(1L);
+
+        HistoryPage last = historyStore.getHistory(ACCOUNT.getIban(), first.getNextCursor(), 2);
+        assertThat(last.getEntries()).extracting(HistoryEntry::getType).containsExactly(HistoryEntry.Type.DEPOSIT);
+        assertThat(last.getEntries().get(0).getAmount()).isEqualByComparingTo(new BigDecimal(100));
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep only the most recent entries up to the capacity")
+    void keepMostRecentEntries() {
+        HistoryStore historyStore = new HistoryStore(4);
+        for (int i = 0; i < 10; i++) {
+            historyStore.record(ACCOUNT, HistoryEntry.Type.DEPOSIT, new BigDecimal(i), null);
+        }
+
+        HistoryPage page = historyStore.getHistory(ACCOUNT.getIban(), Long.MAX_VALUE, 100);
+        assertThat(page.getEntries()).extracting(HistoryEntry::getSequence).containsExactly(9L, 8L, 7L, 6L);
+        assertThat(page.getEntries()).extracting(HistoryEntry::getAmount)
+                .containsExactly(new BigDecimal(9), new BigDecimal(8), new BigDecimal(7), new BigDecimal(6));
+        assertThat(page.getNextCursor()).isNull();
+
+        // a cursor to entries which were overwritten continues with nothing
+        assertThat(historyStore.getHistory(ACCOUNT.getIban(), 3, 100).getEntries()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep nothing when the capacity is zero, nor for accounts without transactions")
+    void emptyHistory() {
+        HistoryStore historyStore = new HistoryStore(0);
+        historyStore.record(ACCOUNT, HistoryEntry.Type.DEPOSIT, new BigDecimal(100), null);
+
+        assertThat(historyStore.getHistory(ACCOUNT.getIban(), Long.MAX_VALUE, 10).getEntries()).isEmpty();
+        assertThat(new HistoryStore(4).getHistory(COUNTERPARTY.getIban(), Long.MAX_VALUE, 10).getEntries()).isEmpty();
+        assertThatThrownBy(() -> new HistoryStore(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
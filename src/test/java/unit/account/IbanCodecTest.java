@@ -0,0 +1,51 @@
+package unit.account;
+
+import esz.dev.account.control.IbanCodec;
+import org.iban4j.CountryCode;
+import org.iban4j.Iban;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for packing the IBANs issued by the bank into numeric keys.
+ */
+class IbanCodecTest {
+
+    @Test
+    @DisplayName("Should issue valid IBANs, restore them from their keys, and give different IBANs different keys")
+    void encodeAndDecodeIssuedIbans() {
+        Set<Long> keys = new HashSet<>();
+        for (long accountNumber : new long[]{0, 1, 9, 10, 99, 12345, 9_999_999_999_999_999L}) {
+            String iban = new Iban.Builder()
+                    .countryCode(CountryCode.RO)
+                    .bankCode("XXXX")
+                    .accountNumber(String.format("%016d", accountNumber))
+                    .build()
+                    .toString();
+            long key = IbanCodec.encode(iban);
+
+            assertThat(key).isNotNegative();
+            assertThat(IbanCodec.decode(key)).isEqualTo(iban);
+            assertThat(keys.add(key)).isTrue();
+            assertThat(IbanCodec.issue(accountNumber)).isEqualTo(iban);
+        }
+        // the check digits are part of the key
+        assertThat(IbanCodec.encode("RO00XXXX0000000000000001")).isNotEqualTo(IbanCodec.encode("RO01XXXX0000000000000001"));
+    }
+
+    @Test
+    @DisplayName("Should not give a key to IBANs not issued by the bank")
+    void noKeyForForeignIbans() {
+        assertThat(IbanCodec.encode("DE89370400440532013000")).isEqualTo(IbanCodec.NO_KEY);
+        assertThat(IbanCodec.encode("RO49AAAA1B31007593840000")).isEqualTo(IbanCodec.NO_KEY);
+        assertThat(IbanCodec.encode("RO4XXXXX0000000000000001")).isEqualTo(IbanCodec.NO_KEY);
+        assertThat(IbanCodec.encode("RO47XXXX56789012345678911")).isEqualTo(IbanCodec.NO_KEY);
+        assertThat(IbanCodec.encode("IBAN1")).isEqualTo(IbanCodec.NO_KEY);
+        assertThat(IbanCodec.encode(null)).isEqualTo(IbanCodec.NO_KEY);
+    }
+}
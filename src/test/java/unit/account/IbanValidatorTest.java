@@ -0,0 +1,77 @@
+package unit.account;
+
+import esz.dev.account.boundary.IbanValidator;
+import org.iban4j.CountryCode;
+import org.iban4j.Iban;
+import org.iban4j.Iban4jException;
+import org.iban4j.IbanUtil;
+import org.iban4j.bban.BbanStructure;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for validating IBANs without iban4j, checking that the outcome is always the same as with iban4j.
+ */
+class IbanValidatorTest {
+    private static final String CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz -/";
+
+    private final IbanValidator ibanValidator = new IbanValidator();
+
+    @Test
+    @DisplayName("Should accept the IBANs of every country supported by iban4j")
+    void acceptValidIbans() {
+        for (CountryCode countryCode : BbanStructure.supportedCountries()) {
+            for (int i = 0; i < 100; i++) {
+                String iban = Iban.random(countryCode).toString();
+                assertThat(ibanValidator.isValid(iban)).as(iban).isTrue();
+                // validated again from the cache
+                assertThat(ibanValidator.isValid(iban)).as(iban).isTrue();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject the same mangled IBANs as iban4j")
+    void rejectInvalidIbansLikeIban4j() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder iban = new StringBuilder(Iban.random().toString());
+            switch (random.nextInt(4)) {
+                case 0:
+                    iban.setLength(random.nextInt(iban.length()));
+                    break;
+                case 1:
+                    iban.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+                    break;
+                default:
+                    iban.setCharAt(random.nextInt(iban.length()), CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            String mangled = iban.toString();
+            assertThat(ibanValidator.isValid(mangled)).as(mangled).isEqualTo(isValidForIban4j(mangled));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject missing, short and non-ASCII IBANs")
+    void rejectMalformedIbans() {
+        assertThat(ibanValidator.isValid(null)).isFalse();
+        assertThat(ibanValidator.isValid("")).isFalse();
+        assertThat(ibanValidator.isValid("RO4")).isFalse();
+        assertThat(ibanValidator.isValid("RO47XXXX567890123456789\u0661")).isFalse();
+        assertThat(ibanValidator.isValid("RO47XXXX5678901234567891")).isTrue();
+        assertThat(ibanValidator.isValid("RO48XXXX5678901234567891")).isFalse();
+    }
+
+    private static boolean isValidForIban4j(String iban) {
+        try {
+            IbanUtil.validate(iban);
+            return true;
+        } catch (Iban4jException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package unit.account;
+
+import esz.dev.account.control.MinorUnits;
+import esz.dev.account.control.OffHeapAccountStore;
+import esz.dev.account.entity.Account;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the account store keeping the accounts in direct memory.
+ */
+class OffHeapAccountStoreTest {
+
+    @Test
+    @DisplayName("Should share the balance between the accounts found for an IBAN")
+    void shareBalanceOfViews() {
+        OffHeapAccountStore accountStore = new OffHeapAccountStore(10);
+        accountStore.addAccount(Account.builder().iban("IBAN1").minorUnits(MinorUnits.fromDecimal(BigDecimal.TEN)).build());
+
+        Account first = accountStore.findAccount("IBAN1");
+        Account second = accountStore.findAccount("IBAN1");
+        assertThat(first.compareAndSetMinorUnits(first.getMinorUnits(), MinorUnits.fromDecimal(BigDecimal.ONE))).isTrue();
+
+        assertThat(second.getAmount()).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(second).isEqualTo(first);
+        assertThat(accountStore.findAccount("IBAN2")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject an account whose IBAN is already stored, and keep its balance and the free slots")
+    void rejectDuplicateIban() {
+        OffHeapAccountStore accountStore = new OffHeapAccountStore(2);
+        accountStore.addAccount(Account.builder().iban("IBAN1").minorUnits(MinorUnits.fromDecimal(BigDecimal.TEN)).build());
+
+        assertThatThrownBy(() -> accountStore.addAccount(Account.builder().iban("IBAN1").minorUnits(0L).build()))
+                .isInstanceOf(IllegalArgumentException.class);
+        accountStore.addAccount(Account.builder().iban("IBAN2").minorUnits(0L).build());
+
+        assertThat(accountStore.findAccount("IBAN1").getAmount()).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(accountStore.countAccounts()).isEqualTo(2);
+    }
+}
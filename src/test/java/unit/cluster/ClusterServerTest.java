@@ -0,0 +1,146 @@
+package unit.cluster;
+
+import esz.dev.account.boundary.ValidationService;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.BalanceMode;
+import esz.dev.cluster.boundary.ClusterServer;
+import esz.dev.cluster.control.ClusterAuthenticator;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.HttpShardClient;
+import esz.dev.cluster.control.ShardUnavailableException;
+import esz.dev.cluster.control.UnknownTransferException;
+import esz.dev.journal.control.DisabledJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the internal listener receiving the messages of the transfers between shards.
+ */
+@ExtendWith(MockitoExtension.class)
+class ClusterServerTest {
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+    private static final String IBAN = "RO47XXXX5678901234567891";
+
+    @Mock
+    private AccountService accountService;
+
+    private CrossShardTransfers crossShardTransfers;
+    private ClusterServer server;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        crossShardTransfers = new CrossShardTransfers(accountService, new DisabledJournal(), ClusterTopology.standalone(),
+                new HttpShardClient(List.of(), Duration.ofSeconds(1), null), 60_000);
+        server = new ClusterServer(crossShardTransfers, new ClusterAuthenticator(SECRET),
+                new ValidationService(BalanceMode.DECIMAL));
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+        url = "http://localhost:" + server.getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    @DisplayName("Should prepare and commit the credits of messages signed with the secret of the cluster")
+    void applySignedMessages() throws Exception {
+        HttpShardClient client = new HttpShardClient(List.of(url), Duration.ofSeconds(5), new ClusterAuthenticator(SECRET));
+        AmountDto credit = new AmountDto(IBAN, new BigDecimal("12.50"));
+
+        client.prepare(0, "transfer-1", credit);
+        assertThat(crossShardTransfers.preparedCredits()).isEqualTo(1);
+        client.commit(0, "transfer-1");
+
+        verify(accountService).deposit(eq(credit), any());
+        assertThat(crossShardTransfers.preparedCredits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should apply a commit delivered twice once, ignore the commits of forgotten transfers and refuse the "
+            + "commits of aborted credits")
+    void refuseUnknownTransfers() throws Exception {
+        HttpShardClient client = new HttpShardClient(List.of(url), Duration.ofSeconds(5), new ClusterAuthenticator(SECRET));
+        AmountDto credit = new AmountDto(IBAN, BigDecimal.TEN);
+
+        client.prepare(0, "transfer-1", credit);
+        client.commit(0, "transfer-1");
+        client.commit(0, "transfer-1");
+        client.prepare(0, "transfer-1", credit);
+        client.prepare(0, "transfer-2", credit);
+        client.abort(0, "transfer-2");
+
+        assertThat(crossShardTransfers.preparedCredits()).isZero();
+        assertThatThrownBy(() -> client.commit(0, "transfer-2")).isInstanceOf(UnknownTransferException.class);
+        client.commit(0, "transfer-3");
+        verify(accountService).deposit(eq(credit), any());
+    }
+
+    @Test
+    @DisplayName("Should reject messages which are not signed with the secret of the cluster")
+    void rejectUnsignedMessages() throws Exception {
+        HttpShardClient impostor = new HttpShardClient(List.of(url), Duration.ofSeconds(5),
+                new ClusterAuthenticator(SECRET.toUpperCase()));
+        HttpResponse<String> unsigned = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                URI.create(url + HttpShardClient.TRANSFER_PATH + "/transfer-1/prepare"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"iban\":\"" + IBAN + "\",\"amount\":100}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(unsigned.statusCode()).isEqualTo(401);
+        assertThatThrownBy(() -> impostor.prepare(0, "transfer-1", new AmountDto(IBAN, BigDecimal.TEN)))
+                .isInstanceOf(ShardUnavailableException.class);
+        assertThat(crossShardTransfers.preparedCredits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject the credits which are not valid amounts")
+    void rejectInvalidCredits() throws Exception {
+        HttpShardClient client = new HttpShardClient(List.of(url), Duration.ofSeconds(5), new ClusterAuthenticator(SECRET));
+
+        assertThatThrownBy(() -> client.prepare(0, "transfer-1", new AmountDto(IBAN, new BigDecimal("-100"))))
+                .isInstanceOf(ShardUnavailableException.class);
+        verify(accountService, never()).deposit(any(), any());
+        assertThat(crossShardTransfers.preparedCredits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject signatures which are too old or not of the message")
+    void rejectStaleSignatures() {
+        long[] now = {1_000_000};
+        ClusterAuthenticator authenticator = new ClusterAuthenticator(SECRET, () -> now[0]);
+        byte[] body = "{}".getBytes();
+        String signature = authenticator.sign("/prepare", body);
+
+        assertThat(authenticator.verify(signature, "/prepare", body)).isTrue();
+        assertThat(authenticator.verify(signature, "/commit", body)).isFalse();
+        assertThat(authenticator.verify(signature, "/prepare", "{ }".getBytes())).isFalse();
+        assertThat(authenticator.verify("garbage", "/prepare", body)).isFalse();
+        now[0] += 120_000;
+        assertThat(authenticator.verify(signature, "/prepare", body)).isFalse();
+    }
+}
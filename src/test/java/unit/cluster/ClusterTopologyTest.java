@@ -0,0 +1,99 @@
+package unit.cluster;
+
+import esz.dev.account.control.IbanCodec;
+import esz.dev.account.control.IbanIssuer;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.user.control.UserIds;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for placing the accounts and the users on the nodes of a cluster.
+ */
+class ClusterTopologyTest {
+    private static final List<String> NODES = List.of("http://localhost:8081", "http://localhost:8082", "http://localhost:8083");
+    private static final int NR_OF_IBANS = 30_000;
+
+    @Test
+    @DisplayName("Should spread the accounts evenly and place them the same way on every node")
+    void spreadAccountsEvenly() {
+        ClusterTopology first = new ClusterTopology(NODES, 0);
+        ClusterTopology second = new ClusterTopology(NODES, 2);
+        int[] accounts = new int[NODES.size()];
+        for (int i = 0; i < NR_OF_IBANS; i++) {
+            String iban = IbanCodec.issue(i);
+            int owner = first.ownerOf(iban);
+            assertThat(second.ownerOf(iban)).isEqualTo(owner);
+            accounts[owner]++;
+        }
+        for (int count : accounts) {
+            assertThat(count).isBetween(NR_OF_IBANS / NODES.size() * 8 / 10, NR_OF_IBANS / NODES.size() * 12 / 10);
+        }
+    }
+
+    @Test
+    @DisplayName("Should only move the accounts taken over by a new node")
+    void moveFewAccountsWhenAddingANode() {
+        ClusterTopology three = new ClusterTopology(NODES, 0);
+        List<String> fourNodes = List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://localhost:8084");
+        ClusterTopology four = new ClusterTopology(fourNodes, 0);
+        int moved = 0;
+        for (int i = 0; i < NR_OF_IBANS; i++) {
+            String iban = IbanCodec.issue(i);
+            int owner = four.ownerOf(iban);
+            if (owner != three.ownerOf(iban)) {
+                assertThat(owner).isEqualTo(3);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(NR_OF_IBANS / 4 * 6 / 10, NR_OF_IBANS / 4 * 14 / 10);
+    }
+
+    @Test
+    @DisplayName("Should issue IBANs and user ids owned by the issuing node only, never twice across the nodes")
+    void issueOwnedIbansAndUserIds() {
+        Set<String> ibans = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (int node = 0; node < NODES.size(); node++) {
+            ClusterTopology topology = new ClusterTopology(NODES, node);
+            IbanIssuer ibanIssuer = new IbanIssuer(topology::isLocal);
+            UserIds ids = new UserIds(node, NODES.size());
+            for (int i = 0; i < 1000; i++) {
+                String iban = ibanIssuer.issue();
+                assertThat(topology.ownerOf(iban)).isEqualTo(node);
+                assertThat(ibans.add(iban)).isTrue();
+                long userId = ids.next();
+                assertThat(topology.ownerOfUser(userId)).isEqualTo(node);
+                assertThat(userIds.add(userId)).isTrue();
+            }
+            ibanIssuer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should generate ids greater than the restored ones")
+    void continueUserIdsAfterRestore() {
+        UserIds ids = new UserIds(1, 3);
+        ids.restore(10);
+        assertThat(ids.next()).isEqualTo(11);
+        ids.restore(20);
+        assertThat(ids.next()).isEqualTo(23);
+        assertThat(new UserIds().next()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should own everything when not part of a cluster")
+    void standaloneOwnsEverything() {
+        ClusterTopology topology = ClusterTopology.standalone();
+        assertThat(topology.isClustered()).isFalse();
+        assertThat(topology.isLocal(IbanCodec.issue(42))).isTrue();
+        assertThat(topology.isLocal("DE89370400440532013000")).isTrue();
+        assertThat(topology.ownerOfUser(7)).isZero();
+    }
+}
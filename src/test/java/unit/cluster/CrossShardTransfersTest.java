@@ -0,0 +1,110 @@
+package unit.cluster;
+
+import esz.dev.account.control.AccountNotFoundException;
+import esz.dev.account.control.AccountService;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.BalanceOverflowException;
+import esz.dev.account.control.IbanIssuer;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.cluster.control.ClusterTopology;
+import esz.dev.cluster.control.CrossShardTransfers;
+import esz.dev.cluster.control.ShardClient;
+import esz.dev.cluster.control.UnknownTransferException;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.entity.JournalRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the transfers between shards refused by the node of the receiver.
+ */
+@ExtendWith(MockitoExtension.class)
+class CrossShardTransfersTest {
+    private static final List<String> NODES = List.of("http://node-0", "http://node-1");
+    private static final String SENDER_IBAN = "RO47XXXX5678901234567891";
+
+    @Mock
+    private AccountService senderAccounts;
+    @Mock
+    private AccountService receiverAccounts;
+
+    private IbanIssuer receiverIbans;
+    private CrossShardTransfers coordinator;
+    private CrossShardTransfers receiver;
+    private String preparedTransferId;
+
+    @BeforeEach
+    void setUp() {
+        ShardClient client = new ShardClient() {
+            @Override
+            public void prepare(int node, String transferId, AmountDto credit) throws AccountNotFoundException {
+                preparedTransferId = transferId;
+                receiver.prepare(transferId, credit);
+            }
+
+            @Override
+            public void commit(int node, String transferId) {
+                try {
+                    receiver.commit(transferId);
+                } catch (AccountNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void abort(int node, String transferId) {
+                receiver.abort(transferId);
+            }
+        };
+        ClusterTopology receiverTopology = new ClusterTopology(NODES, 1);
+        receiverIbans = new IbanIssuer(receiverTopology::isLocal);
+        coordinator = new CrossShardTransfers(senderAccounts, new DisabledJournal(), new ClusterTopology(NODES, 0),
+                client, 60_000);
+        receiver = new CrossShardTransfers(receiverAccounts, new DisabledJournal(), receiverTopology, client, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+        receiver.shutdown();
+        receiverIbans.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should credit the sender back when the credit would overflow the balance of the receiver")
+    void refundOverflowingCredit() throws Exception {
+        String receiverIban = receiverIbans.issue();
+        BigDecimal amount = new BigDecimal("12.50");
+        doThrow(new BalanceOverflowException("The balance of the account with iban " + receiverIban + " would overflow"))
+                .when(receiverAccounts).deposit(any(), any());
+
+        assertThatThrownBy(() -> coordinator.transfer(new TransferAmountDto(SENDER_IBAN, receiverIban, amount)))
+                .isInstanceOf(BalanceOverflowException.class);
+
+        AmountDto refund = new AmountDto(SENDER_IBAN, amount);
+        verify(senderAccounts).withdraw(eq(refund), any());
+        verify(senderAccounts).deposit(eq(refund),
+                argThat(record -> record.getType() == JournalRecord.Type.TRANSFER_REFUNDED));
+        assertThat(coordinator.pendingDecisions()).isZero();
+        assertThat(receiver.preparedCredits()).isZero();
+        // the refusal is final, a commit delivered again is refused again
+        assertThatThrownBy(() -> receiver.commit(preparedTransferId))
+                .isInstanceOf(UnknownTransferException.class);
+    }
+}
@@ -0,0 +1,104 @@
+package unit.idempotency;
+
+import esz.dev.account.control.NotEnoughAmountException;
+import esz.dev.idempotency.control.IdempotencyCache;
+import esz.dev.idempotency.control.StoredResponse;
+import esz.dev.metrics.control.MetricsRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for deduplicating requests by idempotency key.
+ */
+class IdempotencyCacheTest {
+
+    @Test
+    @DisplayName("Should execute concurrent duplicates once and give all of them the outcome of the first one")
+    void concurrentDuplicates() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(new MetricsRegistry(), 1000, 60_000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<StoredResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(executorService.submit(() -> {
+                start.await();
+                IdempotencyCache.Claim claim = cache.claim("/api/account/withdraw key");
+                if (claim.isOwner()) {
+                    executions.incrementAndGet();
+                    Thread.sleep(50);
+                    claim.complete(StoredResponse.of(200, "withdrawn"));
+                }
+                return claim.response().get();
+            }));
+        }
+        start.countDown();
+        for (Future<StoredResponse> response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("withdrawn");
+        }
+        executorService.shutdown();
+
+        assertThat(executions).hasValue(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should replay failures of the application and forget keys of unexpected errors")
+    void failures() {
+        IdempotencyCache cache = new IdempotencyCache(new MetricsRegistry(), 1000, 60_000);
+        NotEnoughAmountException notEnoughAmount = new NotEnoughAmountException("Not enough amount");
+        cache.claim("failed").complete(StoredResponse.failed(notEnoughAmount));
+        cache.claim("abandoned").abandon(new IllegalStateException());
+
+        IdempotencyCache.Claim failed = cache.claim("failed");
+        assertThat(failed.isOwner()).isFalse();
+        assertThat(failed.response().join().getFailure()).isSameAs(notEnoughAmount);
+        assertThat(cache.claim("abandoned").isOwner()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should evict the oldest keys beyond the maximum number of entries and expired keys")
+    void eviction() {
+        IdempotencyCache bounded = new IdempotencyCache(new MetricsRegistry(), 100, 60_000);
+        for (int i = 0; i < 1000; i++) {
+            bounded.claim("key-" + i).complete(StoredResponse.of(200, i));
+        }
+        assertThat(bounded.size()).isLessThanOrEqualTo(101);
+        assertThat(bounded.claim("key-999").isOwner()).isFalse();
+        assertThat(bounded.claim("key-0").isOwner()).isTrue();
+
+        IdempotencyCache expiring = new IdempotencyCache(new MetricsRegistry(), 100, 0);
+        expiring.claim("key").complete(StoredResponse.of(200, "first"));
+        assertThat(expiring.claim("key").isOwner()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep the keys of requests in flight when the cache is full or their time to live has passed")
+    void keepKeysInFlight() {
+        IdempotencyCache bounded = new IdempotencyCache(new MetricsRegistry(), 100, 60_000);
+        IdempotencyCache.Claim inFlight = bounded.claim("in-flight");
+        for (int i = 0; i < 1000; i++) {
+            bounded.claim("key-" + i).complete(StoredResponse.of(200, i));
+        }
+        IdempotencyCache.Claim retry = bounded.claim("in-flight");
+        assertThat(retry.isOwner()).isFalse();
+        assertThat(bounded.inFlight()).isEqualTo(1);
+        assertThat(bounded.size()).isLessThanOrEqualTo(102);
+        inFlight.complete(StoredResponse.of(200, "first"));
+        assertThat(retry.response().join().getBody()).isEqualTo("first");
+        assertThat(bounded.inFlight()).isZero();
+
+        IdempotencyCache expiring = new IdempotencyCache(new MetricsRegistry(), 100, 0);
+        IdempotencyCache.Claim slow = expiring.claim("key");
+        assertThat(expiring.claim("key").isOwner()).isFalse();
+        slow.complete(StoredResponse.of(200, "first"));
+        assertThat(expiring.claim("key").isOwner()).isTrue();
+    }
+}
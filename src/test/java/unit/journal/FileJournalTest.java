@@ -0,0 +1,75 @@
+package unit.journal;
+
+import esz.dev.journal.control.FileJournal;
+import esz.dev.journal.entity.JournalRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the file journal failing to make a batch durable.
+ */
+class FileJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Failed batch stops the journal for good")
+    void failedBatchStopsJournal() throws Exception {
+        FailingJournal journal = new FailingJournal(directory);
+        journal.append(deposit("IBAN1")).get(5, TimeUnit.SECONDS);
+        assertThat(journal.isHealthy()).isTrue();
+
+        journal.failing = true;
+        assertThatThrownBy(() -> journal.append(deposit("IBAN2")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        assertThat(journal.isHealthy()).isFalse();
+
+        journal.failing = false;
+        assertThatThrownBy(() -> journal.append(deposit("IBAN3")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseInstanceOf(IOException.class);
+        assertThat(journal.isHealthy()).isFalse();
+        journal.close();
+
+        FileJournal reopened = new FileJournal(directory, 1024 * 1024, 64);
+        List<String> ibans = new ArrayList<>();
+        reopened.replay(0, record -> ibans.add(record.getIban()));
+        reopened.close();
+        assertThat(ibans).doesNotContain("IBAN3");
+    }
+
+    private static JournalRecord deposit(String iban) {
+        return JournalRecord.builder().type(JournalRecord.Type.DEPOSIT).iban(iban).amount(BigDecimal.TEN).build();
+    }
+
+    private static class FailingJournal extends FileJournal {
+        private volatile boolean failing;
+
+        private FailingJournal(Path directory) throws IOException {
+            super(directory, 1024 * 1024, 64);
+        }
+
+        @Override
+        protected void force(FileChannel channel) throws IOException {
+            if (failing) {
+                throw new IOException("Injected fsync failure");
+            }
+            super.force(channel);
+        }
+    }
+}
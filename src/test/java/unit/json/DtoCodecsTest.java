@@ -0,0 +1,114 @@
+package unit.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esz.dev.account.control.AmountDto;
+import esz.dev.account.control.TransferAmountDto;
+import esz.dev.common.ResponseDto;
+import esz.dev.json.boundary.CompiledJsonModule;
+import esz.dev.json.control.DtoCodec;
+import esz.dev.json.control.DtoCodecs;
+import esz.dev.json.control.MalformedJsonException;
+import esz.dev.user.control.UserDto;
+import io.jooby.json.JacksonModule;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the compiled JSON codecs of the data transfer objects, against Jackson as the REST end-points use it.
+ */
+class DtoCodecsTest {
+    private final ObjectMapper objectMapper = JacksonModule.create();
+
+    @Test
+    @DisplayName("Should write the same bytes as Jackson and read them back")
+    void writeAsJackson() throws Exception {
+        List<Object> values = List.of(
+                new AmountDto("RO47XXXX5678901234567891", new BigDecimal("22.34")),
+                new AmountDto(null, new BigDecimal("-1E+3")),
+                new AmountDto("RO47XXXX5678901234567891", new BigDecimal("0.0000001")),
+                new AmountDto("RO47XXXX5678901234567891", new BigDecimal("123456789012345678901234567890.5")),
+                new TransferAmountDto("RO47XXXX5678901234567891", "RO20XXXX5678901234567892", BigDecimal.TEN),
+                new TransferAmountDto(),
+                new UserDto("John", "Doe", "New York 101"),
+                new UserDto("\"Quoted\" \\ back/slash", "tab\tnew\nline\r\b\f\u0001\u001f\u007f", null),
+                new UserDto("\u0218tefan \u00c9mile", "\u65e5\u672c\u8a9e", "emoji \ud83d\udcb0"),
+                ResponseDto.TRANSFERRED,
+                new ResponseDto(ResponseDto.Status.FAILURE, "Account with iban RO47XXXX5678901234567891 not found"),
+                new ResponseDto(null, null),
+                new ResponseDto[]{ResponseDto.DEPOSITED, null, new ResponseDto(ResponseDto.Status.FAILURE, "No")},
+                new TransferAmountDto[0]);
+        for (Object value : values) {
+            DtoCodec<Object> codec = DtoCodecs.forType(value.getClass());
+            ByteBuf out = Unpooled.buffer();
+            codec.write(value, out);
+            byte[] expected = objectMapper.writeValueAsBytes(value);
+
+            assertThat(new String(ByteBufUtil.getBytes(out), StandardCharsets.UTF_8))
+                    .isEqualTo(new String(expected, StandardCharsets.UTF_8));
+            assertThat(codec.read(out)).isEqualTo(objectMapper.readValue(expected, value.getClass()));
+            assertThat(out.isReadable()).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should read what Jackson reads, whatever the order of the fields and the whitespace")
+    void readAsJackson() throws Exception {
+        List<String> bodies = List.of(
+                " {\n\"amount\" : 12.50 , \"iban\":\"RO47XXXX5678901234567891\"\t} ",
+                "{\"amount\":\"7.5\"}",
+                "{\"amount\":-3e-2,\"iban\":null}",
+                "{\"amount\":2E5}",
+                "{\"amount\":99999999999999999999}",
+                "{\"iban\":\"\\u0052O\\/47\\\"\\\\\"}",
+                "{}",
+                "null");
+        for (String body : bodies) {
+            ByteBuf in = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+
+            assertThat(DtoCodecs.AMOUNT.read(in)).isEqualTo(objectMapper.readValue(body, AmountDto.class));
+        }
+        ByteBuf batch = Unpooled.copiedBuffer("[{\"senderIban\":\"A\",\"receiverIban\":\"B\",\"amount\":1}, null]",
+                StandardCharsets.UTF_8);
+        assertThat(DtoCodecs.<TransferAmountDto[]>forType(TransferAmountDto[].class).read(batch))
+                .containsExactly(new TransferAmountDto("A", "B", BigDecimal.ONE), null);
+    }
+
+    @Test
+    @DisplayName("Should reject bodies which are not JSON or have unknown fields")
+    void rejectMalformedBodies() {
+        List<String> bodies = List.of(
+                "", "{", "{\"iban\"}", "{\"iban\":\"x\",}", "{\"iban\":\"x\" \"amount\":1}", "{\"owner\":\"x\"}",
+                "{\"amount\":01}", "{\"amount\":1.}", "{\"amount\":-}", "{\"amount\":1e}", "{\"amount\":\"one\"}",
+                "{\"iban\":\"unterminated}", "{\"iban\":\"bad \\x escape\"}", "{\"iban\":\"line\nbreak\"}",
+                "{\"iban\":nul}", "[]");
+        for (String body : bodies) {
+            ByteBuf in = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+
+            assertThatThrownBy(() -> DtoCodecs.AMOUNT.read(in)).as(body).isInstanceOf(MalformedJsonException.class);
+        }
+        assertThatThrownBy(() -> DtoCodecs.RESPONSE.read(Unpooled.copiedBuffer("{\"status\":\"MAYBE\"}",
+                StandardCharsets.UTF_8))).isInstanceOf(MalformedJsonException.class);
+    }
+
+    @Test
+    @DisplayName("Should send the body encoded once for the shared responses only")
+    void encodeSharedResponsesOnce() {
+        CompiledJsonModule module = new CompiledJsonModule();
+        ResponseDto equal = new ResponseDto(ResponseDto.Status.SUCCESS, "Successfully transferred amount!");
+
+        assertThat(equal).isEqualTo(ResponseDto.TRANSFERRED);
+        assertThat(module.encode(ResponseDto.TRANSFERRED)).isSameAs(module.encode(ResponseDto.TRANSFERRED));
+        assertThat(module.encode(equal)).isNotSameAs(module.encode(ResponseDto.TRANSFERRED))
+                .isEqualTo(module.encode(ResponseDto.TRANSFERRED));
+    }
+}
@@ -0,0 +1,65 @@
+package unit.metrics;
+
+import esz.dev.metrics.control.LatencyHistogram;
+import esz.dev.metrics.control.MetricsRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for recording latencies and exposing them in the Prometheus text format.
+ */
+class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("Should report quantiles within the resolution of the histogram buckets")
+    void histogramQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getSum()).isEqualTo(500_500_000L);
+        assertThat(snapshot.valueAtQuantile(0.5)).isBetween(500_000L, 500_000L * 17 / 16);
+        assertThat(snapshot.valueAtQuantile(0.99)).isBetween(990_000L, 990_000L * 17 / 16);
+        assertThat(snapshot.valueAtQuantile(1.0)).isBetween(1_000_000L, 1_000_000L * 17 / 16);
+    }
+
+    @Test
+    @DisplayName("Should render counters and cumulative histogram buckets with their labels")
+    void scrape() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("failures_total", "Failures.", "exception", "Quoted\"Exception").add(3);
+        LatencyHistogram histogram = registry.histogram("latency_seconds", "Latency.", "route", "/api/{id}");
+        histogram.record(800);
+        histogram.record(2_000_000);
+
+        assertThat(registry.histogram("latency_seconds", "Latency.", "route", "/api/{id}")).isSameAs(histogram);
+        assertThat(registry.scrape())
+                .contains("# TYPE failures_total counter\n")
+                .contains("failures_total{exception=\"Quoted\\\"Exception\"} 3\n")
+                .contains("# TYPE latency_seconds histogram\n")
+                .contains("latency_seconds_bucket{route=\"/api/{id}\",le=\"1.0E-6\"} 1\n")
+                .contains("latency_seconds_bucket{route=\"/api/{id}\",le=\"0.001\"} 1\n")
+                .contains("latency_seconds_bucket{route=\"/api/{id}\",le=\"0.0025\"} 2\n")
+                .contains("latency_seconds_bucket{route=\"/api/{id}\",le=\"+Inf\"} 2\n")
+                .contains("latency_seconds_count{route=\"/api/{id}\"} 2\n");
+    }
+
+    @Test
+    @DisplayName("Should render the value of a gauge when scraped")
+    void gauge() {
+        MetricsRegistry registry = new MetricsRegistry();
+        double[] value = {1.5};
+        registry.gauge("startup_restore_seconds", "Restore.", () -> value[0], "stage", "snapshot");
+        registry.gauge("startup_restore_seconds", "Restore.", () -> 0.0, "stage", "snapshot");
+        value[0] = 2.25;
+
+        assertThat(registry.scrape())
+                .contains("# TYPE startup_restore_seconds gauge\n")
+                .contains("startup_restore_seconds{stage=\"snapshot\"} 2.25\n");
+    }
+}
@@ -0,0 +1,44 @@
+package unit.metrics;
+
+import esz.dev.account.control.NotEnoughAmountException;
+import esz.dev.metrics.boundary.RouteMetrics;
+import esz.dev.metrics.control.MetricsRegistry;
+import io.jooby.Context;
+import io.jooby.Route;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the metrics of the requests served by a route.
+ */
+class RouteMetricsTest {
+
+    @Test
+    @DisplayName("Should record a request returning a future once the future completes, along with its failure")
+    void recordAsyncRequests() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Route route = mock(Route.class);
+        when(route.getMethod()).thenReturn("POST");
+        when(route.getPattern()).thenReturn("/api/account/withdraw");
+        Context context = mock(Context.class);
+        when(context.getRoute()).thenReturn(route);
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        Route.Handler handler = new RouteMetrics(registry).apply(ctx -> pending);
+
+        assertThat(handler.apply(context)).isSameAs(pending);
+        assertThat(registry.scrape()).contains("http_server_requests_seconds_count{method=\"POST\","
+                + "route=\"/api/account/withdraw\"} 0\n").doesNotContain("http_server_request_failures_total{");
+
+        pending.completeExceptionally(new NotEnoughAmountException("Not enough amount"));
+        assertThat(registry.scrape())
+                .contains("http_server_requests_seconds_count{method=\"POST\",route=\"/api/account/withdraw\"} 1\n")
+                .contains("http_server_request_failures_total{method=\"POST\",route=\"/api/account/withdraw\","
+                        + "exception=\"NotEnoughAmountException\"} 1\n");
+    }
+}
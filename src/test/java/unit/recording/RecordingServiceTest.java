@@ -0,0 +1,97 @@
+package unit.recording;
+
+import esz.dev.account.control.*;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.recording.control.RecordingService;
+import esz.dev.recording.control.RecordingStateException;
+import esz.dev.user.control.InMemoryUserStore;
+import esz.dev.user.control.UserStore;
+import esz.dev.user.entity.User;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for flight recordings of the banking operations.
+ */
+class RecordingServiceTest {
+
+    @Test
+    @DisplayName("Should record ledger events with hashed IBANs, amount buckets and failures")
+    void recordLedgerEvents(@TempDir Path directory) throws Exception {
+        UserStore userStore = new InMemoryUserStore();
+        userStore.addUser(User.builder().id(1L).build());
+        AccountService accountService = new AccountService(new InMemoryAccountStore(), userStore, new AccountLocks(),
+                new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        RecordingService recordingService = new RecordingService(directory);
+
+        recordingService.start();
+        assertThatThrownBy(recordingService::start).isInstanceOf(RecordingStateException.class);
+        String iban = accountService.createAccount(1L);
+        accountService.deposit(new AmountDto(iban, new BigDecimal("250.50")));
+        assertThatThrownBy(() -> accountService.withdraw(new AmountDto(iban, new BigDecimal("1000"))))
+                .isInstanceOf(NotEnoughAmountException.class);
+        Path file = recordingService.stop();
+
+        assertThat(recordingService.isRunning()).isFalse();
+        assertThat(file.getParent()).isEqualTo(directory);
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("esz.dev.LedgerOperation"))
+                .collect(Collectors.toList());
+        assertThat(events).extracting(event -> event.getString("operation"))
+                .containsExactly("CREATE_ACCOUNT", "DEPOSIT", "WITHDRAW");
+        RecordedEvent deposit = events.get(1);
+        assertThat(deposit.getInt("amountBucket")).isEqualTo(2);
+        assertThat(deposit.getInt("ibanHash")).isEqualTo(events.get(0).getInt("ibanHash"));
+        assertThat(deposit.getInt("ibanHash")).isNotEqualTo(iban.hashCode());
+        assertThat(deposit.getString("failure")).isNull();
+        assertThat(events.get(2).getString("failure")).isEqualTo("NotEnoughAmountException");
+        assertThatThrownBy(recordingService::dump).isInstanceOf(RecordingStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should record the ledger events of the engines taking no account lock")
+    void recordLockFreeLedgerEvents(@TempDir Path directory) throws Exception {
+        UserStore userStore = new InMemoryUserStore();
+        userStore.addUser(User.builder().id(1L).build());
+        AccountService atomicAccountService = new AtomicAccountService(new InMemoryAccountStore(), userStore,
+                new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(), new HistoryStore(32));
+        PartitionedAccountService partitionedAccountService = new PartitionedAccountService(new InMemoryAccountStore(),
+                userStore, new AccountLocks(), new DisabledJournal(), new IbanIssuer(), new AccountMetrics(),
+                new HistoryStore(32), BalanceMode.DECIMAL, 2, 64);
+        String atomicIban = atomicAccountService.createAccount(1L);
+        String sender = partitionedAccountService.createAccount(1L);
+        String receiver = partitionedAccountService.createAccount(1L);
+        RecordingService recordingService = new RecordingService(directory);
+
+        recordingService.start();
+        atomicAccountService.deposit(new AmountDto(atomicIban, BigDecimal.TEN));
+        partitionedAccountService.deposit(new AmountDto(sender, BigDecimal.TEN));
+        partitionedAccountService.transfer(new TransferAmountDto(sender, receiver, BigDecimal.ONE));
+        assertThatThrownBy(() -> partitionedAccountService.withdraw(new AmountDto(receiver, BigDecimal.TEN)))
+                .isInstanceOf(NotEnoughAmountException.class);
+        Path file = recordingService.stop();
+        partitionedAccountService.shutdown();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("esz.dev.LedgerOperation"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .collect(Collectors.toList());
+        assertThat(events).extracting(event -> event.getString("operation"))
+                .containsExactly("DEPOSIT", "DEPOSIT", "TRANSFER", "WITHDRAW");
+        assertThat(events.get(0).getLong("lockWait")).isZero();
+        assertThat(events.get(2).getInt("counterpartyHash")).isNotZero();
+        assertThat(events.get(3).getString("failure")).isEqualTo("NotEnoughAmountException");
+    }
+}
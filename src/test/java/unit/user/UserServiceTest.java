@@ -9,6 +9,9 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import esz.dev.common.ConcurrentAppendList;
+import esz.dev.journal.control.DisabledJournal;
+import esz.dev.journal.control.Journal;
 import esz.dev.user.control.*;
 import esz.dev.user.entity.User;
 
@@ -29,6 +32,9 @@ class UserServiceTest {
     @Spy
     private UserMapper userMapper = Mappers.getMapper(UserMapper.class);
 
+    @Spy
+    private Journal journal = new DisabledJournal();
+
     @InjectMocks
     private UserService userService;
 
@@ -62,4 +68,40 @@ class UserServiceTest {
         verify(userStore, Mockito.times(1)).getUser(anyLong());
         verifyNoMoreInteractions(userStore);
     }
+
+    @Test
+    @DisplayName("Should page through the accounts of a user in the order they were opened")
+    void pageThroughAccounts() throws UserNotFoundException {
+        long id = 1L;
+        ConcurrentAppendList<String> accounts = new ConcurrentAppendList<>();
+        for (int i = 0; i < 5; i++) {
+            accounts.add("IBAN" + i);
+        }
+        when(userStore.getAccounts(id)).thenReturn(Optional.of(accounts));
+
+        AccountPage first = userService.getAccountsForUser(id, 0, 2);
+        assertThat(first.getIbans()).containsExactly("IBAN0", "IBAN1");
+        assertThat(first.getNextCursor()).isEqualTo(2);
+
+        // accounts opened in the meantime show up on the later pages
+        accounts.add("IBAN5");
+        AccountPage second = userService.getAccountsForUser(id, first.getNextCursor(), 3);
+        assertThat(second.getIbans()).containsExactly("IBAN2", "IBAN3", "IBAN4");
+        assertThat(second.getNextCursor()).isEqualTo(5);
+
+        AccountPage last = userService.getAccountsForUser(id, second.getNextCursor(), 3);
+        assertThat(last.getIbans()).containsExactly("IBAN5");
+        assertThat(last.getNextCursor()).isNull();
+
+        assertThat(userService.getAccountsForUser(id, 100, 3).getIbans()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should throw an exception when listing the accounts of a nonexistent user")
+    void getAccountsOfNonExistentUserTest() {
+        long id = 1L;
+        when(userStore.getAccounts(id)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userService.getAccountsForUser(id, 0, 10)).isInstanceOf(UserNotFoundException.class);
+    }
 }